@@ -25,12 +25,36 @@ android {
             )
         }
     }
+    buildFeatures {
+        // BuildConfig.DEBUG limits session recording to debug builds
+        buildConfig = true
+    }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
 }
 
+// Trains the on-device BP model offline and writes src/main/assets/bp_model.json, which
+// is committed so builds never depend on the dataset or a Python stack. Not part of any
+// variant build; run it with the pinned versions in requirements-training.txt, then
+// commit the asset.
+tasks.register<Exec>("trainBpModel") {
+    group = "ml"
+    description = "Retrains bp_model.json from the PPG dataset (ppg.datasetDir)"
+    val dataset = rootProject.file(providers.gradleProperty("ppg.datasetDir").getOrElse("dataset"))
+    val output = file("src/main/assets/bp_model.json")
+    // The script also saves its joblib model to the working directory
+    workingDir = temporaryDir
+    commandLine(
+        providers.gradleProperty("ppg.python").getOrElse("python3"),
+        rootProject.file("real_ppg_bp_regression.py").absolutePath,
+        "--dataset", dataset.absolutePath,
+        "--export", output.absolutePath,
+        "--no-plot"
+    )
+}
+
 dependencies {
 
     implementation(libs.appcompat)
@@ -44,6 +68,9 @@ dependencies {
     // CardView for UI cards
     implementation("androidx.cardview:cardview:1.0.0")
     
+    // Paged measurement history
+    implementation("androidx.recyclerview:recyclerview:1.3.2")
+    
     // Camera dependencies
     implementation("androidx.camera:camera-core:1.3.1")
     implementation("androidx.camera:camera-camera2:1.3.1")
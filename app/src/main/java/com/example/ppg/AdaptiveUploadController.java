@@ -0,0 +1,229 @@
+package com.example.ppg;
+
+import java.util.Arrays;
+
+/**
+ * Picks how much the client uploads from the state of the WebSocket's outgoing queue.
+ *
+ * Levels run from the richest payload (full frames at 15 FPS) down to large batches of
+ * channel means. Once a second the controller is given the bytes still queued in OkHttp
+ * and the total bytes handed to the socket, and from them estimates the link throughput
+ * and how long the queue takes to drain.
+ *
+ * A queue that holds more than MAX_QUEUE_DELAY_SECONDS of data, or more than
+ * MAX_QUEUE_BYTES, drops one level at once (at most every STEP_DOWN_COOLDOWN_NANOS).
+ * The controller climbs back one level after the queue has stayed nearly empty for a
+ * hold time. The hold time doubles each time a level turns out to be too much for the
+ * link, so a weak link does not flap between two levels.
+ */
+public class AdaptiveUploadController {
+
+    /**
+     * Upload levels, richest first
+     */
+    public enum Level {
+        FULL_FRAME(PPGWebSocketClient.UploadMode.FULL_FRAME, 2, 1, 0),                 // 15 FPS
+        FULL_FRAME_HALF_RATE(PPGWebSocketClient.UploadMode.FULL_FRAME, 4, 1, 0),       // 7.5 FPS
+        ROI_CROP(PPGWebSocketClient.UploadMode.ROI_CROP, 2, 1, 0),                     // 15 FPS, ROI only
+        CHANNEL_MEANS(PPGWebSocketClient.UploadMode.CHANNEL_MEANS, 1,
+                SampleBatcher.DEFAULT_MAX_SAMPLES, SampleBatcher.DEFAULT_MAX_LATENCY_MILLIS),
+        CHANNEL_MEANS_BATCHED(PPGWebSocketClient.UploadMode.CHANNEL_MEANS, 1, 30, 1000);  // one message a second
+
+        public final PPGWebSocketClient.UploadMode mode;
+        // Every n-th camera frame is uploaded
+        public final int frameDecimation;
+        public final int batchSamples;
+        public final long batchLatencyMillis;
+
+        Level(PPGWebSocketClient.UploadMode mode, int frameDecimation, int batchSamples, long batchLatencyMillis) {
+            this.mode = mode;
+            this.frameDecimation = frameDecimation;
+            this.batchSamples = batchSamples;
+            this.batchLatencyMillis = batchLatencyMillis;
+        }
+
+        /**
+         * Richest level that uploads in the given mode
+         */
+        public static Level first(PPGWebSocketClient.UploadMode mode) {
+            for (Level level : values()) {
+                if (level.mode == mode) {
+                    return level;
+                }
+            }
+            throw new IllegalArgumentException("No level for " + mode);
+        }
+    }
+
+    public static final long MAX_QUEUE_BYTES = 512 * 1024;
+    public static final double MAX_QUEUE_DELAY_SECONDS = 1.0;
+    // Below this the queue counts as drained
+    public static final long IDLE_QUEUE_BYTES = 16 * 1024;
+    private static final long STEP_DOWN_COOLDOWN_NANOS = 2_000_000_000L;
+    private static final long MIN_HOLD_NANOS = 10_000_000_000L;
+    private static final long MAX_HOLD_NANOS = 120_000_000_000L;
+    private static final double THROUGHPUT_SMOOTHING = 0.5;
+
+    private Level ceiling = Level.FULL_FRAME;
+    private Level level = Level.FULL_FRAME;
+    private final long[] holdNanos = new long[Level.values().length];
+    private final long[] timeInLevelNanos = new long[Level.values().length];
+
+    private long lastUpdateNanos = 0;
+    private long lastDrainedBytes = 0;
+    private long lastChangeNanos = 0;
+    private long idleSinceNanos = -1;
+    private double throughputBytesPerSecond = 0;
+    private long queuedBytes = 0;
+    private int stepDowns = 0;
+    private int stepUps = 0;
+
+    public AdaptiveUploadController() {
+        reset();
+    }
+
+    /**
+     * Richest level the controller may use, i.e. what was asked for
+     */
+    public synchronized void setCeiling(Level ceiling) {
+        this.ceiling = ceiling;
+        if (level.ordinal() < ceiling.ordinal()) {
+            level = ceiling;
+        }
+    }
+
+    public synchronized Level getCeiling() {
+        return ceiling;
+    }
+
+    /**
+     * Start over at the ceiling, e.g. on a new connection
+     */
+    public synchronized void reset() {
+        level = ceiling;
+        lastUpdateNanos = 0;
+        lastChangeNanos = 0;
+        idleSinceNanos = -1;
+        throughputBytesPerSecond = 0;
+        queuedBytes = 0;
+        stepDowns = 0;
+        stepUps = 0;
+        Arrays.fill(holdNanos, MIN_HOLD_NANOS);
+        Arrays.fill(timeInLevelNanos, 0);
+    }
+
+    /**
+     * Feed the current queue state and pick the level for the next interval
+     * @param nowNanos Monotonic time
+     * @param queuedBytes Bytes accepted by the socket but not yet written (WebSocket.queueSize())
+     * @param sentBytes Total bytes handed to the socket so far
+     * @return Level to upload at, possibly unchanged
+     */
+    public synchronized Level update(long nowNanos, long queuedBytes, long sentBytes) {
+        this.queuedBytes = queuedBytes;
+        long drainedBytes = sentBytes - queuedBytes;
+        if (lastUpdateNanos == 0) {
+            lastUpdateNanos = nowNanos;
+            lastDrainedBytes = drainedBytes;
+            lastChangeNanos = nowNanos;
+            return level;
+        }
+        long elapsed = nowNanos - lastUpdateNanos;
+        if (elapsed <= 0) {
+            return level;
+        }
+        double rate = (drainedBytes - lastDrainedBytes) * 1e9 / elapsed;
+        throughputBytesPerSecond = throughputBytesPerSecond == 0 ? rate
+                : THROUGHPUT_SMOOTHING * rate + (1 - THROUGHPUT_SMOOTHING) * throughputBytesPerSecond;
+        timeInLevelNanos[level.ordinal()] += elapsed;
+        lastUpdateNanos = nowNanos;
+        lastDrainedBytes = drainedBytes;
+
+        boolean congested = queuedBytes > MAX_QUEUE_BYTES
+                || (queuedBytes > IDLE_QUEUE_BYTES && getQueueDelaySeconds() > MAX_QUEUE_DELAY_SECONDS);
+        if (congested) {
+            idleSinceNanos = -1;
+            if (level.ordinal() < Level.values().length - 1 && nowNanos - lastChangeNanos >= STEP_DOWN_COOLDOWN_NANOS) {
+                // This level was too much for the link: wait longer before trying it again
+                int failed = level.ordinal();
+                holdNanos[failed] = Math.min(holdNanos[failed] * 2, MAX_HOLD_NANOS);
+                level = Level.values()[failed + 1];
+                lastChangeNanos = nowNanos;
+                stepDowns++;
+            }
+            return level;
+        }
+
+        if (queuedBytes > IDLE_QUEUE_BYTES) {
+            idleSinceNanos = -1;
+            return level;
+        }
+        if (idleSinceNanos < 0) {
+            idleSinceNanos = nowNanos;
+        }
+        if (level.ordinal() > ceiling.ordinal()) {
+            Level richer = Level.values()[level.ordinal() - 1];
+            if (nowNanos - idleSinceNanos >= holdNanos[richer.ordinal()]) {
+                level = richer;
+                lastChangeNanos = nowNanos;
+                idleSinceNanos = nowNanos;
+                stepUps++;
+            }
+        }
+        return level;
+    }
+
+    public synchronized Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Smoothed rate at which the socket drains its queue, in bytes per second
+     */
+    public synchronized double getThroughputBytesPerSecond() {
+        return throughputBytesPerSecond;
+    }
+
+    public synchronized long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    /**
+     * Time the current queue needs to drain at the measured throughput
+     */
+    public synchronized double getQueueDelaySeconds() {
+        if (queuedBytes == 0) {
+            return 0;
+        }
+        return throughputBytesPerSecond > 1 ? queuedBytes / throughputBytesPerSecond : Double.POSITIVE_INFINITY;
+    }
+
+    public synchronized int getStepDowns() {
+        return stepDowns;
+    }
+
+    public synchronized int getStepUps() {
+        return stepUps;
+    }
+
+    public synchronized long getTimeInLevelMillis(Level level) {
+        return timeInLevelNanos[level.ordinal()] / 1_000_000L;
+    }
+
+    /**
+     * One-line summary of the current state, for logs
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(level)
+                .append(String.format(" | queue %d B (%.2f s) | %.1f kB/s | down %d, up %d | time",
+                        queuedBytes, getQueueDelaySeconds(), throughputBytesPerSecond / 1000.0, stepDowns, stepUps));
+        for (Level l : Level.values()) {
+            if (timeInLevelNanos[l.ordinal()] > 0) {
+                sb.append(' ').append(l).append('=').append(timeInLevelNanos[l.ordinal()] / 1_000_000_000L).append('s');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -8,6 +8,8 @@ import android.graphics.YuvImage;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
 import android.util.Log;
 import android.widget.Button;
 import android.widget.ProgressBar;
@@ -31,6 +33,14 @@ import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
 import androidx.core.content.ContextCompat;
 
+import com.example.ppg.dsp.PPGFeatures;
+import com.example.ppg.dsp.StreamingHeartRateEngine;
+import com.example.ppg.dsp.UniformResampler;
+import com.example.ppg.ml.BloodPressureModel;
+import com.example.ppg.ml.ProgressiveBPEstimator;
+import com.example.ppg.models.Measurement;
+import com.example.ppg.store.MeasurementStore;
+import com.example.ppg.store.OutboxSync;
 import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.components.XAxis;
 import com.github.mikephil.charting.components.YAxis;
@@ -41,18 +51,32 @@ import com.github.mikephil.charting.interfaces.datasets.ILineDataSet;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Objects;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
 
 public class CameraActivity extends AppCompatActivity implements PPGWebSocketClient.PPGResultListener {
 
     private static final String TAG = "CameraActivity";
+    // Saved results are filed under this subject; without one they can be viewed but not saved
+    public static final String EXTRA_SUBJECT_ID = "subject_id";
+    public static final String EXTRA_SUBJECT_NAME = "subject_name";
+    // Optional path of a session recording to replay instead of using the camera, e.g.
+    // adb shell am start -n com.example.ppg/.CameraActivity --es replay_file <path>
+    public static final String EXTRA_REPLAY_FILE = "replay_file";
+    // Replay as fast as the pipeline takes samples instead of at the recorded pace
+    public static final String EXTRA_REPLAY_MAX_SPEED = "replay_max_speed";
     
     private PreviewView previewView;
     private Button stopButton;
@@ -68,41 +92,80 @@ public class CameraActivity extends AppCompatActivity implements PPGWebSocketCli
     private Camera camera;
     private ProgressBar progressBar;
     
-    // PPG Graph data
-    private ArrayList<Entry> ppgEntries = new ArrayList<>();
+    // PPG Graph data: 30 s of samples, drawn with at most MAX_CHART_POINTS points
+    private static final int CHART_WINDOW_SAMPLES = 900;
+    private static final int MAX_CHART_POINTS = 300;
+    private final PPGChartBuffer chartBuffer = new PPGChartBuffer(CHART_WINDOW_SAMPLES);
+    // Preallocated points; ppgEntries is refilled from this pool on each redraw
+    private final Entry[] chartPoints = new Entry[MAX_CHART_POINTS];
+    private final float[] chartPositions = new float[MAX_CHART_POINTS];
+    private final float[] chartValues = new float[MAX_CHART_POINTS];
+    private final ArrayList<Entry> ppgEntries = new ArrayList<>(MAX_CHART_POINTS);
     private LineDataSet ppgDataSet;
     private LineData ppgLineData;
-    private int sampleIndex = 0;  // For X-axis progression
-    private static final int MAX_VISIBLE_ENTRIES = 150; // Show ~5 seconds at 30fps
+    private long chartRenderedVersion = -1;
+    private boolean chartFramesRunning = false;
+    // Applies the UI state and redraws the chart at most once per display refresh, and only on changes
+    private final Choreographer.FrameCallback chartFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!chartFramesRunning) {
+                return;
+            }
+            applyUiState(uiStore.get());
+            long version = chartBuffer.getVersion();
+            if (version != chartRenderedVersion) {
+                chartRenderedVersion = version;
+                renderPPGChart();
+            }
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
     
     // WebSocket client for advanced PPG processing
     private PPGWebSocketClient webSocketClient;
+    private static final PPGWebSocketClient.UploadMode UPLOAD_MODE = PPGWebSocketClient.UploadMode.CHANNEL_MEANS;
+    
+    // On-device heart rate keeps the live BPM going when the server is slow or unreachable
+    private static final double CAMERA_FPS = 30.0;
+    private static final long ON_DEVICE_HR_HOLD_MS = 3000;  // Server HR is ignored while on-device HR is this fresh
+    private static final long MAX_SAMPLE_GAP_NANOS = 250_000_000L;  // Longer frame gaps are not interpolated
+    private static final long REPLAY_BACKOFF_NANOS = 1_000_000L;  // Replay wait while the sample ring is full
+    // Exported by real_ppg_bp_regression.py; without it BP comes from the server only
+    private static final String BP_MODEL_ASSET = "bp_model.json";
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
     
-    // PPG processing variables 
-    private int frameCount = 0;
-    private long startTime = 0;
+    // Camera thread publishes ROI means here; DSP and upload run on the dispatcher thread
+    private static final int SAMPLE_RING_CAPACITY = 1024;  // ~34 s at 30 FPS
+    private final SampleRingBuffer sampleRing = new SampleRingBuffer(SAMPLE_RING_CAPACITY);
+    private final SampleDispatcher sampleDispatcher = new SampleDispatcher(sampleRing);
+    
+    // PPG processing variables, written on the camera thread
+    private volatile int frameCount = 0;
+    private long startTimeNanos = 0;  // Sensor timestamp of the first frame
+    private volatile boolean resetRequested = false;
+    // Ends the measurement once estimates converge, or extends it while quality is poor
+    private final SessionController sessionController = new SessionController();
+    private final PPGFrameAnalyzer frameAnalyzer = new PPGFrameAnalyzer();
+    
+    // Debug builds record every measurement to filesDir/sessions for reprocessing and
+    // regression runs; release builds never store the raw signal
+    private static final boolean RECORD_SESSIONS = BuildConfig.DEBUG;
+    private static final int RECORD_TILE_SIZE = 8;  // 8 x 8 RGB ROI tile per sample (~380 KB/min), 0 for means only
+    private static final int MAX_RECORDINGS = 50;
+    private File sessionsDir;
+    // Set when replaying a recording; the replay runs on the camera executor in place of the camera
+    private File replayFile;
+    private Future<?> replayTask;
     
 
     
-    // PPG results from server - simplified for green signal + HR only
-    private int currentHeartRate = 0;
-    private double currentGreenSignal = 0.0;
-    private String signalQuality = "Connecting...";
-    private int localTimerCount = 0;  // Local countdown timer (separate from server)
-    private boolean analysisComplete = false;
-    private boolean serverConnected = false;
-    private boolean timerRunning = false;
-    private Timer countdownTimer;
+    // Written by the camera thread when the session ends, read by the result paths
+    private volatile boolean analysisComplete = false;
     
-    // BP analysis results
-    private String bpCategory = "Analyzing...";
-    private int bpConfidence = 0;
-    private boolean bpAnalysisComplete = false;
-    private float systolicBP = 0.0f;
-    private float diastolicBP = 0.0f;
-    private String bpRiskLevel = "Unknown";
-    private String bpRecommendation = "Analyzing...";
+    // Everything shown on screen; published from any thread, applied once per display frame
+    private final CaptureUiStore uiStore = new CaptureUiStore();
+    private CaptureUiState appliedUiState = null;
     
     // Permission request launcher
     private final ActivityResultLauncher<String> requestPermissionLauncher =
@@ -148,14 +211,34 @@ public class CameraActivity extends AppCompatActivity implements PPGWebSocketCli
         // Initialize camera executor
         cameraExecutor = Executors.newSingleThreadExecutor();
         
+        sessionsDir = new File(getFilesDir(), "sessions");
+        String replayPath = getIntent().getStringExtra(EXTRA_REPLAY_FILE);
+        replayFile = replayPath != null ? new File(replayPath) : null;
+        if (RECORD_SESSIONS && replayFile == null) {
+            cameraExecutor.execute(() -> SessionRecorder.deleteOldest(sessionsDir, MAX_RECORDINGS - 1));
+        }
+        
         // Initialize WebSocket client
         webSocketClient = new PPGWebSocketClient(this);
+        webSocketClient.setUploadMode(UPLOAD_MODE);
+        
+        // Sample consumers run on the dispatcher thread, off the camera executor
+        sampleDispatcher.addConsumer(new HeartRateConsumer());
+        sampleDispatcher.addConsumer(new UploadConsumer());
+        sampleDispatcher.addConsumer(new ChartConsumer());
+        BloodPressureConsumer bloodPressureConsumer = new BloodPressureConsumer();
+        sampleDispatcher.addConsumer(bloodPressureConsumer);
+        sampleDispatcher.start();
+        loadBloodPressureModel(bloodPressureConsumer);
         
         // DON'T initialize PPG processing here - wait for first frame
         // startTime = System.currentTimeMillis();
 
-        // Check camera permission and start camera
-        if (allPermissionsGranted()) {
+        // A replay stands in for the camera and needs no permission
+        if (replayFile != null) {
+            startReplay();
+            webSocketClient.connect();
+        } else if (allPermissionsGranted()) {
             startCamera();
             // Connect to WebSocket server
             webSocketClient.connect();
@@ -184,7 +267,7 @@ public class CameraActivity extends AppCompatActivity implements PPGWebSocketCli
                         .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
                         .build();
 
-                imageAnalysis.setAnalyzer(cameraExecutor, new PPGFrameAnalyzer());
+                imageAnalysis.setAnalyzer(cameraExecutor, frameAnalyzer);
 
                 // Select back camera
                 CameraSelector cameraSelector = CameraSelector.DEFAULT_BACK_CAMERA;
@@ -205,6 +288,23 @@ public class CameraActivity extends AppCompatActivity implements PPGWebSocketCli
         }, ContextCompat.getMainExecutor(this));
     }
 
+    // Feed a recorded session into the pipeline in place of the camera
+    private void startReplay() {
+        SessionRecording.Pace pace = getIntent().getBooleanExtra(EXTRA_REPLAY_MAX_SPEED, false)
+                ? SessionRecording.Pace.MAX_SPEED : SessionRecording.Pace.REAL_TIME;
+        replayTask = cameraExecutor.submit(() -> {
+            try {
+                SessionRecording recording = SessionRecording.open(replayFile);
+                Log.d(TAG, "Replaying " + recording.getSampleCount() + " samples from " + replayFile);
+                int replayed = recording.replay(frameAnalyzer, pace);
+                Log.d(TAG, "Replayed " + replayed + " samples");
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot replay " + replayFile + ": " + e.getMessage());
+                uiStore.update(state -> state.message = "Cannot replay recording: " + e.getMessage());
+            }
+        });
+    }
+
     private void enableFlash() {
         if (camera != null && camera.getCameraInfo().hasFlashUnit()) {
             camera.getCameraControl().enableTorch(true);
@@ -225,26 +325,28 @@ public class CameraActivity extends AppCompatActivity implements PPGWebSocketCli
             camera.getCameraControl().enableTorch(false);
         }
         
-        // Show BP results popup if we have BP data
-        if (bpAnalysisComplete && systolicBP > 0 && diastolicBP > 0) {
-            showBPResultsPopup();
+        uiStore.update(state -> state.complete = true);
+        CaptureUiState result = uiStore.get();
+        
+        // Show BP results popup if we have BP data, from the server or the live estimate
+        if (result.hasBloodPressure()) {
+            showBPResultsPopup(result);
         } else {
             // Fallback to simple result if no BP data
             String resultMessage = String.format(
-                "✅ PPG Analysis Complete!\n\nHeart Rate: %d BPM\nSignal Quality: %s\nFrames Processed: %d\nDuration: 40 seconds\n\nTap 'Stop' to return to main menu",
-                currentHeartRate, signalQuality, frameCount
+                "✅ PPG Analysis Complete!\n\nHeart Rate: %d BPM\nSignal Quality: %s\nFrames Processed: %d\nDuration: %d seconds\n\nTap 'Stop' to return to main menu",
+                result.heartRate, result.signalQuality, frameCount, Math.round(sessionController.getElapsedSeconds())
             );
             
-            mainHandler.post(() -> {
-                statusText.setText(resultMessage);
-                Toast.makeText(this, "Analysis complete! HR: " + currentHeartRate + " BPM", Toast.LENGTH_LONG).show();
-            });
+            uiStore.update(state -> state.message = resultMessage);
+            mainHandler.post(() ->
+                Toast.makeText(this, "Analysis complete! HR: " + result.heartRate + " BPM", Toast.LENGTH_LONG).show());
         }
         
-        Log.d(TAG, "PPG Analysis completed - HR: " + currentHeartRate + " BPM, BP: " + systolicBP + "/" + diastolicBP + " mmHg");
+        Log.d(TAG, "PPG Analysis completed - HR: " + result.heartRate + " BPM, BP: " + result.systolic + "/" + result.diastolic + " mmHg");
     }
     
-    private void showBPResultsPopup() {
+    private void showBPResultsPopup(CaptureUiState result) {
         mainHandler.post(() -> {
             try {
                 // Inflate custom dialog layout
@@ -261,22 +363,22 @@ public class CameraActivity extends AppCompatActivity implements PPGWebSocketCli
                 TextView riskLevelText = dialogView.findViewById(R.id.riskLevelText);
                 
                 // Set BP values
-                systolicText.setText(String.format("%.0f", systolicBP));
-                diastolicText.setText(String.format("%.0f", diastolicBP));
-                heartRateText.setText(String.format("%d BPM", currentHeartRate));
+                systolicText.setText(String.format("%.0f", result.systolic));
+                diastolicText.setText(String.format("%.0f", result.diastolic));
+                heartRateText.setText(String.format("%d BPM", result.heartRate));
                 
                 // Set category with color coding
-                categoryText.setText(bpCategory);
-                int categoryColor = getBPCategoryColor(bpCategory);
+                categoryText.setText(result.bpCategory);
+                int categoryColor = getBPCategoryColor(result.bpCategory);
                 categoryText.setTextColor(categoryColor);
                 
                 // Set other details
-                confidenceText.setText(String.format("Confidence: %d%%", bpConfidence));
-                recommendationText.setText(bpRecommendation);
-                riskLevelText.setText(String.format("Risk Level: %s", bpRiskLevel));
+                confidenceText.setText(String.format("Confidence: %d%%", result.bpConfidence));
+                recommendationText.setText(result.bpRecommendation);
+                riskLevelText.setText(String.format("Risk Level: %s", result.bpRiskLevel));
                 
                 // Color code risk level
-                int riskColor = getRiskLevelColor(bpRiskLevel);
+                int riskColor = getRiskLevelColor(result.bpRiskLevel);
                 riskLevelText.setTextColor(riskColor);
                 
                 // Create and show dialog
@@ -286,8 +388,7 @@ public class CameraActivity extends AppCompatActivity implements PPGWebSocketCli
                        .setPositiveButton("Save Results", new DialogInterface.OnClickListener() {
                            @Override
                            public void onClick(DialogInterface dialog, int which) {
-                               // TODO: Save results to local storage or database
-                               Toast.makeText(CameraActivity.this, "Results saved!", Toast.LENGTH_SHORT).show();
+                               saveResults(result);
                                dialog.dismiss();
                            }
                        })
@@ -310,13 +411,42 @@ public class CameraActivity extends AppCompatActivity implements PPGWebSocketCli
                 dialog.show();
                 
                 // Update status text
-                statusText.setText("Analysis Complete! Check your results above.");
+                uiStore.update(state -> state.message = "Analysis Complete! Check your results above.");
                 
             } catch (Exception e) {
                 Log.e(TAG, "Error showing BP results popup: " + e.getMessage());
                 // Fallback to simple toast
                 Toast.makeText(this, String.format("BP Analysis Complete!\nBP: %.0f/%.0f mmHg\nHR: %d BPM\nCategory: %s", 
-                    systolicBP, diastolicBP, currentHeartRate, bpCategory), Toast.LENGTH_LONG).show();
+                    result.systolic, result.diastolic, result.heartRate, result.bpCategory), Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+    
+    // Stored on the device first and uploaded by OutboxSync, so results taken offline are kept
+    private void saveResults(CaptureUiState result) {
+        String subjectId = getIntent().getStringExtra(EXTRA_SUBJECT_ID);
+        if (subjectId == null) {
+            // Would never show up in any subject's history
+            Toast.makeText(this, "No subject selected, results not saved", Toast.LENGTH_LONG).show();
+            return;
+        }
+        Measurement measurement = new Measurement(subjectId,
+                result.heartRate, result.heartRateConfidence, result.signalQuality, result.bpCategory,
+                result.bpConfidence, (int) Math.round(sessionController.getElapsedSeconds()), frameCount);
+        measurement.setSystolicBp(result.systolic);
+        measurement.setDiastolicBp(result.diastolic);
+        
+        MeasurementStore store = MeasurementStore.get(this);
+        store.executor().execute(() -> {
+            try {
+                store.addMeasurement(measurement);
+                OutboxSync.get(this).requestSync();
+                String subjectName = getIntent().getStringExtra(EXTRA_SUBJECT_NAME);
+                String message = subjectName != null ? "Results saved for " + subjectName + "!" : "Results saved!";
+                mainHandler.post(() -> Toast.makeText(this, message, Toast.LENGTH_SHORT).show());
+            } catch (Exception e) {
+                Log.e(TAG, "Error saving results: " + e.getMessage());
+                mainHandler.post(() -> Toast.makeText(this, "Could not save results", Toast.LENGTH_LONG).show());
             }
         });
     }
@@ -357,57 +487,181 @@ public class CameraActivity extends AppCompatActivity implements PPGWebSocketCli
     
     private void resetForNewMeasurement() {
         // Reset all variables for new measurement
+        // The camera thread owns the frame counters and resets them on its next frame
+        resetRequested = true;
         analysisComplete = false;
-        bpAnalysisComplete = false;
-        frameCount = 0;
-        startTime = 0;
-        currentHeartRate = 0;
-        systolicBP = 0.0f;
-        diastolicBP = 0.0f;
-        bpCategory = "Analyzing...";
-        bpConfidence = 0;
-        signalQuality = "Preparing...";
-        
-        // Reset UI
-        heartRateText.setText("--");
-        confidenceText.setText("Quality: --");
-        bpCategoryText.setText("Analyzing...");
-        bpConfidenceText.setText("--");
-        statusText.setText("Place finger on camera lens with flash");
-        timerText.setText("00:40");
-        progressBar.setProgress(0);
-        
-        // Clear chart data
-        ppgEntries.clear();
-        sampleIndex = 0;
-        updatePPGChart(0);
+        
+        // Reset UI; the views follow on the next display frame
+        uiStore.resetMeasurement();
+        
+        // Chart data is cleared by ChartConsumer when the new measurement starts
         
         // Send reset signal to server
         if (webSocketClient != null) {
             webSocketClient.sendResetSignal();
         }
         
-        // Restart timer if needed
-        timerRunning = false;
-        if (countdownTimer != null) {
-            countdownTimer.cancel();
-            countdownTimer = null;
+        // A replay runs again from the start
+        if (replayFile != null) {
+            replayTask.cancel(true);
+            startReplay();
         }
         
         Log.d(TAG, "Reset for new measurement");
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (!chartFramesRunning) {
+            chartFramesRunning = true;
+            Choreographer.getInstance().postFrameCallback(chartFrameCallback);
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        chartFramesRunning = false;
+        Choreographer.getInstance().removeFrameCallback(chartFrameCallback);
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
         if (webSocketClient != null) {
             webSocketClient.disconnect();
         }
+        sampleDispatcher.stop();
+        if (replayTask != null) {
+            replayTask.cancel(true);
+        }
+        // The recorder belongs to the camera thread; it flushes after the last frame
+        cameraExecutor.execute(frameAnalyzer::closeRecording);
         cameraExecutor.shutdown();
     }
 
-    // Inner class for analyzing camera frames and sending to WebSocket server
-    private class PPGFrameAnalyzer implements ImageAnalysis.Analyzer {
+    // On-device heart rate, fed with every sample on the dispatcher thread. Frames arrive
+    // with jitter and drops, so the green channel is resampled onto the filter's fixed rate.
+    private class HeartRateConsumer implements SampleDispatcher.Consumer, UniformResampler.Output {
+        private final StreamingHeartRateEngine heartRateEngine = new StreamingHeartRateEngine(CAMERA_FPS);
+        private final UniformResampler resampler = new UniformResampler(CAMERA_FPS,
+                UniformResampler.Interpolation.CUBIC, MAX_SAMPLE_GAP_NANOS, this);
+
+        @Override
+        public void onSample(long timestampNanos, float red, float green, float blue) {
+            resampler.add(timestampNanos, green);
+        }
+
+        @Override
+        public void onSample(long timestampNanos, double value) {
+            if (heartRateEngine.process(timestampNanos, value)) {
+                sessionController.onHeartRate(timestampNanos, heartRateEngine.getHeartRate(),
+                        heartRateEngine.getConfidence());
+                onResult(heartRateEngine.buildResult());
+            }
+        }
+
+        @Override
+        public void onGap(long fromNanos, long toNanos) {
+            Log.w(TAG, String.format("No frames for %d ms, not interpolated", (toNanos - fromNanos) / 1_000_000));
+        }
+
+        @Override
+        public void onReset() {
+            resampler.reset();
+            heartRateEngine.reset();
+        }
+    }
+
+    // BP model features, computed live on the device at the model's 125 Hz sample rate, and
+    // progressive BP estimated from them once the model has loaded
+    private class BloodPressureConsumer implements SampleDispatcher.Consumer, UniformResampler.Output {
+        private final UniformResampler resampler = new UniformResampler(PPGFeatures.SAMPLE_RATE_HZ,
+                UniformResampler.Interpolation.CUBIC, MAX_SAMPLE_GAP_NANOS, this);
+        // Used only on the dispatcher thread; the model may be set from the loader thread
+        private final ProgressiveBPEstimator estimator = new ProgressiveBPEstimator();
+
+        void setModel(BloodPressureModel model) {
+            estimator.setModel(model);
+        }
+
+        @Override
+        public void onSample(long timestampNanos, float red, float green, float blue) {
+            resampler.add(timestampNanos, green);
+        }
+
+        @Override
+        public void onSample(long timestampNanos, double value) {
+            if (!estimator.add(value)) {
+                return;
+            }
+            double[] features = estimator.getFeatures();
+            Log.d(TAG, String.format("On-device spectrum: peak %.2f Hz, entropy %.2f",
+                    features[PPGFeatures.FREQ_PEAK_FREQUENCY], features[PPGFeatures.FREQ_SPECTRAL_ENTROPY]));
+            if (estimator.hasNewEstimate()) {
+                // Convergence is judged on the individual windows, not the smoothed estimate
+                sessionController.onBloodPressure(estimator.getWindowSystolic(), estimator.getWindowDiastolic());
+                onResult(estimator.buildResult());
+            }
+        }
+
+        @Override
+        public void onReset() {
+            resampler.reset();
+            estimator.reset();
+        }
+    }
+
+    private void loadBloodPressureModel(BloodPressureConsumer consumer) {
+        new Thread(() -> {
+            try (Reader reader = new InputStreamReader(getAssets().open(BP_MODEL_ASSET), StandardCharsets.UTF_8)) {
+                consumer.setModel(BloodPressureModel.load(reader));
+                sessionController.setBloodPressureSource(true);
+                Log.d(TAG, "On-device BP model loaded");
+            } catch (IOException e) {
+                Log.w(TAG, "No on-device BP model, BP comes from the server only: " + e.getMessage());
+            }
+        }, "bp-model-loader").start();
+    }
+
+    // Live chart of the green channel; only fills the buffer, drawing happens on the next frame
+    private class ChartConsumer implements SampleDispatcher.Consumer {
+        @Override
+        public void onSample(long timestampNanos, float red, float green, float blue) {
+            chartBuffer.add(green);
+        }
+
+        @Override
+        public void onReset() {
+            chartBuffer.clear();
+        }
+    }
+
+    // Channel means upload; they are tiny, so every sample goes out (full 30 FPS).
+    // Samples taken while the connection is down are replayed by the client after it reconnects.
+    private class UploadConsumer implements SampleDispatcher.Consumer {
+        @Override
+        public void onSample(long timestampNanos, float red, float green, float blue) {
+            if (webSocketClient.getUploadMode() == PPGWebSocketClient.UploadMode.CHANNEL_MEANS) {
+                webSocketClient.sendChannelMeans(red, green, blue, timestampNanos);
+            }
+        }
+    }
+
+    // Inner class for analyzing camera frames and sending to WebSocket server. Replayed
+    // samples come in through onSample() on the same executor and take the same path,
+    // minus the frame upload and the recording.
+    private class PPGFrameAnalyzer implements ImageAnalysis.Analyzer, SampleRingBuffer.Consumer {
+        // Reused on the camera executor, never touched from other threads
+        private final RoiSampler roiSampler = new RoiSampler();
+        private final ImageProcessing.ChannelStats channelStats = new ImageProcessing.ChannelStats();
+        private final byte[] recordTile = new byte[RECORD_TILE_SIZE * RECORD_TILE_SIZE * 3];
+        private SessionRecorder recorder;
+        // Session clock: published when the whole seconds or the target change
+        private int publishedSeconds = -1;
+        private int publishedTargetSeconds = -1;
+        
         @Override
         public void analyze(@NonNull ImageProxy image) {
             try {
@@ -417,49 +671,35 @@ public class CameraActivity extends AppCompatActivity implements PPGWebSocketCli
                     return;
                 }
                 
-                // Initialize start time on first frame
-                if (startTime == 0) {
-                    startTime = System.currentTimeMillis();
-                    Log.d(TAG, "PPG analysis started via WebSocket");
+                // Sensor capture time: unaffected by analyzer latency and frames dropped upstream
+                long timestampNanos = image.getImageInfo().getTimestamp();
+                if (!startFrame(timestampNanos)) {
+                    image.close();
+                    return;
                 }
                 
-                // Calculate elapsed time
-                long currentTime = System.currentTimeMillis();
-                int elapsedSeconds = (int) ((currentTime - startTime) / 1000);
-                
-                // Check if 40 seconds have elapsed
-                if (elapsedSeconds >= 40) {
-                    if (!analysisComplete) {
-                        analysisComplete = true;
-                        CameraActivity.this.runOnUiThread(() -> showPPGResult());
+                // Only the ROI means leave the camera thread; heart rate and upload are
+                // handled by the dispatcher's consumers so they never delay the next frame
+                if (roiSampler.sample(image, channelStats)) {
+                    float red = (float) channelStats.red;
+                    float green = (float) channelStats.green;
+                    float blue = (float) channelStats.blue;
+                    sampleRing.offer(timestampNanos, red, green, blue);
+                    sampleDispatcher.signal();
+                    if (recorder != null) {
+                        boolean tiled = RECORD_TILE_SIZE > 0
+                                && roiSampler.sampleTile(image, RECORD_TILE_SIZE, RECORD_TILE_SIZE, recordTile);
+                        recorder.record(timestampNanos, red, green, blue, tiled ? recordTile : null);
                     }
-                    image.close();
-                    return;
                 }
                 
-                frameCount++;
+                publishClock(timestampNanos);
                 
-                // Send frame to WebSocket server if connected
-                if (webSocketClient != null && webSocketClient.isConnected()) {
-                    // Send every 2nd frame to reduce bandwidth (15 FPS instead of 30)
-                    if (frameCount % 2 == 0) {
-                        webSocketClient.sendFrame(image);
-                    }
-                    
-                    // Update timer every 30 frames (approximately every second)
-                    if (frameCount % 30 == 0) {
-                        CameraActivity.this.runOnUiThread(() -> {
-                            String timerMessage = String.format("Progress: %d/40s | Analyzing...", elapsedSeconds);
-                            statusText.setText(timerMessage);
-                        });
-                    }
-                } else {
-                    // Update UI to show connection status
-                    if (frameCount % 30 == 0) { // Update every second
-                        CameraActivity.this.runOnUiThread(() -> {
-                            statusText.setText("Connecting to PPG server...");
-                        });
-                    }
+                boolean connected = webSocketClient != null && webSocketClient.isConnected();
+                if (connected && webSocketClient.isFrameUploadDue(frameCount)) {
+                    // Frames need the image, so they are still sent from here; the client picks
+                    // the rate and whether to crop from how fast its queue drains
+                    webSocketClient.sendFrame(image);
                 }
                 
             } catch (Exception e) {
@@ -468,126 +708,309 @@ public class CameraActivity extends AppCompatActivity implements PPGWebSocketCli
                 image.close();
             }
         }
+        
+        // One replayed sample, in place of a camera frame
+        @Override
+        public void onSample(long timestampNanos, float red, float green, float blue) {
+            if (analysisComplete || !startFrame(timestampNanos)) {
+                // The measurement is over: interrupting ends SessionRecording.replay()
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // Unlike the camera, a replay waits for the dispatcher rather than drop samples
+            while (sampleRing.size() >= sampleRing.capacity() && !Thread.currentThread().isInterrupted()) {
+                sampleDispatcher.signal();
+                LockSupport.parkNanos(REPLAY_BACKOFF_NANOS);
+            }
+            sampleRing.offer(timestampNanos, red, green, blue);
+            sampleDispatcher.signal();
+            publishClock(timestampNanos);
+        }
+        
+        /**
+         * Session bookkeeping for a new frame: resets, the start of a measurement and its end
+         * @return false if the measurement has ended and the frame is not used
+         */
+        private boolean startFrame(long timestampNanos) {
+            if (resetRequested) {
+                resetRequested = false;
+                frameCount = 0;
+                startTimeNanos = 0;
+                publishedSeconds = -1;
+                publishedTargetSeconds = -1;
+                closeRecording();
+            }
+            
+            // Initialize start time on first frame
+            if (startTimeNanos == 0) {
+                startTimeNanos = timestampNanos;
+                sessionController.reset();
+                sampleDispatcher.requestReset();
+                openRecording();
+                Log.d(TAG, "PPG analysis started via WebSocket");
+            }
+            
+            // Stop once the estimates have converged, or the session ran out of time
+            SessionController.Decision decision = sessionController.update(timestampNanos);
+            if (decision != SessionController.Decision.CONTINUE) {
+                if (!analysisComplete) {
+                    analysisComplete = true;
+                    int elapsedSeconds = (int) ((timestampNanos - startTimeNanos) / 1_000_000_000L);
+                    Log.d(TAG, String.format("Measurement ended after %d s: %s (quality %.2f)",
+                            elapsedSeconds, decision, sessionController.getQuality()));
+                    if (webSocketClient != null) {
+                        webSocketClient.flushSamples();
+                    }
+                    closeRecording();
+                    CameraActivity.this.runOnUiThread(() -> showPPGResult());
+                }
+                return false;
+            }
+            
+            frameCount++;
+            return true;
+        }
+        
+        // The countdown runs on sample time, the same clock that ends the session
+        private void publishClock(long timestampNanos) {
+            int elapsedSeconds = (int) ((timestampNanos - startTimeNanos) / 1_000_000_000L);
+            int targetSeconds = sessionController.getTargetSeconds();
+            if (elapsedSeconds != publishedSeconds || targetSeconds != publishedTargetSeconds) {
+                publishedSeconds = elapsedSeconds;
+                publishedTargetSeconds = targetSeconds;
+                final int seconds = elapsedSeconds;
+                uiStore.update(state -> {
+                    state.elapsedSeconds = seconds;
+                    state.targetSeconds = targetSeconds;
+                    state.message = null;
+                });
+            }
+        }
+        
+        // Once per measurement; the file is created here, all later writes happen off this thread
+        private void openRecording() {
+            if (!RECORD_SESSIONS || replayFile != null) {
+                return;
+            }
+            closeRecording();
+            File file = new File(sessionsDir, System.currentTimeMillis() + SessionRecorder.FILE_SUFFIX);
+            try {
+                if (!sessionsDir.isDirectory() && !sessionsDir.mkdirs()) {
+                    throw new IOException("Cannot create " + sessionsDir);
+                }
+                recorder = SessionRecorder.create(file, RECORD_TILE_SIZE, RECORD_TILE_SIZE);
+            } catch (IOException e) {
+                Log.e(TAG, "Session recording disabled: " + e.getMessage());
+            }
+        }
+        
+        void closeRecording() {
+            if (recorder == null) {
+                return;
+            }
+            recorder.close();
+            Log.d(TAG, "Recorded " + recorder.getRecordCount() + " samples, "
+                    + recorder.getDroppedCount() + " dropped");
+            recorder = null;
+        }
     }
     
-    // PPGWebSocketClient.PPGResultListener implementation
+    // PPGWebSocketClient.PPGResultListener implementation; called on the dispatcher and
+    // OkHttp threads, results only publish into the UI state
     @Override
-    public void onResult(PPGWebSocketClient.PPGResult result) {
-        mainHandler.post(() -> {
-            try {
-                // Update green signal value for real-time display AND chart
+    public void onResult(PPGResult result) {
+        try {
+            long now = SystemClock.elapsedRealtime();
+            boolean onDeviceHeartRate = result.heart_rate != null
+                    && StreamingHeartRateEngine.METHOD.equals(result.heart_rate.method);
+            boolean progressiveBP = result.bp_analysis_result != null
+                    && ProgressiveBPEstimator.STATUS.equals(result.bp_analysis_result.status);
+            // The server's BP is final: it replaces the live estimate and ends the session
+            boolean finalBP = result.bp_analysis_result != null && !progressiveBP
+                    && result.bp_analysis_result.bp_analysis != null;
+            boolean firstFinalBP = finalBP && !uiStore.get().bpFinal;
+            boolean capturing = !analysisComplete;
+            
+            uiStore.update(state -> {
                 if (result.rgb_values != null) {
-                    currentGreenSignal = result.rgb_values.green;
-                    greenSignalText.setText(String.format("Signal: %.1f", currentGreenSignal));
-                    
-                    // Update PPG Chart with green signal value
-                    updatePPGChart(currentGreenSignal);
+                    state.greenSignal = result.rgb_values.green;
                 }
                 
-                // Update heart rate and confidence if available
-                if (result.heart_rate != null) {
-                    currentHeartRate = result.heart_rate.heart_rate;
-                    signalQuality = result.heart_rate.signal_quality != null ? 
-                                  result.heart_rate.signal_quality : "Processing...";
-                    
-                    // Update heart rate display (just the number, larger)
-                    heartRateText.setText(String.format("%d", currentHeartRate));
-                    
-                    // Update confidence/quality display
-                    int confidence = result.heart_rate.confidence;
-                    confidenceText.setText(String.format("Quality: %s (%d%%)", signalQuality, confidence));
+                // Server HR only fills in while the on-device estimate is stale
+                if (onDeviceHeartRate) {
+                    state.onDeviceHeartRateMillis = now;
                 }
-                
-                // Handle enhanced BP analysis result with systolic/diastolic values
-                if (result.bp_analysis_result != null && !bpAnalysisComplete) {
-                    PPGWebSocketClient.PPGResult.BPAnalysisResult bpResult = result.bp_analysis_result;
-                    
-                    if (bpResult.bp_analysis != null) {
-                        // Extract enhanced BP data
-                        systolicBP = bpResult.bp_analysis.systolic_bp;
-                        diastolicBP = bpResult.bp_analysis.diastolic_bp;
-                        bpCategory = bpResult.bp_analysis.bp_category;
-                        bpConfidence = bpResult.bp_analysis.confidence;
-                        bpAnalysisComplete = true;
-                        
-                        // Extract interpretation data
-                        if (bpResult.interpretation != null) {
-                            bpRecommendation = bpResult.interpretation.recommendation != null ? 
-                                             bpResult.interpretation.recommendation : "Consult healthcare provider";
-                            bpRiskLevel = bpResult.interpretation.risk_level != null ? 
-                                        bpResult.interpretation.risk_level : "Unknown";
-                        }
-                        
-                        // Update BP display with enhanced information
-                        String displayText = String.format("BP: %.0f/%.0f mmHg", systolicBP, diastolicBP);
-                        int textColor = getBPCategoryColor(bpCategory);
-                        
-                        bpCategoryText.setText(displayText);
-                        bpCategoryText.setTextColor(textColor);
-                        bpConfidenceText.setText(String.format("Confidence: %d%% | %s", bpConfidence, bpCategory));
-                        
-                        Log.d(TAG, String.format("Enhanced BP Analysis Result: %s - %.0f/%.0f mmHg (%d%%)", 
-                            bpCategory, systolicBP, diastolicBP, bpConfidence));
-                        
-                        // Trigger result display
-                        if (!analysisComplete) {
-                            analysisComplete = true;
-                            showPPGResult();
-                        }
-                    }
+                boolean heartRateFresh = now - state.onDeviceHeartRateMillis < ON_DEVICE_HR_HOLD_MS;
+                if (result.heart_rate != null && (onDeviceHeartRate || !heartRateFresh)) {
+                    state.heartRate = result.heart_rate.heart_rate;
+                    state.heartRateConfidence = result.heart_rate.confidence;
+                    state.signalQuality = result.heart_rate.signal_quality != null ?
+                            result.heart_rate.signal_quality : "Processing...";
                 }
                 
-                // Don't use server elapsed time for timer - let local timer handle it
-                // Just log server progress for debugging
-                double elapsed = result.elapsed_time;
-                Log.d(TAG, String.format("Server processing time: %.1fs", elapsed));
+                // Live on-device BP estimate: shown while capturing, and kept as the
+                // answer at stop time unless the server's final result arrives first
+                if (progressiveBP && result.bp_analysis_result.bp_analysis != null && !state.bpFinal && capturing) {
+                    PPGResult.BPAnalysisResult.BPAnalysis estimate = result.bp_analysis_result.bp_analysis;
+                    state.systolic = estimate.systolic_bp;
+                    state.diastolic = estimate.diastolic_bp;
+                    state.bpCategory = estimate.bp_category;
+                    state.bpConfidence = estimate.confidence;
+                }
                 
-                // Only show server progress if we haven't reached 40 seconds yet
-                if (!analysisComplete) {
-                    // Status is handled by local timer, just update if we have heart rate
-                    if (currentHeartRate > 0) {
-                        // Don't override timer status, just log
-                        Log.d(TAG, "Server result: HR " + currentHeartRate + " BPM");
+                if (finalBP && !state.bpFinal) {
+                    PPGResult.BPAnalysisResult bpResult = result.bp_analysis_result;
+                    state.systolic = bpResult.bp_analysis.systolic_bp;
+                    state.diastolic = bpResult.bp_analysis.diastolic_bp;
+                    state.bpCategory = bpResult.bp_analysis.bp_category;
+                    state.bpConfidence = bpResult.bp_analysis.confidence;
+                    state.bpFinal = true;
+                    if (bpResult.interpretation != null) {
+                        state.bpRecommendation = bpResult.interpretation.recommendation != null ?
+                                bpResult.interpretation.recommendation : "Consult healthcare provider";
+                        state.bpRiskLevel = bpResult.interpretation.risk_level != null ?
+                                bpResult.interpretation.risk_level : "Unknown";
                     }
                 }
+            });
+            
+            if (firstFinalBP) {
+                PPGResult.BPAnalysisResult.BPAnalysis analysis = result.bp_analysis_result.bp_analysis;
+                sessionController.onBloodPressure(analysis.systolic_bp, analysis.diastolic_bp);
+                Log.d(TAG, String.format("Enhanced BP Analysis Result: %s - %.0f/%.0f mmHg (%d%%)",
+                        analysis.bp_category, analysis.systolic_bp, analysis.diastolic_bp, analysis.confidence));
                 
-            } catch (Exception e) {
-                Log.e(TAG, "Error processing server result: " + e.getMessage());
+                // Trigger result display
+                if (!analysisComplete) {
+                    analysisComplete = true;
+                    runOnUiThread(this::showPPGResult);
+                }
             }
-        });
+            
+        } catch (Exception e) {
+            Log.e(TAG, "Error processing server result: " + e.getMessage());
+        }
     }
     
     @Override
     public void onError(String error) {
-        mainHandler.post(() -> {
-            Log.e(TAG, "WebSocket error: " + error);
-            signalQuality = "Server Error";
-            statusText.setText("Server Error: " + error);
-            Toast.makeText(this, "PPG Server Error: " + error, Toast.LENGTH_SHORT).show();
-        });
+        Log.e(TAG, "WebSocket error: " + error);
+        uiStore.update(state -> state.message = "Server Error: " + error);
+        // Toasts are one-off events, not state
+        mainHandler.post(() -> Toast.makeText(this, "PPG Server Error: " + error, Toast.LENGTH_SHORT).show());
     }
     
     @Override
     public void onConnectionChanged(boolean connected) {
-        mainHandler.post(() -> {
-            serverConnected = connected;
+        boolean reconnecting = !connected && webSocketClient != null && webSocketClient.isReconnecting();
+        if (connected) {
+            Log.d(TAG, "Connected to PPG WebSocket server");
+        } else if (reconnecting) {
+            Log.d(TAG, "Lost PPG WebSocket server, reconnecting");
+        } else {
+            Log.d(TAG, "Disconnected from PPG WebSocket server");
+        }
+        uiStore.update(state -> {
+            state.connected = connected;
             if (connected) {
-                signalQuality = "Server Connected";
-                statusText.setText("Connected to PPG Server - Place finger on camera lens");
-                Log.d(TAG, "Connected to PPG WebSocket server");
-                
-                // Start timer automatically
-                if (!timerRunning && !analysisComplete) {
-                    startCountdownTimer();
-                }
+                state.connectionStatus = "Connected to PPG Server";
+                state.message = "Connected to PPG Server - Place finger on camera lens";
             } else {
-                signalQuality = "Server Disconnected";
-                statusText.setText("Disconnected from PPG Server");
-                Log.d(TAG, "Disconnected from PPG WebSocket server");
+                state.connectionStatus = reconnecting
+                        ? "Connection lost - reconnecting to PPG Server..."
+                        : "Disconnected from PPG Server";
+                state.message = null;
             }
         });
     }
     
+    // Main thread: touch only the views whose inputs differ from the last applied state
+    private void applyUiState(CaptureUiState state) {
+        CaptureUiState last = appliedUiState;
+        if (state == last) {
+            return;
+        }
+        appliedUiState = state;
+        
+        if (last == null || Double.compare(state.greenSignal, last.greenSignal) != 0) {
+            if (!Double.isNaN(state.greenSignal)) {
+                greenSignalText.setText(String.format("Signal: %.1f", state.greenSignal));
+            }
+        }
+        
+        if (last == null || state.heartRate != last.heartRate) {
+            heartRateText.setText(state.heartRate > 0 ? Integer.toString(state.heartRate) : "--");
+        }
+        if (last == null || state.heartRate != last.heartRate || state.heartRateConfidence != last.heartRateConfidence
+                || !Objects.equals(state.signalQuality, last.signalQuality)) {
+            confidenceText.setText(state.heartRate > 0
+                    ? String.format("Quality: %s (%d%%)", state.signalQuality, state.heartRateConfidence)
+                    : "Quality: --");
+        }
+        
+        if (last == null || Float.compare(state.systolic, last.systolic) != 0
+                || Float.compare(state.diastolic, last.diastolic) != 0
+                || !Objects.equals(state.bpCategory, last.bpCategory)
+                || state.bpConfidence != last.bpConfidence || state.bpFinal != last.bpFinal) {
+            if (!state.hasBloodPressure()) {
+                bpCategoryText.setText("Analyzing...");
+                bpConfidenceText.setText("--");
+            } else if (state.bpFinal) {
+                bpCategoryText.setText(String.format("BP: %.0f/%.0f mmHg", state.systolic, state.diastolic));
+                bpCategoryText.setTextColor(getBPCategoryColor(state.bpCategory));
+                bpConfidenceText.setText(String.format("Confidence: %d%% | %s", state.bpConfidence, state.bpCategory));
+            } else {
+                bpCategoryText.setText(String.format("BP: ~%.0f/%.0f mmHg", state.systolic, state.diastolic));
+                bpCategoryText.setTextColor(getBPCategoryColor(state.bpCategory));
+                bpConfidenceText.setText(String.format("Confidence: %d%% | Stabilizing...", state.bpConfidence));
+            }
+        }
+        
+        if (last == null || state.elapsedSeconds != last.elapsedSeconds || state.targetSeconds != last.targetSeconds
+                || state.complete != last.complete) {
+            if (state.complete) {
+                timerText.setText("00:00");
+                progressBar.setProgress(100);
+            } else if (state.elapsedSeconds < 0) {
+                int nominalSeconds = sessionController.getConfig().nominalSeconds;
+                timerText.setText(String.format("%02d:%02d", nominalSeconds / 60, nominalSeconds % 60));
+                progressBar.setProgress(0);
+            } else {
+                // The target grows from the nominal duration to the cap while quality is poor
+                int remaining = state.getRemainingSeconds();
+                timerText.setText(String.format("%02d:%02d", remaining / 60, remaining % 60));
+                progressBar.setProgress(state.targetSeconds > 0 ? state.elapsedSeconds * 100 / state.targetSeconds : 0);
+            }
+        }
+        
+        if (last == null || !Objects.equals(state.message, last.message) || state.connected != last.connected
+                || !Objects.equals(state.connectionStatus, last.connectionStatus) || state.complete != last.complete
+                || state.getRemainingSeconds() != last.getRemainingSeconds()
+                || (state.elapsedSeconds < 0) != (last.elapsedSeconds < 0)) {
+            String status = statusLine(state);
+            if (status != null) {
+                statusText.setText(status);
+            }
+        }
+    }
+    
+    private static String statusLine(CaptureUiState state) {
+        if (state.message != null) {
+            return state.message;
+        }
+        if (state.complete) {
+            return null;
+        }
+        if (!state.connected) {
+            return state.connectionStatus;
+        }
+        if (state.elapsedSeconds < 0) {
+            return "Place finger on camera lens with flash";
+        }
+        int remaining = state.getRemainingSeconds();
+        return remaining > 0 ? String.format("Analyzing BP... up to %d seconds remaining", remaining) : null;
+    }
+    
     private void setupPPGChart() {
         // Configure the chart
         ppgChart.getDescription().setEnabled(false);
@@ -620,6 +1043,10 @@ public class CameraActivity extends AppCompatActivity implements PPGWebSocketCli
         ppgChart.getLegend().setTextColor(Color.WHITE);
         ppgChart.getLegend().setTextSize(12f);
         
+        for (int i = 0; i < MAX_CHART_POINTS; i++) {
+            chartPoints[i] = new Entry(0, 0);
+        }
+        
         // Initialize data set
         ppgDataSet = new LineDataSet(ppgEntries, "PPG Signal");
         ppgDataSet.setColor(Color.GREEN);
@@ -633,80 +1060,22 @@ public class CameraActivity extends AppCompatActivity implements PPGWebSocketCli
         ppgChart.invalidate();
     }
     
-    private void updatePPGChart(double greenValue) {
-        // Add new data point
-        ppgEntries.add(new Entry(sampleIndex++, (float) greenValue));
-        
-        // Remove old points to maintain window size
-        if (ppgEntries.size() > MAX_VISIBLE_ENTRIES) {
-            ppgEntries.remove(0);
-            // Adjust x values
-            for (int i = 0; i < ppgEntries.size(); i++) {
-                ppgEntries.get(i).setX(i);
-            }
-            sampleIndex = ppgEntries.size();
+    private void renderPPGChart() {
+        int points = chartBuffer.read(chartPositions, chartValues, MAX_CHART_POINTS);
+        
+        // Reuse the preallocated entries; X is in seconds since the measurement started
+        ppgEntries.clear();
+        for (int i = 0; i < points; i++) {
+            Entry entry = chartPoints[i];
+            entry.setX(chartPositions[i] / (float) CAMERA_FPS);
+            entry.setY(chartValues[i]);
+            ppgEntries.add(entry);
         }
         
-        // Update dataset
+        // Update dataset; the axes rescale from the recomputed min/max
         ppgDataSet.notifyDataSetChanged();
         ppgLineData.notifyDataChanged();
         ppgChart.notifyDataSetChanged();
-        
-        // Auto-scale Y axis to fit data
-        ppgChart.fitScreen();
         ppgChart.invalidate();
     }
-    
-    private void startCountdownTimer() {
-        timerRunning = true;
-        localTimerCount = 0;  // Internal counter starts from 0
-        
-        countdownTimer = new Timer();
-        countdownTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                runOnUiThread(() -> {
-                    // Count time normally
-                    if (localTimerCount < 40 && !analysisComplete) {
-                        localTimerCount++;
-                        
-                        // Calculate REMAINING time (countdown from 40 to 0)
-                        int remainingTime = 40 - localTimerCount;
-                        
-                        // Update timer display - countdown format
-                        timerText.setText(String.format("%02d:%02d", 
-                            remainingTime / 60, remainingTime % 60));
-                        
-                        // Update status with remaining time
-                        if (remainingTime > 0) {
-                            statusText.setText(String.format("Analyzing BP... %d seconds remaining", remainingTime));
-                        }
-                        
-                        // Progress bar (fills up as time counts down) 
-                        if (progressBar != null) {
-                            progressBar.setProgress((localTimerCount * 100) / 40);
-                        }
-                        
-                        Log.d(TAG, String.format("Countdown Timer: %d seconds remaining (%d/40 elapsed)", 
-                            remainingTime, localTimerCount));
-                        
-                    } else if (localTimerCount >= 40) {
-                        // Timer completed - show 00:00
-                        analysisComplete = true;
-                        timerText.setText("00:00");
-                        statusText.setText("Analysis Complete! Processing results...");
-                        
-                        // Stop the timer
-                        if (countdownTimer != null) {
-                            countdownTimer.cancel();
-                            countdownTimer = null;
-                            timerRunning = false;
-                        }
-                        
-                        Log.d(TAG, "Countdown Timer completed - Analysis finished");
-                    }
-                });
-            }
-        }, 1000, 1000); // Update every second
-    }
 }
@@ -0,0 +1,163 @@
+package com.example.ppg;
+
+import java.util.Objects;
+
+/**
+ * Immutable snapshot of everything the capture screen shows.
+ *
+ * Producers on any thread publish changes through CaptureUiStore; the main thread
+ * applies the latest snapshot once per display frame and only touches the views
+ * whose fields differ from the snapshot it applied last. Values are kept raw, the
+ * text is formatted when a view is actually updated.
+ */
+public final class CaptureUiState {
+
+    public static final CaptureUiState INITIAL = new Builder().build();
+
+    // Connection
+    public final boolean connected;
+    public final String connectionStatus;
+    // Explicit status line; null shows the countdown, or connectionStatus while disconnected
+    public final String message;
+
+    // Clock, from sample timestamps; elapsedSeconds is -1 before the first frame
+    public final int elapsedSeconds;
+    public final int targetSeconds;
+    public final boolean complete;
+
+    // Heart rate; onDeviceHeartRateMillis is the elapsedRealtime of the last on-device estimate
+    public final int heartRate;
+    public final int heartRateConfidence;
+    public final String signalQuality;
+    public final long onDeviceHeartRateMillis;
+    public final double greenSignal;
+
+    // Blood pressure; bpFinal once the server's final result replaced the live estimate
+    public final float systolic;
+    public final float diastolic;
+    public final String bpCategory;
+    public final int bpConfidence;
+    public final boolean bpFinal;
+    public final String bpRiskLevel;
+    public final String bpRecommendation;
+
+    private CaptureUiState(Builder b) {
+        connected = b.connected;
+        connectionStatus = b.connectionStatus;
+        message = b.message;
+        elapsedSeconds = b.elapsedSeconds;
+        targetSeconds = b.targetSeconds;
+        complete = b.complete;
+        heartRate = b.heartRate;
+        heartRateConfidence = b.heartRateConfidence;
+        signalQuality = b.signalQuality;
+        onDeviceHeartRateMillis = b.onDeviceHeartRateMillis;
+        greenSignal = b.greenSignal;
+        systolic = b.systolic;
+        diastolic = b.diastolic;
+        bpCategory = b.bpCategory;
+        bpConfidence = b.bpConfidence;
+        bpFinal = b.bpFinal;
+        bpRiskLevel = b.bpRiskLevel;
+        bpRecommendation = b.bpRecommendation;
+    }
+
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    public int getRemainingSeconds() {
+        return Math.max(0, targetSeconds - Math.max(0, elapsedSeconds));
+    }
+
+    public boolean hasBloodPressure() {
+        return systolic > 0 && diastolic > 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CaptureUiState)) {
+            return false;
+        }
+        CaptureUiState s = (CaptureUiState) o;
+        return connected == s.connected
+                && Objects.equals(connectionStatus, s.connectionStatus)
+                && Objects.equals(message, s.message)
+                && elapsedSeconds == s.elapsedSeconds
+                && targetSeconds == s.targetSeconds
+                && complete == s.complete
+                && heartRate == s.heartRate
+                && heartRateConfidence == s.heartRateConfidence
+                && Objects.equals(signalQuality, s.signalQuality)
+                && onDeviceHeartRateMillis == s.onDeviceHeartRateMillis
+                && Double.compare(greenSignal, s.greenSignal) == 0
+                && Float.compare(systolic, s.systolic) == 0
+                && Float.compare(diastolic, s.diastolic) == 0
+                && Objects.equals(bpCategory, s.bpCategory)
+                && bpConfidence == s.bpConfidence
+                && bpFinal == s.bpFinal
+                && Objects.equals(bpRiskLevel, s.bpRiskLevel)
+                && Objects.equals(bpRecommendation, s.bpRecommendation);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(connected, connectionStatus, message, elapsedSeconds, targetSeconds, complete,
+                heartRate, heartRateConfidence, signalQuality, onDeviceHeartRateMillis, greenSignal,
+                systolic, diastolic, bpCategory, bpConfidence, bpFinal, bpRiskLevel, bpRecommendation);
+    }
+
+    /**
+     * Mutable copy used to derive the next snapshot
+     */
+    public static final class Builder {
+        public boolean connected = false;
+        public String connectionStatus = "Connecting to PPG server...";
+        public String message = null;
+        public int elapsedSeconds = -1;
+        public int targetSeconds = 0;
+        public boolean complete = false;
+        public int heartRate = 0;
+        public int heartRateConfidence = 0;
+        public String signalQuality = "Preparing...";
+        public long onDeviceHeartRateMillis = 0;
+        public double greenSignal = Double.NaN;
+        public float systolic = 0f;
+        public float diastolic = 0f;
+        public String bpCategory = "Analyzing...";
+        public int bpConfidence = 0;
+        public boolean bpFinal = false;
+        public String bpRiskLevel = "Unknown";
+        public String bpRecommendation = "Analyzing...";
+
+        public Builder() {}
+
+        private Builder(CaptureUiState s) {
+            connected = s.connected;
+            connectionStatus = s.connectionStatus;
+            message = s.message;
+            elapsedSeconds = s.elapsedSeconds;
+            targetSeconds = s.targetSeconds;
+            complete = s.complete;
+            heartRate = s.heartRate;
+            heartRateConfidence = s.heartRateConfidence;
+            signalQuality = s.signalQuality;
+            onDeviceHeartRateMillis = s.onDeviceHeartRateMillis;
+            greenSignal = s.greenSignal;
+            systolic = s.systolic;
+            diastolic = s.diastolic;
+            bpCategory = s.bpCategory;
+            bpConfidence = s.bpConfidence;
+            bpFinal = s.bpFinal;
+            bpRiskLevel = s.bpRiskLevel;
+            bpRecommendation = s.bpRecommendation;
+        }
+
+        public CaptureUiState build() {
+            return new CaptureUiState(this);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.ppg;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the latest CaptureUiState. Any thread may publish; nothing is posted to the
+ * main looper, the main thread reads the current snapshot when it draws a frame.
+ */
+public class CaptureUiStore {
+
+    /**
+     * Changes a copy of the current state. May run more than once when producers race,
+     * so it must not have side effects.
+     */
+    public interface Mutation {
+        void apply(CaptureUiState.Builder state);
+    }
+
+    private final AtomicReference<CaptureUiState> state = new AtomicReference<>(CaptureUiState.INITIAL);
+
+    public CaptureUiState get() {
+        return state.get();
+    }
+
+    /**
+     * Publish a change; a mutation that leaves every field as it was publishes nothing
+     */
+    public void update(Mutation mutation) {
+        while (true) {
+            CaptureUiState current = state.get();
+            CaptureUiState.Builder builder = current.toBuilder();
+            mutation.apply(builder);
+            CaptureUiState next = builder.build();
+            if (next.equals(current) || state.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Back to a fresh measurement, keeping the connection state
+     */
+    public void resetMeasurement() {
+        while (true) {
+            CaptureUiState current = state.get();
+            CaptureUiState.Builder fresh = new CaptureUiState.Builder();
+            fresh.connected = current.connected;
+            fresh.connectionStatus = current.connectionStatus;
+            if (state.compareAndSet(current, fresh.build())) {
+                return;
+            }
+        }
+    }
+}
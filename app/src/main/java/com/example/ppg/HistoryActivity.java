@@ -5,29 +5,46 @@ import android.os.Bundle;
 import android.util.Log;
 import android.widget.TextView;
 import android.widget.Toast;
-import android.widget.ListView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.ppg.api.ApiService;
 import com.example.ppg.models.Measurement;
 import com.example.ppg.adapters.MeasurementAdapter;
+import com.example.ppg.store.MeasurementStore;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class HistoryActivity extends Activity {
-    
+
     private static final String TAG = "HistoryActivity";
-    
+    private static final int PAGE_SIZE = ApiService.HISTORY_PAGE_SIZE;
+    // Start loading the next page when this few rows are left below the screen
+    private static final int PREFETCH_DISTANCE = 10;
+
     private TextView titleText;
     private TextView statsText;
-    private ListView measurementsList;
-    
+    private RecyclerView measurementsList;
+    private LinearLayoutManager layoutManager;
+
     private ApiService apiService;
+    private MeasurementStore store;
     private String subjectId;
     private String subjectName;
-    private List<Measurement> measurements = new ArrayList<>();
     private MeasurementAdapter adapter;
 
+    // Paging state, main thread only. Rows come from the local store; server pages are
+    // merged into the store and then read back, so both sources share one order.
+    private List<MeasurementAdapter.Item> items = new ArrayList<>();
+    private boolean loadingMore = false;
+    private boolean localExhausted = false;
+    private int remoteOffset = 0;
+    private boolean remoteHasMore = true;
+    private ApiService.SubjectStats serverStats;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -36,7 +53,7 @@ public class HistoryActivity extends Activity {
         // Get subject info from intent
         subjectId = getIntent().getStringExtra("subject_id");
         subjectName = getIntent().getStringExtra("subject_name");
-        
+
         if (subjectId == null) {
             Toast.makeText(this, "No subject selected", Toast.LENGTH_SHORT).show();
             finish();
@@ -47,58 +64,211 @@ public class HistoryActivity extends Activity {
         titleText = findViewById(R.id.titleText);
         statsText = findViewById(R.id.statsText);
         measurementsList = findViewById(R.id.measurementsList);
-        
+
         // Set title
         titleText.setText("History - " + subjectName);
-        
+
         // Initialize API service
         apiService = new ApiService();
-        
-        // Set up list adapter
-        adapter = new MeasurementAdapter(this, measurements);
+        store = MeasurementStore.get(this);
+
+        // Set up the list; pages load as the user scrolls towards the end
+        adapter = new MeasurementAdapter(this);
+        layoutManager = new LinearLayoutManager(this);
+        measurementsList.setLayoutManager(layoutManager);
         measurementsList.setAdapter(adapter);
-        
+        measurementsList.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= items.size() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
+
         // Load measurement history
         loadHistory();
     }
-    
+
     private void loadHistory() {
         statsText.setText("Loading measurement history...");
-        
-        apiService.getSubjectHistory(subjectId, new ApiService.HistoryCallback() {
+
+        // The newest page stored on the device shows right away, the server copy follows
+        store.executor().execute(() -> {
+            List<MeasurementAdapter.Item> page = toItems(store.getHistoryPage(subjectId, null, PAGE_SIZE));
+            ApiService.SubjectStats localStats = store.getStats(subjectId);
+            long syncedCount = store.getSyncedCount(subjectId);
+            runOnUiThread(() -> {
+                replaceItems(0, page);
+                if (localStats != null) {
+                    showStats(localStats, syncedCount);
+                }
+            });
+        });
+
+        apiService.getSubjectHistory(subjectId, 0, PAGE_SIZE, new ApiService.HistoryCallback() {
             @Override
             public void onSuccess(List<Measurement> measurementList, ApiService.SubjectStats stats) {
-                runOnUiThread(() -> {
-                    measurements.clear();
-                    measurements.addAll(measurementList);
-                    adapter.notifyDataSetChanged();
-                    
-                    // Update stats display
-                    if (stats != null && stats.total_measurements > 0) {
-                        String statsDisplay = String.format(
-                            "Total Measurements: %d\nAverage Heart Rate: %.1f BPM\nRange: %d - %d BPM",
-                            stats.total_measurements,
-                            stats.avg_heart_rate,
-                            stats.min_heart_rate,
-                            stats.max_heart_rate
-                        );
-                        statsText.setText(statsDisplay);
-                    } else {
-                        statsText.setText("No measurements found for this patient");
-                    }
-                    
-                    Log.d(TAG, "Loaded " + measurementList.size() + " measurements for " + subjectId);
+                store.executor().execute(() -> {
+                    store.mergeRemoteHistory(measurementList);
+                    ApiService.SubjectStats localStats = store.getStats(subjectId);
+                    long syncedCount = store.getSyncedCount(subjectId);
+                    runOnUiThread(() -> {
+                        remoteOffset = measurementList.size();
+                        remoteHasMore = measurementList.size() >= PAGE_SIZE;
+                        serverStats = stats;
+                        showStats(localStats, syncedCount);
+                        Log.d(TAG, "Loaded " + measurementList.size() + " measurements for " + subjectId);
+                        // Read back as many rows as are shown, now including the server's
+                        reloadTop(Math.max(items.size(), PAGE_SIZE));
+                    });
                 });
             }
 
+            @Override
+            public void onUnchanged() {
+                // The cached copy already shown is current
+                Log.d(TAG, "History for " + subjectId + " unchanged");
+            }
+
             @Override
             public void onError(String error) {
                 runOnUiThread(() -> {
+                    Log.e(TAG, "Failed to load history for " + subjectId + ": " + error);
+                    remoteHasMore = false;
+                    if (!items.isEmpty()) {
+                        // Offline: the stored history stays on screen
+                        statsText.setText("Offline - showing measurements saved on this device");
+                        return;
+                    }
                     statsText.setText("Error loading history: " + error);
                     Toast.makeText(HistoryActivity.this, "Failed to load history: " + error, Toast.LENGTH_LONG).show();
-                    Log.e(TAG, "Failed to load history for " + subjectId + ": " + error);
                 });
             }
         });
     }
+
+    /**
+     * Stats kept on the device cover only the measurements stored so far, so the
+     * server's totals are shown until the device has every measurement they count.
+     * The local total also counts measurements not uploaded yet, so only the synced
+     * ones are compared with the server's total.
+     */
+    private void showStats(ApiService.SubjectStats localStats, long syncedCount) {
+        boolean localComplete = localStats != null
+                && (serverStats == null || syncedCount >= serverStats.total_measurements);
+        ApiService.SubjectStats stats = localComplete ? localStats : serverStats;
+        if (stats != null && stats.total_measurements > 0) {
+            String statsDisplay = String.format(
+                "Total Measurements: %d\nAverage Heart Rate: %.1f BPM\nRange: %.0f - %.0f BPM",
+                stats.total_measurements,
+                stats.avg_heart_rate,
+                stats.min_heart_rate,
+                stats.max_heart_rate
+            );
+            statsText.setText(statsDisplay);
+        } else if (items.isEmpty()) {
+            statsText.setText("No measurements found for this patient");
+        } else {
+            statsText.setText("Measurements on this device");
+        }
+    }
+
+    private void reloadTop(int count) {
+        store.executor().execute(() -> {
+            List<MeasurementAdapter.Item> page = toItems(store.getHistoryPage(subjectId, null, count));
+            runOnUiThread(() -> {
+                localExhausted = page.size() < count;
+                replaceItems(0, page);
+            });
+        });
+    }
+
+    /**
+     * Append the next stored page; when the store runs out, fetch the next server page
+     * into it first
+     */
+    private void loadNextPage() {
+        if (loadingMore || items.isEmpty() || (localExhausted && !remoteHasMore)) {
+            return;
+        }
+        loadingMore = true;
+        int anchor = items.size();
+        Measurement after = items.get(anchor - 1).measurement;
+
+        if (!localExhausted) {
+            store.executor().execute(() -> {
+                List<MeasurementAdapter.Item> page = toItems(store.getHistoryPage(subjectId, after, PAGE_SIZE));
+                runOnUiThread(() -> {
+                    localExhausted = page.size() < PAGE_SIZE;
+                    replaceItems(anchor, page);
+                    loadingMore = false;
+                });
+            });
+            return;
+        }
+
+        int offset = remoteOffset;
+        // Rows the previous delivery put after anchor; -1 until the first one
+        int[] placed = {-1};
+        apiService.getSubjectHistory(subjectId, offset, PAGE_SIZE, new ApiService.HistoryCallback() {
+            @Override
+            public void onSuccess(List<Measurement> measurementList, ApiService.SubjectStats stats) {
+                store.executor().execute(() -> {
+                    int added = store.mergeRemoteHistory(measurementList);
+                    List<MeasurementAdapter.Item> page = toItems(store.getHistoryPage(subjectId, after, PAGE_SIZE));
+                    ApiService.SubjectStats localStats = store.getStats(subjectId);
+                    long syncedCount = store.getSyncedCount(subjectId);
+                    runOnUiThread(() -> {
+                        remoteOffset = offset + measurementList.size();
+                        // A server that ignores the offset would return the same rows forever
+                        remoteHasMore = measurementList.size() >= PAGE_SIZE && (added > 0 || !page.isEmpty());
+                        showStats(localStats, syncedCount);
+                        if (placed[0] >= 0 && (loadingMore || items.size() != anchor + placed[0])) {
+                            // The cached copy came first and another page was loaded or is loading
+                            // after it. Replacing from anchor would drop those rows; the rows just
+                            // merged are in the store, so the next page is read from there instead.
+                            localExhausted = false;
+                            return;
+                        }
+                        localExhausted = page.size() < PAGE_SIZE;
+                        // Replaces rather than appends: a cached page may be followed by the fresh one
+                        replaceItems(anchor, page);
+                        placed[0] = page.size();
+                        loadingMore = false;
+                    });
+                });
+            }
+
+            @Override
+            public void onError(String error) {
+                runOnUiThread(() -> {
+                    Log.e(TAG, "Failed to load history page at " + offset + ": " + error);
+                    remoteHasMore = false;
+                    if (placed[0] < 0) {
+                        // After a cached copy, loadingMore may belong to a later page
+                        loadingMore = false;
+                    }
+                });
+            }
+        });
+    }
+
+    // Keep the first keep rows and put page after them; DiffUtil works out what changed
+    private void replaceItems(int keep, List<MeasurementAdapter.Item> page) {
+        List<MeasurementAdapter.Item> next = new ArrayList<>(keep + page.size());
+        next.addAll(items.subList(0, Math.min(keep, items.size())));
+        next.addAll(page);
+        items = next;
+        adapter.submitList(next);
+    }
+
+    // Formats the rows on the calling thread, which is the store's
+    private static List<MeasurementAdapter.Item> toItems(List<Measurement> measurements) {
+        List<MeasurementAdapter.Item> page = new ArrayList<>(measurements.size());
+        for (Measurement measurement : measurements) {
+            page.add(new MeasurementAdapter.Item(measurement));
+        }
+        return page;
+    }
 }
@@ -1,28 +1,51 @@
 package com.example.ppg;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
  * Image processing utilities for PPG signal extraction
  * Based on HealthWatcher project approach
  */
 public abstract class ImageProcessing {
 
+    // Pixels averaged per tile cell along each axis by downscaleYUV420PlanesToRgbTile()
+    public static final int TILE_CELL_SAMPLES = 4;
+
+    /**
+     * Per-channel statistics of one frame. Allocate once and pass it to every
+     * call so the analyzer thread does not allocate per frame.
+     */
+    public static final class ChannelStats {
+        public int pixelCount;
+        public double red;
+        public double green;
+        public double blue;
+        // Only filled when variance was requested, 0 otherwise
+        public double redVariance;
+        public double greenVariance;
+        public double blueVariance;
+
+        void clear() {
+            pixelCount = 0;
+            red = green = blue = 0;
+            redVariance = greenVariance = blueVariance = 0;
+        }
+    }
+
     /**
-     * Extract RGB channel intensities from YUV420SP camera data
+     * Sum RGB channel intensities of YUV420SP camera data in a single pass
      * @param yuv420sp Raw camera frame data
      * @param width Frame width
-     * @param height Frame height  
-     * @param type Channel type: 1=Red, 2=Blue, 3=Green
-     * @return Sum of pixel intensities for the specified channel
+     * @param height Frame height
+     * @param sums Receives {red, green, blue} sums
      */
-    private static int decodeYUV420SPtoRedBlueGreenSum(byte[] yuv420sp, int width, int height, int type) {
-        if (yuv420sp == null) return 0;
-
+    private static void decodeYUV420SPtoRedBlueGreenSums(byte[] yuv420sp, int width, int height, long[] sums) {
         final int frameSize = width * height;
-        int sum = 0;
-        int sumr = 0;
-        int sumg = 0;
-        int sumb = 0;
-        
+        long sumr = 0;
+        long sumg = 0;
+        long sumb = 0;
+
         for (int j = 0, yp = 0; j < height; j++) {
             int uvp = frameSize + (j >> 1) * width, u = 0, v = 0;
             for (int i = 0; i < width; i++, yp++) {
@@ -32,7 +55,7 @@ public abstract class ImageProcessing {
                     v = (0xff & yuv420sp[uvp++]) - 128;
                     u = (0xff & yuv420sp[uvp++]) - 128;
                 }
-                
+
                 // YUV to RGB conversion
                 int y1192 = 1192 * y;
                 int r = (y1192 + 1634 * v);
@@ -47,25 +70,16 @@ public abstract class ImageProcessing {
                 if (b < 0) b = 0;
                 else if (b > 262143) b = 262143;
 
-                // Extract RGB components
-                int pixel = 0xff000000 | ((r << 6) & 0xff0000) | ((g >> 2) & 0xff00) | ((b >> 10) & 0xff);
-                int red = (pixel >> 16) & 0xff;
-                int green = (pixel >> 8) & 0xff;
-                int blue = pixel & 0xff;
-                
-                sumr += red;
-                sumg += green;
-                sumb += blue;
+                // Extract 8-bit RGB components
+                sumr += r >> 10;
+                sumg += g >> 10;
+                sumb += b >> 10;
             }
         }
-        
-        // Return requested channel sum
-        switch (type) {
-            case 1: return sumr;  // Red
-            case 2: return sumb;  // Blue  
-            case 3: return sumg;  // Green
-            default: return sum;
-        }
+
+        sums[0] = sumr;
+        sums[1] = sumg;
+        sums[2] = sumb;
     }
 
     /**
@@ -74,12 +88,194 @@ public abstract class ImageProcessing {
      * @param width Frame width
      * @param height Frame height
      * @param type Channel type: 1=Red, 2=Blue, 3=Green
+     * @param sums Scratch buffer of at least 3 values, reused between calls
      * @return Average pixel intensity for the channel
      */
-    public static double decodeYUV420SPtoRedBlueGreenAvg(byte[] yuv420sp, int width, int height, int type) {
+    public static double decodeYUV420SPtoRedBlueGreenAvg(byte[] yuv420sp, int width, int height, int type, long[] sums) {
         if (yuv420sp == null) return 0;
         final int frameSize = width * height;
-        int sum = decodeYUV420SPtoRedBlueGreenSum(yuv420sp, width, height, type);
-        return (double) sum / frameSize;
+        decodeYUV420SPtoRedBlueGreenSums(yuv420sp, width, height, sums);
+        switch (type) {
+            case 1: return (double) sums[0] / frameSize;  // Red
+            case 2: return (double) sums[2] / frameSize;  // Blue
+            case 3: return (double) sums[1] / frameSize;  // Green
+            default: return 0;
+        }
+    }
+
+    /**
+     * Calculate red, green and blue averages in one pass
+     * @param yuv420sp Raw camera frame data
+     * @param width Frame width
+     * @param height Frame height
+     * @param sums Scratch buffer of at least 3 values, reused between calls
+     * @param out Receives {red, green, blue} averages
+     */
+    public static void decodeYUV420SPtoRGBAvg(byte[] yuv420sp, int width, int height, long[] sums, double[] out) {
+        if (yuv420sp == null) {
+            out[0] = out[1] = out[2] = 0;
+            return;
+        }
+        final int frameSize = width * height;
+        decodeYUV420SPtoRedBlueGreenSums(yuv420sp, width, height, sums);
+        out[0] = (double) sums[0] / frameSize;
+        out[1] = (double) sums[1] / frameSize;
+        out[2] = (double) sums[2] / frameSize;
+    }
+
+    /**
+     * Calculate per-channel means (and optionally variances) over a region of
+     * interest of a YUV_420_888 frame in a single pass. Reads the plane buffers
+     * with absolute gets, so their positions are left untouched, and allocates nothing.
+     * @param yBuffer Y plane buffer
+     * @param yRowStride Y plane row stride in bytes
+     * @param yPixelStride Y plane pixel stride in bytes
+     * @param uBuffer U plane buffer
+     * @param vBuffer V plane buffer
+     * @param uvRowStride U/V plane row stride in bytes
+     * @param uvPixelStride U/V plane pixel stride in bytes
+     * @param left ROI left edge (inclusive)
+     * @param top ROI top edge (inclusive)
+     * @param right ROI right edge (exclusive)
+     * @param bottom ROI bottom edge (exclusive)
+     * @param computeVariance Also accumulate squares and fill the variance fields
+     * @param out Receives the statistics, reused between frames
+     */
+    public static void decodeYUV420PlanesToChannelStats(ByteBuffer yBuffer, int yRowStride, int yPixelStride,
+                                                        ByteBuffer uBuffer, ByteBuffer vBuffer,
+                                                        int uvRowStride, int uvPixelStride,
+                                                        int left, int top, int right, int bottom,
+                                                        boolean computeVariance, ChannelStats out) {
+        out.clear();
+        if (yBuffer == null || uBuffer == null || vBuffer == null || right <= left || bottom <= top) {
+            return;
+        }
+
+        long sumr = 0;
+        long sumg = 0;
+        long sumb = 0;
+        long sqr = 0;
+        long sqg = 0;
+        long sqb = 0;
+
+        for (int j = top; j < bottom; j++) {
+            int yp = j * yRowStride + left * yPixelStride;
+            int uvRow = (j >> 1) * uvRowStride;
+            int u = 0, v = 0;
+            for (int i = left; i < right; i++, yp += yPixelStride) {
+                // Chroma is shared by each horizontal pixel pair, fetch it once per pair
+                if ((i & 1) == 0 || i == left) {
+                    int uvIndex = uvRow + (i >> 1) * uvPixelStride;
+                    u = (0xff & uBuffer.get(uvIndex)) - 128;
+                    v = (0xff & vBuffer.get(uvIndex)) - 128;
+                }
+                int y = (0xff & yBuffer.get(yp)) - 16;
+                if (y < 0) y = 0;
+
+                // YUV to RGB conversion (same fixed-point coefficients as above)
+                int y1192 = 1192 * y;
+                int r = (y1192 + 1634 * v);
+                int g = (y1192 - 833 * v - 400 * u);
+                int b = (y1192 + 2066 * u);
+
+                // Clamp values
+                if (r < 0) r = 0;
+                else if (r > 262143) r = 262143;
+                if (g < 0) g = 0;
+                else if (g > 262143) g = 262143;
+                if (b < 0) b = 0;
+                else if (b > 262143) b = 262143;
+
+                r >>= 10;
+                g >>= 10;
+                b >>= 10;
+                sumr += r;
+                sumg += g;
+                sumb += b;
+                if (computeVariance) {
+                    sqr += r * r;
+                    sqg += g * g;
+                    sqb += b * b;
+                }
+            }
+        }
+
+        int pixelCount = (right - left) * (bottom - top);
+        out.pixelCount = pixelCount;
+        out.red = (double) sumr / pixelCount;
+        out.green = (double) sumg / pixelCount;
+        out.blue = (double) sumb / pixelCount;
+        if (computeVariance) {
+            out.redVariance = Math.max(0, (double) sqr / pixelCount - out.red * out.red);
+            out.greenVariance = Math.max(0, (double) sqg / pixelCount - out.green * out.green);
+            out.blueVariance = Math.max(0, (double) sqb / pixelCount - out.blue * out.blue);
+        }
+    }
+
+    /**
+     * Downscale a region of interest of a YUV_420_888 frame to a small RGB tile, e.g. for
+     * session recordings. Each tile cell averages a TILE_CELL_SAMPLES x TILE_CELL_SAMPLES
+     * grid of pixels spread over the cell rather than every pixel, so a tile costs the
+     * same few hundred reads whatever the ROI size. Allocates nothing.
+     * @param tileWidth Tile columns
+     * @param tileHeight Tile rows
+     * @param out Receives tileWidth * tileHeight RGB triples (0-255), row-major
+     */
+    public static void downscaleYUV420PlanesToRgbTile(ByteBuffer yBuffer, int yRowStride, int yPixelStride,
+                                                      ByteBuffer uBuffer, ByteBuffer vBuffer,
+                                                      int uvRowStride, int uvPixelStride,
+                                                      int left, int top, int right, int bottom,
+                                                      int tileWidth, int tileHeight, byte[] out) {
+        if (yBuffer == null || uBuffer == null || vBuffer == null || right <= left || bottom <= top) {
+            Arrays.fill(out, 0, tileWidth * tileHeight * 3, (byte) 0);
+            return;
+        }
+
+        int o = 0;
+        for (int ty = 0; ty < tileHeight; ty++) {
+            int y0 = top + (bottom - top) * ty / tileHeight;
+            int cellHeight = top + (bottom - top) * (ty + 1) / tileHeight - y0;
+            for (int tx = 0; tx < tileWidth; tx++) {
+                int x0 = left + (right - left) * tx / tileWidth;
+                int cellWidth = left + (right - left) * (tx + 1) / tileWidth - x0;
+                int sumy = 0, sumu = 0, sumv = 0;
+                for (int sj = 0; sj < TILE_CELL_SAMPLES; sj++) {
+                    // Centres of an even grid over the cell
+                    int j = y0 + cellHeight * (2 * sj + 1) / (2 * TILE_CELL_SAMPLES);
+                    int yRow = j * yRowStride;
+                    int uvRow = (j >> 1) * uvRowStride;
+                    for (int si = 0; si < TILE_CELL_SAMPLES; si++) {
+                        int i = x0 + cellWidth * (2 * si + 1) / (2 * TILE_CELL_SAMPLES);
+                        int uvIndex = uvRow + (i >> 1) * uvPixelStride;
+                        sumy += 0xff & yBuffer.get(yRow + i * yPixelStride);
+                        sumu += 0xff & uBuffer.get(uvIndex);
+                        sumv += 0xff & vBuffer.get(uvIndex);
+                    }
+                }
+                int samples = TILE_CELL_SAMPLES * TILE_CELL_SAMPLES;
+                int y = sumy / samples - 16;
+                if (y < 0) y = 0;
+                int u = sumu / samples - 128;
+                int v = sumv / samples - 128;
+
+                // YUV to RGB conversion (same fixed-point coefficients as above)
+                int y1192 = 1192 * y;
+                int r = (y1192 + 1634 * v);
+                int g = (y1192 - 833 * v - 400 * u);
+                int b = (y1192 + 2066 * u);
+
+                // Clamp values
+                if (r < 0) r = 0;
+                else if (r > 262143) r = 262143;
+                if (g < 0) g = 0;
+                else if (g > 262143) g = 262143;
+                if (b < 0) b = 0;
+                else if (b > 262143) b = 262143;
+
+                out[o++] = (byte) (r >> 10);
+                out[o++] = (byte) (g >> 10);
+                out[o++] = (byte) (b >> 10);
+            }
+        }
     }
 }
@@ -1,23 +1,54 @@
 package com.example.ppg;
 
 import android.app.Activity;
+import android.app.AlertDialog;
 import android.content.Intent;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
+import android.widget.ArrayAdapter;
 import android.widget.Button;
+import android.widget.EditText;
+import android.widget.Spinner;
 import android.widget.TextView;
+import android.widget.Toast;
+
+import com.example.ppg.api.ApiService;
+import com.example.ppg.api.NetworkClient;
+import com.example.ppg.models.Subject;
+import com.example.ppg.store.MeasurementStore;
+import com.example.ppg.store.OutboxSync;
+
+import java.util.Collections;
+import java.util.List;
 
 public class MainActivity extends Activity {
     
+    private static final String TAG = "MainActivity";
+    
     private Button startAnalysisButton;
     private Button historyButton;
     private TextView statusText;
+    
+    private ApiService apiService;
+    // Latest subject list: the stored copy until the server answers; UI thread only
+    private List<Subject> subjects = Collections.emptyList();
+    
+    private interface SubjectChoice {
+        void onSubject(String subjectId, String subjectName);
+    }
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        // Wake the backend while the user is still on this screen
+        NetworkClient.prewarm();
+        apiService = new ApiService();
+        // Upload measurements saved while offline, and those refused before the app last started
+        OutboxSync.get(this).retryParked();
+
         // Initialize UI components
         startAnalysisButton = findViewById(R.id.startAnalysisButton);
         historyButton = findViewById(R.id.historyButton);
@@ -42,17 +73,143 @@ public class MainActivity extends Activity {
         });
     }
     
+    @Override
+    protected void onResume() {
+        super.onResume();
+        loadSubjects();
+    }
+    
+    private void loadSubjects() {
+        MeasurementStore store = MeasurementStore.get(this);
+        store.executor().execute(() -> {
+            List<Subject> stored = store.getSubjects();
+            runOnUiThread(() -> {
+                if (subjects.isEmpty()) {
+                    subjects = stored;
+                }
+            });
+        });
+        apiService.getSubjects(new ApiService.SubjectsCallback() {
+            @Override
+            public void onSuccess(List<Subject> list) {
+                // Kept so subjects can be picked offline
+                store.executor().execute(() -> store.saveSubjects(list));
+                runOnUiThread(() -> subjects = list);
+            }
+            
+            @Override
+            public void onError(String error) {
+                Log.w(TAG, "Could not load subjects: " + error);
+            }
+        });
+    }
+    
     private void startPPGAnalysis() {
-        statusText.setText("Starting PPG analysis...");
-        
-        // Launch CameraActivity
-        Intent intent = new Intent(MainActivity.this, CameraActivity.class);
-        startActivity(intent);
+        // Results are filed under the subject; measuring without one is allowed but not saved
+        chooseSubject("Measure subject", true, (subjectId, subjectName) -> {
+            statusText.setText("Starting PPG analysis...");
+            
+            // Launch CameraActivity
+            Intent intent = new Intent(MainActivity.this, CameraActivity.class);
+            if (subjectId != null) {
+                intent.putExtra(CameraActivity.EXTRA_SUBJECT_ID, subjectId);
+                intent.putExtra(CameraActivity.EXTRA_SUBJECT_NAME, subjectName);
+            }
+            startActivity(intent);
+        });
     }
     
     private void openHistory() {
-        // Launch HistoryActivity
-        Intent intent = new Intent(MainActivity.this, HistoryActivity.class);
-        startActivity(intent);
+        chooseSubject("Subject history", false, (subjectId, subjectName) -> {
+            // Launch HistoryActivity
+            Intent intent = new Intent(MainActivity.this, HistoryActivity.class);
+            intent.putExtra("subject_id", subjectId);
+            intent.putExtra("subject_name", subjectName);
+            startActivity(intent);
+        });
+    }
+    
+    // Pick an existing subject or add one; forMeasurement also offers measuring without saving
+    private void chooseSubject(String title, boolean forMeasurement, SubjectChoice choice) {
+        List<Subject> shown = subjects;
+        String[] items = new String[shown.size() + 1];
+        for (int i = 0; i < shown.size(); i++) {
+            items[i] = shown.get(i).getDisplayName();
+        }
+        items[shown.size()] = "+ New subject";
+        
+        AlertDialog.Builder builder = new AlertDialog.Builder(this)
+                .setTitle(title)
+                .setItems(items, (dialog, which) -> {
+                    if (which < shown.size()) {
+                        Subject subject = shown.get(which);
+                        choice.onSubject(subject.getSubjectId(), subject.getSubjectName());
+                    } else {
+                        showAddSubject(choice);
+                    }
+                })
+                .setNegativeButton("Cancel", null);
+        if (forMeasurement) {
+            builder.setNeutralButton("Without saving", (dialog, which) -> choice.onSubject(null, null));
+        }
+        builder.show();
+    }
+    
+    private void showAddSubject(SubjectChoice choice) {
+        View dialogView = getLayoutInflater().inflate(R.layout.dialog_add_subject, null);
+        EditText nameInput = dialogView.findViewById(R.id.nameInput);
+        EditText ageInput = dialogView.findViewById(R.id.ageInput);
+        Spinner genderSpinner = dialogView.findViewById(R.id.genderSpinner);
+        EditText notesInput = dialogView.findViewById(R.id.notesInput);
+        ArrayAdapter<CharSequence> genders = ArrayAdapter.createFromResource(this,
+                R.array.gender_options, android.R.layout.simple_spinner_item);
+        genders.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        genderSpinner.setAdapter(genders);
+        
+        new AlertDialog.Builder(this)
+                .setTitle("New subject")
+                .setView(dialogView)
+                .setPositiveButton("Add", (dialog, which) -> {
+                    String name = nameInput.getText().toString().trim();
+                    if (name.isEmpty()) {
+                        Toast.makeText(this, "Patient name is required", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    Integer age = null;
+                    try {
+                        age = Integer.valueOf(ageInput.getText().toString().trim());
+                    } catch (NumberFormatException e) {
+                        // Optional
+                    }
+                    // Position 0 is the "Select Gender" prompt
+                    String gender = genderSpinner.getSelectedItemPosition() > 0
+                            ? genderSpinner.getSelectedItem().toString() : null;
+                    String notes = notesInput.getText().toString().trim();
+                    createSubject(name, age, gender, notes.isEmpty() ? null : notes, choice);
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+    
+    private void createSubject(String name, Integer age, String gender, String notes, SubjectChoice choice) {
+        statusText.setText("Adding subject...");
+        apiService.createSubject(name, age, gender, notes, new ApiService.SubjectCreateCallback() {
+            @Override
+            public void onSuccess(Subject subject) {
+                runOnUiThread(() -> {
+                    statusText.setText("Ready to start PPG analysis");
+                    loadSubjects();
+                    choice.onSubject(subject.getSubjectId(), subject.getSubjectName());
+                });
+            }
+            
+            @Override
+            public void onError(String error) {
+                runOnUiThread(() -> {
+                    statusText.setText("Ready to start PPG analysis");
+                    Toast.makeText(MainActivity.this, "Could not add subject: " + error, Toast.LENGTH_LONG).show();
+                });
+            }
+        });
     }
 }
\ No newline at end of file
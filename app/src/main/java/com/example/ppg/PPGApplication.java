@@ -0,0 +1,19 @@
+package com.example.ppg;
+
+import android.app.Application;
+
+import com.example.ppg.api.NetworkClient;
+
+/**
+ * Process-wide setup that has to run before any activity, whichever one the process
+ * starts in (the launcher, a restored HistoryActivity, or CameraActivity started by adb).
+ */
+public class PPGApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Before anything calls NetworkClient.get(), so the shared client gets its disk cache
+        NetworkClient.init(this);
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.ppg;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Versioned binary WebSocket protocol between the app and the PPG server.
+ *
+ * Every packet starts with a 4-byte header: packet type (u8), protocol version (u8)
+ * and a flags field (u16). All multi-byte values are little-endian.
+ *
+ * Sample packet (client to server, 32 bytes):
+ *   header | sequence (u32) | timestamp ns (i64) | red (f32) | green (f32) | blue (f32) | reserved (u32)
+ *
+ * Sample batch packet (client to server, 8 + 20 * count bytes, flags = sample count):
+ *   header | sequence of the first sample (u32) |
+ *   count x (timestamp ns (i64) | red (f32) | green (f32) | blue (f32))
+ *
+ * Result packet (server to client, 40 bytes):
+ *   header (flags say which blocks are valid) | sequence of last processed sample (u32) |
+ *   elapsed seconds (f32) | red (f32) | green (f32) | blue (f32) |
+ *   heart rate (u16) | heart rate confidence (u8) | signal quality code (u8) |
+ *   systolic (f32) | diastolic (f32) | BP confidence (u8) | BP category code (u8) | reserved (u16)
+ */
+public final class PPGBinaryProtocol {
+
+    public static final int VERSION = 1;
+    // Subprotocol name offered in the JSON hello message
+    public static final String NAME = "ppg-binary";
+
+    public static final int TYPE_SAMPLE = 0x01;
+    public static final int TYPE_SAMPLE_BATCH = 0x02;
+    public static final int TYPE_RESULT = 0x81;
+
+    public static final int HEADER_SIZE = 4;
+    public static final int SAMPLE_PACKET_SIZE = 32;
+    public static final int BATCH_RECORD_SIZE = 20;
+    public static final int MAX_BATCH_SAMPLES = 0xffff;
+    public static final int RESULT_PACKET_SIZE = 40;
+
+    // Result packet flags
+    public static final int FLAG_RGB = 1;
+    public static final int FLAG_HEART_RATE = 1 << 1;
+    public static final int FLAG_BP = 1 << 2;
+
+    // Index = code on the wire
+    static final String[] SIGNAL_QUALITY_CODES = {
+            null, "Poor", "Fair", "Good", "Excellent"
+    };
+    static final String[] BP_CATEGORY_CODES = {
+            null, "Normal", "Elevated", "High Blood Pressure Stage 1",
+            "High Blood Pressure Stage 2", "Hypertensive Crisis"
+    };
+
+    private PPGBinaryProtocol() {}
+
+    /**
+     * Encode one sample packet into a reusable buffer
+     * @param buffer Little-endian buffer with at least SAMPLE_PACKET_SIZE bytes remaining
+     * @return Number of bytes written
+     */
+    public static int encodeSample(ByteBuffer buffer, int sequence, long timestampNanos,
+                                   float red, float green, float blue) {
+        buffer.put((byte) TYPE_SAMPLE);
+        buffer.put((byte) VERSION);
+        buffer.putShort((short) 0);
+        buffer.putInt(sequence);
+        buffer.putLong(timestampNanos);
+        buffer.putFloat(red);
+        buffer.putFloat(green);
+        buffer.putFloat(blue);
+        buffer.putInt(0);
+        return SAMPLE_PACKET_SIZE;
+    }
+
+    /**
+     * Size of a sample batch packet holding count samples
+     */
+    public static int sampleBatchSize(int count) {
+        return HEADER_SIZE + 4 + count * BATCH_RECORD_SIZE;
+    }
+
+    /**
+     * Encode a batch of samples into a reusable buffer
+     * @param buffer Little-endian buffer with at least sampleBatchSize(count) bytes remaining
+     * @return Number of bytes written
+     */
+    public static int encodeSampleBatch(ByteBuffer buffer, int firstSequence, int count, long[] timestampsNanos,
+                                        float[] red, float[] green, float[] blue) {
+        if (count > MAX_BATCH_SAMPLES) {
+            throw new IllegalArgumentException("Batch too large: " + count);
+        }
+        buffer.put((byte) TYPE_SAMPLE_BATCH);
+        buffer.put((byte) VERSION);
+        buffer.putShort((short) count);
+        buffer.putInt(firstSequence);
+        for (int i = 0; i < count; i++) {
+            buffer.putLong(timestampsNanos[i]);
+            buffer.putFloat(red[i]);
+            buffer.putFloat(green[i]);
+            buffer.putFloat(blue[i]);
+        }
+        return sampleBatchSize(count);
+    }
+
+    /**
+     * Allocate a buffer suitable for encoding packets of the given size
+     */
+    public static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Read the packet type of a binary message without consuming it
+     * @return Packet type or -1 if the message is too short or of another version
+     */
+    public static int peekType(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return -1;
+        }
+        int position = buffer.position();
+        if ((buffer.get(position + 1) & 0xff) != VERSION) {
+            return -1;
+        }
+        return buffer.get(position) & 0xff;
+    }
+
+    /**
+     * Decode a result packet into the same model the JSON protocol produces
+     * @param buffer Buffer positioned at the start of the packet
+     * @return Decoded result
+     * @throws IllegalArgumentException if the packet is malformed
+     */
+    public static PPGResult decodeResult(ByteBuffer buffer) {
+        buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < RESULT_PACKET_SIZE) {
+            throw new IllegalArgumentException("Result packet too short: " + buffer.remaining());
+        }
+        int type = buffer.get() & 0xff;
+        int version = buffer.get() & 0xff;
+        if (type != TYPE_RESULT || version != VERSION) {
+            throw new IllegalArgumentException("Unexpected packet " + type + " v" + version);
+        }
+        int flags = buffer.getShort() & 0xffff;
+
+        PPGResult result = new PPGResult();
+        result.status = "success";
+        result.frame_count = buffer.getInt();
+        result.elapsed_time = buffer.getFloat();
+
+        float red = buffer.getFloat();
+        float green = buffer.getFloat();
+        float blue = buffer.getFloat();
+        if ((flags & FLAG_RGB) != 0) {
+            result.rgb_values = new PPGResult.RGBValues();
+            result.rgb_values.red = red;
+            result.rgb_values.green = green;
+            result.rgb_values.blue = blue;
+            result.green_signal_value = green;
+        }
+
+        int heartRate = buffer.getShort() & 0xffff;
+        int heartRateConfidence = buffer.get() & 0xff;
+        int signalQuality = buffer.get() & 0xff;
+        if ((flags & FLAG_HEART_RATE) != 0) {
+            result.heart_rate = new PPGResult.HeartRate();
+            result.heart_rate.heart_rate = heartRate;
+            result.heart_rate.confidence = heartRateConfidence;
+            result.heart_rate.signal_quality = lookup(SIGNAL_QUALITY_CODES, signalQuality);
+        }
+
+        float systolic = buffer.getFloat();
+        float diastolic = buffer.getFloat();
+        int bpConfidence = buffer.get() & 0xff;
+        int bpCategory = buffer.get() & 0xff;
+        if ((flags & FLAG_BP) != 0) {
+            PPGResult.BPAnalysisResult bpResult = new PPGResult.BPAnalysisResult();
+            bpResult.status = "success";
+            bpResult.bp_analysis = new PPGResult.BPAnalysisResult.BPAnalysis();
+            bpResult.bp_analysis.systolic_bp = systolic;
+            bpResult.bp_analysis.diastolic_bp = diastolic;
+            bpResult.bp_analysis.confidence = bpConfidence;
+            bpResult.bp_analysis.bp_category = lookup(BP_CATEGORY_CODES, bpCategory);
+            result.bp_analysis_result = bpResult;
+        }
+
+        return result;
+    }
+
+    private static String lookup(String[] codes, int code) {
+        return code > 0 && code < codes.length ? codes[code] : "Unknown";
+    }
+}
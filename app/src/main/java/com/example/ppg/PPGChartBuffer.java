@@ -0,0 +1,116 @@
+package com.example.ppg;
+
+/**
+ * Fixed-size window of the most recent signal values for the live chart, kept in
+ * a preallocated float ring so adding a sample is O(1) and never allocates.
+ *
+ * Samples are added from the sample dispatcher thread and read by the UI thread
+ * once per display frame. When the window holds more samples than the chart has
+ * points, it is reduced with min/max decimation: each bucket contributes its
+ * minimum and maximum in time order, so pulse peaks and troughs survive.
+ */
+public final class PPGChartBuffer {
+
+    private final float[] values;
+    private int start = 0;
+    private int count = 0;
+    // Total samples ever added; positions are reported on this axis so the trace scrolls
+    private long added = 0;
+    private volatile long version = 0;
+
+    /**
+     * @param capacity Window length in samples
+     */
+    public PPGChartBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Window too short: " + capacity);
+        }
+        values = new float[capacity];
+    }
+
+    public synchronized void add(float value) {
+        if (count == values.length) {
+            values[start] = value;
+            start = (start + 1) % values.length;
+        } else {
+            values[(start + count) % values.length] = value;
+            count++;
+        }
+        added++;
+        version++;
+    }
+
+    public synchronized void clear() {
+        start = 0;
+        count = 0;
+        added = 0;
+        version++;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    /**
+     * Changes on every add or clear; lets the renderer skip frames with no new data
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Copy the window into the output arrays, min/max decimated to at most maxPoints.
+     * @param positions Receives each point's sample position (samples since the last clear)
+     * @param out Receives the point values
+     * @param maxPoints Point budget, at least 2; both arrays must hold this many
+     * @return Number of points written
+     */
+    public synchronized int read(float[] positions, float[] out, int maxPoints) {
+        long first = added - count;
+        if (count <= maxPoints) {
+            for (int i = 0; i < count; i++) {
+                positions[i] = first + i;
+                out[i] = values[(start + i) % values.length];
+            }
+            return count;
+        }
+
+        int buckets = maxPoints / 2;
+        int n = 0;
+        for (int b = 0; b < buckets; b++) {
+            int from = (int) ((long) b * count / buckets);
+            int to = (int) ((long) (b + 1) * count / buckets);
+            int minIndex = from;
+            int maxIndex = from;
+            float min = values[(start + from) % values.length];
+            float max = min;
+            for (int i = from + 1; i < to; i++) {
+                float v = values[(start + i) % values.length];
+                if (v < min) {
+                    min = v;
+                    minIndex = i;
+                } else if (v > max) {
+                    max = v;
+                    maxIndex = i;
+                }
+            }
+            // Emit in time order so the line does not fold back on itself
+            if (minIndex <= maxIndex) {
+                positions[n] = first + minIndex;
+                out[n++] = min;
+                positions[n] = first + maxIndex;
+                out[n++] = max;
+            } else {
+                positions[n] = first + maxIndex;
+                out[n++] = max;
+                positions[n] = first + minIndex;
+                out[n++] = min;
+            }
+        }
+        return n;
+    }
+}
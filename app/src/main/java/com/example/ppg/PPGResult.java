@@ -0,0 +1,71 @@
+package com.example.ppg;
+
+/**
+ * Analysis result pushed by the PPG server (field names match the server JSON)
+ */
+public class PPGResult {
+    public String status;
+    public int frame_count;
+    public double elapsed_time;
+    public RGBValues rgb_values;
+    public HeartRate heart_rate;
+    public Respiration respiration;
+    public SpO2 spo2;
+    public String error;
+    public double green_signal_value;  // Current green value
+    public double[] green_signal_history;  // Array of recent green values
+    public BPAnalysisResult bp_analysis_result;  // BP analysis result
+    
+    public static class RGBValues {
+        public double red;
+        public double green;
+        public double blue;
+        public int width;
+        public int height;
+    }
+    
+    public static class HeartRate {
+        public int heart_rate;
+        public int confidence;
+        public String method;
+        public String signal_quality;
+        public double hrv_rmssd;  // ms, 0 if not computed
+        public double hrv_sdnn;   // ms, 0 if not computed
+    }
+    
+    public static class Respiration {
+        public int respiration_rate;
+        public int confidence;
+    }
+    
+    public static class SpO2 {
+        public int spo2;
+        public int confidence;
+        public double ratio;
+    }
+    
+    public static class BPAnalysisResult {
+        public BPAnalysis bp_analysis;
+        public Interpretation interpretation;
+        public double collection_duration;
+        public int samples_collected;
+        public String model_version;
+        public String status;
+        
+        public static class BPAnalysis {
+            public float systolic_bp;      // Added systolic BP value
+            public float diastolic_bp;     // Added diastolic BP value
+            public String bp_category;
+            public int confidence;
+            public String quality;
+        }
+        
+        public static class Interpretation {
+            public String category;
+            public String description;
+            public String recommendation;
+            public String risk_level;      // Added risk level
+            public String[] details;
+        }
+    }
+}
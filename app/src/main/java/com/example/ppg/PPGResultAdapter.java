@@ -0,0 +1,265 @@
+package com.example.ppg;
+
+import com.example.ppg.api.JsonValues;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Streaming JSON binding for PPGResult, written out by hand so decoding a server
+ * result does not go through reflection or an intermediate JsonObject tree.
+ *
+ * Field names match the server JSON. Unknown fields are skipped, nulls leave the
+ * field at its default, and on writing primitives are always written while null
+ * objects are left out, the same output Gson's reflective adapter produces.
+ */
+public class PPGResultAdapter extends TypeAdapter<PPGResult> {
+
+    @Override
+    public PPGResult read(JsonReader in) throws IOException {
+        if (!JsonValues.hasValue(in)) {
+            return null;
+        }
+        PPGResult result = new PPGResult();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "status": result.status = JsonValues.nextString(in); break;
+                case "frame_count": result.frame_count = JsonValues.nextInt(in); break;
+                case "elapsed_time": result.elapsed_time = JsonValues.nextDouble(in); break;
+                case "rgb_values": result.rgb_values = readRgbValues(in); break;
+                case "heart_rate": result.heart_rate = readHeartRate(in); break;
+                case "respiration": result.respiration = readRespiration(in); break;
+                case "spo2": result.spo2 = readSpO2(in); break;
+                case "error": result.error = JsonValues.nextString(in); break;
+                case "green_signal_value": result.green_signal_value = JsonValues.nextDouble(in); break;
+                case "green_signal_history": result.green_signal_history = JsonValues.nextDoubleArray(in); break;
+                case "bp_analysis_result": result.bp_analysis_result = readBPAnalysisResult(in); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return result;
+    }
+
+    private static PPGResult.RGBValues readRgbValues(JsonReader in) throws IOException {
+        if (!JsonValues.hasValue(in)) {
+            return null;
+        }
+        PPGResult.RGBValues rgb = new PPGResult.RGBValues();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "red": rgb.red = JsonValues.nextDouble(in); break;
+                case "green": rgb.green = JsonValues.nextDouble(in); break;
+                case "blue": rgb.blue = JsonValues.nextDouble(in); break;
+                case "width": rgb.width = JsonValues.nextInt(in); break;
+                case "height": rgb.height = JsonValues.nextInt(in); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return rgb;
+    }
+
+    private static PPGResult.HeartRate readHeartRate(JsonReader in) throws IOException {
+        if (!JsonValues.hasValue(in)) {
+            return null;
+        }
+        PPGResult.HeartRate heartRate = new PPGResult.HeartRate();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "heart_rate": heartRate.heart_rate = JsonValues.nextInt(in); break;
+                case "confidence": heartRate.confidence = JsonValues.nextInt(in); break;
+                case "method": heartRate.method = JsonValues.nextString(in); break;
+                case "signal_quality": heartRate.signal_quality = JsonValues.nextString(in); break;
+                case "hrv_rmssd": heartRate.hrv_rmssd = JsonValues.nextDouble(in); break;
+                case "hrv_sdnn": heartRate.hrv_sdnn = JsonValues.nextDouble(in); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return heartRate;
+    }
+
+    private static PPGResult.Respiration readRespiration(JsonReader in) throws IOException {
+        if (!JsonValues.hasValue(in)) {
+            return null;
+        }
+        PPGResult.Respiration respiration = new PPGResult.Respiration();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "respiration_rate": respiration.respiration_rate = JsonValues.nextInt(in); break;
+                case "confidence": respiration.confidence = JsonValues.nextInt(in); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return respiration;
+    }
+
+    private static PPGResult.SpO2 readSpO2(JsonReader in) throws IOException {
+        if (!JsonValues.hasValue(in)) {
+            return null;
+        }
+        PPGResult.SpO2 spo2 = new PPGResult.SpO2();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "spo2": spo2.spo2 = JsonValues.nextInt(in); break;
+                case "confidence": spo2.confidence = JsonValues.nextInt(in); break;
+                case "ratio": spo2.ratio = JsonValues.nextDouble(in); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return spo2;
+    }
+
+    private static PPGResult.BPAnalysisResult readBPAnalysisResult(JsonReader in) throws IOException {
+        if (!JsonValues.hasValue(in)) {
+            return null;
+        }
+        PPGResult.BPAnalysisResult bpResult = new PPGResult.BPAnalysisResult();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "bp_analysis": bpResult.bp_analysis = readBPAnalysis(in); break;
+                case "interpretation": bpResult.interpretation = readInterpretation(in); break;
+                case "collection_duration": bpResult.collection_duration = JsonValues.nextDouble(in); break;
+                case "samples_collected": bpResult.samples_collected = JsonValues.nextInt(in); break;
+                case "model_version": bpResult.model_version = JsonValues.nextString(in); break;
+                case "status": bpResult.status = JsonValues.nextString(in); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return bpResult;
+    }
+
+    private static PPGResult.BPAnalysisResult.BPAnalysis readBPAnalysis(JsonReader in) throws IOException {
+        if (!JsonValues.hasValue(in)) {
+            return null;
+        }
+        PPGResult.BPAnalysisResult.BPAnalysis analysis = new PPGResult.BPAnalysisResult.BPAnalysis();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "systolic_bp": analysis.systolic_bp = (float) JsonValues.nextDouble(in); break;
+                case "diastolic_bp": analysis.diastolic_bp = (float) JsonValues.nextDouble(in); break;
+                case "bp_category": analysis.bp_category = JsonValues.nextString(in); break;
+                case "confidence": analysis.confidence = JsonValues.nextInt(in); break;
+                case "quality": analysis.quality = JsonValues.nextString(in); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return analysis;
+    }
+
+    private static PPGResult.BPAnalysisResult.Interpretation readInterpretation(JsonReader in) throws IOException {
+        if (!JsonValues.hasValue(in)) {
+            return null;
+        }
+        PPGResult.BPAnalysisResult.Interpretation interpretation = new PPGResult.BPAnalysisResult.Interpretation();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "category": interpretation.category = JsonValues.nextString(in); break;
+                case "description": interpretation.description = JsonValues.nextString(in); break;
+                case "recommendation": interpretation.recommendation = JsonValues.nextString(in); break;
+                case "risk_level": interpretation.risk_level = JsonValues.nextString(in); break;
+                case "details": interpretation.details = JsonValues.nextStringArray(in); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return interpretation;
+    }
+
+    @Override
+    public void write(JsonWriter out, PPGResult result) throws IOException {
+        if (result == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        JsonValues.write(out, "status", result.status);
+        out.name("frame_count").value(result.frame_count);
+        out.name("elapsed_time").value(result.elapsed_time);
+        if (result.rgb_values != null) {
+            PPGResult.RGBValues rgb = result.rgb_values;
+            out.name("rgb_values").beginObject();
+            out.name("red").value(rgb.red);
+            out.name("green").value(rgb.green);
+            out.name("blue").value(rgb.blue);
+            out.name("width").value(rgb.width);
+            out.name("height").value(rgb.height);
+            out.endObject();
+        }
+        if (result.heart_rate != null) {
+            PPGResult.HeartRate heartRate = result.heart_rate;
+            out.name("heart_rate").beginObject();
+            out.name("heart_rate").value(heartRate.heart_rate);
+            out.name("confidence").value(heartRate.confidence);
+            JsonValues.write(out, "method", heartRate.method);
+            JsonValues.write(out, "signal_quality", heartRate.signal_quality);
+            out.name("hrv_rmssd").value(heartRate.hrv_rmssd);
+            out.name("hrv_sdnn").value(heartRate.hrv_sdnn);
+            out.endObject();
+        }
+        if (result.respiration != null) {
+            out.name("respiration").beginObject();
+            out.name("respiration_rate").value(result.respiration.respiration_rate);
+            out.name("confidence").value(result.respiration.confidence);
+            out.endObject();
+        }
+        if (result.spo2 != null) {
+            out.name("spo2").beginObject();
+            out.name("spo2").value(result.spo2.spo2);
+            out.name("confidence").value(result.spo2.confidence);
+            out.name("ratio").value(result.spo2.ratio);
+            out.endObject();
+        }
+        JsonValues.write(out, "error", result.error);
+        out.name("green_signal_value").value(result.green_signal_value);
+        JsonValues.write(out, "green_signal_history", result.green_signal_history);
+        if (result.bp_analysis_result != null) {
+            writeBPAnalysisResult(out, result.bp_analysis_result);
+        }
+        out.endObject();
+    }
+
+    private static void writeBPAnalysisResult(JsonWriter out, PPGResult.BPAnalysisResult bpResult) throws IOException {
+        out.name("bp_analysis_result").beginObject();
+        if (bpResult.bp_analysis != null) {
+            PPGResult.BPAnalysisResult.BPAnalysis analysis = bpResult.bp_analysis;
+            out.name("bp_analysis").beginObject();
+            out.name("systolic_bp").value(analysis.systolic_bp);
+            out.name("diastolic_bp").value(analysis.diastolic_bp);
+            JsonValues.write(out, "bp_category", analysis.bp_category);
+            out.name("confidence").value(analysis.confidence);
+            JsonValues.write(out, "quality", analysis.quality);
+            out.endObject();
+        }
+        if (bpResult.interpretation != null) {
+            PPGResult.BPAnalysisResult.Interpretation interpretation = bpResult.interpretation;
+            out.name("interpretation").beginObject();
+            JsonValues.write(out, "category", interpretation.category);
+            JsonValues.write(out, "description", interpretation.description);
+            JsonValues.write(out, "recommendation", interpretation.recommendation);
+            JsonValues.write(out, "risk_level", interpretation.risk_level);
+            JsonValues.write(out, "details", interpretation.details);
+            out.endObject();
+        }
+        out.name("collection_duration").value(bpResult.collection_duration);
+        out.name("samples_collected").value(bpResult.samples_collected);
+        JsonValues.write(out, "model_version", bpResult.model_version);
+        JsonValues.write(out, "status", bpResult.status);
+        out.endObject();
+    }
+}
@@ -10,28 +10,77 @@ import android.util.Log;
 
 import androidx.camera.core.ImageProxy;
 
+import com.example.ppg.api.NetworkClient;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.WebSocket;
 import okhttp3.WebSocketListener;
+import okio.ByteString;
 
 import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
 import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class PPGWebSocketClient extends WebSocketListener {
+public class PPGWebSocketClient extends WebSocketListener implements SampleBatcher.Sink {
     private static final String TAG = "PPGWebSocketClient";
     private static final String SERVER_URL = "wss://renderr-jk83.onrender.com/ws"; // Updated Render server URL
+    // Replay as JSON if the server does not answer the hello within this time
+    private static final long HELLO_TIMEOUT_MILLIS = 2000;
+    private static final long UPLOAD_CHECK_INTERVAL_MILLIS = 1000;
     
-    private WebSocket webSocket;
+    // Read from the camera and sample dispatcher threads, written on OkHttp threads
+    private volatile WebSocket webSocket;
     private PPGResultListener listener;
     private Gson gson = new Gson();
-    private boolean isConnected = false;
-    private int frameCount = 0;
+    private volatile boolean isConnected = false;
+    // Sample sequence: advanced by the camera and dispatcher threads, zeroed on reset, read by the hello
+    private final AtomicInteger frameCount = new AtomicInteger();
+    
+    // Upload level follows the outgoing queue, never richer than the configured mode
+    private final AdaptiveUploadController uploadController = new AdaptiveUploadController();
+    private volatile AdaptiveUploadController.Level uploadLevel = AdaptiveUploadController.Level.FULL_FRAME;
+    private final AtomicLong bytesSent = new AtomicLong();
+    private ScheduledFuture<?> uploadCheck;
+    
+    // Set once the server accepts the binary protocol in its hello_ack, JSON until then
+    private volatile boolean binaryProtocol = false;
+    private final ByteBuffer samplePacket = PPGBinaryProtocol.allocate(PPGBinaryProtocol.SAMPLE_PACKET_SIZE);
+    private ByteBuffer batchPacket;
+    
+    // Channel-mean samples are grouped into one message per batch
+    private final SampleBatcher batcher = new SampleBatcher(this);
+    
+    // Session survives reconnects: the server matches it by ID and we replay what it has not acknowledged
+    private volatile String sessionId;
+    private volatile boolean closedByUser = true;
+    private volatile boolean resumed = false;
+    // Set once the replay after a (re)connect is done, samples are buffered until then
+    private volatile boolean sessionReady = false;
+    private final SampleReplayBuffer replayBuffer = new SampleReplayBuffer(SampleReplayBuffer.DEFAULT_CAPACITY);
+    private final SampleBatcher.Sink replaySink = this::sendBatch;
+    private final Object sendLock = new Object();
+    private final ReconnectBackoff backoff = new ReconnectBackoff();
+    private final ScheduledThreadPoolExecutor controlExecutor;
+    private ScheduledFuture<?> pendingReconnect;
+    
+    /**
+     * What the client uploads for each camera frame
+     */
+    public enum UploadMode {
+        FULL_FRAME,     // JPEG-compressed frame, server extracts the channels
+        ROI_CROP,       // JPEG of the ROI only, server extracts the channels
+        CHANNEL_MEANS   // Per-channel ROI means computed on the device
+    }
     
     public interface PPGResultListener {
         void onResult(PPGResult result);
@@ -39,89 +88,53 @@ public class PPGWebSocketClient extends WebSocketListener {
         void onConnectionChanged(boolean connected);
     }
     
-    public static class PPGResult {
-        public String status;
-        public int frame_count;
-        public double elapsed_time;
-        public RGBValues rgb_values;
-        public HeartRate heart_rate;
-        public Respiration respiration;
-        public SpO2 spo2;
-        public String error;
-        public double green_signal_value;  // Current green value
-        public double[] green_signal_history;  // Array of recent green values
-        public BPAnalysisResult bp_analysis_result;  // BP analysis result
-        
-        public static class RGBValues {
-            public double red;
-            public double green;
-            public double blue;
-            public int width;
-            public int height;
-        }
-        
-        public static class HeartRate {
-            public int heart_rate;
-            public int confidence;
-            public String method;
-            public String signal_quality;
-        }
-        
-        public static class Respiration {
-            public int respiration_rate;
-            public int confidence;
-        }
-        
-        public static class SpO2 {
-            public int spo2;
-            public int confidence;
-            public double ratio;
-        }
-        
-        public static class BPAnalysisResult {
-            public BPAnalysis bp_analysis;
-            public Interpretation interpretation;
-            public double collection_duration;
-            public int samples_collected;
-            public String model_version;
-            public String status;
-            
-            public static class BPAnalysis {
-                public float systolic_bp;      // Added systolic BP value
-                public float diastolic_bp;     // Added diastolic BP value
-                public String bp_category;
-                public int confidence;
-                public String quality;
-            }
-            
-            public static class Interpretation {
-                public String category;
-                public String description;
-                public String recommendation;
-                public String risk_level;      // Added risk level
-                public String[] details;
-            }
-        }
-    }
-    
     public PPGWebSocketClient(PPGResultListener listener) {
         this.listener = listener;
+        controlExecutor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "ws-control");
+            thread.setDaemon(true);
+            return thread;
+        });
+        controlExecutor.setKeepAliveTime(10, TimeUnit.SECONDS);
+        controlExecutor.allowCoreThreadTimeOut(true);
     }
     
+    /**
+     * Start a new session. Dropped connections are re-established until disconnect() is called.
+     */
     public void connect() {
+        synchronized (this) {
+            closedByUser = false;
+            resumed = false;
+            sessionId = UUID.randomUUID().toString();
+            replayBuffer.clear();
+            backoff.reset();
+            if (uploadCheck == null) {
+                uploadCheck = controlExecutor.scheduleWithFixedDelay(this::checkUploadRate,
+                        UPLOAD_CHECK_INTERVAL_MILLIS, UPLOAD_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+        openSocket();
+    }
+    
+    private synchronized void openSocket() {
+        if (closedByUser) {
+            return;
+        }
+        binaryProtocol = false;
+        sessionReady = false;
+        // A fresh socket has an empty queue and possibly a different link: start from the top
+        uploadController.reset();
+        applyUploadLevel(uploadController.getLevel());
+        bytesSent.set(0);
         try {
-            OkHttpClient client = new OkHttpClient.Builder()
-                    .connectTimeout(10, TimeUnit.SECONDS)
-                    .readTimeout(30, TimeUnit.SECONDS)
-                    .writeTimeout(30, TimeUnit.SECONDS)
-                    .build();
-            
             Request request = new Request.Builder()
                     .url(SERVER_URL)
                     .build();
             
-            webSocket = client.newWebSocket(request, this);
-            Log.d(TAG, "Attempting to connect to WebSocket server...");
+            // Shared client: pings keep the socket alive and reuse the prewarmed DNS and TLS state
+            webSocket = NetworkClient.get().newWebSocket(request, this);
+            Log.d(TAG, "Attempting to connect to WebSocket server (session " + sessionId + ")...");
             
         } catch (Exception e) {
             Log.e(TAG, "Error connecting to WebSocket: " + e.getMessage());
@@ -132,17 +145,109 @@ public class PPGWebSocketClient extends WebSocketListener {
     }
     
     public void disconnect() {
-        if (webSocket != null) {
-            webSocket.close(1000, "Disconnecting");
-            webSocket = null;
+        flushSamples();
+        synchronized (this) {
+            closedByUser = true;
+            if (pendingReconnect != null) {
+                pendingReconnect.cancel(false);
+                pendingReconnect = null;
+            }
+            if (uploadCheck != null) {
+                uploadCheck.cancel(false);
+                uploadCheck = null;
+                Log.i(TAG, "Upload summary: " + uploadController);
+            }
+            if (webSocket != null) {
+                webSocket.close(1000, "Disconnecting");
+                webSocket = null;
+            }
         }
         isConnected = false;
+        binaryProtocol = false;
+        sessionReady = false;
     }
     
     public boolean isConnected() {
         return isConnected;
     }
     
+    /**
+     * True while the connection is down and a reconnect is pending or in progress
+     */
+    public boolean isReconnecting() {
+        return !closedByUser && !isConnected && resumed;
+    }
+    
+    /**
+     * Samples waiting for the server's acknowledgement
+     */
+    public int getUnacknowledgedCount() {
+        return replayBuffer.size();
+    }
+    
+    public boolean isBinaryProtocol() {
+        return binaryProtocol;
+    }
+    
+    /**
+     * What is uploaded right now; may be leaner than the configured mode on a slow link
+     */
+    public UploadMode getUploadMode() {
+        return uploadLevel.mode;
+    }
+    
+    /**
+     * Set the richest payload to upload. The client falls back to leaner ones when the
+     * socket cannot keep up and returns once the link recovers.
+     */
+    public void setUploadMode(UploadMode uploadMode) {
+        uploadController.setCeiling(AdaptiveUploadController.Level.first(uploadMode));
+        applyUploadLevel(uploadController.getLevel());
+    }
+    
+    public AdaptiveUploadController.Level getUploadLevel() {
+        return uploadLevel;
+    }
+    
+    /**
+     * Queue and throughput measurements behind the current upload level
+     */
+    public AdaptiveUploadController getUploadController() {
+        return uploadController;
+    }
+    
+    /**
+     * Whether the camera frame with this number should be uploaded as an image
+     */
+    public boolean isFrameUploadDue(int frameNumber) {
+        AdaptiveUploadController.Level level = uploadLevel;
+        return level.mode != UploadMode.CHANNEL_MEANS && frameNumber % level.frameDecimation == 0;
+    }
+    
+    /**
+     * Configure how channel-mean samples are batched before upload
+     * @param maxSamples Samples per message, 1 sends every sample on its own
+     * @param maxLatencyMillis Longest a sample may wait for its batch to fill
+     */
+    public void setBatchPolicy(int maxSamples, long maxLatencyMillis) {
+        batcher.setPolicy(Math.min(maxSamples, PPGBinaryProtocol.MAX_BATCH_SAMPLES), maxLatencyMillis);
+    }
+    
+    public int getBatchSize() {
+        return batcher.getMaxSamples();
+    }
+    
+    public long getBatchLatencyMillis() {
+        return batcher.getMaxLatencyMillis();
+    }
+    
+    /**
+     * Send any samples still waiting in the current batch, e.g. at the end of a session
+     */
+    public void flushSamples() {
+        batcher.flush();
+    }
+    
     public void sendFrame(ImageProxy imageProxy) {
         if (!isConnected || webSocket == null) {
             Log.w(TAG, "WebSocket not connected, skipping frame");
@@ -150,8 +255,9 @@ public class PPGWebSocketClient extends WebSocketListener {
         }
         
         try {
-            // Convert ImageProxy to Base64 string
-            String frameData = imageProxyToBase64(imageProxy);
+            // Convert ImageProxy to Base64 string, only the ROI when the link is slow
+            boolean crop = uploadLevel.mode == UploadMode.ROI_CROP;
+            String frameData = imageProxyToBase64(imageProxy, crop);
             if (frameData == null) {
                 Log.e(TAG, "Failed to convert image to Base64");
                 return;
@@ -161,14 +267,21 @@ public class PPGWebSocketClient extends WebSocketListener {
             JsonObject message = new JsonObject();
             message.addProperty("type", "frame");
             message.addProperty("frame", frameData);
-            message.addProperty("timestamp", System.currentTimeMillis() / 1000.0);
-            message.addProperty("frame_count", ++frameCount);
+            // Sensor capture time in seconds (monotonic clock, not wall time)
+            message.addProperty("timestamp", imageProxy.getImageInfo().getTimestamp() / 1e9);
+            int sequence = frameCount.incrementAndGet();
+            message.addProperty("frame_count", sequence);
+            if (crop) {
+                message.addProperty("roi", true);
+            }
             
             // Send message
             String jsonMessage = gson.toJson(message);
-            webSocket.send(jsonMessage);
+            send(webSocket, jsonMessage);
             
-            Log.d(TAG, "Sent frame " + frameCount + " to server");
+            if (sequence % 30 == 0) {
+                Log.d(TAG, "Sent frame " + sequence + " to server");
+            }
             
         } catch (Exception e) {
             Log.e(TAG, "Error sending frame: " + e.getMessage());
@@ -178,19 +291,100 @@ public class PPGWebSocketClient extends WebSocketListener {
         }
     }
     
+    /**
+     * Queue the ROI channel means of one frame for upload instead of the frame itself
+     * @param red Mean red intensity
+     * @param green Mean green intensity
+     * @param blue Mean blue intensity
+     * @param timestampNanos Capture time of the frame in nanoseconds
+     */
+    public void sendChannelMeans(double red, double green, double blue, long timestampNanos) {
+        if (closedByUser) {
+            return;
+        }
+        // Kept while reconnecting too, the replay buffer resends them once the session is back
+        batcher.add(frameCount.incrementAndGet(), timestampNanos, (float) red, (float) green, (float) blue);
+    }
+    
+    @Override
+    public void onBatch(int firstSequence, int count, long[] timestampsNanos,
+                        float[] red, float[] green, float[] blue) {
+        synchronized (sendLock) {
+            replayBuffer.add(firstSequence, count, timestampsNanos, red, green, blue);
+            if (sessionReady) {
+                sendBatch(firstSequence, count, timestampsNanos, red, green, blue);
+            }
+        }
+    }
+    
+    private void sendBatch(int firstSequence, int count, long[] timestampsNanos,
+                           float[] red, float[] green, float[] blue) {
+        WebSocket socket = webSocket;
+        if (!isConnected || socket == null) {
+            return;
+        }
+        
+        try {
+            if (binaryProtocol) {
+                if (count == 1) {
+                    samplePacket.clear();
+                    int size = PPGBinaryProtocol.encodeSample(samplePacket, firstSequence, timestampsNanos[0],
+                            red[0], green[0], blue[0]);
+                    send(socket, ByteString.of(samplePacket.array(), 0, size));
+                    return;
+                }
+                int capacity = PPGBinaryProtocol.sampleBatchSize(count);
+                if (batchPacket == null || batchPacket.capacity() < capacity) {
+                    batchPacket = PPGBinaryProtocol.allocate(capacity);
+                }
+                batchPacket.clear();
+                int size = PPGBinaryProtocol.encodeSampleBatch(batchPacket, firstSequence, count,
+                        timestampsNanos, red, green, blue);
+                send(socket, ByteString.of(batchPacket.array(), 0, size));
+                return;
+            }
+            
+            // JSON fallback: one message per batch, samples as [frame_count, timestamp, red, green, blue]
+            JsonArray samples = new JsonArray();
+            for (int i = 0; i < count; i++) {
+                JsonArray sample = new JsonArray();
+                sample.add(firstSequence + i);
+                sample.add(timestampsNanos[i] / 1e9);
+                sample.add(red[i]);
+                sample.add(green[i]);
+                sample.add(blue[i]);
+                samples.add(sample);
+            }
+            JsonObject message = new JsonObject();
+            message.addProperty("type", "channel_means_batch");
+            message.add("samples", samples);
+            
+            send(socket, gson.toJson(message));
+            
+        } catch (Exception e) {
+            Log.e(TAG, "Error sending sample batch: " + e.getMessage());
+            if (listener != null) {
+                listener.onError("Failed to send samples: " + e.getMessage());
+            }
+        }
+    }
+    
     public void reset() {
         if (!isConnected || webSocket == null) {
             return;
         }
         
         try {
+            flushSamples();
+            
             JsonObject message = new JsonObject();
             message.addProperty("type", "reset");
             message.addProperty("timestamp", System.currentTimeMillis() / 1000.0);
             
             String jsonMessage = gson.toJson(message);
-            webSocket.send(jsonMessage);
-            frameCount = 0;
+            send(webSocket, jsonMessage);
+            frameCount.set(0);
+            replayBuffer.clear();
             
             Log.d(TAG, "Sent reset command to server");
             
@@ -206,11 +400,15 @@ public class PPGWebSocketClient extends WebSocketListener {
         }
         
         try {
+            flushSamples();
+            
             JsonObject resetMessage = new JsonObject();
             resetMessage.addProperty("type", "reset");
             
             String jsonMessage = gson.toJson(resetMessage);
-            webSocket.send(jsonMessage);
+            send(webSocket, jsonMessage);
+            // The server starts over, samples from before the reset must not be replayed
+            replayBuffer.clear();
             Log.d(TAG, "Sent reset signal to server");
             
         } catch (Exception e) {
@@ -218,7 +416,7 @@ public class PPGWebSocketClient extends WebSocketListener {
         }
     }
     
-    private String imageProxyToBase64(ImageProxy imageProxy) {
+    private String imageProxyToBase64(ImageProxy imageProxy, boolean cropToRoi) {
         try {
             // Get the image
             ImageProxy.PlaneProxy[] planes = imageProxy.getPlanes();
@@ -261,9 +459,14 @@ public class PPGWebSocketClient extends WebSocketListener {
             YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, 
                                            imageProxy.getWidth(), imageProxy.getHeight(), null);
             
+            // The ROI crop is the centre half the channel means are taken from, a quarter of the pixels
+            int width = imageProxy.getWidth();
+            int height = imageProxy.getHeight();
+            Rect region = cropToRoi
+                    ? new Rect((width / 4) & ~1, (height / 4) & ~1, (width * 3 / 4) & ~1, (height * 3 / 4) & ~1)
+                    : new Rect(0, 0, width, height);
             ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            yuvImage.compressToJpeg(new Rect(0, 0, imageProxy.getWidth(), imageProxy.getHeight()), 
-                                  80, outputStream);
+            yuvImage.compressToJpeg(region, 80, outputStream);
             
             byte[] jpegData = outputStream.toByteArray();
             
@@ -278,8 +481,13 @@ public class PPGWebSocketClient extends WebSocketListener {
     
     @Override
     public void onOpen(WebSocket webSocket, Response response) {
-        Log.d(TAG, "WebSocket connected successfully");
+        if (webSocket != this.webSocket) {
+            return;
+        }
+        Log.d(TAG, "WebSocket connected successfully" + (resumed ? ", resuming session " + sessionId : ""));
         isConnected = true;
+        sendHello(webSocket);
+        controlExecutor.schedule(() -> startSession(webSocket, -1), HELLO_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
         if (listener != null) {
             listener.onConnectionChanged(true);
         }
@@ -288,26 +496,40 @@ public class PPGWebSocketClient extends WebSocketListener {
     @Override
     public void onMessage(WebSocket webSocket, String text) {
         try {
-            Log.d(TAG, "Received message from server: " + text.substring(0, Math.min(100, text.length())));
-            
-            JsonObject response = gson.fromJson(text, JsonObject.class);
-            String type = response.get("type").getAsString();
+            // One streaming pass; no JsonObject tree, no reflection
+            ServerMessage message = ServerMessage.read(new StringReader(text));
+            String type = message.type;
             
-            if ("result".equals(type)) {
-                JsonObject data = response.getAsJsonObject("data");
-                PPGResult result = gson.fromJson(data, PPGResult.class);
+            if (ServerMessage.TYPE_RESULT.equals(type)) {
+                PPGResult result = message.data;
+                // A JSON result's frame_count is not a sample sequence; receipt is confirmed
+                // by ack and hello_ack, or by the sequence in a binary result
+                if (result == null) {
+                    return;
+                }
                 
                 if (listener != null) {
                     listener.onResult(result);
                 }
-            } else if ("error".equals(type)) {
-                String error = response.get("error").getAsString();
-                Log.e(TAG, "Server error: " + error);
+            } else if (ServerMessage.TYPE_ERROR.equals(type)) {
+                Log.e(TAG, "Server error: " + message.error);
                 if (listener != null) {
-                    listener.onError("Server error: " + error);
+                    listener.onError("Server error: " + message.error);
                 }
-            } else if ("reset_ack".equals(type)) {
+            } else if (ServerMessage.TYPE_RESET_ACK.equals(type)) {
                 Log.d(TAG, "Reset acknowledged by server");
+            } else if (ServerMessage.TYPE_ACK.equals(type)) {
+                acknowledge(message.sequence);
+            } else if (ServerMessage.TYPE_HELLO_ACK.equals(type)) {
+                if (webSocket != this.webSocket || sessionReady) {
+                    return;
+                }
+                binaryProtocol = PPGBinaryProtocol.NAME.equals(message.protocol)
+                        && message.version == PPGBinaryProtocol.VERSION;
+                Log.d(TAG, "Server protocol: " + (binaryProtocol ? "binary v" + PPGBinaryProtocol.VERSION : "json"));
+                startSession(webSocket, message.ackedSequence);
+            } else {
+                Log.d(TAG, "Ignoring server message of type " + type);
             }
             
         } catch (Exception e) {
@@ -319,30 +541,166 @@ public class PPGWebSocketClient extends WebSocketListener {
     }
     
     @Override
-    public void onFailure(WebSocket webSocket, Throwable t, Response response) {
-        Log.e(TAG, "WebSocket connection failed: " + t.getMessage());
+    public void onMessage(WebSocket webSocket, ByteString bytes) {
+        try {
+            ByteBuffer buffer = bytes.asByteBuffer();
+            int type = PPGBinaryProtocol.peekType(buffer);
+            
+            if (type == PPGBinaryProtocol.TYPE_RESULT) {
+                PPGResult result = PPGBinaryProtocol.decodeResult(buffer);
+                acknowledge(result.frame_count);
+                if (listener != null) {
+                    listener.onResult(result);
+                }
+            } else {
+                Log.w(TAG, "Ignoring binary message of type " + type);
+            }
+            
+        } catch (Exception e) {
+            Log.e(TAG, "Error parsing binary server response: " + e.getMessage());
+            if (listener != null) {
+                listener.onError("Failed to parse server response: " + e.getMessage());
+            }
+        }
+    }
+    
+    // Offer the binary protocol, the server answers with hello_ack naming the one it picked
+    // and, for a resumed session, the last sample sequence it already has
+    private void sendHello(WebSocket webSocket) {
+        JsonObject hello = new JsonObject();
+        hello.addProperty("type", "hello");
+        hello.addProperty("protocol", PPGBinaryProtocol.NAME);
+        hello.addProperty("version", PPGBinaryProtocol.VERSION);
+        hello.addProperty("fallback", "json");
+        hello.addProperty("session_id", sessionId);
+        hello.addProperty("resume", resumed);
+        hello.addProperty("last_sequence", frameCount.get());
+        send(webSocket, gson.toJson(hello));
+    }
+    
+    // Resend everything the server has not acknowledged, then let live samples through
+    private void startSession(WebSocket webSocket, int ackedSequence) {
+        synchronized (sendLock) {
+            if (webSocket != this.webSocket || !isConnected || sessionReady) {
+                return;
+            }
+            if (ackedSequence >= 0) {
+                replayBuffer.acknowledge(ackedSequence);
+            }
+            int replayed = replayBuffer.replay(replaySink, PPGBinaryProtocol.MAX_BATCH_SAMPLES);
+            sessionReady = true;
+            if (replayed > 0) {
+                Log.d(TAG, "Replayed " + replayed + " unacknowledged samples");
+            }
+        }
+        backoff.reset();
+    }
+    
+    private void acknowledge(int sequence) {
+        if (sequence > 0) {
+            replayBuffer.acknowledge(sequence);
+        }
+    }
+    
+    // Count every message so the upload controller can tell queued bytes from drained ones
+    private void send(WebSocket socket, String text) {
+        if (socket.send(text)) {
+            // OkHttp queues the UTF-8 size; the JSON we send is ASCII
+            bytesSent.addAndGet(text.length());
+        }
+    }
+    
+    private void send(WebSocket socket, ByteString bytes) {
+        if (socket.send(bytes)) {
+            bytesSent.addAndGet(bytes.size());
+        }
+    }
+    
+    // Runs on the control thread once a second while a session is open
+    private void checkUploadRate() {
+        WebSocket socket = webSocket;
+        if (!isConnected || socket == null) {
+            return;
+        }
+        AdaptiveUploadController.Level previous = uploadLevel;
+        AdaptiveUploadController.Level level = uploadController.update(System.nanoTime(),
+                socket.queueSize(), bytesSent.get());
+        if (level != previous) {
+            Log.i(TAG, "Upload level " + previous + " -> " + uploadController);
+            applyUploadLevel(level);
+        }
+    }
+    
+    private void applyUploadLevel(AdaptiveUploadController.Level level) {
+        AdaptiveUploadController.Level previous = uploadLevel;
+        uploadLevel = level;
+        if (level.mode == UploadMode.CHANNEL_MEANS) {
+            if (previous.mode != UploadMode.CHANNEL_MEANS || previous.batchSamples != level.batchSamples
+                    || previous.batchLatencyMillis != level.batchLatencyMillis) {
+                setBatchPolicy(level.batchSamples, level.batchLatencyMillis);
+            }
+        } else {
+            // Images carry the signal from here on
+            flushSamples();
+        }
+    }
+    
+    // Unless disconnect() was called, try again after a jittered, growing delay
+    private synchronized void scheduleReconnect() {
+        if (closedByUser || (pendingReconnect != null && !pendingReconnect.isDone())) {
+            return;
+        }
+        resumed = true;
+        long delay = backoff.nextDelayMillis();
+        Log.d(TAG, "Reconnecting in " + delay + " ms (attempt " + backoff.getAttempt() + ")");
+        pendingReconnect = controlExecutor.schedule(this::openSocket, delay, TimeUnit.MILLISECONDS);
+    }
+    
+    // Forget the dropped socket and tell the listener once per outage
+    private void connectionLost(WebSocket webSocket, String error) {
+        synchronized (this) {
+            if (webSocket != this.webSocket) {
+                return;
+            }
+            this.webSocket = null;
+        }
+        boolean wasConnected = isConnected;
+        boolean firstFailure = backoff.getAttempt() == 0;
         isConnected = false;
+        sessionReady = false;
+        scheduleReconnect();
         if (listener != null) {
-            listener.onConnectionChanged(false);
-            listener.onError("Connection failed: " + t.getMessage());
+            if (wasConnected || firstFailure) {
+                listener.onConnectionChanged(false);
+            }
+            if (error != null && firstFailure) {
+                listener.onError("Connection failed: " + error + (closedByUser ? "" : ", reconnecting"));
+            }
         }
     }
     
+    @Override
+    public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+        Log.e(TAG, "WebSocket connection failed: " + t.getMessage());
+        connectionLost(webSocket, t.getMessage());
+    }
+    
     @Override
     public void onClosing(WebSocket webSocket, int code, String reason) {
         Log.d(TAG, "WebSocket closing: " + reason);
-        isConnected = false;
-        if (listener != null) {
-            listener.onConnectionChanged(false);
+        webSocket.close(code, null);
+        synchronized (this) {
+            if (code == 1000 && webSocket == this.webSocket) {
+                // Normal closure from the server: the session is over, do not come back
+                closedByUser = true;
+            }
         }
+        connectionLost(webSocket, null);
     }
     
     @Override
     public void onClosed(WebSocket webSocket, int code, String reason) {
         Log.d(TAG, "WebSocket closed: " + reason);
-        isConnected = false;
-        if (listener != null) {
-            listener.onConnectionChanged(false);
-        }
+        connectionLost(webSocket, null);
     }
 }
@@ -0,0 +1,56 @@
+package com.example.ppg;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Jittered exponential backoff between reconnect attempts.
+ *
+ * The ceiling doubles with every attempt from baseMillis up to maxMillis, and each
+ * delay is drawn uniformly from the upper half of it, so clients that lost the same
+ * access point do not all come back at the same instant.
+ */
+public class ReconnectBackoff {
+
+    public static final long DEFAULT_BASE_MILLIS = 500;
+    public static final long DEFAULT_MAX_MILLIS = 15_000;
+
+    private final long baseMillis;
+    private final long maxMillis;
+    private int attempt = 0;
+
+    public ReconnectBackoff() {
+        this(DEFAULT_BASE_MILLIS, DEFAULT_MAX_MILLIS);
+    }
+
+    public ReconnectBackoff(long baseMillis, long maxMillis) {
+        if (baseMillis < 1 || maxMillis < baseMillis) {
+            throw new IllegalArgumentException("Invalid backoff: " + baseMillis + "ms / " + maxMillis + "ms");
+        }
+        this.baseMillis = baseMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * Delay before the next attempt; advances the attempt counter
+     */
+    public synchronized long nextDelayMillis() {
+        long ceiling = attempt >= 30 ? maxMillis : Math.min(maxMillis, baseMillis << attempt);
+        attempt++;
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+    }
+
+    /**
+     * Attempts made since the last successful connection
+     */
+    public synchronized int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * Start over from the base delay, e.g. once a connection succeeded
+     */
+    public synchronized void reset() {
+        attempt = 0;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.ppg;
+
+import androidx.camera.core.ImageProxy;
+
+/**
+ * Reduces camera frames to per-channel means over a region of interest
+ * so only a few numbers per frame have to leave the device
+ */
+public class RoiSampler {
+
+    // ROI as fractions of the frame, defaults to the centre half where the fingertip sits
+    private float roiLeft = 0.25f;
+    private float roiTop = 0.25f;
+    private float roiRight = 0.75f;
+    private float roiBottom = 0.75f;
+    private boolean computeVariance = false;
+
+    /**
+     * Set the region of interest as fractions (0..1) of the frame width and height
+     */
+    public void setRoi(float left, float top, float right, float bottom) {
+        if (left < 0f || top < 0f || right > 1f || bottom > 1f || left >= right || top >= bottom) {
+            throw new IllegalArgumentException("Invalid ROI: " + left + "," + top + "," + right + "," + bottom);
+        }
+        roiLeft = left;
+        roiTop = top;
+        roiRight = right;
+        roiBottom = bottom;
+    }
+
+    /**
+     * Also compute per-channel variance over the ROI (costs one multiply-add per channel and pixel)
+     */
+    public void setComputeVariance(boolean computeVariance) {
+        this.computeVariance = computeVariance;
+    }
+
+    /**
+     * Compute red, green and blue statistics over the ROI of a YUV_420_888 frame
+     * @param image Camera frame, not closed by this method
+     * @param out Receives the statistics, reused between frames
+     * @return true if the frame could be sampled
+     */
+    public boolean sample(ImageProxy image, ImageProcessing.ChannelStats out) {
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        if (planes.length < 3) {
+            return false;
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        // Align to even coordinates so each ROI pixel maps onto a whole chroma sample
+        int left = (int) (width * roiLeft) & ~1;
+        int top = (int) (height * roiTop) & ~1;
+        int right = (int) (width * roiRight) & ~1;
+        int bottom = (int) (height * roiBottom) & ~1;
+
+        ImageProxy.PlaneProxy yPlane = planes[0];
+        ImageProxy.PlaneProxy uPlane = planes[1];
+        ImageProxy.PlaneProxy vPlane = planes[2];
+
+        ImageProcessing.decodeYUV420PlanesToChannelStats(
+                yPlane.getBuffer(), yPlane.getRowStride(), yPlane.getPixelStride(),
+                uPlane.getBuffer(), vPlane.getBuffer(),
+                uPlane.getRowStride(), uPlane.getPixelStride(),
+                left, top, right, bottom, computeVariance, out);
+        return out.pixelCount > 0;
+    }
+
+    /**
+     * Downscale the ROI of a YUV_420_888 frame to a tileWidth x tileHeight RGB tile
+     * @param image Camera frame, not closed by this method
+     * @param out Receives tileWidth * tileHeight RGB triples, reused between frames
+     * @return true if the frame could be sampled
+     */
+    public boolean sampleTile(ImageProxy image, int tileWidth, int tileHeight, byte[] out) {
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        if (planes.length < 3) {
+            return false;
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int left = (int) (width * roiLeft) & ~1;
+        int top = (int) (height * roiTop) & ~1;
+        int right = (int) (width * roiRight) & ~1;
+        int bottom = (int) (height * roiBottom) & ~1;
+
+        ImageProxy.PlaneProxy yPlane = planes[0];
+        ImageProxy.PlaneProxy uPlane = planes[1];
+        ImageProxy.PlaneProxy vPlane = planes[2];
+
+        ImageProcessing.downscaleYUV420PlanesToRgbTile(
+                yPlane.getBuffer(), yPlane.getRowStride(), yPlane.getPixelStride(),
+                uPlane.getBuffer(), vPlane.getBuffer(),
+                uPlane.getRowStride(), uPlane.getPixelStride(),
+                left, top, right, bottom, tileWidth, tileHeight, out);
+        return right > left && bottom > top;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.ppg;
+
+/**
+ * Collects channel-mean samples and hands them on in batches, so the socket sees
+ * one message per batch instead of one per frame.
+ *
+ * A batch is flushed when it holds maxSamples samples, when the oldest sample in it
+ * is maxLatencyMillis old (checked as samples arrive), or when flush() is called.
+ * Storage is preallocated; adding a sample does not allocate.
+ */
+public class SampleBatcher {
+
+    public static final int DEFAULT_MAX_SAMPLES = 10;       // ~1/3 s at 30 FPS
+    public static final long DEFAULT_MAX_LATENCY_MILLIS = 250;
+
+    /**
+     * Receives full batches. The arrays are reused after the call returns.
+     */
+    public interface Sink {
+        void onBatch(int firstSequence, int count, long[] timestampsNanos,
+                     float[] red, float[] green, float[] blue);
+    }
+
+    private final Sink sink;
+    private int maxSamples;
+    private long maxLatencyNanos;
+
+    private long[] timestamps;
+    private float[] red;
+    private float[] green;
+    private float[] blue;
+    private int count = 0;
+    private int firstSequence = 0;
+
+    public SampleBatcher(Sink sink) {
+        this.sink = sink;
+        setPolicy(DEFAULT_MAX_SAMPLES, DEFAULT_MAX_LATENCY_MILLIS);
+    }
+
+    /**
+     * Change the flush policy. Pending samples are flushed first.
+     * @param maxSamples Samples per batch, 1 disables batching
+     * @param maxLatencyMillis Maximum age of the oldest sample in a batch
+     */
+    public synchronized void setPolicy(int maxSamples, long maxLatencyMillis) {
+        if (maxSamples < 1 || maxLatencyMillis < 0) {
+            throw new IllegalArgumentException("Invalid batch policy: " + maxSamples + " / " + maxLatencyMillis + "ms");
+        }
+        flush();
+        this.maxSamples = maxSamples;
+        this.maxLatencyNanos = maxLatencyMillis * 1_000_000L;
+        timestamps = new long[maxSamples];
+        red = new float[maxSamples];
+        green = new float[maxSamples];
+        blue = new float[maxSamples];
+    }
+
+    public synchronized int getMaxSamples() {
+        return maxSamples;
+    }
+
+    public synchronized long getMaxLatencyMillis() {
+        return maxLatencyNanos / 1_000_000L;
+    }
+
+    /**
+     * Queue one sample, flushing if the batch is full or old enough
+     */
+    public synchronized void add(int sequence, long timestampNanos, float r, float g, float b) {
+        if (count == 0) {
+            firstSequence = sequence;
+        }
+        timestamps[count] = timestampNanos;
+        red[count] = r;
+        green[count] = g;
+        blue[count] = b;
+        count++;
+
+        if (count >= maxSamples || timestampNanos - timestamps[0] >= maxLatencyNanos) {
+            flush();
+        }
+    }
+
+    /**
+     * Hand any pending samples to the sink
+     */
+    public synchronized void flush() {
+        if (count == 0) {
+            return;
+        }
+        sink.onBatch(firstSequence, count, timestamps, red, green, blue);
+        count = 0;
+    }
+
+    /**
+     * Drop pending samples without sending them
+     */
+    public synchronized void clear() {
+        count = 0;
+    }
+}
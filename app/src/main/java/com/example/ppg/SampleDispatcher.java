@@ -0,0 +1,166 @@
+package com.example.ppg;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drains the camera sample ring on its own thread and feeds each registered
+ * consumer (uploader, on-device DSP, chart) at that consumer's own rate.
+ *
+ * Consumers run on the dispatcher thread only, so their state needs no locking.
+ * A consumer that is slow holds up the dispatcher, never the camera: the ring
+ * absorbs the backlog and drops samples only when it is completely full.
+ * A consumer that throws loses that sample only; the others still get it and the
+ * ring keeps draining.
+ */
+public class SampleDispatcher implements Runnable, SampleRingBuffer.Consumer {
+
+    private static final String TAG = "SampleDispatcher";
+    private static final int DRAIN_BATCH = 64;
+    // Upper bound on how long the thread sleeps if a wake-up is missed
+    private static final long IDLE_PARK_NANOS = 5_000_000L;
+    // A consumer failing on every sample is logged once, then once per this many failures
+    private static final int FAILURE_LOG_INTERVAL = 1000;
+
+    /**
+     * A downstream stage fed from the dispatcher thread
+     */
+    public interface Consumer extends SampleRingBuffer.Consumer {
+        /**
+         * Called on the dispatcher thread when a new measurement starts
+         */
+        default void onReset() {}
+    }
+
+    private final SampleRingBuffer ring;
+    private final List<Consumer> pending = new ArrayList<>();
+    private final List<Long> pendingIntervals = new ArrayList<>();
+    private Consumer[] consumers = new Consumer[0];
+    private long[] minIntervals = new long[0];
+    private long[] lastDelivered = new long[0];
+    private long[] failures = new long[0];
+
+    private volatile Thread thread;
+    private volatile boolean running = false;
+    private volatile boolean resetRequested = false;
+
+    public SampleDispatcher(SampleRingBuffer ring) {
+        this.ring = ring;
+    }
+
+    /**
+     * Register a consumer fed with every sample. Call before start().
+     */
+    public void addConsumer(Consumer consumer) {
+        addConsumer(consumer, 0);
+    }
+
+    /**
+     * Register a consumer fed at most once per minIntervalNanos of sample time;
+     * samples in between are skipped for that consumer only. Call before start().
+     */
+    public void addConsumer(Consumer consumer, long minIntervalNanos) {
+        if (running) {
+            throw new IllegalStateException("Consumers must be added before start()");
+        }
+        pending.add(consumer);
+        pendingIntervals.add(minIntervalNanos);
+    }
+
+    public void start() {
+        if (running) {
+            return;
+        }
+        int n = pending.size();
+        consumers = pending.toArray(new Consumer[0]);
+        minIntervals = new long[n];
+        lastDelivered = new long[n];
+        failures = new long[n];
+        for (int i = 0; i < n; i++) {
+            minIntervals[i] = pendingIntervals.get(i);
+            lastDelivered[i] = Long.MIN_VALUE;
+        }
+        running = true;
+        Thread t = new Thread(this, "ppg-sample-dispatcher");
+        t.setPriority(Thread.NORM_PRIORITY + 1);
+        thread = t;
+        t.start();
+    }
+
+    public void stop() {
+        running = false;
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+        thread = null;
+    }
+
+    /**
+     * Wake the dispatcher after offering samples. Safe from any thread.
+     */
+    public void signal() {
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    /**
+     * Ask every consumer to reset before the next sample is delivered
+     */
+    public void requestReset() {
+        resetRequested = true;
+        signal();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            if (resetRequested) {
+                resetRequested = false;
+                for (int i = 0; i < consumers.length; i++) {
+                    lastDelivered[i] = Long.MIN_VALUE;
+                    try {
+                        consumers[i].onReset();
+                    } catch (RuntimeException e) {
+                        onConsumerFailed(i, e);
+                    }
+                }
+            }
+            // Consumer failures are caught per sample, so every drained sample is released
+            if (ring.drain(this, DRAIN_BATCH) == 0) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    @Override
+    public void onSample(long timestampNanos, float red, float green, float blue) {
+        for (int i = 0; i < consumers.length; i++) {
+            if (minIntervals[i] > 0 && lastDelivered[i] != Long.MIN_VALUE
+                    && timestampNanos - lastDelivered[i] < minIntervals[i]) {
+                continue;
+            }
+            lastDelivered[i] = timestampNanos;
+            try {
+                consumers[i].onSample(timestampNanos, red, green, blue);
+            } catch (RuntimeException e) {
+                onConsumerFailed(i, e);
+            }
+        }
+    }
+
+    private void onConsumerFailed(int index, RuntimeException e) {
+        long count = ++failures[index];
+        if (count == 1) {
+            Log.e(TAG, "Sample consumer " + consumers[index].getClass().getSimpleName() + " failed", e);
+        } else if (count % FAILURE_LOG_INTERVAL == 0) {
+            Log.e(TAG, "Sample consumer " + consumers[index].getClass().getSimpleName() + " failed "
+                    + count + " times, last: " + e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.ppg;
+
+/**
+ * Bounded ring of sequence-numbered channel-mean samples the server has not
+ * acknowledged yet, stored in preallocated primitive arrays.
+ *
+ * Every uploaded sample is recorded here before it is sent and stays until the server
+ * acknowledges its sequence number. After a reconnect the remaining samples are handed
+ * out again in sequence order. When the ring is full the oldest sample is overwritten
+ * and counted, so a long outage loses the start of the gap rather than the live signal.
+ */
+public final class SampleReplayBuffer {
+
+    public static final int DEFAULT_CAPACITY = 4096;   // ~2 min at 30 FPS
+    private static final int REPLAY_BATCH = 256;
+
+    private final int capacity;
+    private final int mask;
+    private final int[] sequences;
+    private final long[] timestamps;
+    private final float[] red;
+    private final float[] green;
+    private final float[] blue;
+    private long head = 0;
+    private long tail = 0;
+    private long overwrittenCount = 0;
+
+    // Contiguous runs are copied here so the sink sees arrays starting at index 0
+    private final long[] replayTimestamps = new long[REPLAY_BATCH];
+    private final float[] replayRed = new float[REPLAY_BATCH];
+    private final float[] replayGreen = new float[REPLAY_BATCH];
+    private final float[] replayBlue = new float[REPLAY_BATCH];
+
+    /**
+     * @param capacity Number of samples, rounded up to a power of two
+     */
+    public SampleReplayBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity too small: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        sequences = new int[size];
+        timestamps = new long[size];
+        red = new float[size];
+        green = new float[size];
+        blue = new float[size];
+    }
+
+    /**
+     * Record a batch of consecutive samples starting at firstSequence
+     */
+    public synchronized void add(int firstSequence, int count, long[] timestampsNanos,
+                                 float[] r, float[] g, float[] b) {
+        for (int n = 0; n < count; n++) {
+            if (head - tail >= capacity) {
+                tail++;
+                overwrittenCount++;
+            }
+            int i = (int) head & mask;
+            sequences[i] = firstSequence + n;
+            timestamps[i] = timestampsNanos[n];
+            red[i] = r[n];
+            green[i] = g[n];
+            blue[i] = b[n];
+            head++;
+        }
+    }
+
+    /**
+     * Drop every sample up to and including the given sequence number
+     * @return Number of samples released
+     */
+    public synchronized int acknowledge(int sequence) {
+        long start = tail;
+        while (tail < head && sequences[(int) tail & mask] <= sequence) {
+            tail++;
+        }
+        return (int) (tail - start);
+    }
+
+    /**
+     * Hand every unacknowledged sample to the sink in order, in batches of consecutive
+     * sequence numbers. The samples stay buffered until they are acknowledged.
+     * @param maxBatch Largest batch passed to the sink
+     * @return Number of samples replayed
+     */
+    public synchronized int replay(SampleBatcher.Sink sink, int maxBatch) {
+        int limit = Math.max(1, Math.min(maxBatch, REPLAY_BATCH));
+        int count = 0;
+        int firstSequence = 0;
+        for (long p = tail; p < head; p++) {
+            int i = (int) p & mask;
+            if (count == limit || (count > 0 && sequences[i] != firstSequence + count)) {
+                sink.onBatch(firstSequence, count, replayTimestamps, replayRed, replayGreen, replayBlue);
+                count = 0;
+            }
+            if (count == 0) {
+                firstSequence = sequences[i];
+            }
+            replayTimestamps[count] = timestamps[i];
+            replayRed[count] = red[i];
+            replayGreen[count] = green[i];
+            replayBlue[count] = blue[i];
+            count++;
+        }
+        if (count > 0) {
+            sink.onBatch(firstSequence, count, replayTimestamps, replayRed, replayGreen, replayBlue);
+        }
+        return (int) (head - tail);
+    }
+
+    public synchronized void clear() {
+        tail = head;
+    }
+
+    public synchronized int size() {
+        return (int) (head - tail);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Unacknowledged samples lost because the ring was full
+     */
+    public synchronized long getOverwrittenCount() {
+        return overwrittenCount;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.ppg;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring of (timestamp, red, green, blue)
+ * samples, stored in preallocated primitive arrays.
+ *
+ * The camera analyzer thread is the only producer and the sample dispatcher thread
+ * the only consumer. offer() never blocks: when the consumer has fallen a whole
+ * ring behind the sample is dropped and counted instead of stalling the camera.
+ */
+public final class SampleRingBuffer {
+
+    /**
+     * Receives drained samples on the consumer thread
+     */
+    public interface Consumer {
+        void onSample(long timestampNanos, float red, float green, float blue);
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final long[] timestamps;
+    private final float[] red;
+    private final float[] green;
+    private final float[] blue;
+
+    // Next slot to write (owned by the producer) and to read (owned by the consumer)
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long droppedCount = 0;
+
+    /**
+     * @param capacity Number of samples, rounded up to a power of two
+     */
+    public SampleRingBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity too small: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        timestamps = new long[size];
+        red = new float[size];
+        green = new float[size];
+        blue = new float[size];
+    }
+
+    /**
+     * Publish one sample. Producer thread only.
+     * @return false if the ring was full and the sample was dropped
+     */
+    public boolean offer(long timestampNanos, float r, float g, float b) {
+        long h = head.get();
+        if (h - tail.get() >= capacity) {
+            droppedCount++;
+            return false;
+        }
+        int i = (int) h & mask;
+        timestamps[i] = timestampNanos;
+        red[i] = r;
+        green[i] = g;
+        blue[i] = b;
+        // Ordered store: the slot contents become visible before the new head
+        head.lazySet(h + 1);
+        return true;
+    }
+
+    /**
+     * Hand up to maxSamples pending samples to the consumer. Consumer thread only.
+     * @return Number of samples drained
+     */
+    public int drain(Consumer consumer, int maxSamples) {
+        long t = tail.get();
+        int available = (int) Math.min(head.get() - t, maxSamples);
+        for (int n = 0; n < available; n++) {
+            int i = (int) (t + n) & mask;
+            consumer.onSample(timestamps[i], red[i], green[i], blue[i]);
+        }
+        if (available > 0) {
+            // Release the slots only after they have been read
+            tail.lazySet(t + available);
+        }
+        return available;
+    }
+
+    public int size() {
+        return (int) (head.get() - tail.get());
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Samples dropped because the ring was full
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.ppg;
+
+import com.example.ppg.api.JsonValues;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * One JSON message from the PPG server, decoded in a single streaming pass.
+ *
+ * Every message kind shares this holder; type says which fields are set. "data" is
+ * only sent with results, so it is bound to a PPGResult wherever it appears in the
+ * object, before or after "type".
+ */
+public class ServerMessage {
+
+    public static final String TYPE_RESULT = "result";
+    public static final String TYPE_ERROR = "error";
+    public static final String TYPE_RESET_ACK = "reset_ack";
+    public static final String TYPE_HELLO_ACK = "hello_ack";
+    public static final String TYPE_ACK = "ack";
+
+    private static final PPGResultAdapter RESULT_ADAPTER = new PPGResultAdapter();
+
+    public String type;
+    public PPGResult data;          // result
+    public String error;            // error
+    public int sequence = -1;       // ack
+    public String protocol;         // hello_ack
+    public int version;             // hello_ack
+    public int ackedSequence = -1;  // hello_ack
+
+    /**
+     * Decode one message
+     * @throws IOException if the message is not a JSON object or has no type
+     */
+    public static ServerMessage read(Reader source) throws IOException {
+        JsonReader in = new JsonReader(source);
+        ServerMessage message = new ServerMessage();
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            throw new IOException("Message is not an object");
+        }
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "type": message.type = JsonValues.nextString(in); break;
+                case "data": message.data = RESULT_ADAPTER.read(in); break;
+                case "error": message.error = JsonValues.nextString(in); break;
+                case "sequence": message.sequence = JsonValues.nextInt(in); break;
+                case "protocol": message.protocol = JsonValues.nextString(in); break;
+                case "version": message.version = JsonValues.nextInt(in); break;
+                case "acked_sequence": message.ackedSequence = JsonValues.nextInt(in); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        if (message.type == null) {
+            throw new IOException("Message without type");
+        }
+        return message;
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.ppg;
+
+/**
+ * Decides when a measurement has collected enough signal, instead of always
+ * capturing for a fixed 40 seconds.
+ *
+ * It keeps a running signal-quality index (from the per-beat confidence) and the
+ * spread of the most recent heart rate and blood pressure estimates. Capture
+ * ends as soon as, after the minimum duration, quality is acceptable and both
+ * series have converged; at the nominal duration if quality is acceptable; and
+ * is extended up to the maximum duration while quality is poor. Blood pressure
+ * only counts once there is a source for it, an on-device model or estimates
+ * from the server; otherwise heart rate alone decides convergence.
+ *
+ * Timestamps are the sample (sensor) timestamps. Estimates may arrive on other
+ * threads than update(), so all methods are synchronized.
+ */
+public class SessionController {
+
+    public enum Decision {
+        CONTINUE,
+        CONVERGED,             // Estimates stable, ended early
+        NOMINAL_DURATION,      // Reached the nominal duration with acceptable quality
+        MAX_DURATION           // Quality stayed poor until the cap
+    }
+
+    /**
+     * Convergence bounds and durations; the defaults target ~20 s sessions on clean signal
+     */
+    public static final class Config {
+        public int minSeconds = 15;
+        public int nominalSeconds = 40;
+        public int maxSeconds = 60;
+        // Estimates compared for convergence, and the standard deviation they must stay within
+        public int convergenceWindow = 6;
+        public double heartRateStdBpm = 3.0;
+        public double systolicStdMmHg = 4.0;
+        public double diastolicStdMmHg = 3.0;
+        // Quality index (0-1) needed to end; below it the session is extended
+        public double minQuality = 0.6;
+        // Without a beat for this long the quality index drops to 0 (finger lifted, no pulse)
+        public double beatTimeoutSeconds = 3.0;
+        // Wait for blood pressure to converge too, when a BP source is available
+        public boolean requireBloodPressure = true;
+    }
+
+    // Weight of the newest beat in the running quality index
+    private static final double QUALITY_ALPHA = 0.2;
+
+    private final Config config;
+    private final EstimateWindow heartRates;
+    private final EstimateWindow systolic;
+    private final EstimateWindow diastolic;
+
+    private long startNanos = -1;
+    private long lastUpdateNanos = 0;
+    private long lastBeatNanos = 0;
+    private double quality = 0;
+    private Decision decision = Decision.CONTINUE;
+    // An on-device model is producing estimates; outlives reset()
+    private boolean bloodPressureSource = false;
+
+    public SessionController() {
+        this(new Config());
+    }
+
+    public SessionController(Config config) {
+        if (config.minSeconds > config.nominalSeconds || config.nominalSeconds > config.maxSeconds
+                || config.convergenceWindow < 2) {
+            throw new IllegalArgumentException("Invalid session config");
+        }
+        this.config = config;
+        heartRates = new EstimateWindow(config.convergenceWindow);
+        systolic = new EstimateWindow(config.convergenceWindow);
+        diastolic = new EstimateWindow(config.convergenceWindow);
+    }
+
+    /**
+     * A new heart rate estimate (one per beat)
+     * @param confidence Beat confidence 0-100, feeds the quality index
+     */
+    public synchronized void onHeartRate(long timestampNanos, int bpm, int confidence) {
+        if (bpm <= 0) {
+            return;
+        }
+        heartRates.add(bpm);
+        quality += QUALITY_ALPHA * (confidence / 100.0 - quality);
+        lastBeatNanos = timestampNanos;
+    }
+
+    /**
+     * A new blood pressure estimate
+     */
+    public synchronized void onBloodPressure(float systolicMmHg, float diastolicMmHg) {
+        if (systolicMmHg <= 0 || diastolicMmHg <= 0) {
+            return;
+        }
+        systolic.add(systolicMmHg);
+        diastolic.add(diastolicMmHg);
+    }
+
+    /**
+     * Whether an on-device BP model is loaded. Without one, blood pressure is only
+     * waited for once the server has sent an estimate in this session.
+     */
+    public synchronized void setBloodPressureSource(boolean available) {
+        bloodPressureSource = available;
+    }
+
+    /**
+     * Advance the session clock to a new sample and decide whether to stop.
+     * Once a stop decision is made it sticks until reset().
+     */
+    public synchronized Decision update(long timestampNanos) {
+        if (startNanos < 0) {
+            startNanos = timestampNanos;
+        }
+        lastUpdateNanos = timestampNanos;
+        if (decision != Decision.CONTINUE) {
+            return decision;
+        }
+
+        double elapsed = getElapsedSecondsLocked();
+        boolean qualityOk = getQualityLocked() >= config.minQuality;
+        if (elapsed >= config.maxSeconds) {
+            decision = Decision.MAX_DURATION;
+        } else if (elapsed >= config.minSeconds && qualityOk && isConvergedLocked()) {
+            decision = Decision.CONVERGED;
+        } else if (elapsed >= config.nominalSeconds && qualityOk) {
+            decision = Decision.NOMINAL_DURATION;
+        }
+        return decision;
+    }
+
+    private boolean isConvergedLocked() {
+        if (!heartRates.isFull() || heartRates.getStd() > config.heartRateStdBpm) {
+            return false;
+        }
+        if (!config.requireBloodPressure || (!bloodPressureSource && systolic.isEmpty())) {
+            return true;
+        }
+        return systolic.isFull() && systolic.getStd() <= config.systolicStdMmHg
+                && diastolic.isFull() && diastolic.getStd() <= config.diastolicStdMmHg;
+    }
+
+    private double getElapsedSecondsLocked() {
+        return startNanos < 0 ? 0 : (lastUpdateNanos - startNanos) / 1e9;
+    }
+
+    private double getQualityLocked() {
+        boolean beatTimedOut = lastBeatNanos == 0
+                || (lastUpdateNanos - lastBeatNanos) / 1e9 > config.beatTimeoutSeconds;
+        return beatTimedOut ? 0 : quality;
+    }
+
+    public synchronized Decision getDecision() {
+        return decision;
+    }
+
+    public synchronized double getElapsedSeconds() {
+        return getElapsedSecondsLocked();
+    }
+
+    /**
+     * Running signal-quality index, 0-1
+     */
+    public synchronized double getQuality() {
+        return getQualityLocked();
+    }
+
+    /**
+     * Duration the session is currently expected to run: the nominal duration,
+     * or the cap while quality is poor past the nominal duration
+     */
+    public synchronized int getTargetSeconds() {
+        if (decision != Decision.CONTINUE) {
+            return (int) Math.ceil(getElapsedSecondsLocked());
+        }
+        boolean extending = getElapsedSecondsLocked() >= config.nominalSeconds;
+        return extending ? config.maxSeconds : config.nominalSeconds;
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    public synchronized void reset() {
+        startNanos = -1;
+        lastUpdateNanos = 0;
+        lastBeatNanos = 0;
+        quality = 0;
+        decision = Decision.CONTINUE;
+        heartRates.clear();
+        systolic.clear();
+        diastolic.clear();
+    }
+
+    // The most recent estimates of one series, with their standard deviation
+    private static final class EstimateWindow {
+        private final double[] values;
+        private int count = 0;
+        private int next = 0;
+
+        EstimateWindow(int size) {
+            values = new double[size];
+        }
+
+        void add(double value) {
+            values[next] = value;
+            next = (next + 1) % values.length;
+            if (count < values.length) {
+                count++;
+            }
+        }
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        boolean isFull() {
+            return count == values.length;
+        }
+
+        double getStd() {
+            double mean = 0;
+            for (int i = 0; i < count; i++) {
+                mean += values[i];
+            }
+            mean /= count;
+            double variance = 0;
+            for (int i = 0; i < count; i++) {
+                double d = values[i] - mean;
+                variance += d * d;
+            }
+            return Math.sqrt(variance / count);
+        }
+
+        void clear() {
+            count = 0;
+            next = 0;
+        }
+    }
+}
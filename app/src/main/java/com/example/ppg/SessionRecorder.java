@@ -0,0 +1,244 @@
+package com.example.ppg;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends every camera sample of a measurement to a compact binary file, so sessions
+ * can be replayed later through SessionRecording.
+ *
+ * File layout, all multi-byte values little-endian:
+ *
+ * Header (32 bytes):
+ *   magic "PPGS" (u32) | format version (u8) | reserved (u8) | flags (u16) |
+ *   record size (u32) | tile width (u16) | tile height (u16) |
+ *   wall clock at creation, ms (i64) | reserved (u64)
+ *
+ * Record (record size bytes, repeated until the end of the file):
+ *   sensor timestamp ns (i64) | red (f32) | green (f32) | blue (f32) |
+ *   [tile width x tile height RGB triples (u8 each), row-major, if FLAG_TILES]
+ *
+ * The first 20 bytes of a record match a PPGBinaryProtocol batch record. Records are
+ * fixed width, so a reader finds record i by arithmetic and ignores a partial record
+ * at the end of a file whose writer was killed.
+ *
+ * record() is called on the camera thread and never does I/O: records are packed into
+ * one of a few preallocated buffers and full buffers are written out on the recorder's
+ * own thread. If the disk falls so far behind that no buffer is free, the record is
+ * dropped and counted rather than stalling the camera.
+ */
+public final class SessionRecorder implements Closeable {
+
+    public static final int MAGIC = 0x53475050;  // "PPGS"
+    public static final int VERSION = 1;
+    public static final String FILE_SUFFIX = ".ppgs";
+
+    public static final int HEADER_SIZE = 32;
+    public static final int SAMPLE_SIZE = 20;
+    // Header flags
+    public static final int FLAG_TILES = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BUFFER_COUNT = 3;
+
+    private final FileChannel channel;
+    private final int recordSize;
+    private final int tileBytes;
+    private final byte[] blankTile;
+    private final ArrayBlockingQueue<ByteBuffer> freeBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "session-recorder");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Owned by the recording thread
+    private ByteBuffer current;
+    private long recordCount = 0;
+    private boolean closed = false;
+
+    private volatile long droppedCount = 0;
+    private volatile IOException error;
+
+    private SessionRecorder(FileChannel channel, int tileWidth, int tileHeight) {
+        this.channel = channel;
+        this.tileBytes = tileWidth * tileHeight * 3;
+        this.blankTile = new byte[tileBytes];
+        this.recordSize = recordSize(tileWidth, tileHeight);
+        int buffers = Math.max(1, BUFFER_SIZE / recordSize);
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            freeBuffers.add(ByteBuffer.allocateDirect(buffers * recordSize).order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    /**
+     * Size of one record holding a tile of the given size; 0 x 0 means no tile
+     */
+    public static int recordSize(int tileWidth, int tileHeight) {
+        return SAMPLE_SIZE + tileWidth * tileHeight * 3;
+    }
+
+    /**
+     * Create (or replace) a recording and write its header
+     * @param tileWidth Tile columns per record, 0 to record channel means only
+     * @param tileHeight Tile rows per record, 0 to record channel means only
+     */
+    public static SessionRecorder create(File file, int tileWidth, int tileHeight) throws IOException {
+        if (tileWidth < 0 || tileHeight < 0 || tileWidth > 0xffff || tileHeight > 0xffff
+                || (tileWidth == 0) != (tileHeight == 0)) {
+            throw new IllegalArgumentException("Invalid tile size: " + tileWidth + "x" + tileHeight);
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.put((byte) VERSION);
+            header.put((byte) 0);
+            header.putShort((short) (tileWidth > 0 ? FLAG_TILES : 0));
+            header.putInt(recordSize(tileWidth, tileHeight));
+            header.putShort((short) tileWidth);
+            header.putShort((short) tileHeight);
+            header.putLong(System.currentTimeMillis());
+            header.putLong(0);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new SessionRecorder(channel, tileWidth, tileHeight);
+    }
+
+    /**
+     * Append one sample. Recording thread only; never blocks on the disk.
+     * @param tile tileWidth * tileHeight RGB triples, or null to record a blank tile
+     * @return false if the record was dropped, or the recorder is closed or failed
+     */
+    public boolean record(long timestampNanos, float red, float green, float blue, byte[] tile) {
+        if (closed || error != null) {
+            return false;
+        }
+        if (current == null || current.remaining() < recordSize) {
+            if (current != null) {
+                submit(current);
+            }
+            current = freeBuffers.poll();
+            if (current == null) {
+                droppedCount++;
+                return false;
+            }
+        }
+        current.putLong(timestampNanos);
+        current.putFloat(red);
+        current.putFloat(green);
+        current.putFloat(blue);
+        if (tileBytes > 0) {
+            current.put(tile != null ? tile : blankTile, 0, tileBytes);
+        }
+        recordCount++;
+        return true;
+    }
+
+    // Write a filled buffer on the recorder thread, then hand it back cleared
+    private void submit(ByteBuffer buffer) {
+        buffer.flip();
+        writer.execute(() -> {
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+            buffer.clear();
+            freeBuffers.offer(buffer);
+        });
+    }
+
+    /**
+     * Write out what is buffered and close the file on the recorder thread; returns at once.
+     * Recording thread only.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (current != null && current.position() > 0) {
+            submit(current);
+        }
+        current = null;
+        writer.execute(() -> {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        });
+        writer.shutdown();
+    }
+
+    /**
+     * Wait for close() to finish writing the file
+     * @return false if it is still being written when the timeout expires
+     */
+    public boolean awaitClose(long timeout, TimeUnit unit) throws InterruptedException {
+        return writer.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Records accepted so far. Recording thread only.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Records dropped because every buffer was waiting for the disk
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * The write error that stopped the recording, or null
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    /**
+     * Delete all but the newest keep recordings in a directory
+     * @return Number of recordings deleted
+     */
+    public static int deleteOldest(File directory, int keep) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null || files.length <= keep) {
+            return 0;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        int deleted = 0;
+        for (int i = Math.max(0, keep); i < files.length; i++) {
+            if (files[i].delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+}
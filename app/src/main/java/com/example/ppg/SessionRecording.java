@@ -0,0 +1,176 @@
+package com.example.ppg;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Read-only view of a file written by SessionRecorder, memory-mapped so samples are
+ * read straight from the page cache without copying the file into the heap.
+ *
+ * Records are read with absolute gets on the shared mapping, so one recording can be
+ * read and replayed from several threads at once. A partial record at the end of the
+ * file, left by a recorder that was killed, is ignored.
+ */
+public final class SessionRecording {
+
+    /**
+     * How fast replay() hands out samples
+     */
+    public enum Pace {
+        // Spaced by their sensor timestamps, as the camera delivered them
+        REAL_TIME,
+        // As fast as the consumer takes them
+        MAX_SPEED
+    }
+
+    private final ByteBuffer data;
+    private final int flags;
+    private final int recordSize;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final long createdAtMillis;
+    private final int sampleCount;
+
+    private SessionRecording(ByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.capacity() < SessionRecorder.HEADER_SIZE || data.getInt(0) != SessionRecorder.MAGIC) {
+            throw new IOException("Not a session recording");
+        }
+        int version = data.get(4) & 0xff;
+        if (version != SessionRecorder.VERSION) {
+            throw new IOException("Unsupported session recording version " + version);
+        }
+        flags = data.getShort(6) & 0xffff;
+        recordSize = data.getInt(8);
+        tileWidth = (flags & SessionRecorder.FLAG_TILES) != 0 ? data.getShort(12) & 0xffff : 0;
+        tileHeight = (flags & SessionRecorder.FLAG_TILES) != 0 ? data.getShort(14) & 0xffff : 0;
+        createdAtMillis = data.getLong(16);
+        if (recordSize != SessionRecorder.recordSize(tileWidth, tileHeight)) {
+            throw new IOException("Corrupt session recording header, record size " + recordSize);
+        }
+        sampleCount = (data.capacity() - SessionRecorder.HEADER_SIZE) / recordSize;
+    }
+
+    /**
+     * Map a recording into memory. The mapping outlives the file channel, which is
+     * closed before this returns.
+     */
+    public static SessionRecording open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Session recording too large: " + size + " bytes");
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new SessionRecording(map.order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    /**
+     * Read a recording held in memory, e.g. a test resource
+     */
+    public static SessionRecording wrap(ByteBuffer buffer) throws IOException {
+        return new SessionRecording(buffer.slice().order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public boolean hasTiles() {
+        return tileWidth > 0;
+    }
+
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    /**
+     * Wall clock time the recording was started, in ms since the epoch
+     */
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    /**
+     * Sensor time from the first to the last sample
+     */
+    public long getDurationNanos() {
+        return sampleCount > 1 ? getTimestampNanos(sampleCount - 1) - getTimestampNanos(0) : 0;
+    }
+
+    public long getTimestampNanos(int index) {
+        return data.getLong(offset(index));
+    }
+
+    public float getRed(int index) {
+        return data.getFloat(offset(index) + 8);
+    }
+
+    public float getGreen(int index) {
+        return data.getFloat(offset(index) + 12);
+    }
+
+    public float getBlue(int index) {
+        return data.getFloat(offset(index) + 16);
+    }
+
+    /**
+     * Copy the ROI tile of a sample into out, tileWidth * tileHeight RGB triples row-major
+     */
+    public void getTile(int index, byte[] out) {
+        if (!hasTiles()) {
+            throw new IllegalStateException("Recording has no tiles");
+        }
+        int start = offset(index) + SessionRecorder.SAMPLE_SIZE;
+        int length = tileWidth * tileHeight * 3;
+        for (int i = 0; i < length; i++) {
+            out[i] = data.get(start + i);
+        }
+    }
+
+    private int offset(int index) {
+        if (index < 0 || index >= sampleCount) {
+            throw new IndexOutOfBoundsException("Sample " + index + " of " + sampleCount);
+        }
+        return SessionRecorder.HEADER_SIZE + index * recordSize;
+    }
+
+    /**
+     * Hand every sample to the consumer in recorded order, on the calling thread.
+     * At MAX_SPEED the same recording always produces the same calls, which makes
+     * replays usable as regression input for the DSP stages.
+     * @return Number of samples delivered; fewer than getSampleCount() if the thread was interrupted
+     */
+    public int replay(SampleRingBuffer.Consumer consumer, Pace pace) {
+        long firstTimestamp = sampleCount > 0 ? getTimestampNanos(0) : 0;
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < sampleCount; i++) {
+            int offset = SessionRecorder.HEADER_SIZE + i * recordSize;
+            long timestampNanos = data.getLong(offset);
+            if (pace == Pace.REAL_TIME) {
+                long due = startNanos + (timestampNanos - firstTimestamp);
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+                    LockSupport.parkNanos(this, wait);
+                }
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return i;
+            }
+            consumer.onSample(timestampNanos, data.getFloat(offset + 8),
+                    data.getFloat(offset + 12), data.getFloat(offset + 16));
+        }
+        return sampleCount;
+    }
+}
@@ -4,99 +4,136 @@ import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
 import com.example.ppg.R;
 import com.example.ppg.models.Measurement;
 
-import java.util.List;
-
-public class MeasurementAdapter extends BaseAdapter {
-    private Context context;
-    private List<Measurement> measurements;
-    private LayoutInflater inflater;
+import java.util.Objects;
 
-    public MeasurementAdapter(Context context, List<Measurement> measurements) {
-        this.context = context;
-        this.measurements = measurements;
-        this.inflater = LayoutInflater.from(context);
-    }
+/**
+ * Measurement history rows. Display strings are formatted once per measurement, off
+ * the main thread, into an Item; binding a row only sets text and a color resolved
+ * when the adapter was created. Lists are diffed on a background thread, so loading
+ * a page or refreshing from the server only rebinds the rows that changed.
+ */
+public class MeasurementAdapter extends ListAdapter<MeasurementAdapter.Item, MeasurementAdapter.ViewHolder> {
 
-    @Override
-    public int getCount() {
-        return measurements.size();
-    }
-
-    @Override
-    public Object getItem(int position) {
-        return measurements.get(position);
-    }
+    // Color slots of an Item, resolved to colors by the adapter
+    private static final int TONE_NONE = 0;
+    private static final int TONE_NORMAL = 1;
+    private static final int TONE_ELEVATED = 2;
+    private static final int TONE_HIGH = 3;
 
-    @Override
-    public long getItemId(int position) {
-        return position;
-    }
+    /**
+     * One row, ready to bind
+     */
+    public static final class Item {
+        public final String measurementId;
+        public final Measurement measurement;
+        final String timestampText;
+        final String heartRateText;
+        final String bpText;
+        final int bpTone;
+        final String qualityText;
 
-    @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        ViewHolder holder;
-        
-        if (convertView == null) {
-            convertView = inflater.inflate(R.layout.item_measurement, parent, false);
-            holder = new ViewHolder();
-            holder.timestampText = convertView.findViewById(R.id.timestampText);
-            holder.heartRateText = convertView.findViewById(R.id.heartRateText);
-            holder.bpText = convertView.findViewById(R.id.bpText);
-            holder.qualityText = convertView.findViewById(R.id.qualityText);
-            convertView.setTag(holder);
-        } else {
-            holder = (ViewHolder) convertView.getTag();
+        public Item(Measurement measurement) {
+            this.measurement = measurement;
+            measurementId = measurement.getMeasurementId();
+            timestampText = measurement.getFormattedTimestamp();
+            heartRateText = measurement.getHeartRate() + " BPM";
+            if (measurement.getBpCategory() != null) {
+                bpText = measurement.getBpDisplayText();
+                bpTone = toneOf(measurement.getBpCategory());
+            } else {
+                bpText = "No BP Data";
+                bpTone = TONE_NONE;
+            }
+            qualityText = "Quality: " + measurement.getSignalQuality() + " (" + measurement.getHeartRateConfidence() + "%)";
         }
 
-        Measurement measurement = measurements.get(position);
-        
-        // Set timestamp
-        holder.timestampText.setText(measurement.getFormattedTimestamp());
-        
-        // Set heart rate
-        holder.heartRateText.setText(String.format("%d BPM", measurement.getHeartRate()));
-        
-        // Set BP category with color
-        if (measurement.getBpCategory() != null) {
-            holder.bpText.setText(measurement.getBpDisplayText());
-            
-            // Set color based on BP category
-            switch (measurement.getBpCategory().toLowerCase()) {
+        private static int toneOf(String category) {
+            switch (category.toLowerCase()) {
                 case "normotensive":
-                    holder.bpText.setTextColor(context.getResources().getColor(android.R.color.holo_green_dark));
-                    break;
+                    return TONE_NORMAL;
                 case "prehypertensive":
-                    holder.bpText.setTextColor(context.getResources().getColor(android.R.color.holo_orange_dark));
-                    break;
+                    return TONE_ELEVATED;
                 case "hypertensive":
-                    holder.bpText.setTextColor(context.getResources().getColor(android.R.color.holo_red_dark));
-                    break;
+                    return TONE_HIGH;
                 default:
-                    holder.bpText.setTextColor(context.getResources().getColor(android.R.color.darker_gray));
-                    break;
+                    return TONE_NONE;
             }
-        } else {
-            holder.bpText.setText("No BP Data");
-            holder.bpText.setTextColor(context.getResources().getColor(android.R.color.darker_gray));
         }
-        
-        // Set quality
-        holder.qualityText.setText(String.format("Quality: %s (%d%%)", 
-            measurement.getSignalQuality(), measurement.getHeartRateConfidence()));
 
-        return convertView;
+        boolean sameContent(Item other) {
+            return bpTone == other.bpTone
+                    && Objects.equals(timestampText, other.timestampText)
+                    && Objects.equals(heartRateText, other.heartRateText)
+                    && Objects.equals(bpText, other.bpText)
+                    && Objects.equals(qualityText, other.qualityText);
+        }
+    }
+
+    private static final DiffUtil.ItemCallback<Item> DIFF = new DiffUtil.ItemCallback<Item>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            return Objects.equals(oldItem.measurementId, newItem.measurementId);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+            return oldItem.sameContent(newItem);
+        }
+    };
+
+    private final LayoutInflater inflater;
+    private final int[] toneColors;
+
+    public MeasurementAdapter(Context context) {
+        super(DIFF);
+        inflater = LayoutInflater.from(context);
+        toneColors = new int[] {
+                ContextCompat.getColor(context, android.R.color.darker_gray),
+                ContextCompat.getColor(context, android.R.color.holo_green_dark),
+                ContextCompat.getColor(context, android.R.color.holo_orange_dark),
+                ContextCompat.getColor(context, android.R.color.holo_red_dark),
+        };
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        return new ViewHolder(inflater.inflate(R.layout.item_measurement, parent, false));
     }
 
-    static class ViewHolder {
-        TextView timestampText;
-        TextView heartRateText;
-        TextView bpText;
-        TextView qualityText;
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        Item item = getItem(position);
+        holder.timestampText.setText(item.timestampText);
+        holder.heartRateText.setText(item.heartRateText);
+        holder.bpText.setText(item.bpText);
+        holder.bpText.setTextColor(toneColors[item.bpTone]);
+        holder.qualityText.setText(item.qualityText);
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView timestampText;
+        final TextView heartRateText;
+        final TextView bpText;
+        final TextView qualityText;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            timestampText = itemView.findViewById(R.id.timestampText);
+            heartRateText = itemView.findViewById(R.id.heartRateText);
+            bpText = itemView.findViewById(R.id.bpText);
+            qualityText = itemView.findViewById(R.id.qualityText);
+        }
     }
 }
@@ -0,0 +1,60 @@
+package com.example.ppg.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parsed API responses kept in memory, keyed by URL including the query, least
+ * recently used first out.
+ *
+ * Each entry keeps the ETag and Last-Modified of the response it was parsed from, so
+ * the next request for the URL can be made conditional and a 304 reuses the parsed
+ * value without downloading or decoding the payload again. Values are shared between
+ * callers and must not be modified.
+ */
+final class ApiCache {
+
+    static final int MAX_ENTRIES = 32;
+
+    static final class Entry {
+        final Object value;
+        final String etag;
+        final String lastModified;
+
+        Entry(Object value, String etag, String lastModified) {
+            this.value = value;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        boolean canRevalidate() {
+            return etag != null || lastModified != null;
+        }
+    }
+
+    private static final LinkedHashMap<String, Entry> entries =
+            new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    private ApiCache() {}
+
+    static synchronized Entry get(String url) {
+        return entries.get(url);
+    }
+
+    static synchronized void put(String url, Entry entry) {
+        entries.put(url, entry);
+    }
+
+    static synchronized void invalidate(String url) {
+        entries.remove(url);
+    }
+
+    static synchronized void invalidatePrefix(String prefix) {
+        entries.keySet().removeIf(url -> url.startsWith(prefix));
+    }
+}
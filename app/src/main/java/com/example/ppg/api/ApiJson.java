@@ -0,0 +1,256 @@
+package com.example.ppg.api;
+
+import com.example.ppg.models.Measurement;
+import com.example.ppg.models.Subject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written streaming JSON adapters for the REST API models.
+ *
+ * Models are read with the field names Gson's reflective binding used (camelCase)
+ * and also with the backend's snake_case names. They are written in camelCase,
+ * which the reader accepts, so local copies round-trip.
+ */
+public final class ApiJson {
+
+    public static final TypeAdapter<Subject> SUBJECT = new SubjectAdapter();
+    public static final TypeAdapter<Measurement> MEASUREMENT = new MeasurementAdapter();
+    public static final TypeAdapter<ApiService.SubjectStats> SUBJECT_STATS = new SubjectStatsAdapter();
+
+    private ApiJson() {}
+
+    /**
+     * Read an array of values, or null for a JSON null
+     */
+    public static <T> List<T> readList(JsonReader in, TypeAdapter<T> adapter) throws IOException {
+        if (!JsonValues.hasValue(in)) {
+            return null;
+        }
+        List<T> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(adapter.read(in));
+        }
+        in.endArray();
+        return values;
+    }
+
+    public static <T> void writeList(JsonWriter out, List<T> values, TypeAdapter<T> adapter) throws IOException {
+        if (values == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (T value : values) {
+            adapter.write(out, value);
+        }
+        out.endArray();
+    }
+
+    private static class SubjectAdapter extends TypeAdapter<Subject> {
+        @Override
+        public Subject read(JsonReader in) throws IOException {
+            if (!JsonValues.hasValue(in)) {
+                return null;
+            }
+            Subject subject = new Subject();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "subjectId":
+                    case "subject_id":
+                        subject.setSubjectId(JsonValues.nextString(in));
+                        break;
+                    case "subjectNumber":
+                    case "subject_number":
+                        subject.setSubjectNumber(JsonValues.nextInt(in));
+                        break;
+                    case "subjectName":
+                    case "subject_name":
+                        subject.setSubjectName(JsonValues.nextString(in));
+                        break;
+                    case "age":
+                        subject.setAge(JsonValues.nextInteger(in));
+                        break;
+                    case "gender":
+                        subject.setGender(JsonValues.nextString(in));
+                        break;
+                    case "notes":
+                        subject.setNotes(JsonValues.nextString(in));
+                        break;
+                    case "createdAt":
+                    case "created_at":
+                        subject.setCreatedAt(JsonValues.nextString(in));
+                        break;
+                    case "lastMeasurement":
+                    case "last_measurement":
+                        subject.setLastMeasurement(JsonValues.nextString(in));
+                        break;
+                    case "totalMeasurements":
+                    case "total_measurements":
+                        subject.setTotalMeasurements(JsonValues.nextInt(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return subject;
+        }
+
+        @Override
+        public void write(JsonWriter out, Subject subject) throws IOException {
+            if (subject == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            JsonValues.write(out, "subjectId", subject.getSubjectId());
+            out.name("subjectNumber").value(subject.getSubjectNumber());
+            JsonValues.write(out, "subjectName", subject.getSubjectName());
+            JsonValues.write(out, "age", subject.getAge());
+            JsonValues.write(out, "gender", subject.getGender());
+            JsonValues.write(out, "notes", subject.getNotes());
+            JsonValues.write(out, "createdAt", subject.getCreatedAt());
+            JsonValues.write(out, "lastMeasurement", subject.getLastMeasurement());
+            out.name("totalMeasurements").value(subject.getTotalMeasurements());
+            out.endObject();
+        }
+    }
+
+    private static class MeasurementAdapter extends TypeAdapter<Measurement> {
+        @Override
+        public Measurement read(JsonReader in) throws IOException {
+            if (!JsonValues.hasValue(in)) {
+                return null;
+            }
+            Measurement measurement = new Measurement();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "measurementId":
+                    case "measurement_id":
+                        measurement.setMeasurementId(JsonValues.nextString(in));
+                        break;
+                    case "subjectId":
+                    case "subject_id":
+                        measurement.setSubjectId(JsonValues.nextString(in));
+                        break;
+                    case "heartRate":
+                    case "heart_rate":
+                        measurement.setHeartRate(JsonValues.nextInt(in));
+                        break;
+                    case "heartRateConfidence":
+                    case "heart_rate_confidence":
+                        measurement.setHeartRateConfidence(JsonValues.nextInt(in));
+                        break;
+                    case "signalQuality":
+                    case "signal_quality":
+                        measurement.setSignalQuality(JsonValues.nextString(in));
+                        break;
+                    case "bpCategory":
+                    case "bp_category":
+                        measurement.setBpCategory(JsonValues.nextString(in));
+                        break;
+                    case "bpConfidence":
+                    case "bp_confidence":
+                        measurement.setBpConfidence(JsonValues.nextInteger(in));
+                        break;
+                    case "systolicBp":
+                    case "systolic_bp":
+                        measurement.setSystolicBp(JsonValues.nextFloat(in));
+                        break;
+                    case "diastolicBp":
+                    case "diastolic_bp":
+                        measurement.setDiastolicBp(JsonValues.nextFloat(in));
+                        break;
+                    case "measurementDuration":
+                    case "measurement_duration":
+                        measurement.setMeasurementDuration(JsonValues.nextInt(in));
+                        break;
+                    case "frameCount":
+                    case "frame_count":
+                        measurement.setFrameCount(JsonValues.nextInt(in));
+                        break;
+                    case "timestamp":
+                        measurement.setTimestamp(JsonValues.nextString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return measurement;
+        }
+
+        @Override
+        public void write(JsonWriter out, Measurement measurement) throws IOException {
+            if (measurement == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            JsonValues.write(out, "measurementId", measurement.getMeasurementId());
+            JsonValues.write(out, "subjectId", measurement.getSubjectId());
+            out.name("heartRate").value(measurement.getHeartRate());
+            out.name("heartRateConfidence").value(measurement.getHeartRateConfidence());
+            JsonValues.write(out, "signalQuality", measurement.getSignalQuality());
+            JsonValues.write(out, "bpCategory", measurement.getBpCategory());
+            JsonValues.write(out, "bpConfidence", measurement.getBpConfidence());
+            JsonValues.write(out, "systolicBp", measurement.getSystolicBp());
+            JsonValues.write(out, "diastolicBp", measurement.getDiastolicBp());
+            out.name("measurementDuration").value(measurement.getMeasurementDuration());
+            out.name("frameCount").value(measurement.getFrameCount());
+            JsonValues.write(out, "timestamp", measurement.getTimestamp());
+            out.endObject();
+        }
+    }
+
+    private static class SubjectStatsAdapter extends TypeAdapter<ApiService.SubjectStats> {
+        @Override
+        public ApiService.SubjectStats read(JsonReader in) throws IOException {
+            if (!JsonValues.hasValue(in)) {
+                return null;
+            }
+            ApiService.SubjectStats stats = new ApiService.SubjectStats();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "avg_systolic": stats.avg_systolic = JsonValues.nextDouble(in); break;
+                    case "avg_diastolic": stats.avg_diastolic = JsonValues.nextDouble(in); break;
+                    case "avg_heart_rate": stats.avg_heart_rate = JsonValues.nextDouble(in); break;
+                    case "measurement_count": stats.measurement_count = JsonValues.nextInt(in); break;
+                    case "total_measurements": stats.total_measurements = JsonValues.nextInt(in); break;
+                    case "min_heart_rate": stats.min_heart_rate = JsonValues.nextDouble(in); break;
+                    case "max_heart_rate": stats.max_heart_rate = JsonValues.nextDouble(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return stats;
+        }
+
+        @Override
+        public void write(JsonWriter out, ApiService.SubjectStats stats) throws IOException {
+            if (stats == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("avg_systolic").value(stats.avg_systolic);
+            out.name("avg_diastolic").value(stats.avg_diastolic);
+            out.name("avg_heart_rate").value(stats.avg_heart_rate);
+            out.name("measurement_count").value(stats.measurement_count);
+            out.name("total_measurements").value(stats.total_measurements);
+            out.name("min_heart_rate").value(stats.min_heart_rate);
+            out.name("max_heart_rate").value(stats.max_heart_rate);
+            out.endObject();
+        }
+    }
+}
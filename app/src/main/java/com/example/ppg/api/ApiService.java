@@ -4,14 +4,16 @@ import android.util.Log;
 
 import com.example.ppg.models.Subject;
 import com.example.ppg.models.Measurement;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
+import okhttp3.CacheControl;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.MediaType;
@@ -19,27 +21,25 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 public class ApiService {
     private static final String TAG = "ApiService";
-    private static final String BASE_URL = "https://renderr-jk83.onrender.com/api";
+    private static final String BASE_URL = NetworkClient.SERVER_ORIGIN + "/api";
+    public static final int HISTORY_PAGE_SIZE = 50;
     
     private final OkHttpClient client;
-    private final Gson gson;
 
     public ApiService() {
-        this.client = new OkHttpClient.Builder()
-                .connectTimeout(10, TimeUnit.SECONDS)
-                .writeTimeout(10, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .build();
-        this.gson = new Gson();
+        this.client = NetworkClient.get();
     }
 
-    // Callback interfaces
+    // Callback interfaces. Cached reads call onSuccess with the cached copy first, if there
+    // is one, then once more with the server's copy, or onUnchanged if the cached copy is current.
     public interface SubjectsCallback {
         void onSuccess(List<Subject> subjects);
         void onError(String error);
+        default void onUnchanged() {}
     }
 
     public interface SubjectCreateCallback {
@@ -50,51 +50,44 @@ public class ApiService {
     public interface HistoryCallback {
         void onSuccess(List<Measurement> measurements, SubjectStats stats);
         void onError(String error);
+        default void onUnchanged() {}
     }
 
     // Get all subjects
     public void getSubjects(SubjectsCallback callback) {
-        Request request = new Request.Builder()
-                .url(BASE_URL + "/subjects")
-                .build();
+        getCached(BASE_URL + "/subjects", "subjects", body -> {
+            // Decoded straight from the response stream
+            ApiResponse apiResponse = readApiResponse(body.charStream());
+            Log.d(TAG, "Subjects response: " + (apiResponse.subjects != null ? apiResponse.subjects.size() : 0) + " subjects");
+            return apiResponse.success && apiResponse.subjects != null
+                    ? Collections.unmodifiableList(apiResponse.subjects) : null;
+        }, new Delivery<List<Subject>>() {
+            @Override
+            public void onValue(List<Subject> subjects) {
+                callback.onSuccess(subjects);
+            }
 
-        client.newCall(request).enqueue(new Callback() {
             @Override
-            public void onFailure(Call call, IOException e) {
-                Log.e(TAG, "Failed to get subjects", e);
-                callback.onError("Network error: " + e.getMessage());
+            public void onUnchanged() {
+                callback.onUnchanged();
             }
 
             @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                try {
-                    if (response.isSuccessful()) {
-                        String jsonResponse = response.body().string();
-                        Log.d(TAG, "Subjects response: " + jsonResponse);
-                        
-                        Type responseType = new TypeToken<ApiResponse<Subject>>(){}.getType();
-                        ApiResponse<Subject> apiResponse = gson.fromJson(jsonResponse, responseType);
-                        
-                        if (apiResponse.success && apiResponse.subjects != null) {
-                            callback.onSuccess(apiResponse.subjects);
-                        } else {
-                            callback.onError("Failed to parse subjects response");
-                        }
-                    } else {
-                        callback.onError("Server error: " + response.code());
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error parsing subjects response", e);
-                    callback.onError("Error parsing response: " + e.getMessage());
-                }
+            public void onError(String error) {
+                callback.onError(error);
             }
         });
     }
 
     // Create a new subject
     public void createSubject(String name, Integer age, String gender, String notes, SubjectCreateCallback callback) {
-        SubjectCreateRequest request = new SubjectCreateRequest(name, age, gender, notes);
-        String json = gson.toJson(request);
+        String json;
+        try {
+            json = writeSubjectCreateRequest(name, age, gender, notes);
+        } catch (IOException e) {
+            callback.onError("Error encoding request: " + e.getMessage());
+            return;
+        }
         
         RequestBody body = RequestBody.create(json, MediaType.get("application/json; charset=utf-8"));
         Request httpRequest = new Request.Builder()
@@ -111,15 +104,14 @@ public class ApiService {
 
             @Override
             public void onResponse(Call call, Response response) throws IOException {
-                try {
+                try (ResponseBody body = response.body()) {
                     if (response.isSuccessful()) {
-                        String jsonResponse = response.body().string();
-                        Log.d(TAG, "Create subject response: " + jsonResponse);
-                        
-                        Type responseType = new TypeToken<ApiResponse<Subject>>(){}.getType();
-                        ApiResponse<Subject> apiResponse = gson.fromJson(jsonResponse, responseType);
+                        ApiResponse apiResponse = readApiResponse(body.charStream());
+                        Log.d(TAG, "Create subject response: " + apiResponse.subject);
                         
                         if (apiResponse.success && apiResponse.subject != null) {
+                            // The cached subject list no longer matches the server
+                            ApiCache.invalidate(BASE_URL + "/subjects");
                             callback.onSuccess(apiResponse.subject);
                         } else {
                             callback.onError("Failed to create subject");
@@ -135,70 +127,259 @@ public class ApiService {
         });
     }
 
-    // Get subject history
+    // Get the newest page of a subject's history
     public void getSubjectHistory(String subjectId, HistoryCallback callback) {
-        Request request = new Request.Builder()
-                .url(BASE_URL + "/subjects/" + subjectId + "/history")
-                .build();
+        getSubjectHistory(subjectId, 0, HISTORY_PAGE_SIZE, callback);
+    }
+
+    /**
+     * Get one page of a subject's history, newest first. A page shorter than limit is
+     * the last one. Each page is cached on its own.
+     */
+    public void getSubjectHistory(String subjectId, int offset, int limit, HistoryCallback callback) {
+        String url = historyUrl(subjectId) + "?offset=" + offset + "&limit=" + limit;
+        getCached(url, "subject history", body -> {
+            HistoryResponse historyResponse = readHistoryResponse(body.charStream());
+            Log.d(TAG, "History response: " + (historyResponse.measurements != null ? historyResponse.measurements.size() : 0) + " measurements");
+            if (!historyResponse.success || historyResponse.measurements == null) {
+                return null;
+            }
+            historyResponse.measurements = Collections.unmodifiableList(historyResponse.measurements);
+            return historyResponse;
+        }, new Delivery<HistoryResponse>() {
+            @Override
+            public void onValue(HistoryResponse history) {
+                callback.onSuccess(history.measurements, history.stats);
+            }
+
+            @Override
+            public void onUnchanged() {
+                callback.onUnchanged();
+            }
+
+            @Override
+            public void onError(String error) {
+                callback.onError(error);
+            }
+        });
+    }
+
+    /**
+     * Forget the parsed history of a subject, e.g. after uploading measurements for it
+     */
+    public static void invalidateHistory(String subjectId) {
+        // Every page moves when a measurement is added
+        ApiCache.invalidatePrefix(historyUrl(subjectId) + "?");
+    }
 
-        client.newCall(request).enqueue(new Callback() {
+    private static String historyUrl(String subjectId) {
+        return BASE_URL + "/subjects/" + subjectId + "/history";
+    }
+
+    private interface BodyReader<T> {
+        /**
+         * Parse a successful response; null if the payload reports a failure
+         */
+        T read(ResponseBody body) throws IOException;
+    }
+
+    private interface Delivery<T> {
+        void onValue(T value);
+        void onUnchanged();
+        void onError(String error);
+    }
+
+    /**
+     * Stale-while-revalidate GET. The parsed copy in memory is delivered at once and
+     * revalidated with a conditional request; a 304 keeps it without parsing anything.
+     * Without a copy in memory, the disk cache is read in parallel with the network
+     * request and its copy is delivered unless the network answered first.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void getCached(String url, String what, BodyReader<T> reader, Delivery<T> delivery) {
+        ApiCache.Entry cached = ApiCache.get(url);
+        // Set once the network copy is delivered; a disk copy arriving later is dropped
+        boolean[] fresh = {false};
+        
+        Request.Builder builder = new Request.Builder().url(url);
+        if (cached != null) {
+            delivery.onValue((T) cached.value);
+            if (cached.etag != null) {
+                builder.header("If-None-Match", cached.etag);
+            }
+            if (cached.lastModified != null) {
+                builder.header("If-Modified-Since", cached.lastModified);
+            }
+        } else {
+            Request stale = new Request.Builder().url(url).cacheControl(CacheControl.FORCE_CACHE).build();
+            client.newCall(stale).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    // Nothing cached on disk
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try (ResponseBody body = response.body()) {
+                        T value = response.isSuccessful() ? reader.read(body) : null;
+                        if (value != null) {
+                            synchronized (fresh) {
+                                if (!fresh[0]) {
+                                    Log.d(TAG, "Serving cached " + what + " while revalidating");
+                                    delivery.onValue(value);
+                                }
+                            }
+                        }
+                    } catch (Exception e) {
+                        Log.w(TAG, "Ignoring unreadable cached " + what + ": " + e.getMessage());
+                    }
+                }
+            });
+        }
+        
+        client.newCall(builder.build()).enqueue(new Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
-                Log.e(TAG, "Failed to get subject history", e);
-                callback.onError("Network error: " + e.getMessage());
+                Log.e(TAG, "Failed to get " + what, e);
+                delivery.onError("Network error: " + e.getMessage());
             }
 
             @Override
             public void onResponse(Call call, Response response) throws IOException {
-                try {
-                    if (response.isSuccessful()) {
-                        String jsonResponse = response.body().string();
-                        Log.d(TAG, "History response: " + jsonResponse);
-                        
-                        HistoryResponse historyResponse = gson.fromJson(jsonResponse, HistoryResponse.class);
-                        
-                        if (historyResponse.success && historyResponse.measurements != null) {
-                            callback.onSuccess(historyResponse.measurements, historyResponse.stats);
+                try (ResponseBody body = response.body()) {
+                    if (response.code() == 304 && cached != null) {
+                        Log.d(TAG, "Cached " + what + " is current");
+                        delivery.onUnchanged();
+                    } else if (response.isSuccessful()) {
+                        T value = reader.read(body);
+                        if (value != null) {
+                            ApiCache.put(url, new ApiCache.Entry(value, response.header("ETag"),
+                                    response.header("Last-Modified")));
+                            synchronized (fresh) {
+                                fresh[0] = true;
+                                delivery.onValue(value);
+                            }
                         } else {
-                            callback.onError("Failed to parse history response");
+                            delivery.onError("Failed to parse " + what + " response");
                         }
                     } else {
-                        callback.onError("Server error: " + response.code());
+                        delivery.onError("Server error: " + response.code());
                     }
                 } catch (Exception e) {
-                    Log.e(TAG, "Error parsing history response", e);
-                    callback.onError("Error parsing response: " + e.getMessage());
+                    Log.e(TAG, "Error parsing " + what + " response", e);
+                    delivery.onError("Error parsing response: " + e.getMessage());
                 }
             }
         });
     }
 
-    // Response models
-    private static class ApiResponse<T> {
+    /**
+     * Upload a batch of measurements saved on the device. Blocking, for background
+     * workers only. Measurement IDs are assigned on the device, so uploading the same
+     * batch again after a lost response does not create duplicates.
+     * @return the HTTP status code
+     * @throws IOException if the server could not be reached
+     */
+    public int uploadMeasurements(List<Measurement> measurements) throws IOException {
+        RequestBody body = RequestBody.create(writeMeasurementBatch(measurements),
+                MediaType.get("application/json; charset=utf-8"));
+        Request request = new Request.Builder()
+                .url(BASE_URL + "/measurements")
+                .post(body)
+                .build();
+
+        try (Response response = client.newCall(request).execute()) {
+            Log.d(TAG, "Uploaded " + measurements.size() + " measurements: HTTP " + response.code());
+            return response.code();
+        }
+    }
+
+    // Response models, read in one pass by the streaming readers below (package-private for tests)
+    static class ApiResponse {
         boolean success;
-        T subject;
-        List<T> subjects;
+        Subject subject;
+        List<Subject> subjects;
     }
 
-    private static class HistoryResponse {
+    static class HistoryResponse {
         boolean success;
         String subject_id;
         List<Measurement> measurements;
         SubjectStats stats;
     }
 
-    private static class SubjectCreateRequest {
-        String subject_name;
-        Integer age;
-        String gender;
-        String notes;
+    static ApiResponse readApiResponse(Reader source) throws IOException {
+        ApiResponse apiResponse = new ApiResponse();
+        JsonReader in = new JsonReader(source);
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "success": apiResponse.success = JsonValues.nextBoolean(in); break;
+                case "subject": apiResponse.subject = ApiJson.SUBJECT.read(in); break;
+                case "subjects": apiResponse.subjects = ApiJson.readList(in, ApiJson.SUBJECT); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return apiResponse;
+    }
+
+    static HistoryResponse readHistoryResponse(Reader source) throws IOException {
+        HistoryResponse historyResponse = new HistoryResponse();
+        JsonReader in = new JsonReader(source);
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "success": historyResponse.success = JsonValues.nextBoolean(in); break;
+                case "subject_id": historyResponse.subject_id = JsonValues.nextString(in); break;
+                case "measurements": historyResponse.measurements = ApiJson.readList(in, ApiJson.MEASUREMENT); break;
+                case "stats": historyResponse.stats = ApiJson.SUBJECT_STATS.read(in); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return historyResponse;
+    }
+
+    static String writeSubjectCreateRequest(String name, Integer age, String gender, String notes)
+            throws IOException {
+        StringWriter json = new StringWriter();
+        JsonWriter out = new JsonWriter(json);
+        out.beginObject();
+        JsonValues.write(out, "subject_name", name);
+        JsonValues.write(out, "age", age);
+        JsonValues.write(out, "gender", gender);
+        JsonValues.write(out, "notes", notes);
+        out.endObject();
+        out.flush();
+        return json.toString();
+    }
 
-        SubjectCreateRequest(String name, Integer age, String gender, String notes) {
-            this.subject_name = name;
-            this.age = age;
-            this.gender = gender;
-            this.notes = notes;
+    private static String writeMeasurementBatch(List<Measurement> measurements) throws IOException {
+        StringWriter json = new StringWriter();
+        JsonWriter out = new JsonWriter(json);
+        out.beginObject();
+        out.name("measurements").beginArray();
+        for (Measurement measurement : measurements) {
+            out.beginObject();
+            JsonValues.write(out, "measurement_id", measurement.getMeasurementId());
+            JsonValues.write(out, "subject_id", measurement.getSubjectId());
+            out.name("heart_rate").value(measurement.getHeartRate());
+            out.name("heart_rate_confidence").value(measurement.getHeartRateConfidence());
+            JsonValues.write(out, "signal_quality", measurement.getSignalQuality());
+            JsonValues.write(out, "bp_category", measurement.getBpCategory());
+            JsonValues.write(out, "bp_confidence", measurement.getBpConfidence());
+            JsonValues.write(out, "systolic_bp", measurement.getSystolicBp());
+            JsonValues.write(out, "diastolic_bp", measurement.getDiastolicBp());
+            out.name("measurement_duration").value(measurement.getMeasurementDuration());
+            out.name("frame_count").value(measurement.getFrameCount());
+            JsonValues.write(out, "timestamp", measurement.getTimestamp());
+            out.endObject();
         }
+        out.endArray();
+        out.endObject();
+        out.flush();
+        return json.toString();
     }
 
     public static class SubjectStats {
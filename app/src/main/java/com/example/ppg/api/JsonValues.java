@@ -0,0 +1,147 @@
+package com.example.ppg.api;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Null-tolerant value reads and writes for the hand-written JSON adapters.
+ *
+ * The server is not strict about types: counts may arrive as 72.0 and any field
+ * may be null. Reads return the Java default for null, like Gson's reflective
+ * binding does, and round non-integral numbers instead of failing the message.
+ */
+public final class JsonValues {
+
+    private JsonValues() {}
+
+    public static int nextInt(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return 0;
+        }
+        return (int) Math.round(reader.nextDouble());
+    }
+
+    public static Integer nextInteger(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return (int) Math.round(reader.nextDouble());
+    }
+
+    public static double nextDouble(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return 0;
+        }
+        return reader.nextDouble();
+    }
+
+    public static Float nextFloat(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return (float) reader.nextDouble();
+    }
+
+    public static boolean nextBoolean(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return false;
+        }
+        return reader.nextBoolean();
+    }
+
+    public static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * True if the next value is an object or array that should be read; consumes a null
+     */
+    public static boolean hasValue(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return false;
+        }
+        return true;
+    }
+
+    public static double[] nextDoubleArray(JsonReader reader) throws IOException {
+        if (!hasValue(reader)) {
+            return null;
+        }
+        double[] values = new double[16];
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = nextDouble(reader);
+        }
+        reader.endArray();
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    public static String[] nextStringArray(JsonReader reader) throws IOException {
+        if (!hasValue(reader)) {
+            return null;
+        }
+        ArrayList<String> values = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            values.add(nextString(reader));
+        }
+        reader.endArray();
+        return values.toArray(new String[0]);
+    }
+
+    /**
+     * Write name: value, skipping nulls like Gson does by default
+     */
+    public static void write(JsonWriter writer, String name, String value) throws IOException {
+        if (value != null) {
+            writer.name(name).value(value);
+        }
+    }
+
+    public static void write(JsonWriter writer, String name, Number value) throws IOException {
+        if (value != null) {
+            writer.name(name).value(value);
+        }
+    }
+
+    public static void write(JsonWriter writer, String name, double[] values) throws IOException {
+        if (values == null) {
+            return;
+        }
+        writer.name(name).beginArray();
+        for (double value : values) {
+            writer.value(value);
+        }
+        writer.endArray();
+    }
+
+    public static void write(JsonWriter writer, String name, String[] values) throws IOException {
+        if (values == null) {
+            return;
+        }
+        writer.name(name).beginArray();
+        for (String value : values) {
+            writer.value(value);
+        }
+        writer.endArray();
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.ppg.api;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The one OkHttpClient of the app, shared by the REST API and the WebSocket client so
+ * they use a single dispatcher, connection pool and TLS session cache.
+ *
+ * HTTP calls to the backend multiplex over one pooled HTTP/2 connection where the server
+ * offers it. WebSockets are pinged every PING_INTERVAL_SECONDS, which keeps idle Wi-Fi
+ * and carrier NATs open and detects a dead link well before the read timeout.
+ *
+ * Once init() has run, GET responses are kept in a disk cache and revalidated with
+ * the ETag or Last-Modified they came with, so an unchanged payload is not downloaded
+ * again, and the last copy can still be read while the backend is unreachable.
+ */
+public final class NetworkClient {
+    private static final String TAG = "NetworkClient";
+
+    public static final String SERVER_ORIGIN = "https://renderr-jk83.onrender.com";
+    public static final long PING_INTERVAL_SECONDS = 15;
+    // The Render backend takes tens of seconds to wake from a cold start
+    private static final long PREWARM_TIMEOUT_SECONDS = 90;
+    private static final long HTTP_CACHE_BYTES = 10L * 1024 * 1024;
+
+    private static volatile File cacheDirectory;
+
+    private static volatile OkHttpClient client;
+    private static final AtomicBoolean prewarmStarted = new AtomicBoolean(false);
+    private static volatile boolean warm = false;
+
+    private NetworkClient() {}
+
+    /**
+     * Give the client its disk cache. Call before the first get(); PPGApplication does.
+     */
+    public static void init(Context context) {
+        if (cacheDirectory == null) {
+            cacheDirectory = new File(context.getApplicationContext().getCacheDir(), "http");
+        }
+    }
+
+    public static OkHttpClient get() {
+        OkHttpClient c = client;
+        if (c == null) {
+            synchronized (NetworkClient.class) {
+                c = client;
+                if (c == null) {
+                    OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                            .connectTimeout(10, TimeUnit.SECONDS)
+                            .readTimeout(30, TimeUnit.SECONDS)
+                            .writeTimeout(30, TimeUnit.SECONDS)
+                            .pingInterval(PING_INTERVAL_SECONDS, TimeUnit.SECONDS)
+                            .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
+                            .retryOnConnectionFailure(true);
+                    File directory = cacheDirectory;
+                    if (directory != null) {
+                        builder.cache(new Cache(directory, HTTP_CACHE_BYTES));
+                    } else {
+                        Log.w(TAG, "HTTP client built before init(), responses are not cached");
+                    }
+                    c = builder.build();
+                    client = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Resolve the backend host, complete the TLS handshake and wake the server in the
+     * background, so the first measurement does not wait for any of it. Only the first
+     * call does anything.
+     */
+    public static void prewarm() {
+        if (!prewarmStarted.compareAndSet(false, true)) {
+            return;
+        }
+        // Same pool and dispatcher, longer read timeout for the cold start
+        OkHttpClient prewarmClient = get().newBuilder()
+                .readTimeout(PREWARM_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .build();
+        Request request = new Request.Builder()
+                .url(SERVER_ORIGIN + "/")
+                .head()
+                .build();
+        long start = System.nanoTime();
+
+        prewarmClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                Log.w(TAG, "Prewarm failed: " + e.getMessage());
+                // Let the next screen try again
+                prewarmStarted.set(false);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                // Any status means the server is up; the body is not needed
+                response.close();
+                warm = true;
+                Log.d(TAG, "Backend warm after " + (System.nanoTime() - start) / 1_000_000 + " ms ("
+                        + response.protocol() + ", HTTP " + response.code() + ")");
+            }
+        });
+    }
+
+    /**
+     * True once a prewarm request got an answer from the backend
+     */
+    public static boolean isWarm() {
+        return warm;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.ppg.dsp;
+
+/**
+ * Streaming band-pass filter for the PPG signal: a 4th-order Butterworth
+ * high-pass followed by a 4th-order Butterworth low-pass, both as biquad cascades.
+ * Defaults to the 0.5-8 Hz physiological band from METHODOLOGY.txt.
+ */
+public final class BandPassFilter {
+
+    public static final double DEFAULT_LOW_HZ = 0.5;
+    public static final double DEFAULT_HIGH_HZ = 8.0;
+
+    // Q of the two sections of a 4th-order Butterworth filter
+    private static final double Q1 = 0.5411961;
+    private static final double Q2 = 1.3065630;
+
+    private final Biquad[] sections;
+    private boolean primed = false;
+
+    public BandPassFilter(double sampleRateHz) {
+        this(sampleRateHz, DEFAULT_LOW_HZ, DEFAULT_HIGH_HZ);
+    }
+
+    public BandPassFilter(double sampleRateHz, double lowHz, double highHz) {
+        if (lowHz <= 0 || highHz <= lowHz) {
+            throw new IllegalArgumentException("Invalid band: " + lowHz + "-" + highHz + " Hz");
+        }
+        // Keep the low-pass corner below Nyquist at low frame rates
+        double high = Math.min(highHz, sampleRateHz * 0.45);
+        sections = new Biquad[] {
+                Biquad.highPass(sampleRateHz, lowHz, Q1),
+                Biquad.highPass(sampleRateHz, lowHz, Q2),
+                Biquad.lowPass(sampleRateHz, high, Q1),
+                Biquad.lowPass(sampleRateHz, high, Q2)
+        };
+    }
+
+    public double process(double x) {
+        if (!primed) {
+            for (Biquad section : sections) {
+                section.prime(x);
+                x = section.process(x);
+            }
+            primed = true;
+            return x;
+        }
+        for (Biquad section : sections) {
+            x = section.process(x);
+        }
+        return x;
+    }
+
+    public void reset() {
+        for (Biquad section : sections) {
+            section.reset();
+        }
+        primed = false;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.ppg.dsp;
+
+/**
+ * Second-order IIR section (transposed direct form II), coefficients from the
+ * RBJ audio EQ cookbook. Processing a sample allocates nothing.
+ */
+public final class Biquad {
+
+    public static final double BUTTERWORTH_Q = Math.sqrt(0.5);
+
+    private final double b0, b1, b2, a1, a2;
+    private double z1, z2;
+
+    private Biquad(double b0, double b1, double b2, double a0, double a1, double a2) {
+        this.b0 = b0 / a0;
+        this.b1 = b1 / a0;
+        this.b2 = b2 / a0;
+        this.a1 = a1 / a0;
+        this.a2 = a2 / a0;
+    }
+
+    /**
+     * @param sampleRateHz Sampling rate
+     * @param cutoffHz Corner frequency, must be below Nyquist
+     * @param q Quality factor, BUTTERWORTH_Q for a maximally flat response
+     */
+    public static Biquad lowPass(double sampleRateHz, double cutoffHz, double q) {
+        double w0 = 2 * Math.PI * cutoffHz / sampleRateHz;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * q);
+        return new Biquad((1 - cos) / 2, 1 - cos, (1 - cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    /**
+     * @param sampleRateHz Sampling rate
+     * @param cutoffHz Corner frequency, must be below Nyquist
+     * @param q Quality factor, BUTTERWORTH_Q for a maximally flat response
+     */
+    public static Biquad highPass(double sampleRateHz, double cutoffHz, double q) {
+        double w0 = 2 * Math.PI * cutoffHz / sampleRateHz;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * q);
+        return new Biquad((1 + cos) / 2, -(1 + cos), (1 + cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    public double process(double x) {
+        double y = b0 * x + z1;
+        z1 = b1 * x - a1 * y + z2;
+        z2 = b2 * x - a2 * y;
+        return y;
+    }
+
+    /**
+     * Preload the state as if the input had been constant at x forever, which
+     * avoids the large start-up transient of a DC-heavy camera signal
+     */
+    public void prime(double x) {
+        double dcGain = (b0 + b1 + b2) / (1 + a1 + a2);
+        double y = dcGain * x;
+        z1 = y - b0 * x;
+        z2 = b2 * x - a2 * y;
+    }
+
+    public void reset() {
+        z1 = z2 = 0;
+    }
+}
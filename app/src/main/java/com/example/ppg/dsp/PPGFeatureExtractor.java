@@ -0,0 +1,91 @@
+package com.example.ppg.dsp;
+
+/**
+ * The BP model's feature vector, maintained live over a sliding window of the
+ * uniformly resampled PPG signal. Combines the incremental statistical and
+ * morphological accumulator, the streaming peak detector with its windowed
+ * HRV statistics, and the streaming Welch spectrum.
+ *
+ * Samples must already be at the feature sample rate (PPGFeatures.SAMPLE_RATE_HZ
+ * for the trained model) and preprocessed (band-passed, pulse peaks positive).
+ */
+public class PPGFeatureExtractor {
+
+    // find_peaks(height=mean, distance=fs*0.6) in the training script
+    private static final double PEAK_DISTANCE_S = 0.6;
+
+    private final StreamingFeatureAccumulator accumulator;
+    private final WelchEstimator welch;
+    private final StreamingPeakDetector peakDetector;
+    private final PeakStatistics peaks;
+    private final double samplePeriodNanos;
+    private long sampleIndex = 0;
+
+    public PPGFeatureExtractor() {
+        this(PPGFeatures.SAMPLE_RATE_HZ, StreamingFeatureAccumulator.DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param sampleRateHz Rate of the samples passed to add()
+     * @param windowSize Feature window in samples
+     */
+    public PPGFeatureExtractor(double sampleRateHz, int windowSize) {
+        accumulator = new StreamingFeatureAccumulator(windowSize);
+        welch = new WelchEstimator(sampleRateHz, windowSize);
+        double windowSeconds = windowSize / sampleRateHz;
+        // Threshold at the running mean, as height=np.mean(segment); a short time
+        // constant keeps the warm-up well inside the first window
+        peakDetector = new StreamingPeakDetector(sampleRateHz, PEAK_DISTANCE_S, 0, windowSeconds / 4);
+        peaks = new PeakStatistics((long) (windowSeconds * 1e9), (int) (windowSeconds / PEAK_DISTANCE_S) + 2);
+        samplePeriodNanos = 1e9 / sampleRateHz;
+    }
+
+    /**
+     * Add one sample
+     * @return true if a Welch segment completed, i.e. the frequency features changed
+     */
+    public boolean add(double x) {
+        accumulator.add(x);
+        // Sample-clock timestamps: the input is uniform, so intervals are index differences / fs
+        long timestampNanos = Math.round(sampleIndex++ * samplePeriodNanos);
+        peaks.advanceTo(timestampNanos);
+        if (peakDetector.add(timestampNanos, x)) {
+            peaks.addPeak(peakDetector.getPeakNanos(), peakDetector.getPeakHeight());
+        }
+        return welch.add(x);
+    }
+
+    public boolean isWindowFull() {
+        return accumulator.isWindowFull();
+    }
+
+    public int getSampleCount() {
+        return accumulator.getSampleCount();
+    }
+
+    public WelchEstimator getWelchEstimator() {
+        return welch;
+    }
+
+    public PeakStatistics getPeakStatistics() {
+        return peaks;
+    }
+
+    /**
+     * Write the full feature vector, in PPGFeatures order
+     */
+    public void fill(double[] features) {
+        accumulator.fillStatisticalFeatures(features);
+        peaks.fillPeakFeatures(features);
+        welch.fillFrequencyFeatures(features);
+        accumulator.fillMorphologicalFeatures(features);
+    }
+
+    public void reset() {
+        accumulator.clear();
+        welch.reset();
+        peakDetector.reset();
+        peaks.clear();
+        sampleIndex = 0;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.ppg.dsp;
+
+/**
+ * Layout of the 33-value feature vector the BP models are trained on. Order and
+ * names follow extract_enhanced_features in real_ppg_bp_regression.py.
+ */
+public final class PPGFeatures {
+
+    /**
+     * Sampling rate the features are defined at (fs in the training script);
+     * the camera signal is resampled to this rate before feature extraction
+     */
+    public static final double SAMPLE_RATE_HZ = 125.0;
+
+    // Statistical
+    public static final int MEAN = 0;
+    public static final int STD = 1;
+    public static final int SKEWNESS = 2;
+    public static final int KURTOSIS = 3;
+    public static final int VARIANCE = 4;
+    public static final int RMS = 5;
+    public static final int MAD = 6;
+    public static final int CV = 7;
+
+    // Peaks and heart rate variability
+    public static final int PEAK_COUNT = 8;
+    public static final int PEAK_MEAN_HEIGHT = 9;
+    public static final int PEAK_STD_HEIGHT = 10;
+    public static final int PEAK_MEAN_INTERVAL = 11;
+    public static final int PEAK_STD_INTERVAL = 12;
+    public static final int PEAK_CV_INTERVAL = 13;
+    public static final int HRV_RMSSD = 14;
+    public static final int HRV_SDNN = 15;
+    public static final int HRV_MEAN = 16;
+    public static final int HRV_CV = 17;
+    public static final int MEAN_HR = 18;
+    public static final int HR_STD = 19;
+
+    // Frequency domain
+    public static final int FREQ_LF_POWER = 20;
+    public static final int FREQ_HF_POWER = 21;
+    public static final int FREQ_LF_HF_RATIO = 22;
+    public static final int FREQ_PEAK_FREQUENCY = 23;
+    public static final int FREQ_SPECTRAL_ENTROPY = 24;
+
+    // Morphological
+    public static final int MORPH_SIGNAL_ENERGY = 25;
+    public static final int MORPH_FIRST_DERIV_MEAN = 26;
+    public static final int MORPH_FIRST_DERIV_STD = 27;
+    public static final int MORPH_SECOND_DERIV_MEAN = 28;
+    public static final int MORPH_SECOND_DERIV_STD = 29;
+    public static final int MORPH_ZERO_CROSSINGS_1ST = 30;
+    public static final int MORPH_ZERO_CROSSINGS_2ND = 31;
+    public static final int MORPH_SIGNAL_COMPLEXITY = 32;
+
+    public static final int COUNT = 33;
+
+    public static final String[] NAMES = {
+            "mean", "std", "skewness", "kurtosis", "variance", "rms", "mad", "cv",
+            "peak_count", "peak_mean_height", "peak_std_height", "peak_mean_interval",
+            "peak_std_interval", "peak_cv_interval", "hrv_rmssd", "hrv_sdnn", "hrv_mean",
+            "hrv_cv", "mean_hr", "hr_std",
+            "freq_lf_power", "freq_hf_power", "freq_lf_hf_ratio", "freq_peak_frequency",
+            "freq_spectral_entropy",
+            "morph_signal_energy", "morph_first_deriv_mean", "morph_first_deriv_std",
+            "morph_second_deriv_mean", "morph_second_deriv_std", "morph_zero_crossings_1st",
+            "morph_zero_crossings_2nd", "morph_signal_complexity"
+    };
+
+    // Guard against divisions by zero, same epsilon as the training script
+    static final double EPSILON = 1e-8;
+
+    private PPGFeatures() {}
+
+    /**
+     * Rescale a feature vector as if the signal had been multiplied by factor.
+     * Amplitude features scale linearly, powers and energies quadratically; shape,
+     * timing and ratio features are unchanged. Used to apply the training script's
+     * 0-1 normalization after the features were accumulated on the raw scale.
+     */
+    public static void scaleAmplitude(double[] features, double factor) {
+        double squared = factor * factor;
+        features[MEAN] *= factor;
+        features[STD] *= factor;
+        features[VARIANCE] *= squared;
+        features[RMS] *= factor;
+        features[MAD] *= factor;
+        features[PEAK_MEAN_HEIGHT] *= factor;
+        features[PEAK_STD_HEIGHT] *= factor;
+        features[FREQ_LF_POWER] *= squared;
+        features[FREQ_HF_POWER] *= squared;
+        features[MORPH_SIGNAL_ENERGY] *= squared;
+        features[MORPH_FIRST_DERIV_MEAN] *= factor;
+        features[MORPH_FIRST_DERIV_STD] *= factor;
+        features[MORPH_SECOND_DERIV_MEAN] *= factor;
+        features[MORPH_SECOND_DERIV_STD] *= factor;
+    }
+
+    /**
+     * @return Index of the named feature, or -1 if unknown
+     */
+    public static int indexOf(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
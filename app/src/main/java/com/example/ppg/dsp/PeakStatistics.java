@@ -0,0 +1,149 @@
+package com.example.ppg.dsp;
+
+/**
+ * Peak, RR-interval and HRV statistics over the peaks of a sliding time window,
+ * updated in O(1) per peak.
+ *
+ * Peak heights, RR intervals, successive RR differences and instantaneous heart
+ * rates each keep running moments in a WindowedMoments ring; when the oldest peak
+ * leaves the window, the interval and difference that start at it leave too.
+ * RMSSD is the RMS of the successive differences and SDNN the standard
+ * deviation of the intervals, as in extract_enhanced_features.
+ */
+public final class PeakStatistics {
+
+    // The training script only reports peak features for three or more peaks
+    private static final int MIN_PEAKS = 3;
+
+    private final long windowNanos;
+    private final long[] peakTimes;
+    private int peakStart = 0;
+    private int peakCount = 0;
+
+    private final WindowedMoments heights;
+    private final WindowedMoments intervals;      // seconds
+    private final WindowedMoments differences;    // milliseconds
+    private final WindowedMoments heartRates;     // beats per minute
+    private double lastInterval;
+
+    /**
+     * @param windowNanos Peaks older than this, relative to the latest advanceTo, are dropped
+     * @param maxPeaks Most peaks the window can hold (window / refractory period, plus one)
+     */
+    public PeakStatistics(long windowNanos, int maxPeaks) {
+        if (windowNanos <= 0 || maxPeaks < 2) {
+            throw new IllegalArgumentException("Window must be positive and hold at least 2 peaks");
+        }
+        this.windowNanos = windowNanos;
+        peakTimes = new long[maxPeaks];
+        heights = new WindowedMoments(maxPeaks);
+        intervals = new WindowedMoments(maxPeaks);
+        differences = new WindowedMoments(maxPeaks);
+        heartRates = new WindowedMoments(maxPeaks);
+    }
+
+    /**
+     * Record a peak; timestamps must increase
+     */
+    public void addPeak(long timestampNanos, double height) {
+        if (peakCount == peakTimes.length) {
+            evictOldest();
+        }
+        if (peakCount > 0) {
+            double interval = (timestampNanos - peakTimes[(peakStart + peakCount - 1) % peakTimes.length]) / 1e9;
+            if (intervals.getCount() > 0) {
+                differences.add((interval - lastInterval) * 1000);
+            }
+            intervals.add(interval);
+            heartRates.add(60 / interval);
+            lastInterval = interval;
+        }
+        peakTimes[(peakStart + peakCount) % peakTimes.length] = timestampNanos;
+        peakCount++;
+        heights.add(height);
+    }
+
+    /**
+     * Drop peaks that are no longer inside the window ending at nowNanos
+     */
+    public void advanceTo(long nowNanos) {
+        while (peakCount > 0 && nowNanos - peakTimes[peakStart] >= windowNanos) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        // The interval from the oldest peak exists if a later peak does, and likewise its difference
+        if (peakCount > 1) {
+            if (intervals.getCount() > 1) {
+                differences.evictOldest();
+            }
+            intervals.evictOldest();
+            heartRates.evictOldest();
+        }
+        heights.evictOldest();
+        peakStart = (peakStart + 1) % peakTimes.length;
+        peakCount--;
+    }
+
+    public int getPeakCount() {
+        return peakCount;
+    }
+
+    /**
+     * Root mean square of successive RR differences in ms, 0 with fewer than three peaks
+     */
+    public double getRmssdMs() {
+        return differences.getCount() == 0 ? 0 : differences.getRms();
+    }
+
+    /**
+     * Standard deviation of the RR intervals in ms
+     */
+    public double getSdnnMs() {
+        return intervals.getStd() * 1000;
+    }
+
+    public double getMeanRrMs() {
+        return intervals.getMean() * 1000;
+    }
+
+    /**
+     * Write the peak and HRV features (peak_count .. hr_std) into a PPGFeatures-ordered
+     * vector; all zero with fewer than three peaks, as in the training script
+     */
+    public void fillPeakFeatures(double[] features) {
+        if (peakCount < MIN_PEAKS) {
+            for (int i = PPGFeatures.PEAK_COUNT; i <= PPGFeatures.HR_STD; i++) {
+                features[i] = 0;
+            }
+            return;
+        }
+        double meanInterval = intervals.getMean();
+        double stdInterval = intervals.getStd();
+        double meanRr = meanInterval * 1000;
+        double stdRr = stdInterval * 1000;
+
+        features[PPGFeatures.PEAK_COUNT] = peakCount;
+        features[PPGFeatures.PEAK_MEAN_HEIGHT] = heights.getMean();
+        features[PPGFeatures.PEAK_STD_HEIGHT] = heights.getStd();
+        features[PPGFeatures.PEAK_MEAN_INTERVAL] = meanInterval;
+        features[PPGFeatures.PEAK_STD_INTERVAL] = stdInterval;
+        features[PPGFeatures.PEAK_CV_INTERVAL] = stdInterval / (meanInterval + PPGFeatures.EPSILON);
+        features[PPGFeatures.HRV_RMSSD] = differences.getRms();
+        features[PPGFeatures.HRV_SDNN] = stdRr;
+        features[PPGFeatures.HRV_MEAN] = meanRr;
+        features[PPGFeatures.HRV_CV] = stdRr / (meanRr + PPGFeatures.EPSILON);
+        features[PPGFeatures.MEAN_HR] = heartRates.getMean();
+        features[PPGFeatures.HR_STD] = heartRates.getStd();
+    }
+
+    public void clear() {
+        peakStart = 0;
+        peakCount = 0;
+        heights.clear();
+        intervals.clear();
+        differences.clear();
+        heartRates.clear();
+    }
+}
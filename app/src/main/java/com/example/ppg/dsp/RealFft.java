@@ -0,0 +1,215 @@
+package com.example.ppg.dsp;
+
+/**
+ * Forward DFT of a real signal with all tables and work buffers allocated up
+ * front, so a transform allocates nothing.
+ *
+ * Power-of-two sizes use a radix-2 complex FFT of half the size on the packed
+ * even/odd samples followed by the usual split step. Other sizes (the Welch
+ * segment of the training script is 250 samples) are evaluated exactly with
+ * Bluestein's chirp-z algorithm on top of the same radix-2 FFT, instead of
+ * zero-padding, so bin frequencies match scipy.
+ *
+ * Not thread-safe; use one instance per thread.
+ */
+public final class RealFft {
+
+    private final int size;
+    private final int bins;
+
+    // Radix-2 complex FFT of length fftSize: twiddles and bit-reversal permutation
+    private final int fftSize;
+    private final double[] cos;
+    private final double[] sin;
+    private final int[] bitReverse;
+    private final double[] workRe;
+    private final double[] workIm;
+
+    // Power-of-two path: split-step twiddles e^(-2 pi i k / size)
+    private final double[] splitCos;
+    private final double[] splitSin;
+
+    // Bluestein path: chirp e^(-i pi k^2 / size) and the FFT of its conjugate filter
+    private final double[] chirpCos;
+    private final double[] chirpSin;
+    private final double[] filterRe;
+    private final double[] filterIm;
+
+    /**
+     * @param size Transform length in samples, at least 2
+     */
+    public RealFft(int size) {
+        if (size < 2) {
+            throw new IllegalArgumentException("FFT size too small: " + size);
+        }
+        this.size = size;
+        this.bins = size / 2 + 1;
+
+        boolean powerOfTwo = (size & (size - 1)) == 0;
+        fftSize = powerOfTwo ? size / 2 : Integer.highestOneBit(2 * size - 2) << 1;
+        cos = new double[Math.max(1, fftSize / 2)];
+        sin = new double[cos.length];
+        for (int i = 0; i < cos.length; i++) {
+            double angle = -2 * Math.PI * i / fftSize;
+            cos[i] = Math.cos(angle);
+            sin[i] = Math.sin(angle);
+        }
+        bitReverse = new int[fftSize];
+        int bits = Integer.numberOfTrailingZeros(fftSize);
+        for (int i = 0; i < fftSize; i++) {
+            bitReverse[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+        }
+        workRe = new double[fftSize];
+        workIm = new double[fftSize];
+
+        if (powerOfTwo) {
+            splitCos = new double[bins];
+            splitSin = new double[bins];
+            for (int k = 0; k < bins; k++) {
+                double angle = -2 * Math.PI * k / size;
+                splitCos[k] = Math.cos(angle);
+                splitSin[k] = Math.sin(angle);
+            }
+            chirpCos = chirpSin = filterRe = filterIm = null;
+        } else {
+            splitCos = splitSin = null;
+            chirpCos = new double[size];
+            chirpSin = new double[size];
+            for (int k = 0; k < size; k++) {
+                // k^2 mod 2n keeps the angle small and exact
+                long k2 = ((long) k * k) % (2L * size);
+                double angle = -Math.PI * k2 / size;
+                chirpCos[k] = Math.cos(angle);
+                chirpSin[k] = Math.sin(angle);
+            }
+            filterRe = new double[fftSize];
+            filterIm = new double[fftSize];
+            filterRe[0] = chirpCos[0];
+            filterIm[0] = -chirpSin[0];
+            for (int k = 1; k < size; k++) {
+                filterRe[k] = filterRe[fftSize - k] = chirpCos[k];
+                filterIm[k] = filterIm[fftSize - k] = -chirpSin[k];
+            }
+            fft(filterRe, filterIm);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of one-sided output bins, size / 2 + 1
+     */
+    public int binCount() {
+        return bins;
+    }
+
+    /**
+     * One-sided DFT of a real input
+     * @param input size samples
+     * @param re Receives the real parts of bins 0 .. size / 2
+     * @param im Receives the imaginary parts of bins 0 .. size / 2
+     */
+    public void forward(double[] input, double[] re, double[] im) {
+        if (splitCos != null) {
+            forwardPowerOfTwo(input, re, im);
+        } else {
+            forwardBluestein(input, re, im);
+        }
+    }
+
+    /**
+     * Squared magnitude of the one-sided DFT, |X_k|^2 for k = 0 .. size / 2
+     */
+    public void powerSpectrum(double[] input, double[] out, double[] scratchRe, double[] scratchIm) {
+        forward(input, scratchRe, scratchIm);
+        for (int k = 0; k < bins; k++) {
+            out[k] = scratchRe[k] * scratchRe[k] + scratchIm[k] * scratchIm[k];
+        }
+    }
+
+    private void forwardPowerOfTwo(double[] input, double[] re, double[] im) {
+        int half = fftSize;
+        // Pack even samples as real and odd samples as imaginary parts
+        for (int j = 0; j < half; j++) {
+            workRe[j] = input[2 * j];
+            workIm[j] = input[2 * j + 1];
+        }
+        fft(workRe, workIm);
+
+        for (int k = 0; k < bins; k++) {
+            int a = k % half;
+            int b = (half - k) % half;
+            // Even and odd sample spectra: E = (Z_k + conj Z_(m-k)) / 2, O = (Z_k - conj Z_(m-k)) / 2i
+            double eRe = (workRe[a] + workRe[b]) / 2;
+            double eIm = (workIm[a] - workIm[b]) / 2;
+            double oRe = (workIm[a] + workIm[b]) / 2;
+            double oIm = -(workRe[a] - workRe[b]) / 2;
+            re[k] = eRe + splitCos[k] * oRe - splitSin[k] * oIm;
+            im[k] = eIm + splitCos[k] * oIm + splitSin[k] * oRe;
+        }
+    }
+
+    private void forwardBluestein(double[] input, double[] re, double[] im) {
+        for (int j = 0; j < size; j++) {
+            workRe[j] = input[j] * chirpCos[j];
+            workIm[j] = input[j] * chirpSin[j];
+        }
+        for (int j = size; j < fftSize; j++) {
+            workRe[j] = 0;
+            workIm[j] = 0;
+        }
+        fft(workRe, workIm);
+
+        // Convolve with the filter, then inverse FFT via conjugation
+        for (int j = 0; j < fftSize; j++) {
+            double r = workRe[j] * filterRe[j] - workIm[j] * filterIm[j];
+            double i = workRe[j] * filterIm[j] + workIm[j] * filterRe[j];
+            workRe[j] = r;
+            workIm[j] = -i;
+        }
+        fft(workRe, workIm);
+
+        for (int k = 0; k < bins; k++) {
+            double r = workRe[k] / fftSize;
+            double i = -workIm[k] / fftSize;
+            re[k] = r * chirpCos[k] - i * chirpSin[k];
+            im[k] = r * chirpSin[k] + i * chirpCos[k];
+        }
+    }
+
+    // In-place iterative radix-2 decimation-in-time FFT of length fftSize
+    private void fft(double[] re, double[] im) {
+        int n = fftSize;
+        for (int i = 0; i < n; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+        for (int length = 2; length <= n; length <<= 1) {
+            int halfLength = length >> 1;
+            int step = n / length;
+            for (int start = 0; start < n; start += length) {
+                for (int k = 0; k < halfLength; k++) {
+                    double wr = cos[k * step];
+                    double wi = sin[k * step];
+                    int a = start + k;
+                    int b = a + halfLength;
+                    double tr = re[b] * wr - im[b] * wi;
+                    double ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.ppg.dsp;
+
+/**
+ * Sliding-window statistical and morphological PPG features, maintained
+ * incrementally as samples arrive instead of being recomputed per window.
+ *
+ * The signal, its Savitzky-Golay smoothed first derivative and its second
+ * derivative each keep running moments over the same window length (the
+ * training script uses 1000-sample windows). Adding a sample, and evicting the
+ * oldest once the window is full, is O(1); all features except MAD can be read
+ * in O(1) at any time.
+ *
+ * Derivatives follow the training script: savgol_filter(window=5, polyorder=2)
+ * then np.gradient twice, so they trail the raw signal by three samples.
+ */
+public class StreamingFeatureAccumulator {
+
+    public static final int DEFAULT_WINDOW = 1000;
+
+    // savgol_filter(window_length=5, polyorder=2) smoothing coefficients, divided by 35
+    private static final double[] SAVGOL = {-3, 12, 17, 12, -3};
+
+    private final WindowedMoments signal;
+    private final WindowedMoments firstDerivative;
+    private final WindowedMoments secondDerivative;
+
+    // Last five raw samples for smoothing, last three smoothed and first-derivative values
+    private final double[] raw = new double[5];
+    private int rawCount = 0;
+    private double smoothed0, smoothed1, smoothed2;
+    private int smoothedCount = 0;
+    private double deriv0, deriv1, deriv2;
+    private int derivCount = 0;
+
+    public StreamingFeatureAccumulator() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param windowSize Window length in samples
+     */
+    public StreamingFeatureAccumulator(int windowSize) {
+        signal = new WindowedMoments(windowSize);
+        firstDerivative = new WindowedMoments(windowSize);
+        secondDerivative = new WindowedMoments(windowSize);
+    }
+
+    /**
+     * Add one (preprocessed, uniformly sampled) PPG sample
+     */
+    public void add(double x) {
+        signal.add(x);
+
+        // Shift the smoothing window
+        System.arraycopy(raw, 1, raw, 0, raw.length - 1);
+        raw[raw.length - 1] = x;
+        if (rawCount < raw.length) {
+            rawCount++;
+            if (rawCount < raw.length) {
+                return;
+            }
+        }
+        double s = 0;
+        for (int i = 0; i < SAVGOL.length; i++) {
+            s += SAVGOL[i] * raw[i];
+        }
+        addSmoothed(s / 35.0);
+    }
+
+    private void addSmoothed(double s) {
+        smoothed0 = smoothed1;
+        smoothed1 = smoothed2;
+        smoothed2 = s;
+        if (++smoothedCount < 3) {
+            return;
+        }
+        // Central difference, as np.gradient away from the edges
+        addFirstDerivative((smoothed2 - smoothed0) / 2);
+    }
+
+    private void addFirstDerivative(double d) {
+        firstDerivative.add(d);
+        deriv0 = deriv1;
+        deriv1 = deriv2;
+        deriv2 = d;
+        if (++derivCount < 3) {
+            return;
+        }
+        secondDerivative.add((deriv2 - deriv0) / 2);
+    }
+
+    public int getSampleCount() {
+        return signal.getCount();
+    }
+
+    public boolean isWindowFull() {
+        return signal.isFull();
+    }
+
+    public WindowedMoments getSignalMoments() {
+        return signal;
+    }
+
+    public WindowedMoments getFirstDerivativeMoments() {
+        return firstDerivative;
+    }
+
+    public WindowedMoments getSecondDerivativeMoments() {
+        return secondDerivative;
+    }
+
+    /**
+     * Write the statistical features (mean .. cv) into a PPGFeatures-ordered vector
+     */
+    public void fillStatisticalFeatures(double[] features) {
+        double mean = signal.getMean();
+        double std = signal.getStd();
+        features[PPGFeatures.MEAN] = mean;
+        features[PPGFeatures.STD] = std;
+        features[PPGFeatures.SKEWNESS] = signal.getSkewness();
+        features[PPGFeatures.KURTOSIS] = signal.getKurtosis();
+        features[PPGFeatures.VARIANCE] = signal.getVariance();
+        features[PPGFeatures.RMS] = signal.getRms();
+        features[PPGFeatures.MAD] = signal.getMeanAbsoluteDeviation();
+        features[PPGFeatures.CV] = std / (mean + PPGFeatures.EPSILON);
+    }
+
+    /**
+     * Write the morphological features (morph_*) into a PPGFeatures-ordered vector
+     */
+    public void fillMorphologicalFeatures(double[] features) {
+        double firstStd = firstDerivative.getStd();
+        features[PPGFeatures.MORPH_SIGNAL_ENERGY] = signal.getSumOfSquares();
+        features[PPGFeatures.MORPH_FIRST_DERIV_MEAN] = firstDerivative.getMean();
+        features[PPGFeatures.MORPH_FIRST_DERIV_STD] = firstStd;
+        features[PPGFeatures.MORPH_SECOND_DERIV_MEAN] = secondDerivative.getMean();
+        features[PPGFeatures.MORPH_SECOND_DERIV_STD] = secondDerivative.getStd();
+        features[PPGFeatures.MORPH_ZERO_CROSSINGS_1ST] = firstDerivative.getSignChanges();
+        features[PPGFeatures.MORPH_ZERO_CROSSINGS_2ND] = secondDerivative.getSignChanges();
+        features[PPGFeatures.MORPH_SIGNAL_COMPLEXITY] = firstStd / (signal.getStd() + PPGFeatures.EPSILON);
+    }
+
+    public void clear() {
+        signal.clear();
+        firstDerivative.clear();
+        secondDerivative.clear();
+        rawCount = 0;
+        smoothedCount = 0;
+        derivCount = 0;
+    }
+}
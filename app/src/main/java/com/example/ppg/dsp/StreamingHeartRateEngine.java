@@ -0,0 +1,173 @@
+package com.example.ppg.dsp;
+
+import com.example.ppg.PPGResult;
+
+import java.util.Arrays;
+
+/**
+ * On-device heart rate from the per-frame green means, independent of the server.
+ *
+ * Each sample is band-pass filtered (0.5-8 Hz), beats are found by a
+ * StreamingPeakDetector, and the rate is the median of the most recent
+ * beat-to-beat intervals. A new estimate is available on every detected beat, so
+ * the display lags the signal by well under a second. Intervals are measured on
+ * the frame timestamps, so dropped frames do not bias the rate. RMSSD and SDNN
+ * are kept over the beats of the last HRV_WINDOW_S seconds.
+ */
+public class StreamingHeartRateEngine {
+
+    public static final String METHOD = "on-device";
+
+    private static final int MIN_BPM = 40;
+    private static final int MAX_BPM = 200;
+    private static final int INTERVAL_HISTORY = 8;
+    // Peaks must exceed the running mean by this fraction of the running amplitude envelope
+    private static final double PEAK_THRESHOLD = 0.4;
+    private static final double ENVELOPE_TIME_CONSTANT_S = 2.0;
+    private static final int HRV_WINDOW_S = 30;
+
+    private final BandPassFilter filter;
+    private final StreamingPeakDetector peakDetector;
+    private final PeakStatistics beats = new PeakStatistics(HRV_WINDOW_S * 1_000_000_000L,
+            HRV_WINDOW_S * MAX_BPM / 60 + 1);
+    private final long maxIntervalNanos = 60_000_000_000L / MIN_BPM;
+
+    private long lastBeatNanos = 0;
+
+    // Beat-to-beat intervals, oldest overwritten first
+    private final long[] intervals = new long[INTERVAL_HISTORY];
+    private final long[] sortScratch = new long[INTERVAL_HISTORY];
+    private int intervalCount = 0;
+    private int intervalIndex = 0;
+
+    private int heartRate = 0;
+    private int confidence = 0;
+
+    /**
+     * @param sampleRateHz Nominal frame rate the filter is designed for
+     */
+    public StreamingHeartRateEngine(double sampleRateHz) {
+        filter = new BandPassFilter(sampleRateHz);
+        // The refractory period caps the rate at MAX_BPM: a dicrotic notch or noise is not a new beat
+        peakDetector = new StreamingPeakDetector(sampleRateHz, 60.0 / MAX_BPM,
+                PEAK_THRESHOLD, ENVELOPE_TIME_CONSTANT_S);
+    }
+
+    /**
+     * Feed one frame
+     * @param timestampNanos Capture time of the frame
+     * @param green Mean green intensity of the frame
+     * @return true if a beat was detected and a new estimate is available
+     */
+    public boolean process(long timestampNanos, double green) {
+        // Blood volume absorbs light, so the pulse shows as dips in intensity; invert to get peaks
+        double x = -filter.process(green);
+        beats.advanceTo(timestampNanos);
+        return peakDetector.add(timestampNanos, x)
+                && onPeak(peakDetector.getPeakNanos(), peakDetector.getPeakHeight());
+    }
+
+    private boolean onPeak(long peakNanos, double height) {
+        if (lastBeatNanos == 0) {
+            lastBeatNanos = peakNanos;
+            beats.addPeak(peakNanos, height);
+            return false;
+        }
+        long interval = peakNanos - lastBeatNanos;
+        lastBeatNanos = peakNanos;
+        if (interval > maxIntervalNanos) {
+            // Missed beats or lost contact, restart interval tracking from here
+            beats.clear();
+            beats.addPeak(peakNanos, height);
+            return false;
+        }
+        beats.addPeak(peakNanos, height);
+
+        intervals[intervalIndex] = interval;
+        intervalIndex = (intervalIndex + 1) % INTERVAL_HISTORY;
+        if (intervalCount < INTERVAL_HISTORY) {
+            intervalCount++;
+        }
+        if (intervalCount < 2) {
+            return false;
+        }
+
+        System.arraycopy(intervals, 0, sortScratch, 0, intervalCount);
+        Arrays.sort(sortScratch, 0, intervalCount);
+        long median = sortScratch[intervalCount / 2];
+        heartRate = (int) Math.round(60e9 / median);
+
+        double mean = 0;
+        for (int i = 0; i < intervalCount; i++) {
+            mean += intervals[i];
+        }
+        mean /= intervalCount;
+        double variance = 0;
+        for (int i = 0; i < intervalCount; i++) {
+            double d = intervals[i] - mean;
+            variance += d * d;
+        }
+        double cv = Math.sqrt(variance / intervalCount) / mean;
+        // Regular rhythm and a full interval history give full confidence
+        double regularity = Math.max(0, 1 - 4 * cv);
+        double history = (double) intervalCount / INTERVAL_HISTORY;
+        confidence = (int) Math.round(100 * regularity * history);
+        return true;
+    }
+
+    public int getHeartRate() {
+        return heartRate;
+    }
+
+    public int getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Root mean square of successive beat-to-beat differences over the HRV window, in ms
+     */
+    public double getRmssdMs() {
+        return beats.getRmssdMs();
+    }
+
+    /**
+     * Standard deviation of the beat-to-beat intervals over the HRV window, in ms
+     */
+    public double getSdnnMs() {
+        return beats.getSdnnMs();
+    }
+
+    public String getSignalQuality() {
+        if (confidence >= 80) return "Excellent";
+        if (confidence >= 60) return "Good";
+        if (confidence >= 40) return "Fair";
+        return "Poor";
+    }
+
+    /**
+     * Build a result carrying only the current heart rate estimate, for PPGResultListener.onResult
+     */
+    public PPGResult buildResult() {
+        PPGResult result = new PPGResult();
+        result.status = "success";
+        result.heart_rate = new PPGResult.HeartRate();
+        result.heart_rate.heart_rate = heartRate;
+        result.heart_rate.confidence = confidence;
+        result.heart_rate.method = METHOD;
+        result.heart_rate.signal_quality = getSignalQuality();
+        result.heart_rate.hrv_rmssd = beats.getRmssdMs();
+        result.heart_rate.hrv_sdnn = beats.getSdnnMs();
+        return result;
+    }
+
+    public void reset() {
+        filter.reset();
+        peakDetector.reset();
+        beats.clear();
+        lastBeatNanos = 0;
+        intervalCount = 0;
+        intervalIndex = 0;
+        heartRate = 0;
+        confidence = 0;
+    }
+}
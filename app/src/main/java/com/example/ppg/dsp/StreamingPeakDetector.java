@@ -0,0 +1,139 @@
+package com.example.ppg.dsp;
+
+/**
+ * Single-pass pulse peak detector for a uniformly sampled, band-passed PPG
+ * signal with pulse peaks positive.
+ *
+ * A local maximum is a candidate when it exceeds an adaptive threshold: the
+ * running mean plus a fraction of the running mean absolute deviation, both
+ * tracked with the same time constant. Like find_peaks(distance=...), peaks
+ * closer than the refractory period compete and only the highest is kept, so a
+ * candidate is confirmed once the refractory period has passed without a higher
+ * one. Confirmation therefore lags the peak by the refractory period.
+ *
+ * Peak times are refined by fitting a parabola through the maximum and its two
+ * neighbours, so beat intervals are not quantised to the frame period.
+ */
+public final class StreamingPeakDetector {
+
+    private final long refractoryNanos;
+    private final double thresholdFraction;
+    private final double alpha;
+    private final int warmupSamples;
+
+    private int samplesSeen = 0;
+    private double mean = 0;
+    private double deviation = 0;
+    private double prev2 = 0;
+    private double prev1 = 0;
+    private long prev1Nanos = 0;
+    private long prev2Nanos = 0;
+
+    // Refractory distances use the sample times; only the reported peak time is interpolated
+    private boolean hasCandidate = false;
+    private long candidateSampleNanos;
+    private long candidateNanos;
+    private double candidateHeight;
+
+    private boolean hasPeak = false;
+    private long peakSampleNanos;
+    private long peakNanos;
+    private double peakHeight;
+
+    /**
+     * @param sampleRateHz Input sampling rate
+     * @param refractorySeconds Minimum distance between peaks
+     * @param thresholdFraction Threshold above the running mean, in units of the
+     *                          running mean absolute deviation (0 = the mean, as the training script)
+     * @param adaptSeconds Time constant of the running mean and deviation; no peaks
+     *                     are reported during the first three quarters of it
+     */
+    public StreamingPeakDetector(double sampleRateHz, double refractorySeconds,
+                                 double thresholdFraction, double adaptSeconds) {
+        if (sampleRateHz <= 0 || refractorySeconds <= 0 || adaptSeconds <= 0) {
+            throw new IllegalArgumentException("Rate, refractory period and time constant must be positive");
+        }
+        refractoryNanos = (long) (refractorySeconds * 1e9);
+        this.thresholdFraction = thresholdFraction;
+        alpha = 1.0 / (adaptSeconds * sampleRateHz);
+        warmupSamples = (int) (0.75 * adaptSeconds * sampleRateHz);
+    }
+
+    /**
+     * Feed one sample
+     * @return true if a peak was confirmed; read it with getPeakNanos and getPeakHeight
+     */
+    public boolean add(long timestampNanos, double x) {
+        if (samplesSeen == 0) {
+            mean = x;
+        }
+        mean += alpha * (x - mean);
+        deviation += alpha * (Math.abs(x - mean) - deviation);
+        samplesSeen++;
+
+        // prev1 is evaluated below; once it is a full refractory period past the
+        // candidate, nothing can displace the candidate any more
+        boolean confirmed = false;
+        if (hasCandidate && prev1Nanos - candidateSampleNanos >= refractoryNanos) {
+            hasCandidate = false;
+            hasPeak = true;
+            peakSampleNanos = candidateSampleNanos;
+            peakNanos = candidateNanos;
+            peakHeight = candidateHeight;
+            confirmed = true;
+        }
+
+        if (samplesSeen > warmupSamples
+                && prev1 > prev2 && prev1 >= x
+                && prev1 > mean + thresholdFraction * deviation
+                && (!hasPeak || prev1Nanos - peakSampleNanos >= refractoryNanos)
+                && (!hasCandidate || prev1 > candidateHeight)) {
+            // A higher peak within the refractory period replaces the candidate
+            hasCandidate = true;
+            candidateSampleNanos = prev1Nanos;
+            candidateNanos = interpolatePeakTime(x, timestampNanos);
+            candidateHeight = prev1;
+        }
+
+        prev2 = prev1;
+        prev1 = x;
+        prev2Nanos = prev1Nanos;
+        prev1Nanos = timestampNanos;
+        return confirmed;
+    }
+
+    // Vertex of the parabola through (prev2, prev1, x), as an offset from prev1 in [-0.5, 0.5] samples
+    private long interpolatePeakTime(double x, long timestampNanos) {
+        double curvature = prev2 - 2 * prev1 + x;
+        if (curvature >= 0) {
+            return prev1Nanos;
+        }
+        double offset = 0.5 * (prev2 - x) / curvature;
+        long spacing = offset >= 0 ? timestampNanos - prev1Nanos : prev1Nanos - prev2Nanos;
+        return prev1Nanos + Math.round(offset * spacing);
+    }
+
+    /**
+     * Timestamp of the last confirmed peak
+     */
+    public long getPeakNanos() {
+        return peakNanos;
+    }
+
+    /**
+     * Signal value at the last confirmed peak
+     */
+    public double getPeakHeight() {
+        return peakHeight;
+    }
+
+    public void reset() {
+        samplesSeen = 0;
+        mean = 0;
+        deviation = 0;
+        prev2 = prev1 = 0;
+        prev1Nanos = prev2Nanos = 0;
+        hasCandidate = false;
+        hasPeak = false;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.ppg.dsp;
+
+/**
+ * Turns an irregularly timed sample series (camera frames) into a uniform-rate
+ * signal, as the filters, spectral estimates and BP model all assume a fixed fs.
+ *
+ * Output samples lie on a grid anchored at the first input timestamp and are
+ * interpolated linearly, or with a cubic Hermite spline whose tangents come from
+ * the neighbouring inputs (one input of extra latency). An input interval longer
+ * than the gap limit is not bridged: the gap is reported and the grid restarts
+ * at the next input, so dropped frames never turn into invented signal.
+ */
+public final class UniformResampler {
+
+    public enum Interpolation {
+        LINEAR,
+        CUBIC
+    }
+
+    /**
+     * Receives the uniform output, on the thread that calls add()
+     */
+    public interface Output {
+        void onSample(long timestampNanos, double value);
+
+        /**
+         * No samples were produced between these input timestamps
+         */
+        default void onGap(long fromNanos, long toNanos) {}
+    }
+
+    private final double outputRateHz;
+    private final double periodNanos;
+    private final Interpolation interpolation;
+    private final long maxGapNanos;
+    private final Output output;
+
+    // Last four inputs, oldest first; the segment being emitted is t1..t2
+    private final long[] t = new long[4];
+    private final double[] x = new double[4];
+    private int inputs = 0;
+
+    private long gridStartNanos;
+    private long gridIndex;
+    private long gapCount = 0;
+
+    /**
+     * @param outputRateHz Output sampling rate
+     * @param interpolation Interpolation between input samples
+     * @param maxGapNanos Longest input interval that is interpolated across
+     * @param output Receives the resampled signal
+     */
+    public UniformResampler(double outputRateHz, Interpolation interpolation, long maxGapNanos, Output output) {
+        if (outputRateHz <= 0 || maxGapNanos <= 0) {
+            throw new IllegalArgumentException("Rate and gap limit must be positive");
+        }
+        this.outputRateHz = outputRateHz;
+        this.periodNanos = 1e9 / outputRateHz;
+        this.interpolation = interpolation;
+        this.maxGapNanos = maxGapNanos;
+        this.output = output;
+    }
+
+    /**
+     * Add one input sample. Out-of-order or repeated timestamps are ignored.
+     */
+    public void add(long timestampNanos, double value) {
+        if (inputs > 0) {
+            long last = t[Math.min(inputs, 4) - 1];
+            if (timestampNanos <= last) {
+                return;
+            }
+            if (timestampNanos - last > maxGapNanos) {
+                // Finish the segment before the gap, then start over on this sample
+                flush();
+                gapCount++;
+                output.onGap(last, timestampNanos);
+                inputs = 0;
+            }
+        }
+
+        if (inputs == 0) {
+            gridStartNanos = timestampNanos;
+            gridIndex = 0;
+        }
+        push(timestampNanos, value);
+
+        if (interpolation == Interpolation.LINEAR) {
+            if (inputs >= 2) {
+                emitSegment(false);
+            }
+        } else if (inputs >= 3) {
+            // The segment before the newest input now has both of its tangents
+            emitSegment(true);
+        }
+    }
+
+    /**
+     * Emit the final pending segment, e.g. at the end of a session. With cubic
+     * interpolation its end tangent falls back to the segment slope.
+     */
+    public void flush() {
+        if (interpolation == Interpolation.CUBIC && inputs >= 2) {
+            // Repeat the last input so it becomes t2 of a segment with no t3
+            int n = Math.min(inputs, 4);
+            emitRange(t[n - 2], x[n - 2], t[n - 1], x[n - 1],
+                    slopeBefore(n - 2), (x[n - 1] - x[n - 2]) / (t[n - 1] - t[n - 2]), true);
+        }
+    }
+
+    private void push(long timestampNanos, double value) {
+        if (inputs >= 4) {
+            System.arraycopy(t, 1, t, 0, 3);
+            System.arraycopy(x, 1, x, 0, 3);
+            t[3] = timestampNanos;
+            x[3] = value;
+        } else {
+            t[inputs] = timestampNanos;
+            x[inputs] = value;
+        }
+        inputs++;
+    }
+
+    private void emitSegment(boolean cubic) {
+        int n = Math.min(inputs, 4);
+        if (!cubic) {
+            emitRange(t[n - 2], x[n - 2], t[n - 1], x[n - 1], 0, 0, false);
+            return;
+        }
+        // Segment n-3 .. n-2, tangents from its neighbours
+        int a = n - 3;
+        int b = n - 2;
+        double m0 = slopeBefore(a);
+        double m1 = (x[n - 1] - x[a]) / (t[n - 1] - t[a]);
+        emitRange(t[a], x[a], t[b], x[b], m0, m1, true);
+    }
+
+    // Tangent at input i: central difference if it has a predecessor, else the forward slope
+    private double slopeBefore(int i) {
+        if (i > 0) {
+            return (x[i + 1] - x[i - 1]) / (t[i + 1] - t[i - 1]);
+        }
+        return (x[i + 1] - x[i]) / (t[i + 1] - t[i]);
+    }
+
+    // Emit every grid point in [t0, t1)
+    private void emitRange(long t0, double x0, long t1, double x1, double m0, double m1, boolean cubic) {
+        double h = t1 - t0;
+        while (true) {
+            long tk = gridStartNanos + Math.round(gridIndex * periodNanos);
+            if (tk >= t1) {
+                return;
+            }
+            if (tk >= t0) {
+                double s = (tk - t0) / h;
+                double value;
+                if (cubic) {
+                    double s2 = s * s;
+                    double s3 = s2 * s;
+                    value = (2 * s3 - 3 * s2 + 1) * x0 + (s3 - 2 * s2 + s) * h * m0
+                            + (-2 * s3 + 3 * s2) * x1 + (s3 - s2) * h * m1;
+                } else {
+                    value = x0 + s * (x1 - x0);
+                }
+                output.onSample(tk, value);
+            }
+            gridIndex++;
+        }
+    }
+
+    public double getOutputRateHz() {
+        return outputRateHz;
+    }
+
+    /**
+     * Number of gaps detected since the last reset
+     */
+    public long getGapCount() {
+        return gapCount;
+    }
+
+    public void reset() {
+        inputs = 0;
+        gridIndex = 0;
+        gapCount = 0;
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.ppg.dsp;
+
+import java.util.Arrays;
+
+/**
+ * Streaming Welch power spectral density over a sliding window, and the
+ * frequency-domain features the BP model is trained on.
+ *
+ * Matches scipy.signal.welch defaults: periodic Hann window, 50% overlap,
+ * per-segment mean removal, one-sided density scaling and mean averaging. The
+ * training script uses nperseg = min(window / 4, 256), i.e. 250 samples for its
+ * 1000-sample windows at 125 Hz.
+ *
+ * Each segment is transformed once, when its last sample arrives, and its
+ * periodogram kept until it slides out of the window. A running per-bin sum of
+ * the stored periodograms gains the new one and loses the evicted one, so a
+ * segment costs one FFT plus O(bins) and nothing is recomputed per sample. The
+ * sum is rebuilt exactly once per full turnover of the window, so rounding from
+ * the subtractions cannot build up over a long session.
+ */
+public class WelchEstimator {
+
+    private static final double LF_LOW_HZ = 0.04;
+    private static final double LF_HIGH_HZ = 0.15;
+    private static final double HF_LOW_HZ = 0.15;
+    private static final double HF_HIGH_HZ = 0.4;
+
+    private final double sampleRateHz;
+    private final int segmentLength;
+    private final int step;
+    private final RealFft fft;
+    private final double[] window;
+    private final double densityScale;
+    private final int bins;
+
+    // Most recent segmentLength input samples
+    private final double[] history;
+    private int historyStart = 0;
+    private int historyCount = 0;
+    private int samplesUntilSegment = 1;
+
+    // Periodograms of the segments in the window, oldest overwritten first
+    private final double[][] periodograms;
+    private int periodogramStart = 0;
+    private int periodogramCount = 0;
+    private final double[] psdSum;
+    private int evictionsSinceResum = 0;
+
+    private final double[] psd;
+    private final double[] segment;
+    private final double[] scratchRe;
+    private final double[] scratchIm;
+
+    /**
+     * Segment layout of the training script for a window of windowSize samples
+     */
+    public WelchEstimator(double sampleRateHz, int windowSize) {
+        this(sampleRateHz, Math.min(windowSize / 4, 256), windowSize);
+    }
+
+    /**
+     * @param sampleRateHz Sampling rate of the input
+     * @param segmentLength Welch segment length (nperseg)
+     * @param windowSize Sliding window the PSD is averaged over, in samples
+     */
+    public WelchEstimator(double sampleRateHz, int segmentLength, int windowSize) {
+        if (segmentLength < 2 || windowSize < segmentLength) {
+            throw new IllegalArgumentException("Segment must be at least 2 samples and fit the window");
+        }
+        this.sampleRateHz = sampleRateHz;
+        this.segmentLength = segmentLength;
+        this.step = segmentLength - segmentLength / 2;
+        fft = new RealFft(segmentLength);
+        bins = fft.binCount();
+
+        // Periodic Hann window, as scipy's get_window("hann", n)
+        window = new double[segmentLength];
+        double sumSquares = 0;
+        for (int i = 0; i < segmentLength; i++) {
+            window[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / segmentLength);
+            sumSquares += window[i] * window[i];
+        }
+        densityScale = 1.0 / (sampleRateHz * sumSquares);
+
+        history = new double[segmentLength];
+        periodograms = new double[1 + (windowSize - segmentLength) / step][bins];
+        psdSum = new double[bins];
+        psd = new double[bins];
+        segment = new double[segmentLength];
+        scratchRe = new double[bins];
+        scratchIm = new double[bins];
+    }
+
+    /**
+     * Add one uniformly sampled value
+     * @return true if a segment completed and the PSD was updated
+     */
+    public boolean add(double x) {
+        if (historyCount == segmentLength) {
+            history[historyStart] = x;
+            historyStart = (historyStart + 1) % segmentLength;
+        } else {
+            history[historyCount++] = x;
+        }
+        // A segment completes every step samples once the first one is full
+        if (historyCount < segmentLength || --samplesUntilSegment > 0) {
+            return false;
+        }
+        samplesUntilSegment = step;
+        addSegment();
+        return true;
+    }
+
+    private void addSegment() {
+        double mean = 0;
+        for (int i = 0; i < segmentLength; i++) {
+            segment[i] = history[(historyStart + i) % segmentLength];
+            mean += segment[i];
+        }
+        mean /= segmentLength;
+        for (int i = 0; i < segmentLength; i++) {
+            segment[i] = (segment[i] - mean) * window[i];
+        }
+
+        // Reuse the slot of the segment that just slid out of the window
+        double[] periodogram;
+        boolean evicted = periodogramCount == periodograms.length;
+        if (evicted) {
+            periodogram = periodograms[periodogramStart];
+            periodogramStart = (periodogramStart + 1) % periodograms.length;
+            for (int k = 0; k < bins; k++) {
+                psdSum[k] -= periodogram[k];
+            }
+        } else {
+            periodogram = periodograms[(periodogramStart + periodogramCount) % periodograms.length];
+            periodogramCount++;
+        }
+        fft.powerSpectrum(segment, periodogram, scratchRe, scratchIm);
+        for (int k = 0; k < bins; k++) {
+            // One-sided: double everything except DC and, for even lengths, Nyquist
+            boolean unpaired = k == 0 || (segmentLength % 2 == 0 && k == bins - 1);
+            periodogram[k] *= unpaired ? densityScale : 2 * densityScale;
+            psdSum[k] += periodogram[k];
+        }
+
+        if (evicted && ++evictionsSinceResum >= periodograms.length) {
+            evictionsSinceResum = 0;
+            for (int k = 0; k < bins; k++) {
+                double sum = 0;
+                for (int s = 0; s < periodogramCount; s++) {
+                    sum += periodograms[s][k];
+                }
+                psdSum[k] = sum;
+            }
+        }
+        for (int k = 0; k < bins; k++) {
+            psd[k] = psdSum[k] / periodogramCount;
+        }
+    }
+
+    /**
+     * Number of segments currently averaged
+     */
+    public int getSegmentCount() {
+        return periodogramCount;
+    }
+
+    public int getBinCount() {
+        return bins;
+    }
+
+    public double getFrequency(int bin) {
+        return bin * sampleRateHz / segmentLength;
+    }
+
+    /**
+     * Averaged PSD in units^2/Hz, bins 0 .. segmentLength / 2. Valid once a segment completed.
+     */
+    public double[] getPsd() {
+        return psd;
+    }
+
+    /**
+     * Write the frequency features (LF/HF power .. spectral entropy) into a
+     * PPGFeatures-ordered vector, zero until the first segment completes
+     */
+    public void fillFrequencyFeatures(double[] features) {
+        if (periodogramCount == 0) {
+            features[PPGFeatures.FREQ_LF_POWER] = 0;
+            features[PPGFeatures.FREQ_HF_POWER] = 0;
+            features[PPGFeatures.FREQ_LF_HF_RATIO] = 0;
+            features[PPGFeatures.FREQ_PEAK_FREQUENCY] = 0;
+            features[PPGFeatures.FREQ_SPECTRAL_ENTROPY] = 0;
+            return;
+        }
+        double lf = bandPower(LF_LOW_HZ, LF_HIGH_HZ);
+        double hf = bandPower(HF_LOW_HZ, HF_HIGH_HZ);
+        features[PPGFeatures.FREQ_LF_POWER] = lf;
+        features[PPGFeatures.FREQ_HF_POWER] = hf;
+        features[PPGFeatures.FREQ_LF_HF_RATIO] = lf / (hf + PPGFeatures.EPSILON);
+
+        int peak = 0;
+        double total = 0;
+        for (int k = 0; k < bins; k++) {
+            if (psd[k] > psd[peak]) {
+                peak = k;
+            }
+            total += psd[k];
+        }
+        features[PPGFeatures.FREQ_PEAK_FREQUENCY] = getFrequency(peak);
+
+        double entropy = 0;
+        for (int k = 0; k < bins; k++) {
+            double p = psd[k] / (total + PPGFeatures.EPSILON);
+            entropy -= p * Math.log(p + 1e-10);
+        }
+        features[PPGFeatures.FREQ_SPECTRAL_ENTROPY] = entropy;
+    }
+
+    // Trapezoidal integral over the bins in [low, high), as np.trapz on the masked PSD
+    private double bandPower(double lowHz, double highHz) {
+        double power = 0;
+        int previous = -1;
+        for (int k = 0; k < bins; k++) {
+            double f = getFrequency(k);
+            if (f < lowHz || f >= highHz) {
+                continue;
+            }
+            if (previous >= 0) {
+                power += (psd[previous] + psd[k]) / 2 * (f - getFrequency(previous));
+            }
+            previous = k;
+        }
+        return power;
+    }
+
+    public void reset() {
+        historyStart = 0;
+        historyCount = 0;
+        samplesUntilSegment = 1;
+        periodogramStart = 0;
+        periodogramCount = 0;
+        evictionsSinceResum = 0;
+        Arrays.fill(psdSum, 0);
+    }
+}
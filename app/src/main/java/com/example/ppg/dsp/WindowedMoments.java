@@ -0,0 +1,191 @@
+package com.example.ppg.dsp;
+
+/**
+ * Running moments (up to the fourth) and sign-change count over a sliding window,
+ * updated in O(1) per added or evicted sample.
+ *
+ * Power sums are kept relative to a reference value (the first sample seen) to
+ * limit cancellation, and are recomputed exactly from the window once per window
+ * length of updates so rounding error cannot build up.
+ */
+public final class WindowedMoments {
+
+    private final double[] window;
+    private int start = 0;
+    private int count = 0;
+    private int updatesSinceRefresh = 0;
+
+    private boolean hasReference = false;
+    private double reference;
+    private double s1, s2, s3, s4;
+    private int signChanges = 0;
+
+    /**
+     * @param capacity Window length in samples
+     */
+    public WindowedMoments(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Window too short: " + capacity);
+        }
+        window = new double[capacity];
+    }
+
+    /**
+     * Add a sample, evicting the oldest one if the window is full
+     */
+    public void add(double x) {
+        if (!hasReference) {
+            reference = x;
+            hasReference = true;
+        }
+        if (count == window.length) {
+            evictOldest();
+        }
+        if (count > 0 && signChanged(window[(start + count - 1) % window.length], x)) {
+            signChanges++;
+        }
+        window[(start + count) % window.length] = x;
+        count++;
+        accumulate(x - reference, 1);
+
+        if (++updatesSinceRefresh >= window.length) {
+            refresh();
+        }
+    }
+
+    /**
+     * Remove the oldest sample from the window
+     */
+    public void evictOldest() {
+        if (count == 0) {
+            return;
+        }
+        double oldest = window[start];
+        if (count > 1 && signChanged(oldest, window[(start + 1) % window.length])) {
+            signChanges--;
+        }
+        start = (start + 1) % window.length;
+        count--;
+        accumulate(oldest - reference, -1);
+    }
+
+    private void accumulate(double d, int sign) {
+        double d2 = d * d;
+        s1 += sign * d;
+        s2 += sign * d2;
+        s3 += sign * d2 * d;
+        s4 += sign * d2 * d2;
+    }
+
+    private static boolean signChanged(double a, double b) {
+        // Same test as numpy's diff(signbit(x)), so -0.0 counts as negative
+        return (Double.doubleToRawLongBits(a) < 0) != (Double.doubleToRawLongBits(b) < 0);
+    }
+
+    private void refresh() {
+        updatesSinceRefresh = 0;
+        s1 = s2 = s3 = s4 = 0;
+        if (count > 0) {
+            reference = window[start];
+        }
+        for (int i = 0; i < count; i++) {
+            accumulate(window[(start + i) % window.length] - reference, 1);
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return window.length;
+    }
+
+    public boolean isFull() {
+        return count == window.length;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : reference + s1 / count;
+    }
+
+    /**
+     * Population variance (numpy's default ddof=0)
+     */
+    public double getVariance() {
+        if (count == 0) return 0;
+        double m = s1 / count;
+        return Math.max(0, s2 / count - m * m);
+    }
+
+    public double getStd() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Biased sample skewness, as scipy.stats.skew
+     */
+    public double getSkewness() {
+        if (count == 0) return 0;
+        double m = s1 / count;
+        double m2 = Math.max(0, s2 / count - m * m);
+        if (m2 == 0) return 0;
+        double m3 = s3 / count - 3 * m * s2 / count + 2 * m * m * m;
+        return m3 / Math.pow(m2, 1.5);
+    }
+
+    /**
+     * Biased excess kurtosis, as scipy.stats.kurtosis
+     */
+    public double getKurtosis() {
+        if (count == 0) return 0;
+        double m = s1 / count;
+        double mm = m * m;
+        double m2 = Math.max(0, s2 / count - mm);
+        if (m2 == 0) return 0;
+        double m4 = s4 / count - 4 * m * s3 / count + 6 * mm * s2 / count - 3 * mm * mm;
+        return m4 / (m2 * m2) - 3;
+    }
+
+    /**
+     * Sum of squares of the raw values
+     */
+    public double getSumOfSquares() {
+        // sum((d + r)^2) = s2 + 2 r s1 + n r^2
+        return s2 + 2 * reference * s1 + count * reference * reference;
+    }
+
+    public double getRms() {
+        return count == 0 ? 0 : Math.sqrt(Math.max(0, getSumOfSquares() / count));
+    }
+
+    /**
+     * Number of sign changes between consecutive samples in the window
+     */
+    public int getSignChanges() {
+        return signChanges;
+    }
+
+    /**
+     * Mean absolute deviation around the window mean. Unlike the other
+     * statistics this is not a running sum and costs one pass over the window.
+     */
+    public double getMeanAbsoluteDeviation() {
+        if (count == 0) return 0;
+        double mean = getMean();
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += Math.abs(window[(start + i) % window.length] - mean);
+        }
+        return sum / count;
+    }
+
+    public void clear() {
+        start = 0;
+        count = 0;
+        updatesSinceRefresh = 0;
+        hasReference = false;
+        s1 = s2 = s3 = s4 = 0;
+        signChanges = 0;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.ppg.ml;
+
+import com.example.ppg.dsp.PPGFeatures;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * On-device systolic/diastolic BP prediction from the 33-feature vector: the
+ * training script's RobustScaler followed by one tree ensemble per target.
+ *
+ * Loaded from the JSON file exported by real_ppg_bp_regression.py:
+ * <pre>
+ * {
+ *   "version": 1,
+ *   "feature_names": [33 names in PPGFeatures order],
+ *   "scaler": {"center": [...], "scale": [...]},
+ *   "systolic":  {"base_score": 120.5, "trees": [XGBoost JSON dump]},
+ *   "diastolic": {"base_score": 80.1,  "trees": [XGBoost JSON dump]}
+ * }
+ * </pre>
+ */
+public final class BloodPressureModel {
+
+    private final double[] center;
+    private final double[] scale;
+    private final TreeEnsemble systolic;
+    private final TreeEnsemble diastolic;
+    // Scaled copy of the input, reused so predict does not allocate
+    private final double[] scaled = new double[PPGFeatures.COUNT];
+
+    public BloodPressureModel(double[] center, double[] scale, TreeEnsemble systolic, TreeEnsemble diastolic) {
+        if (center.length != PPGFeatures.COUNT || scale.length != PPGFeatures.COUNT) {
+            throw new IllegalArgumentException("Scaler must have " + PPGFeatures.COUNT + " features");
+        }
+        if (systolic.getMaxFeatureIndex() >= PPGFeatures.COUNT || diastolic.getMaxFeatureIndex() >= PPGFeatures.COUNT) {
+            throw new IllegalArgumentException("Model splits on unknown features");
+        }
+        this.center = center.clone();
+        this.scale = scale.clone();
+        this.systolic = systolic;
+        this.diastolic = diastolic;
+    }
+
+    /**
+     * Predict systolic and diastolic BP. Not thread-safe; use one instance per thread.
+     * @param features Unscaled features in PPGFeatures order
+     * @param out Receives {systolic, diastolic} in mmHg
+     */
+    public void predict(double[] features, float[] out) {
+        for (int i = 0; i < PPGFeatures.COUNT; i++) {
+            // RobustScaler leaves zero-scale features unscaled
+            double s = scale[i] == 0 ? 1 : scale[i];
+            scaled[i] = (features[i] - center[i]) / s;
+        }
+        out[0] = systolic.predict(scaled);
+        out[1] = diastolic.predict(scaled);
+    }
+
+    public TreeEnsemble getSystolicModel() {
+        return systolic;
+    }
+
+    public TreeEnsemble getDiastolicModel() {
+        return diastolic;
+    }
+
+    /**
+     * Load the exported model JSON
+     */
+    public static BloodPressureModel load(Reader input) throws IOException {
+        JsonReader reader = new JsonReader(input);
+        double[] center = null;
+        double[] scale = null;
+        TreeEnsemble systolic = null;
+        TreeEnsemble diastolic = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "version":
+                    int version = reader.nextInt();
+                    if (version != 1) {
+                        throw new IOException("Unsupported BP model version " + version);
+                    }
+                    break;
+                case "feature_names":
+                    checkFeatureNames(reader);
+                    break;
+                case "scaler":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String name = reader.nextName();
+                        if ("center".equals(name)) {
+                            center = readDoubles(reader);
+                        } else if ("scale".equals(name)) {
+                            scale = readDoubles(reader);
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                case "systolic":
+                    systolic = readEnsemble(reader);
+                    break;
+                case "diastolic":
+                    diastolic = readEnsemble(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (center == null || scale == null || systolic == null || diastolic == null) {
+            throw new IOException("BP model is missing the scaler or a target model");
+        }
+        try {
+            return new BloodPressureModel(center, scale, systolic, diastolic);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid BP model: " + e.getMessage());
+        }
+    }
+
+    private static TreeEnsemble readEnsemble(JsonReader reader) throws IOException {
+        float baseScore = 0.5f; // XGBoost's default when the export does not say
+        TreeEnsemble ensemble = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("base_score".equals(name)) {
+                baseScore = (float) reader.nextDouble();
+            } else if ("trees".equals(name)) {
+                // base_score may come after the trees, so build with 0 and shift below
+                ensemble = TreeEnsembleLoader.fromJsonDump(reader, 0f);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (ensemble == null) {
+            throw new IOException("Target model has no trees");
+        }
+        return new TreeEnsemble(baseScore, ensemble.roots, ensemble.feature, ensemble.value,
+                ensemble.yes, ensemble.no, ensemble.missing);
+    }
+
+    private static void checkFeatureNames(JsonReader reader) throws IOException {
+        int i = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String name = reader.nextString();
+            if (i >= PPGFeatures.COUNT || !PPGFeatures.NAMES[i].equals(name)) {
+                throw new IOException("Feature " + i + " is '" + name + "', expected PPGFeatures order");
+            }
+            i++;
+        }
+        reader.endArray();
+        if (i != PPGFeatures.COUNT) {
+            throw new IOException("Model has " + i + " features, expected " + PPGFeatures.COUNT);
+        }
+    }
+
+    private static double[] readDoubles(JsonReader reader) throws IOException {
+        List<Double> values = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            values.add(reader.nextDouble());
+        }
+        reader.endArray();
+        double[] array = new double[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
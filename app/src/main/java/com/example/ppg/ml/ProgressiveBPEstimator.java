@@ -0,0 +1,260 @@
+package com.example.ppg.ml;
+
+import com.example.ppg.PPGResult;
+import com.example.ppg.dsp.BandPassFilter;
+import com.example.ppg.dsp.PPGFeatureExtractor;
+import com.example.ppg.dsp.PPGFeatures;
+
+/**
+ * On-device BP estimates during capture, instead of one server result at the end.
+ *
+ * The green signal (already resampled to PPGFeatures.SAMPLE_RATE_HZ) is band-passed
+ * and fed to a PPGFeatureExtractor, which keeps the feature vector of the last
+ * 8-second window up to date per sample. Every ESTIMATE_INTERVAL_S seconds the
+ * vector is read out, normalized like the training data and run through the
+ * model. The reported estimate is the mean of the last few window predictions,
+ * so it stabilizes as the capture goes on; its confidence combines how much those
+ * predictions agree with how regular the beats in the window are.
+ *
+ * The features are kept up to date whether or not a model is loaded, so they are
+ * available live during every capture; only the prediction waits for the model.
+ */
+public class ProgressiveBPEstimator {
+
+    public static final String METHOD = "on-device";
+    // bp_analysis_result.status of the estimates; the server's final result has another status
+    public static final String STATUS = "progressive";
+
+    private static final double ESTIMATE_INTERVAL_S = 2.0;
+    private static final int ESTIMATE_HISTORY = 4;
+    // Spread of the recent systolic predictions at which confidence reaches zero
+    private static final double MAX_SYSTOLIC_SPREAD_MMHG = 10.0;
+    // Samples further than this many standard deviations from the mean are spikes
+    // and do not widen the normalization range, as remove_spike_outliers
+    private static final double SPIKE_Z = 3.0;
+    private static final int MIN_RANGE_SAMPLES = (int) PPGFeatures.SAMPLE_RATE_HZ;
+
+    // Set from the model loader thread, read at each estimate
+    private volatile BloodPressureModel model;
+    private final BandPassFilter filter = new BandPassFilter(PPGFeatures.SAMPLE_RATE_HZ);
+    private final PPGFeatureExtractor extractor = new PPGFeatureExtractor();
+    private final int estimateIntervalSamples = (int) (ESTIMATE_INTERVAL_S * PPGFeatures.SAMPLE_RATE_HZ);
+    // Reused so estimating does not allocate
+    private final double[] features = new double[PPGFeatures.COUNT];
+    private final float[] prediction = new float[2];
+
+    // Raw signal statistics for the 0-1 normalization of the training script
+    private long rawCount = 0;
+    private double rawMean = 0;
+    private double rawM2 = 0;
+    private double rawMin = Double.MAX_VALUE;
+    private double rawMax = -Double.MAX_VALUE;
+
+    private int samplesUntilEstimate;
+    private final float[] systolicHistory = new float[ESTIMATE_HISTORY];
+    private final float[] diastolicHistory = new float[ESTIMATE_HISTORY];
+    private int estimateCount = 0;
+    private boolean newEstimate = false;
+
+    private float systolic = 0;
+    private float diastolic = 0;
+    private int confidence = 0;
+
+    /**
+     * Features only, until setModel() is called
+     */
+    public ProgressiveBPEstimator() {
+        this(null);
+    }
+
+    /**
+     * @param model Model to predict with, or null for features only; not shared with other threads
+     */
+    public ProgressiveBPEstimator(BloodPressureModel model) {
+        this.model = model;
+        samplesUntilEstimate = estimateIntervalSamples;
+    }
+
+    /**
+     * Start predicting with a model; may be called from any thread, takes effect at the
+     * next feature update
+     */
+    public void setModel(BloodPressureModel model) {
+        this.model = model;
+    }
+
+    public boolean hasModel() {
+        return model != null;
+    }
+
+    /**
+     * Feed one sample of the resampled green signal
+     * @return true if the features were updated; hasNewEstimate() tells whether a
+     * model also made a new estimate from them
+     */
+    public boolean add(double green) {
+        trackRange(green);
+        // Inverted like the heart rate path, so pulse peaks are positive
+        extractor.add(-filter.process(green));
+        if (--samplesUntilEstimate > 0 || !extractor.isWindowFull()) {
+            return false;
+        }
+        samplesUntilEstimate = estimateIntervalSamples;
+        double range = rawMax - rawMin;
+        if (range <= 0) {
+            return false;
+        }
+        extractor.fill(features);
+        PPGFeatures.scaleAmplitude(features, 1 / range);
+        BloodPressureModel current = model;
+        newEstimate = current != null;
+        if (newEstimate) {
+            estimate(current);
+        }
+        return true;
+    }
+
+    private void trackRange(double x) {
+        // Welford's running mean and variance over the whole capture
+        rawCount++;
+        double delta = x - rawMean;
+        rawMean += delta / rawCount;
+        rawM2 += delta * (x - rawMean);
+        if (rawCount > MIN_RANGE_SAMPLES) {
+            double std = Math.sqrt(rawM2 / rawCount);
+            if (Math.abs(x - rawMean) > SPIKE_Z * std) {
+                return;
+            }
+        }
+        rawMin = Math.min(rawMin, x);
+        rawMax = Math.max(rawMax, x);
+    }
+
+    private void estimate(BloodPressureModel model) {
+        model.predict(features, prediction);
+
+        int slot = estimateCount % ESTIMATE_HISTORY;
+        systolicHistory[slot] = prediction[0];
+        diastolicHistory[slot] = prediction[1];
+        estimateCount++;
+
+        int n = Math.min(estimateCount, ESTIMATE_HISTORY);
+        double systolicSum = 0;
+        double diastolicSum = 0;
+        for (int i = 0; i < n; i++) {
+            systolicSum += systolicHistory[i];
+            diastolicSum += diastolicHistory[i];
+        }
+        systolic = (float) (systolicSum / n);
+        diastolic = (float) (diastolicSum / n);
+
+        double variance = 0;
+        for (int i = 0; i < n; i++) {
+            double d = systolicHistory[i] - systolic;
+            variance += d * d;
+        }
+        double agreement = Math.max(0, 1 - Math.sqrt(variance / n) / MAX_SYSTOLIC_SPREAD_MMHG);
+        double regularity = Math.max(0, 1 - 4 * features[PPGFeatures.PEAK_CV_INTERVAL]);
+        double history = (double) n / ESTIMATE_HISTORY;
+        // No beats found in the window means the features describe noise
+        if (features[PPGFeatures.PEAK_COUNT] == 0) {
+            regularity = 0;
+        }
+        confidence = (int) Math.round(100 * agreement * regularity * history);
+    }
+
+    /**
+     * Whether the latest feature update also produced an estimate
+     */
+    public boolean hasNewEstimate() {
+        return newEstimate;
+    }
+
+    /**
+     * Feature vector of the latest update, normalized like the training data; read-only,
+     * overwritten by the next update
+     */
+    public double[] getFeatures() {
+        return features;
+    }
+
+    /**
+     * Smoothed systolic estimate in mmHg, 0 before the first estimate
+     */
+    public float getSystolic() {
+        return systolic;
+    }
+
+    public float getDiastolic() {
+        return diastolic;
+    }
+
+    /**
+     * Systolic prediction of the latest window alone
+     */
+    public float getWindowSystolic() {
+        return prediction[0];
+    }
+
+    public float getWindowDiastolic() {
+        return prediction[1];
+    }
+
+    public int getConfidence() {
+        return confidence;
+    }
+
+    public int getEstimateCount() {
+        return estimateCount;
+    }
+
+    /**
+     * AHA category of a reading, in the names the server uses
+     */
+    public static String categorize(float systolic, float diastolic) {
+        if (systolic > 180 || diastolic > 120) return "Hypertensive Crisis";
+        if (systolic >= 140 || diastolic >= 90) return "High Blood Pressure Stage 2";
+        if (systolic >= 130 || diastolic >= 80) return "High Blood Pressure Stage 1";
+        if (systolic >= 120) return "Elevated";
+        return "Normal";
+    }
+
+    /**
+     * Build a result carrying the current estimate, for PPGResultListener.onResult
+     */
+    public PPGResult buildResult() {
+        PPGResult result = new PPGResult();
+        result.status = "success";
+        result.bp_analysis_result = new PPGResult.BPAnalysisResult();
+        result.bp_analysis_result.status = STATUS;
+        result.bp_analysis_result.model_version = METHOD;
+        result.bp_analysis_result.samples_collected = (int) rawCount;
+        result.bp_analysis_result.collection_duration = rawCount / PPGFeatures.SAMPLE_RATE_HZ;
+        PPGResult.BPAnalysisResult.BPAnalysis bp = new PPGResult.BPAnalysisResult.BPAnalysis();
+        bp.systolic_bp = systolic;
+        bp.diastolic_bp = diastolic;
+        bp.bp_category = categorize(systolic, diastolic);
+        bp.confidence = confidence;
+        bp.quality = confidence >= 60 ? "Good" : confidence >= 40 ? "Fair" : "Poor";
+        result.bp_analysis_result.bp_analysis = bp;
+        return result;
+    }
+
+    public void reset() {
+        filter.reset();
+        extractor.reset();
+        rawCount = 0;
+        rawMean = 0;
+        rawM2 = 0;
+        rawMin = Double.MAX_VALUE;
+        rawMax = -Double.MAX_VALUE;
+        samplesUntilEstimate = estimateIntervalSamples;
+        estimateCount = 0;
+        newEstimate = false;
+        systolic = 0;
+        diastolic = 0;
+        confidence = 0;
+        prediction[0] = 0;
+        prediction[1] = 0;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.ppg.ml;
+
+/**
+ * Gradient-boosted regression tree ensemble stored as flat primitive arrays.
+ *
+ * Node n of the whole ensemble is a split on feature[n] when feature[n] >= 0:
+ * XGBoost goes to yes[n] when x < value[n], to no[n] otherwise, and to missing[n]
+ * when x is NaN. Otherwise the node is a leaf and value[n] is its score. The
+ * prediction is baseScore plus the leaf score of every tree. Scoring walks
+ * arrays only and allocates nothing.
+ */
+public final class TreeEnsemble {
+
+    final float baseScore;
+    final int[] roots;
+    final int[] feature;
+    final float[] value;
+    final int[] yes;
+    final int[] no;
+    final int[] missing;
+
+    TreeEnsemble(float baseScore, int[] roots, int[] feature, float[] value,
+                 int[] yes, int[] no, int[] missing) {
+        int nodes = feature.length;
+        if (value.length != nodes || yes.length != nodes || no.length != nodes || missing.length != nodes) {
+            throw new IllegalArgumentException("Node arrays differ in length");
+        }
+        for (int root : roots) {
+            checkNode(root, nodes);
+        }
+        for (int n = 0; n < nodes; n++) {
+            if (feature[n] >= 0) {
+                checkNode(yes[n], nodes);
+                checkNode(no[n], nodes);
+                checkNode(missing[n], nodes);
+            }
+        }
+        this.baseScore = baseScore;
+        this.roots = roots;
+        this.feature = feature;
+        this.value = value;
+        this.yes = yes;
+        this.no = no;
+        this.missing = missing;
+    }
+
+    private static void checkNode(int node, int nodes) {
+        if (node < 0 || node >= nodes) {
+            throw new IllegalArgumentException("Node index out of range: " + node);
+        }
+    }
+
+    /**
+     * Score one feature vector
+     * @param features Feature values indexed as in training, NaN for missing
+     */
+    public float predict(double[] features) {
+        float sum = baseScore;
+        for (int root : roots) {
+            int n = root;
+            int f;
+            while ((f = feature[n]) >= 0) {
+                double x = f < features.length ? features[f] : Double.NaN;
+                if (Double.isNaN(x)) {
+                    n = missing[n];
+                } else {
+                    // XGBoost evaluates splits in single precision
+                    n = (float) x < value[n] ? yes[n] : no[n];
+                }
+            }
+            sum += value[n];
+        }
+        return sum;
+    }
+
+    public int getTreeCount() {
+        return roots.length;
+    }
+
+    public int getNodeCount() {
+        return feature.length;
+    }
+
+    public float getBaseScore() {
+        return baseScore;
+    }
+
+    /**
+     * @return Highest feature index used by any split, -1 if there are no splits
+     */
+    public int getMaxFeatureIndex() {
+        int max = -1;
+        for (int f : feature) {
+            if (f > max) max = f;
+        }
+        return max;
+    }
+}
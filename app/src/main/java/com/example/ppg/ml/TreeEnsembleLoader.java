@@ -0,0 +1,233 @@
+package com.example.ppg.ml;
+
+import com.example.ppg.dsp.PPGFeatures;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+
+/**
+ * Reads tree ensembles from an XGBoost JSON dump or from the compact binary form,
+ * and writes the binary form.
+ *
+ * The JSON dump is what booster.dump_model(path, dump_format="json") writes: an
+ * array of trees, each a nested node object with nodeid, split, split_condition,
+ * yes, no, missing and children, or nodeid and leaf. Split features may be named
+ * "f<index>" or by a PPGFeatures name. The base score is not part of the dump
+ * and has to be passed in.
+ *
+ * Binary form (big-endian): magic "PPGT", version, base score (f32), tree count,
+ * node count, root index per tree, then per node: feature (-1 for leaves),
+ * threshold or leaf value (f32), yes, no and missing child indices.
+ */
+public final class TreeEnsembleLoader {
+
+    private static final int BINARY_MAGIC = 0x50504754; // "PPGT"
+    private static final int BINARY_VERSION = 1;
+
+    private TreeEnsembleLoader() {}
+
+    /**
+     * Parse an XGBoost JSON dump (an array of trees)
+     */
+    public static TreeEnsemble fromJsonDump(JsonReader reader, float baseScore) throws IOException {
+        Builder builder = new Builder();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            // dump_model writes objects, get_dump(dump_format="json") strings holding one tree each
+            if (reader.peek() == JsonToken.STRING) {
+                JsonReader tree = new JsonReader(new StringReader(reader.nextString()));
+                builder.readTree(tree);
+            } else {
+                builder.readTree(reader);
+            }
+        }
+        reader.endArray();
+        return builder.build(baseScore);
+    }
+
+    /**
+     * Read the compact binary form written by writeBinary
+     */
+    public static TreeEnsemble readBinary(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        if (in.readInt() != BINARY_MAGIC) {
+            throw new IOException("Not a tree ensemble file");
+        }
+        int version = in.readInt();
+        if (version != BINARY_VERSION) {
+            throw new IOException("Unsupported tree ensemble version " + version);
+        }
+        float baseScore = in.readFloat();
+        int treeCount = in.readInt();
+        int nodeCount = in.readInt();
+        if (treeCount < 0 || nodeCount < 0) {
+            throw new IOException("Corrupt tree ensemble header");
+        }
+        int[] roots = new int[treeCount];
+        for (int t = 0; t < treeCount; t++) {
+            roots[t] = in.readInt();
+        }
+        int[] feature = new int[nodeCount];
+        float[] value = new float[nodeCount];
+        int[] yes = new int[nodeCount];
+        int[] no = new int[nodeCount];
+        int[] missing = new int[nodeCount];
+        for (int n = 0; n < nodeCount; n++) {
+            feature[n] = in.readInt();
+            value[n] = in.readFloat();
+            yes[n] = in.readInt();
+            no[n] = in.readInt();
+            missing[n] = in.readInt();
+        }
+        try {
+            return new TreeEnsemble(baseScore, roots, feature, value, yes, no, missing);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt tree ensemble: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write the compact binary form
+     */
+    public static void writeBinary(TreeEnsemble ensemble, OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(BINARY_MAGIC);
+        out.writeInt(BINARY_VERSION);
+        out.writeFloat(ensemble.baseScore);
+        out.writeInt(ensemble.roots.length);
+        out.writeInt(ensemble.feature.length);
+        for (int root : ensemble.roots) {
+            out.writeInt(root);
+        }
+        for (int n = 0; n < ensemble.feature.length; n++) {
+            out.writeInt(ensemble.feature[n]);
+            out.writeFloat(ensemble.value[n]);
+            out.writeInt(ensemble.yes[n]);
+            out.writeInt(ensemble.no[n]);
+            out.writeInt(ensemble.missing[n]);
+        }
+        out.flush();
+    }
+
+    static int parseFeature(String split) throws IOException {
+        if (split.length() > 1 && split.charAt(0) == 'f') {
+            try {
+                return Integer.parseInt(split.substring(1));
+            } catch (NumberFormatException ignored) {
+                // Not "f<index>", try it as a feature name
+            }
+        }
+        int index = PPGFeatures.indexOf(split);
+        if (index < 0) {
+            throw new IOException("Unknown split feature: " + split);
+        }
+        return index;
+    }
+
+    // Collects nodes tree by tree; node ids are local to a tree and offset by the tree's base
+    private static final class Builder {
+        private int[] roots = new int[16];
+        private int treeCount = 0;
+        private int[] feature = new int[256];
+        private float[] value = new float[256];
+        private int[] yes = new int[256];
+        private int[] no = new int[256];
+        private int[] missing = new int[256];
+        private int nodeCount = 0;
+        private int base = 0;
+        private int treeNodes = 0;
+
+        void readTree(JsonReader reader) throws IOException {
+            base = nodeCount;
+            if (treeCount == roots.length) {
+                roots = Arrays.copyOf(roots, treeCount * 2);
+            }
+            roots[treeCount++] = base;
+            treeNodes = 0;
+            readNode(reader);
+            // Node ids must be dense, a gap would leave an uninitialised node behind
+            if (nodeCount - base != treeNodes) {
+                throw new IOException("Tree " + (treeCount - 1) + " has non-contiguous node ids");
+            }
+        }
+
+        private void readNode(JsonReader reader) throws IOException {
+            int nodeId = -1;
+            int splitFeature = -1;
+            float condition = 0;
+            float leaf = 0;
+            boolean isLeaf = false;
+            int yesId = -1, noId = -1, missingId = -1;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "nodeid": nodeId = reader.nextInt(); break;
+                    case "split": splitFeature = parseFeature(reader.nextString()); break;
+                    case "split_condition": condition = (float) reader.nextDouble(); break;
+                    case "yes": yesId = reader.nextInt(); break;
+                    case "no": noId = reader.nextInt(); break;
+                    case "missing": missingId = reader.nextInt(); break;
+                    case "leaf": leaf = (float) reader.nextDouble(); isLeaf = true; break;
+                    case "children":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            readNode(reader);
+                        }
+                        reader.endArray();
+                        break;
+                    default: reader.skipValue(); break;
+                }
+            }
+            reader.endObject();
+
+            if (nodeId < 0 || (!isLeaf && (splitFeature < 0 || yesId < 0 || noId < 0))) {
+                throw new IOException("Incomplete tree node " + nodeId);
+            }
+            int n = base + nodeId;
+            ensureCapacity(n + 1);
+            if (isLeaf) {
+                feature[n] = -1;
+                value[n] = leaf;
+            } else {
+                feature[n] = splitFeature;
+                value[n] = condition;
+                yes[n] = base + yesId;
+                no[n] = base + noId;
+                missing[n] = base + (missingId >= 0 ? missingId : yesId);
+            }
+            nodeCount = Math.max(nodeCount, n + 1);
+            treeNodes++;
+        }
+
+        private void ensureCapacity(int size) {
+            if (size <= feature.length) {
+                return;
+            }
+            int capacity = Math.max(size, feature.length * 2);
+            feature = Arrays.copyOf(feature, capacity);
+            value = Arrays.copyOf(value, capacity);
+            yes = Arrays.copyOf(yes, capacity);
+            no = Arrays.copyOf(no, capacity);
+            missing = Arrays.copyOf(missing, capacity);
+        }
+
+        TreeEnsemble build(float baseScore) throws IOException {
+            try {
+                return new TreeEnsemble(baseScore, Arrays.copyOf(roots, treeCount),
+                        Arrays.copyOf(feature, nodeCount), Arrays.copyOf(value, nodeCount),
+                        Arrays.copyOf(yes, nodeCount), Arrays.copyOf(no, nodeCount),
+                        Arrays.copyOf(missing, nodeCount));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed tree dump: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -8,6 +8,8 @@ public class Measurement {
     private String signalQuality;
     private String bpCategory;
     private Integer bpConfidence;
+    private Float systolicBp;
+    private Float diastolicBp;
     private int measurementDuration;
     private int frameCount;
     private String timestamp;
@@ -50,6 +52,12 @@ public class Measurement {
     public Integer getBpConfidence() { return bpConfidence; }
     public void setBpConfidence(Integer bpConfidence) { this.bpConfidence = bpConfidence; }
 
+    public Float getSystolicBp() { return systolicBp; }
+    public void setSystolicBp(Float systolicBp) { this.systolicBp = systolicBp; }
+
+    public Float getDiastolicBp() { return diastolicBp; }
+    public void setDiastolicBp(Float diastolicBp) { this.diastolicBp = diastolicBp; }
+
     public int getMeasurementDuration() { return measurementDuration; }
     public void setMeasurementDuration(int measurementDuration) { this.measurementDuration = measurementDuration; }
 
@@ -0,0 +1,380 @@
+package com.example.ppg.store;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.ppg.api.ApiService;
+import com.example.ppg.models.Measurement;
+import com.example.ppg.models.Subject;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local copy of subjects and measurements, and the outbox of measurements not yet
+ * uploaded.
+ *
+ * All methods block on SQLite; run them on executor(), never on the main thread.
+ * A saved measurement is written together with its outbox entry in one transaction,
+ * so nothing taken offline is lost if the app dies before OutboxSync uploads it.
+ */
+public class MeasurementStore {
+
+    /**
+     * An outbox entry with the measurement it uploads
+     */
+    public static class OutboxEntry {
+        public final long seq;
+        public final int attempts;
+        public final Measurement measurement;
+
+        OutboxEntry(long seq, int attempts, Measurement measurement) {
+            this.seq = seq;
+            this.attempts = attempts;
+            this.measurement = measurement;
+        }
+    }
+
+    private static final String MEASUREMENT_COLUMNS = "m.measurement_id, m.subject_id, m.heart_rate, "
+            + "m.heart_rate_confidence, m.signal_quality, m.bp_category, m.bp_confidence, m.systolic_bp, "
+            + "m.diastolic_bp, m.measurement_duration, m.frame_count, m.timestamp";
+
+    private static volatile MeasurementStore instance;
+
+    private final PPGDatabase database;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "measurement-store");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private MeasurementStore(Context context) {
+        database = new PPGDatabase(context);
+    }
+
+    public static MeasurementStore get(Context context) {
+        MeasurementStore s = instance;
+        if (s == null) {
+            synchronized (MeasurementStore.class) {
+                s = instance;
+                if (s == null) {
+                    s = new MeasurementStore(context);
+                    instance = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Background thread for store calls from the UI
+     */
+    public ExecutorService executor() {
+        return executor;
+    }
+
+    /**
+     * Save a new measurement and queue it for upload. Assigns the measurement ID, which
+     * the server uses to ignore repeated uploads, and the timestamp if they are missing.
+     */
+    public Measurement addMeasurement(Measurement measurement) {
+        if (measurement.getMeasurementId() == null) {
+            measurement.setMeasurementId(UUID.randomUUID().toString());
+        }
+        if (measurement.getTimestamp() == null) {
+            measurement.setTimestamp(Instant.now().toString());
+        }
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.insertOrThrow(PPGDatabase.MEASUREMENTS, null, toValues(measurement, false));
+            ContentValues entry = new ContentValues();
+            entry.put("measurement_id", measurement.getMeasurementId());
+            entry.put("enqueued_at", System.currentTimeMillis());
+            db.insertOrThrow(PPGDatabase.OUTBOX, null, entry);
+            SubjectStatsAggregator.add(db, measurement);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return measurement;
+    }
+
+    /**
+     * Up to limit measurements of a subject that come after {@code after} in newest-first
+     * order, or the newest ones if after is null, including ones not uploaded yet. Pages are keyed on (timestamp,
+     * measurement_id) rather than an offset, so they walk the (subject_id, timestamp)
+     * index and stay stable while new measurements are added at the top.
+     */
+    public List<Measurement> getHistoryPage(String subjectId, Measurement after, int limit) {
+        SQLiteDatabase db = database.getReadableDatabase();
+        List<Measurement> history = new ArrayList<>();
+        String sql = "SELECT " + MEASUREMENT_COLUMNS + " FROM " + PPGDatabase.MEASUREMENTS + " m WHERE m.subject_id = ?";
+        String[] args;
+        if (after == null) {
+            args = new String[] {subjectId, Integer.toString(limit)};
+        } else {
+            sql += " AND (m.timestamp < ? OR (m.timestamp = ? AND m.measurement_id < ?))";
+            String timestamp = after.getTimestamp() != null ? after.getTimestamp() : "";
+            args = new String[] {subjectId, timestamp, timestamp, after.getMeasurementId(), Integer.toString(limit)};
+        }
+        sql += " ORDER BY m.timestamp DESC, m.measurement_id DESC LIMIT ?";
+        try (Cursor c = db.rawQuery(sql, args)) {
+            while (c.moveToNext()) {
+                history.add(readMeasurement(c, 0));
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Store the server's copy of a subject's history. Rows from the server are marked
+     * as uploaded; local measurements the server does not have yet are kept.
+     *
+     * A measurement already stored keeps its local values and is only marked as
+     * uploaded. It was stored here first, either recorded on this device or merged
+     * earlier, and the subject stats already count those values; the running min, max
+     * and quantile sketches cannot take a value back out.
+     * @return how many of the measurements were not stored before
+     */
+    public int mergeRemoteHistory(List<Measurement> measurements) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        int added = 0;
+        db.beginTransaction();
+        try {
+            ContentValues synced = new ContentValues();
+            synced.put("synced", 1);
+            for (Measurement measurement : measurements) {
+                if (measurement.getMeasurementId() == null) {
+                    continue;
+                }
+                if (contains(db, measurement.getMeasurementId())) {
+                    db.update(PPGDatabase.MEASUREMENTS, synced, "measurement_id = ?",
+                            new String[] {measurement.getMeasurementId()});
+                } else {
+                    db.insertOrThrow(PPGDatabase.MEASUREMENTS, null, toValues(measurement, true));
+                    SubjectStatsAggregator.add(db, measurement);
+                    added++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return added;
+    }
+
+    /**
+     * Totals over the subject's stored measurements, kept current as they are added;
+     * null if none are stored
+     */
+    public ApiService.SubjectStats getStats(String subjectId) {
+        return SubjectStatsAggregator.getStats(database.getReadableDatabase(), subjectId);
+    }
+
+    /**
+     * Stored measurements of the subject that the server also has, uploaded from here
+     * or merged from its history
+     */
+    public long getSyncedCount(String subjectId) {
+        SQLiteDatabase db = database.getReadableDatabase();
+        try (Cursor c = db.rawQuery("SELECT COUNT(*) FROM " + PPGDatabase.MEASUREMENTS
+                + " WHERE subject_id = ? AND synced = 1", new String[] {subjectId})) {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        }
+    }
+
+    /**
+     * Daily rollups of a subject from one local date to another, both inclusive
+     */
+    public List<StatsBucket> getDailyStats(String subjectId, LocalDate from, LocalDate to) {
+        return SubjectStatsAggregator.getBuckets(database.getReadableDatabase(), subjectId,
+                SubjectStatsAggregator.PERIOD_DAY, from.toEpochDay(), to.toEpochDay());
+    }
+
+    /**
+     * Weekly rollups, Monday to Sunday, of the weeks that overlap the dates
+     */
+    public List<StatsBucket> getWeeklyStats(String subjectId, LocalDate from, LocalDate to) {
+        return SubjectStatsAggregator.getBuckets(database.getReadableDatabase(), subjectId,
+                SubjectStatsAggregator.PERIOD_WEEK, from.with(DayOfWeek.MONDAY).toEpochDay(), to.toEpochDay());
+    }
+
+    private static boolean contains(SQLiteDatabase db, String measurementId) {
+        try (Cursor c = db.rawQuery("SELECT 1 FROM " + PPGDatabase.MEASUREMENTS + " WHERE measurement_id = ?",
+                new String[] {measurementId})) {
+            return c.moveToFirst();
+        }
+    }
+
+    public void saveSubjects(List<Subject> subjects) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (Subject subject : subjects) {
+                ContentValues values = new ContentValues();
+                values.put("subject_id", subject.getSubjectId());
+                values.put("subject_number", subject.getSubjectNumber());
+                values.put("subject_name", subject.getSubjectName());
+                values.put("age", subject.getAge());
+                values.put("gender", subject.getGender());
+                values.put("notes", subject.getNotes());
+                values.put("created_at", subject.getCreatedAt());
+                values.put("last_measurement", subject.getLastMeasurement());
+                values.put("total_measurements", subject.getTotalMeasurements());
+                db.insertWithOnConflict(PPGDatabase.SUBJECTS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public List<Subject> getSubjects() {
+        SQLiteDatabase db = database.getReadableDatabase();
+        List<Subject> subjects = new ArrayList<>();
+        try (Cursor c = db.rawQuery("SELECT subject_id, subject_number, subject_name, age, gender, notes, "
+                + "created_at, last_measurement, total_measurements FROM " + PPGDatabase.SUBJECTS
+                + " ORDER BY subject_number", null)) {
+            while (c.moveToNext()) {
+                Subject subject = new Subject(c.getString(0), c.getInt(1), c.getString(2));
+                subject.setAge(c.isNull(3) ? null : c.getInt(3));
+                subject.setGender(c.getString(4));
+                subject.setNotes(c.getString(5));
+                subject.setCreatedAt(c.getString(6));
+                subject.setLastMeasurement(c.getString(7));
+                subject.setTotalMeasurements(c.getInt(8));
+                subjects.add(subject);
+            }
+        }
+        return subjects;
+    }
+
+    /**
+     * The oldest outbox entries that have not been rejected maxAttempts times
+     */
+    public List<OutboxEntry> peekOutbox(int limit, int maxAttempts) {
+        SQLiteDatabase db = database.getReadableDatabase();
+        List<OutboxEntry> entries = new ArrayList<>();
+        try (Cursor c = db.rawQuery("SELECT o.seq, o.attempts, " + MEASUREMENT_COLUMNS
+                + " FROM " + PPGDatabase.OUTBOX + " o JOIN " + PPGDatabase.MEASUREMENTS
+                + " m ON m.measurement_id = o.measurement_id"
+                + " WHERE o.attempts < ? ORDER BY o.seq LIMIT ?",
+                new String[] {Integer.toString(maxAttempts), Integer.toString(limit)})) {
+            while (c.moveToNext()) {
+                entries.add(new OutboxEntry(c.getLong(0), c.getInt(1), readMeasurement(c, 2)));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * The server has these measurements: drop their outbox entries
+     */
+    public void completeOutbox(List<OutboxEntry> entries) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues synced = new ContentValues();
+            synced.put("synced", 1);
+            for (OutboxEntry entry : entries) {
+                db.delete(PPGDatabase.OUTBOX, "seq = ?", new String[] {Long.toString(entry.seq)});
+                db.update(PPGDatabase.MEASUREMENTS, synced, "measurement_id = ?",
+                        new String[] {entry.measurement.getMeasurementId()});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * The server refused these entries; they stay stored and are retried up to the
+     * attempt limit passed to peekOutbox
+     */
+    public void failOutbox(List<OutboxEntry> entries) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (OutboxEntry entry : entries) {
+                db.execSQL("UPDATE " + PPGDatabase.OUTBOX + " SET attempts = attempts + 1 WHERE seq = ?",
+                        new Object[] {entry.seq});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Outbox entries rejected maxAttempts times, no longer picked up by peekOutbox
+     */
+    public long getParkedOutboxCount(int maxAttempts) {
+        SQLiteDatabase db = database.getReadableDatabase();
+        try (Cursor c = db.rawQuery("SELECT COUNT(*) FROM " + PPGDatabase.OUTBOX + " WHERE attempts >= ?",
+                new String[] {Integer.toString(maxAttempts)})) {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        }
+    }
+
+    /**
+     * Give every outbox entry its full attempt budget again
+     * @return Number of entries that had been refused before
+     */
+    public int resetOutboxAttempts() {
+        ContentValues values = new ContentValues();
+        values.put("attempts", 0);
+        return database.getWritableDatabase().update(PPGDatabase.OUTBOX, values, "attempts > 0", null);
+    }
+
+    public long getOutboxSize() {
+        SQLiteDatabase db = database.getReadableDatabase();
+        try (Cursor c = db.rawQuery("SELECT COUNT(*) FROM " + PPGDatabase.OUTBOX, null)) {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        }
+    }
+
+    private static ContentValues toValues(Measurement measurement, boolean synced) {
+        ContentValues values = new ContentValues();
+        values.put("measurement_id", measurement.getMeasurementId());
+        values.put("subject_id", measurement.getSubjectId());
+        values.put("heart_rate", measurement.getHeartRate());
+        values.put("heart_rate_confidence", measurement.getHeartRateConfidence());
+        values.put("signal_quality", measurement.getSignalQuality());
+        values.put("bp_category", measurement.getBpCategory());
+        values.put("bp_confidence", measurement.getBpConfidence());
+        values.put("systolic_bp", measurement.getSystolicBp());
+        values.put("diastolic_bp", measurement.getDiastolicBp());
+        values.put("measurement_duration", measurement.getMeasurementDuration());
+        values.put("frame_count", measurement.getFrameCount());
+        values.put("timestamp", measurement.getTimestamp());
+        values.put("synced", synced ? 1 : 0);
+        return values;
+    }
+
+    // Reads MEASUREMENT_COLUMNS starting at column first
+    private static Measurement readMeasurement(Cursor c, int first) {
+        Measurement measurement = new Measurement();
+        measurement.setMeasurementId(c.getString(first));
+        measurement.setSubjectId(c.getString(first + 1));
+        measurement.setHeartRate(c.getInt(first + 2));
+        measurement.setHeartRateConfidence(c.getInt(first + 3));
+        measurement.setSignalQuality(c.getString(first + 4));
+        measurement.setBpCategory(c.getString(first + 5));
+        measurement.setBpConfidence(c.isNull(first + 6) ? null : c.getInt(first + 6));
+        measurement.setSystolicBp(c.isNull(first + 7) ? null : c.getFloat(first + 7));
+        measurement.setDiastolicBp(c.isNull(first + 8) ? null : c.getFloat(first + 8));
+        measurement.setMeasurementDuration(c.getInt(first + 9));
+        measurement.setFrameCount(c.getInt(first + 10));
+        measurement.setTimestamp(c.getString(first + 11));
+        return measurement;
+    }
+}
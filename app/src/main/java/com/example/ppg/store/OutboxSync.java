@@ -0,0 +1,162 @@
+package com.example.ppg.store;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.util.Log;
+
+import com.example.ppg.ReconnectBackoff;
+import com.example.ppg.api.ApiService;
+import com.example.ppg.models.Measurement;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads the measurement outbox to the API in the background.
+ *
+ * Drains the outbox oldest first in batches whenever something was saved, the app
+ * starts, or a network becomes available. Unreachable or failing servers are retried
+ * with jittered backoff up to RETRY_MAX_MILLIS apart, as is a missing upload endpoint
+ * (404/405, e.g. a server deployed without it). Batches the server refuses outright
+ * are retried MAX_ATTEMPTS times and then parked on the device until retryParked().
+ */
+public class OutboxSync {
+
+    private static final String TAG = "OutboxSync";
+    private static final int BATCH_SIZE = 25;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long RETRY_BASE_MILLIS = 5_000;
+    private static final long RETRY_MAX_MILLIS = 10 * 60_000;
+
+    private static volatile OutboxSync instance;
+
+    private final MeasurementStore store;
+    private final ApiService apiService = new ApiService();
+    private final ReconnectBackoff backoff = new ReconnectBackoff(RETRY_BASE_MILLIS, RETRY_MAX_MILLIS);
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "outbox-sync");
+        t.setDaemon(true);
+        return t;
+    });
+    // Touched on the sync thread only
+    private ScheduledFuture<?> retry;
+
+    private OutboxSync(Context context) {
+        store = MeasurementStore.get(context);
+        ConnectivityManager connectivity = context.getApplicationContext().getSystemService(ConnectivityManager.class);
+        if (connectivity != null) {
+            connectivity.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(Network network) {
+                    // Back online: retry now instead of waiting out the backoff
+                    executor.execute(() -> {
+                        backoff.reset();
+                        drain();
+                    });
+                }
+            });
+        }
+    }
+
+    public static OutboxSync get(Context context) {
+        OutboxSync s = instance;
+        if (s == null) {
+            synchronized (OutboxSync.class) {
+                s = instance;
+                if (s == null) {
+                    s = new OutboxSync(context);
+                    instance = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Upload whatever is waiting; cheap to call when the outbox is empty
+     */
+    public void requestSync() {
+        executor.execute(this::drain);
+    }
+
+    /**
+     * Give parked entries another MAX_ATTEMPTS tries, e.g. once per app start in case
+     * the server has been fixed since, then upload
+     */
+    public void retryParked() {
+        executor.execute(() -> {
+            int reset = store.resetOutboxAttempts();
+            if (reset > 0) {
+                Log.d(TAG, "Retrying " + reset + " previously refused measurements");
+                backoff.reset();
+            }
+            drain();
+        });
+    }
+
+    // Sync thread
+    private void drain() {
+        if (retry != null) {
+            retry.cancel(false);
+            retry = null;
+        }
+        while (true) {
+            List<MeasurementStore.OutboxEntry> batch = store.peekOutbox(BATCH_SIZE, MAX_ATTEMPTS);
+            if (batch.isEmpty()) {
+                backoff.reset();
+                long parked = store.getParkedOutboxCount(MAX_ATTEMPTS);
+                if (parked > 0) {
+                    Log.w(TAG, parked + " measurements refused by the server are parked on the device");
+                }
+                return;
+            }
+            List<Measurement> measurements = new ArrayList<>(batch.size());
+            for (MeasurementStore.OutboxEntry entry : batch) {
+                measurements.add(entry.measurement);
+            }
+
+            int code;
+            try {
+                code = apiService.uploadMeasurements(measurements);
+            } catch (IOException e) {
+                scheduleRetry("network error: " + e.getMessage());
+                return;
+            }
+
+            if (code >= 200 && code < 300) {
+                store.completeOutbox(batch);
+                for (Measurement measurement : measurements) {
+                    if (measurement.getSubjectId() != null) {
+                        ApiService.invalidateHistory(measurement.getSubjectId());
+                    }
+                }
+                backoff.reset();
+                Log.d(TAG, "Synced " + batch.size() + " measurements");
+            } else if (code == 408 || code == 429 || code >= 500) {
+                scheduleRetry("HTTP " + code);
+                return;
+            } else if (code == 404 || code == 405) {
+                // Endpoint unavailable, not a verdict on these measurements: no attempt is counted
+                scheduleRetry("upload endpoint unavailable, HTTP " + code);
+                return;
+            } else {
+                // Refused: counted against the entries, which are parked after MAX_ATTEMPTS
+                store.failOutbox(batch);
+                scheduleRetry("refused, HTTP " + code);
+                return;
+            }
+        }
+    }
+
+    private void scheduleRetry(String reason) {
+        long delay = backoff.nextDelayMillis();
+        Log.w(TAG, "Outbox sync failed (" + reason + "), retrying in " + delay + " ms");
+        retry = executor.schedule(this::drain, delay, TimeUnit.MILLISECONDS);
+    }
+}
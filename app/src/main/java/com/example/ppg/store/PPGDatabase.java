@@ -0,0 +1,76 @@
+package com.example.ppg.store;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+/**
+ * On-device SQLite schema: subjects, measurements and the upload outbox.
+ *
+ * Measurements are looked up per subject in time order, so they carry an index on
+ * (subject_id, timestamp). The outbox is append-only: a saved measurement adds one
+ * row at the tail, the sync worker removes rows from the head once the server has
+ * them. Write-ahead logging keeps history reads from waiting on those writes.
+ * SubjectStatsAggregator adds its per-subject totals and day/week rollups.
+ */
+class PPGDatabase extends SQLiteOpenHelper {
+
+    private static final String NAME = "ppg.db";
+    private static final int VERSION = 2;
+
+    static final String SUBJECTS = "subjects";
+    static final String MEASUREMENTS = "measurements";
+    static final String OUTBOX = "outbox";
+
+    PPGDatabase(Context context) {
+        super(context.getApplicationContext(), NAME, null, VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + SUBJECTS + " ("
+                + "subject_id TEXT PRIMARY KEY, "
+                + "subject_number INTEGER NOT NULL DEFAULT 0, "
+                + "subject_name TEXT, "
+                + "age INTEGER, "
+                + "gender TEXT, "
+                + "notes TEXT, "
+                + "created_at TEXT, "
+                + "last_measurement TEXT, "
+                + "total_measurements INTEGER NOT NULL DEFAULT 0)");
+
+        db.execSQL("CREATE TABLE " + MEASUREMENTS + " ("
+                + "measurement_id TEXT PRIMARY KEY, "
+                + "subject_id TEXT, "
+                + "heart_rate INTEGER NOT NULL DEFAULT 0, "
+                + "heart_rate_confidence INTEGER NOT NULL DEFAULT 0, "
+                + "signal_quality TEXT, "
+                + "bp_category TEXT, "
+                + "bp_confidence INTEGER, "
+                + "systolic_bp REAL, "
+                + "diastolic_bp REAL, "
+                + "measurement_duration INTEGER NOT NULL DEFAULT 0, "
+                + "frame_count INTEGER NOT NULL DEFAULT 0, "
+                + "timestamp TEXT, "
+                + "synced INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE INDEX measurements_subject_time ON " + MEASUREMENTS + " (subject_id, timestamp)");
+
+        db.execSQL("CREATE TABLE " + OUTBOX + " ("
+                + "seq INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "measurement_id TEXT NOT NULL, "
+                + "attempts INTEGER NOT NULL DEFAULT 0, "
+                + "enqueued_at INTEGER NOT NULL)");
+
+        SubjectStatsAggregator.createTables(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            // Version 2 adds the incremental stats, computed once from what is stored
+            SubjectStatsAggregator.createTables(db);
+            SubjectStatsAggregator.rebuild(db);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.ppg.store;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch with bounded relative error, for the percentiles of
+ * physiological values in a stats bucket.
+ *
+ * Positive values are counted in logarithmic bins of ratio GAMMA, so any quantile
+ * comes back within RELATIVE_ACCURACY of a value that was actually added, whatever the
+ * distribution. Heart rates from 30 to 250 BPM span about 110 bins and blood pressures
+ * fewer; only occupied bins are stored, 12 bytes each, so a day of measurements takes
+ * well under a hundred bytes.
+ * Two sketches merge by adding bin counts, which is how weekly and longer views are
+ * built from stored buckets.
+ */
+public class QuantileSketch {
+
+    public static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    // Occupied bins, sorted by index
+    private int[] indexes;
+    private long[] counts;
+    private int size;
+    private long total;
+
+    public QuantileSketch() {
+        indexes = new int[8];
+        counts = new long[8];
+    }
+
+    /**
+     * Count one value; zero and negative values mean "not measured" and are ignored
+     */
+    public void add(double value) {
+        if (!(value > 0) || Double.isInfinite(value)) {
+            return;
+        }
+        addToBin((int) Math.ceil(Math.log(value) / LOG_GAMMA), 1);
+    }
+
+    public void merge(QuantileSketch other) {
+        for (int i = 0; i < other.size; i++) {
+            addToBin(other.indexes[i], other.counts[i]);
+        }
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    /**
+     * Value at quantile q in [0, 1], or NaN if nothing was added
+     */
+    public double quantile(double q) {
+        if (total == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor(Math.max(0, Math.min(1, q)) * (total - 1));
+        long seen = 0;
+        for (int i = 0; i < size; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                // Midpoint of the bin in the sense of relative error
+                return 2 * Math.pow(GAMMA, indexes[i]) / (GAMMA + 1);
+            }
+        }
+        return 2 * Math.pow(GAMMA, indexes[size - 1]) / (GAMMA + 1);
+    }
+
+    private void addToBin(int index, long count) {
+        int pos = Arrays.binarySearch(indexes, 0, size, index);
+        if (pos < 0) {
+            pos = -pos - 1;
+            if (size == indexes.length) {
+                indexes = Arrays.copyOf(indexes, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            System.arraycopy(indexes, pos, indexes, pos + 1, size - pos);
+            System.arraycopy(counts, pos, counts, pos + 1, size - pos);
+            indexes[pos] = index;
+            counts[pos] = 0;
+            size++;
+        }
+        counts[pos] += count;
+        total += count;
+    }
+
+    /**
+     * Serialized as a bin count followed by (index, count) pairs
+     */
+    public byte[] toBytes() {
+        ByteBuffer out = ByteBuffer.allocate(4 + size * 12);
+        out.putInt(size);
+        for (int i = 0; i < size; i++) {
+            out.putInt(indexes[i]).putLong(counts[i]);
+        }
+        return out.array();
+    }
+
+    /**
+     * Inverse of toBytes(); null or empty input gives an empty sketch
+     */
+    public static QuantileSketch fromBytes(byte[] bytes) {
+        QuantileSketch sketch = new QuantileSketch();
+        if (bytes == null || bytes.length < 4) {
+            return sketch;
+        }
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        int bins = in.getInt();
+        for (int i = 0; i < bins && in.remaining() >= 12; i++) {
+            sketch.addToBin(in.getInt(), in.getLong());
+        }
+        return sketch;
+    }
+}
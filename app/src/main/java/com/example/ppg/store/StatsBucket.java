@@ -0,0 +1,85 @@
+package com.example.ppg.store;
+
+import java.time.LocalDate;
+
+/**
+ * One day or week of a subject's measurements, summarized.
+ *
+ * Averages leave out measurements without the value. Buckets merge, so longer
+ * periods are built from stored ones without touching the measurements.
+ */
+public class StatsBucket {
+
+    public final LocalDate start;
+    public final int count;
+    private final int heartRateCount;
+    private final double heartRateSum;
+    private final int bloodPressureCount;
+    private final double systolicSum;
+    private final double diastolicSum;
+    private final QuantileSketch heartRates;
+    private final QuantileSketch systolics;
+
+    StatsBucket(LocalDate start, int count, int heartRateCount, double heartRateSum,
+                int bloodPressureCount, double systolicSum, double diastolicSum,
+                QuantileSketch heartRates, QuantileSketch systolics) {
+        this.start = start;
+        this.count = count;
+        this.heartRateCount = heartRateCount;
+        this.heartRateSum = heartRateSum;
+        this.bloodPressureCount = bloodPressureCount;
+        this.systolicSum = systolicSum;
+        this.diastolicSum = diastolicSum;
+        this.heartRates = heartRates;
+        this.systolics = systolics;
+    }
+
+    /**
+     * Combine buckets into one that starts at start
+     */
+    public static StatsBucket merge(LocalDate start, Iterable<StatsBucket> buckets) {
+        int count = 0;
+        int heartRateCount = 0;
+        double heartRateSum = 0;
+        int bloodPressureCount = 0;
+        double systolicSum = 0;
+        double diastolicSum = 0;
+        QuantileSketch heartRates = new QuantileSketch();
+        QuantileSketch systolics = new QuantileSketch();
+        for (StatsBucket bucket : buckets) {
+            count += bucket.count;
+            heartRateCount += bucket.heartRateCount;
+            heartRateSum += bucket.heartRateSum;
+            bloodPressureCount += bucket.bloodPressureCount;
+            systolicSum += bucket.systolicSum;
+            diastolicSum += bucket.diastolicSum;
+            heartRates.merge(bucket.heartRates);
+            systolics.merge(bucket.systolics);
+        }
+        return new StatsBucket(start, count, heartRateCount, heartRateSum, bloodPressureCount,
+                systolicSum, diastolicSum, heartRates, systolics);
+    }
+
+    public double getAverageHeartRate() {
+        return heartRateCount > 0 ? heartRateSum / heartRateCount : Double.NaN;
+    }
+
+    public double getAverageSystolic() {
+        return bloodPressureCount > 0 ? systolicSum / bloodPressureCount : Double.NaN;
+    }
+
+    public double getAverageDiastolic() {
+        return bloodPressureCount > 0 ? diastolicSum / bloodPressureCount : Double.NaN;
+    }
+
+    /**
+     * Heart rate at quantile q in [0, 1], within QuantileSketch.RELATIVE_ACCURACY; NaN if none
+     */
+    public double getHeartRatePercentile(double q) {
+        return heartRates.quantile(q);
+    }
+
+    public double getSystolicPercentile(double q) {
+        return systolics.quantile(q);
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.ppg.store;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.ppg.api.ApiService;
+import com.example.ppg.models.Measurement;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-subject statistics kept up to date as measurements are stored, so the stats
+ * header and trend views never scan the measurement table or ask the server.
+ *
+ * Each subject has one row of running totals and one row per day and per week with
+ * sums and quantile sketches of heart rate and systolic pressure. Adding a measurement
+ * updates three rows inside the caller's transaction. A zero heart rate or a missing
+ * blood pressure is left out of the corresponding averages.
+ */
+class SubjectStatsAggregator {
+
+    static final String STATS = "subject_stats";
+    static final String BUCKETS = "stats_buckets";
+
+    static final int PERIOD_DAY = 0;
+    static final int PERIOD_WEEK = 1;
+
+    private SubjectStatsAggregator() {}
+
+    static void createTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + STATS + " ("
+                + "subject_id TEXT PRIMARY KEY, "
+                + "count INTEGER NOT NULL, "
+                + "hr_count INTEGER NOT NULL, "
+                + "hr_sum REAL NOT NULL, "
+                + "hr_min REAL, "
+                + "hr_max REAL, "
+                + "bp_count INTEGER NOT NULL, "
+                + "systolic_sum REAL NOT NULL, "
+                + "diastolic_sum REAL NOT NULL)");
+        // bucket_start is the epoch day of the day, or of the Monday starting the week
+        db.execSQL("CREATE TABLE " + BUCKETS + " ("
+                + "subject_id TEXT NOT NULL, "
+                + "period INTEGER NOT NULL, "
+                + "bucket_start INTEGER NOT NULL, "
+                + "count INTEGER NOT NULL, "
+                + "hr_count INTEGER NOT NULL, "
+                + "hr_sum REAL NOT NULL, "
+                + "bp_count INTEGER NOT NULL, "
+                + "systolic_sum REAL NOT NULL, "
+                + "diastolic_sum REAL NOT NULL, "
+                + "hr_sketch BLOB, "
+                + "systolic_sketch BLOB, "
+                + "PRIMARY KEY (subject_id, period, bucket_start))");
+    }
+
+    /**
+     * Recompute everything from the measurement table, once, e.g. after an upgrade
+     */
+    static void rebuild(SQLiteDatabase db) {
+        db.delete(STATS, null, null);
+        db.delete(BUCKETS, null, null);
+        try (Cursor c = db.rawQuery("SELECT subject_id, heart_rate, systolic_bp, diastolic_bp, timestamp FROM "
+                + PPGDatabase.MEASUREMENTS + " WHERE subject_id IS NOT NULL", null)) {
+            while (c.moveToNext()) {
+                Measurement measurement = new Measurement();
+                measurement.setSubjectId(c.getString(0));
+                measurement.setHeartRate(c.getInt(1));
+                measurement.setSystolicBp(c.isNull(2) ? null : c.getFloat(2));
+                measurement.setDiastolicBp(c.isNull(3) ? null : c.getFloat(3));
+                measurement.setTimestamp(c.getString(4));
+                add(db, measurement);
+            }
+        }
+    }
+
+    /**
+     * Count a measurement that was just inserted; call inside its transaction
+     */
+    static void add(SQLiteDatabase db, Measurement measurement) {
+        String subjectId = measurement.getSubjectId();
+        if (subjectId == null) {
+            return;
+        }
+        int heartRate = measurement.getHeartRate();
+        boolean hasHeartRate = heartRate > 0;
+        boolean hasBloodPressure = measurement.getSystolicBp() != null && measurement.getDiastolicBp() != null
+                && measurement.getSystolicBp() > 0 && measurement.getDiastolicBp() > 0;
+        double systolic = hasBloodPressure ? measurement.getSystolicBp() : 0;
+        double diastolic = hasBloodPressure ? measurement.getDiastolicBp() : 0;
+
+        // Running totals
+        String[] key = {subjectId};
+        db.execSQL("INSERT OR IGNORE INTO " + STATS + " (subject_id, count, hr_count, hr_sum, bp_count, "
+                + "systolic_sum, diastolic_sum) VALUES (?, 0, 0, 0, 0, 0, 0)", key);
+        db.execSQL("UPDATE " + STATS + " SET count = count + 1, "
+                + "hr_count = hr_count + ?, hr_sum = hr_sum + ?, "
+                + "hr_min = CASE WHEN ? = 0 THEN hr_min WHEN hr_min IS NULL OR ? < hr_min THEN ? ELSE hr_min END, "
+                + "hr_max = CASE WHEN ? = 0 THEN hr_max WHEN hr_max IS NULL OR ? > hr_max THEN ? ELSE hr_max END, "
+                + "bp_count = bp_count + ?, systolic_sum = systolic_sum + ?, diastolic_sum = diastolic_sum + ? "
+                + "WHERE subject_id = ?",
+                new Object[] {
+                        hasHeartRate ? 1 : 0, hasHeartRate ? heartRate : 0,
+                        hasHeartRate ? 1 : 0, heartRate, heartRate,
+                        hasHeartRate ? 1 : 0, heartRate, heartRate,
+                        hasBloodPressure ? 1 : 0, systolic, diastolic, subjectId});
+
+        // Day and week rollups
+        LocalDate day = localDate(measurement.getTimestamp());
+        if (day == null) {
+            return;
+        }
+        addToBucket(db, subjectId, PERIOD_DAY, day.toEpochDay(),
+                hasHeartRate, heartRate, hasBloodPressure, systolic, diastolic);
+        addToBucket(db, subjectId, PERIOD_WEEK, day.with(DayOfWeek.MONDAY).toEpochDay(),
+                hasHeartRate, heartRate, hasBloodPressure, systolic, diastolic);
+    }
+
+    private static void addToBucket(SQLiteDatabase db, String subjectId, int period, long start,
+                                    boolean hasHeartRate, int heartRate,
+                                    boolean hasBloodPressure, double systolic, double diastolic) {
+        String[] key = {subjectId, Integer.toString(period), Long.toString(start)};
+        QuantileSketch heartRates = new QuantileSketch();
+        QuantileSketch systolics = new QuantileSketch();
+        boolean exists = false;
+        try (Cursor c = db.rawQuery("SELECT hr_sketch, systolic_sketch FROM " + BUCKETS
+                + " WHERE subject_id = ? AND period = ? AND bucket_start = ?", key)) {
+            if (c.moveToFirst()) {
+                exists = true;
+                heartRates = QuantileSketch.fromBytes(c.getBlob(0));
+                systolics = QuantileSketch.fromBytes(c.getBlob(1));
+            }
+        }
+        if (hasHeartRate) {
+            heartRates.add(heartRate);
+        }
+        if (hasBloodPressure) {
+            systolics.add(systolic);
+        }
+
+        if (!exists) {
+            ContentValues values = new ContentValues();
+            values.put("subject_id", subjectId);
+            values.put("period", period);
+            values.put("bucket_start", start);
+            values.put("count", 1);
+            values.put("hr_count", hasHeartRate ? 1 : 0);
+            values.put("hr_sum", hasHeartRate ? heartRate : 0);
+            values.put("bp_count", hasBloodPressure ? 1 : 0);
+            values.put("systolic_sum", systolic);
+            values.put("diastolic_sum", diastolic);
+            values.put("hr_sketch", heartRates.toBytes());
+            values.put("systolic_sketch", systolics.toBytes());
+            db.insertOrThrow(BUCKETS, null, values);
+            return;
+        }
+        db.execSQL("UPDATE " + BUCKETS + " SET count = count + 1, hr_count = hr_count + ?, hr_sum = hr_sum + ?, "
+                + "bp_count = bp_count + ?, systolic_sum = systolic_sum + ?, diastolic_sum = diastolic_sum + ?, "
+                + "hr_sketch = ?, systolic_sketch = ? "
+                + "WHERE subject_id = ? AND period = ? AND bucket_start = ?",
+                new Object[] {
+                        hasHeartRate ? 1 : 0, hasHeartRate ? heartRate : 0,
+                        hasBloodPressure ? 1 : 0, systolic, diastolic,
+                        heartRates.toBytes(), systolics.toBytes(),
+                        subjectId, period, start});
+    }
+
+    /**
+     * Totals for a subject in the server's stats shape, or null if nothing is stored
+     */
+    static ApiService.SubjectStats getStats(SQLiteDatabase db, String subjectId) {
+        try (Cursor c = db.rawQuery("SELECT count, hr_count, hr_sum, hr_min, hr_max, bp_count, systolic_sum, "
+                + "diastolic_sum FROM " + STATS + " WHERE subject_id = ?", new String[] {subjectId})) {
+            if (!c.moveToFirst()) {
+                return null;
+            }
+            ApiService.SubjectStats stats = new ApiService.SubjectStats();
+            stats.total_measurements = c.getInt(0);
+            stats.measurement_count = c.getInt(0);
+            int heartRates = c.getInt(1);
+            stats.avg_heart_rate = heartRates > 0 ? c.getDouble(2) / heartRates : 0;
+            stats.min_heart_rate = c.isNull(3) ? 0 : c.getDouble(3);
+            stats.max_heart_rate = c.isNull(4) ? 0 : c.getDouble(4);
+            int pressures = c.getInt(5);
+            stats.avg_systolic = pressures > 0 ? c.getDouble(6) / pressures : 0;
+            stats.avg_diastolic = pressures > 0 ? c.getDouble(7) / pressures : 0;
+            return stats;
+        }
+    }
+
+    static List<StatsBucket> getBuckets(SQLiteDatabase db, String subjectId, int period,
+                                        long fromEpochDay, long toEpochDay) {
+        List<StatsBucket> buckets = new ArrayList<>();
+        try (Cursor c = db.rawQuery("SELECT bucket_start, count, hr_count, hr_sum, bp_count, systolic_sum, "
+                + "diastolic_sum, hr_sketch, systolic_sketch FROM " + BUCKETS
+                + " WHERE subject_id = ? AND period = ? AND bucket_start BETWEEN ? AND ? ORDER BY bucket_start",
+                new String[] {subjectId, Integer.toString(period), Long.toString(fromEpochDay), Long.toString(toEpochDay)})) {
+            while (c.moveToNext()) {
+                buckets.add(new StatsBucket(LocalDate.ofEpochDay(c.getLong(0)), c.getInt(1),
+                        c.getInt(2), c.getDouble(3), c.getInt(4), c.getDouble(5), c.getDouble(6),
+                        QuantileSketch.fromBytes(c.getBlob(7)), QuantileSketch.fromBytes(c.getBlob(8))));
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Local calendar day of an API timestamp. Timestamps with an offset are moved to
+     * the device's zone, ones without are taken as local time already.
+     */
+    static LocalDate localDate(String timestamp) {
+        if (timestamp == null) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(timestamp).atZoneSameInstant(ZoneId.systemDefault()).toLocalDate();
+        } catch (DateTimeParseException ignored) {
+        }
+        try {
+            return Instant.parse(timestamp).atZone(ZoneId.systemDefault()).toLocalDate();
+        } catch (DateTimeParseException ignored) {
+        }
+        try {
+            return LocalDateTime.parse(timestamp).toLocalDate();
+        } catch (DateTimeParseException ignored) {
+        }
+        try {
+            return timestamp.length() >= 10 ? LocalDate.parse(timestamp.substring(0, 10)) : null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.ppg;
+
+import com.example.ppg.AdaptiveUploadController.Level;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Upload level decisions on a simulated link, one update per second as PPGWebSocketClient
+ * calls it.
+ */
+public class AdaptiveUploadControllerTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    // Fast enough that no queue used here takes a second to drain
+    private static final long FAST = 10_000_000;
+
+    private AdaptiveUploadController controller;
+    private long now;
+    private long drained;
+
+    @Before
+    public void setUp() {
+        controller = new AdaptiveUploadController();
+        now = 100 * SECOND;
+        drained = 0;
+        // The first update only sets the baseline
+        assertEquals(Level.FULL_FRAME, tick(0, FAST));
+    }
+
+    @Test
+    public void byteBoundCongestion_stepsDownOneLevel() {
+        long queued = AdaptiveUploadController.MAX_QUEUE_BYTES + 1;
+        tick(queued, FAST);
+        assertEquals(Level.FULL_FRAME_HALF_RATE, tick(queued, FAST));
+        assertEquals(1, controller.getStepDowns());
+        assertTrue(controller.getQueueDelaySeconds() < AdaptiveUploadController.MAX_QUEUE_DELAY_SECONDS);
+    }
+
+    @Test
+    public void delayBoundCongestion_stepsDown() {
+        // 100 kB at 40 kB/s takes 2.5 s to drain, under the byte limit
+        long queued = 100_000;
+        tick(queued, 40_000);
+        assertEquals(Level.FULL_FRAME_HALF_RATE, tick(queued, 40_000));
+        assertEquals(2.5, controller.getQueueDelaySeconds(), 1e-9);
+    }
+
+    @Test
+    public void sameQueueOnFastLink_isNotCongested() {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Level.FULL_FRAME, tick(100_000, FAST));
+        }
+        assertEquals(0, controller.getStepDowns());
+    }
+
+    @Test
+    public void stepDown_waitsForCooldown() {
+        long queued = AdaptiveUploadController.MAX_QUEUE_BYTES + 1;
+        // 1 s after the start is inside the 2 s cooldown
+        assertEquals(Level.FULL_FRAME, tick(queued, FAST));
+        assertEquals(Level.FULL_FRAME_HALF_RATE, tick(queued, FAST));
+        assertEquals(Level.FULL_FRAME_HALF_RATE, tick(queued, FAST));
+        assertEquals(Level.ROI_CROP, tick(queued, FAST));
+        // Stays at the lowest level however long the congestion lasts
+        for (int i = 0; i < 20; i++) {
+            tick(queued, FAST);
+        }
+        assertEquals(Level.CHANNEL_MEANS_BATCHED, controller.getLevel());
+        assertEquals(Level.values().length - 1, controller.getStepDowns());
+    }
+
+    @Test
+    public void stepUp_afterIdleHold_whichDoublesUpToTheCap() {
+        // Each failure of FULL_FRAME doubles its hold from 10 s: 20, 40, 80, then capped at 120
+        long[] holds = {20, 40, 80, 120, 120};
+        for (long hold : holds) {
+            congestUntilBelow(Level.FULL_FRAME);
+            assertEquals(hold, secondsToStepUp());
+            assertEquals(Level.FULL_FRAME, controller.getLevel());
+        }
+        assertEquals(holds.length, controller.getStepUps());
+    }
+
+    @Test
+    public void stepUp_needsTheQueueIdleForTheWholeHold() {
+        congestUntilBelow(Level.FULL_FRAME);
+        for (int i = 0; i < 15; i++) {
+            tick(0, FAST);
+        }
+        // Not congested but not drained either: the idle period starts over
+        tick(AdaptiveUploadController.IDLE_QUEUE_BYTES + 1, FAST);
+        for (int i = 0; i < 60; i++) {
+            tick(AdaptiveUploadController.IDLE_QUEUE_BYTES + 1, FAST);
+        }
+        assertEquals(Level.FULL_FRAME_HALF_RATE, controller.getLevel());
+        assertEquals(20, secondsToStepUp());
+    }
+
+    @Test
+    public void setCeiling_capsTheLevel() {
+        controller.setCeiling(Level.CHANNEL_MEANS);
+        assertEquals(Level.CHANNEL_MEANS, controller.getLevel());
+        assertEquals(Level.CHANNEL_MEANS, Level.first(PPGWebSocketClient.UploadMode.CHANNEL_MEANS));
+        for (int i = 0; i < 300; i++) {
+            assertEquals(Level.CHANNEL_MEANS, tick(0, FAST));
+        }
+        assertEquals(0, controller.getStepUps());
+
+        // Raising the ceiling leaves the current level; the queue has already been idle
+        // for longer than the hold, so the next update climbs, and each later step waits again
+        controller.setCeiling(Level.FULL_FRAME);
+        assertEquals(Level.CHANNEL_MEANS, controller.getLevel());
+        assertEquals(Level.ROI_CROP, tick(0, FAST));
+        // The next hold (10 s, never failed) counts from that step up
+        for (int i = 1; i < 10; i++) {
+            assertEquals(Level.ROI_CROP, tick(0, FAST));
+        }
+        assertEquals(Level.FULL_FRAME_HALF_RATE, tick(0, FAST));
+    }
+
+    @Test
+    public void reset_returnsToCeilingWithFreshHolds() {
+        for (int i = 0; i < 3; i++) {
+            congestUntilBelow(Level.FULL_FRAME);
+            secondsToStepUp();
+        }
+        congestUntilBelow(Level.FULL_FRAME);
+
+        controller.reset();
+        assertEquals(Level.FULL_FRAME, controller.getLevel());
+        assertEquals(0, controller.getStepDowns());
+        assertEquals(0, controller.getStepUps());
+        assertEquals(0, controller.getTimeInLevelMillis(Level.FULL_FRAME));
+
+        // The hold had reached 120 s; after the reset one failure costs 20 s again
+        drained = 0;
+        tick(0, FAST);
+        congestUntilBelow(Level.FULL_FRAME);
+        assertEquals(20, secondsToStepUp());
+    }
+
+    // One second later, with queued bytes waiting and drainedPerSecond written meanwhile
+    private Level tick(long queued, long drainedPerSecond) {
+        now += SECOND;
+        drained += drainedPerSecond;
+        return controller.update(now, queued, drained + queued);
+    }
+
+    private void congestUntilBelow(Level level) {
+        for (int i = 0; i < 10 && controller.getLevel().ordinal() <= level.ordinal(); i++) {
+            tick(AdaptiveUploadController.MAX_QUEUE_BYTES + 1, FAST);
+        }
+        assertEquals(level.ordinal() + 1, controller.getLevel().ordinal());
+    }
+
+    // Drained queue from now on; seconds of idle updates until the level climbs
+    private long secondsToStepUp() {
+        Level start = controller.getLevel();
+        // The first idle update starts the hold
+        tick(0, FAST);
+        for (long seconds = 1; seconds <= 300; seconds++) {
+            if (tick(0, FAST) != start) {
+                return seconds;
+            }
+        }
+        fail("no step up from " + start);
+        return -1;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.ppg;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Wire layout of the binary WebSocket protocol: packet sizes, little-endian field
+ * order as documented on PPGBinaryProtocol, and header validation.
+ */
+public class PPGBinaryProtocolTest {
+
+    private static final float DELTA = 0f;
+
+    @Test
+    public void sample_encodesDocumentedLayout() {
+        ByteBuffer buffer = PPGBinaryProtocol.allocate(PPGBinaryProtocol.SAMPLE_PACKET_SIZE);
+        int written = PPGBinaryProtocol.encodeSample(buffer, 0x01020304, 0x1122334455667788L, 1.5f, 2.5f, 3.5f);
+
+        assertEquals(32, written);
+        assertEquals(32, buffer.position());
+        byte[] bytes = buffer.array();
+        assertEquals(PPGBinaryProtocol.TYPE_SAMPLE, bytes[0]);
+        assertEquals(PPGBinaryProtocol.VERSION, bytes[1]);
+        assertEquals(0, bytes[2]);
+        assertEquals(0, bytes[3]);
+        // Little-endian: least significant byte first
+        assertArrayEquals(new byte[] {0x04, 0x03, 0x02, 0x01}, slice(bytes, 4, 4));
+        assertArrayEquals(new byte[] {(byte) 0x88, 0x77, 0x66, 0x55, 0x44, 0x33, 0x22, 0x11}, slice(bytes, 8, 8));
+
+        ByteBuffer in = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0x01020304, in.getInt(4));
+        assertEquals(0x1122334455667788L, in.getLong(8));
+        assertEquals(1.5f, in.getFloat(16), DELTA);
+        assertEquals(2.5f, in.getFloat(20), DELTA);
+        assertEquals(3.5f, in.getFloat(24), DELTA);
+        assertEquals(0, in.getInt(28));
+    }
+
+    @Test
+    public void batch_sizeAndRoundTrip() {
+        assertEquals(8, PPGBinaryProtocol.sampleBatchSize(0));
+        assertEquals(28, PPGBinaryProtocol.sampleBatchSize(1));
+        assertEquals(8 + 20 * 30, PPGBinaryProtocol.sampleBatchSize(30));
+
+        int count = 3;
+        long[] timestamps = {1_000L, 34_333_333L, -5L};
+        float[] red = {200f, 201.25f, 0f};
+        float[] green = {100f, 99.5f, Float.MAX_VALUE};
+        float[] blue = {50f, 51f, -1f};
+        ByteBuffer buffer = PPGBinaryProtocol.allocate(PPGBinaryProtocol.sampleBatchSize(count));
+        int written = PPGBinaryProtocol.encodeSampleBatch(buffer, 77, count, timestamps, red, green, blue);
+
+        assertEquals(8 + 20 * count, written);
+        assertEquals(written, buffer.position());
+        buffer.flip();
+        assertEquals(PPGBinaryProtocol.TYPE_SAMPLE_BATCH, PPGBinaryProtocol.peekType(buffer));
+        assertEquals(PPGBinaryProtocol.TYPE_SAMPLE_BATCH, buffer.get() & 0xff);
+        assertEquals(PPGBinaryProtocol.VERSION, buffer.get() & 0xff);
+        // The flags field carries the sample count
+        assertEquals(count, buffer.getShort() & 0xffff);
+        assertEquals(77, buffer.getInt());
+        for (int i = 0; i < count; i++) {
+            assertEquals(timestamps[i], buffer.getLong());
+            assertEquals(red[i], buffer.getFloat(), DELTA);
+            assertEquals(green[i], buffer.getFloat(), DELTA);
+            assertEquals(blue[i], buffer.getFloat(), DELTA);
+        }
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batch_rejectsMoreSamplesThanTheCountField() {
+        int count = PPGBinaryProtocol.MAX_BATCH_SAMPLES + 1;
+        PPGBinaryProtocol.encodeSampleBatch(PPGBinaryProtocol.allocate(PPGBinaryProtocol.sampleBatchSize(count)),
+                0, count, new long[count], new float[count], new float[count], new float[count]);
+    }
+
+    @Test
+    public void result_decodesEveryBlock() {
+        ByteBuffer packet = resultPacket(PPGBinaryProtocol.FLAG_RGB | PPGBinaryProtocol.FLAG_HEART_RATE
+                | PPGBinaryProtocol.FLAG_BP, 1234, 12.5f, 180f, 95.5f, 40f, 72, 88, 3, 121.5f, 79.25f, 66, 2);
+        assertEquals(40, packet.remaining());
+        assertEquals(PPGBinaryProtocol.TYPE_RESULT, PPGBinaryProtocol.peekType(packet));
+
+        PPGResult result = PPGBinaryProtocol.decodeResult(packet);
+
+        assertEquals("success", result.status);
+        assertEquals(1234, result.frame_count);
+        assertEquals(12.5, result.elapsed_time, DELTA);
+        assertEquals(180, result.rgb_values.red, DELTA);
+        assertEquals(95.5, result.rgb_values.green, DELTA);
+        assertEquals(40, result.rgb_values.blue, DELTA);
+        assertEquals(95.5, result.green_signal_value, DELTA);
+        assertEquals(72, result.heart_rate.heart_rate);
+        assertEquals(88, result.heart_rate.confidence);
+        assertEquals("Good", result.heart_rate.signal_quality);
+        assertEquals(121.5f, result.bp_analysis_result.bp_analysis.systolic_bp, DELTA);
+        assertEquals(79.25f, result.bp_analysis_result.bp_analysis.diastolic_bp, DELTA);
+        assertEquals(66, result.bp_analysis_result.bp_analysis.confidence);
+        assertEquals("Elevated", result.bp_analysis_result.bp_analysis.bp_category);
+        // Decoding works on a slice and leaves the caller's buffer where it was
+        assertEquals(0, packet.position());
+    }
+
+    @Test
+    public void result_leavesUnflaggedBlocksEmpty() {
+        PPGResult result = PPGBinaryProtocol.decodeResult(
+                resultPacket(PPGBinaryProtocol.FLAG_HEART_RATE, 9, 1f, 1f, 2f, 3f, 61, 10, 99, 120f, 80f, 50, 1));
+
+        assertNull(result.rgb_values);
+        assertNull(result.bp_analysis_result);
+        assertEquals(61, result.heart_rate.heart_rate);
+        // Codes outside the table are reported, not rejected
+        assertEquals("Unknown", result.heart_rate.signal_quality);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void result_rejectsShortPacket() {
+        ByteBuffer packet = resultPacket(0, 0, 0f, 0f, 0f, 0f, 0, 0, 0, 0f, 0f, 0, 0);
+        packet.limit(PPGBinaryProtocol.RESULT_PACKET_SIZE - 1);
+        PPGBinaryProtocol.decodeResult(packet);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void result_rejectsOtherPacketType() {
+        ByteBuffer packet = resultPacket(0, 0, 0f, 0f, 0f, 0f, 0, 0, 0, 0f, 0f, 0, 0);
+        packet.put(0, (byte) PPGBinaryProtocol.TYPE_SAMPLE);
+        PPGBinaryProtocol.decodeResult(packet);
+    }
+
+    @Test
+    public void peekType_rejectsShortBufferAndOtherVersion() {
+        ByteBuffer shortBuffer = PPGBinaryProtocol.allocate(PPGBinaryProtocol.HEADER_SIZE - 1);
+        shortBuffer.put((byte) PPGBinaryProtocol.TYPE_RESULT).put((byte) PPGBinaryProtocol.VERSION).flip();
+        assertEquals(-1, PPGBinaryProtocol.peekType(shortBuffer));
+
+        ByteBuffer otherVersion = resultPacket(0, 0, 0f, 0f, 0f, 0f, 0, 0, 0, 0f, 0f, 0, 0);
+        otherVersion.put(1, (byte) (PPGBinaryProtocol.VERSION + 1));
+        assertEquals(-1, PPGBinaryProtocol.peekType(otherVersion));
+        // Peeking does not consume
+        assertEquals(0, otherVersion.position());
+    }
+
+    // Result packet laid out as documented on PPGBinaryProtocol
+    private static ByteBuffer resultPacket(int flags, int sequence, float elapsed, float red, float green, float blue,
+                                           int heartRate, int heartRateConfidence, int signalQuality,
+                                           float systolic, float diastolic, int bpConfidence, int bpCategory) {
+        ByteBuffer packet = PPGBinaryProtocol.allocate(PPGBinaryProtocol.RESULT_PACKET_SIZE);
+        packet.put((byte) PPGBinaryProtocol.TYPE_RESULT);
+        packet.put((byte) PPGBinaryProtocol.VERSION);
+        packet.putShort((short) flags);
+        packet.putInt(sequence);
+        packet.putFloat(elapsed);
+        packet.putFloat(red);
+        packet.putFloat(green);
+        packet.putFloat(blue);
+        packet.putShort((short) heartRate);
+        packet.put((byte) heartRateConfidence);
+        packet.put((byte) signalQuality);
+        packet.putFloat(systolic);
+        packet.putFloat(diastolic);
+        packet.put((byte) bpConfidence);
+        packet.put((byte) bpCategory);
+        packet.putShort((short) 0);
+        assertEquals(PPGBinaryProtocol.RESULT_PACKET_SIZE, packet.position());
+        packet.flip();
+        return packet;
+    }
+
+    private static byte[] slice(byte[] bytes, int offset, int length) {
+        byte[] out = new byte[length];
+        System.arraycopy(bytes, offset, out, 0, length);
+        return out;
+    }
+}
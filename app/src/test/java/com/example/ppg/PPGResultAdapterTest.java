@@ -0,0 +1,186 @@
+package com.example.ppg;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * PPGResultAdapter against Gson's reflective binding on recorded server results,
+ * including nulls, unknown fields and write/read round trips.
+ */
+public class PPGResultAdapterTest {
+
+    private static final double DELTA = 0;
+
+    private final Gson gson = new Gson();
+    private final PPGResultAdapter adapter = new PPGResultAdapter();
+
+    @Test
+    public void read_fullResult_matchesGson() throws IOException {
+        JsonObject data = resultData("/messages/result.json");
+
+        PPGResult result = adapter.fromJson(data.toString());
+
+        assertResultEquals(gson.fromJson(data, PPGResult.class), result);
+        assertEquals(450, result.frame_count);
+        assertEquals(72, result.heart_rate.heart_rate);
+        assertEquals(118.6f, result.bp_analysis_result.bp_analysis.systolic_bp, DELTA);
+        assertArrayEquals(new String[] {"Systolic below 120 mmHg", "Diastolic below 80 mmHg"},
+                result.bp_analysis_result.interpretation.details);
+    }
+
+    @Test
+    public void read_nullsLeaveDefaults() throws IOException {
+        JsonObject data = resultData("/messages/result_data_first.json");
+
+        PPGResult result = adapter.fromJson(data.toString());
+
+        assertResultEquals(gson.fromJson(data, PPGResult.class), result);
+        assertNull(result.heart_rate);
+        assertNull(result.rgb_values);
+        assertNull(result.bp_analysis_result.bp_analysis);
+        assertNull(result.bp_analysis_result.interpretation.category);
+        assertNull(result.bp_analysis_result.interpretation.details);
+        assertEquals(0, result.green_signal_history.length);
+    }
+
+    @Test
+    public void read_nullResult() throws IOException {
+        assertNull(adapter.fromJson("null"));
+    }
+
+    @Test
+    public void read_ignoresUnknownFields() throws IOException {
+        PPGResult result = adapter.fromJson(
+                "{\"extra\":{\"a\":[1,{\"b\":null}]},\"status\":\"success\",\"spo2\":{\"spo2\":97,\"x\":true}}");
+
+        assertEquals("success", result.status);
+        assertEquals(97, result.spo2.spo2);
+    }
+
+    @Test
+    public void write_roundTrips() throws IOException {
+        PPGResult original = adapter.fromJson(resultData("/messages/result.json").toString());
+        original.spo2 = new PPGResult.SpO2();
+        original.spo2.spo2 = 97;
+        original.spo2.confidence = 70;
+        original.spo2.ratio = 0.52;
+        original.error = "none";
+
+        PPGResult copy = adapter.fromJson(adapter.toJson(original));
+
+        assertResultEquals(original, copy);
+    }
+
+    @Test
+    public void write_matchesGsonOutput() throws IOException {
+        PPGResult full = adapter.fromJson(resultData("/messages/result.json").toString());
+        PPGResult partial = adapter.fromJson(resultData("/messages/result_data_first.json").toString());
+
+        for (PPGResult result : new PPGResult[] {full, partial, new PPGResult()}) {
+            assertEquals(JsonParser.parseString(gson.toJson(result)), JsonParser.parseString(adapter.toJson(result)));
+        }
+        assertEquals("null", adapter.toJson(null));
+    }
+
+    static JsonObject resultData(String resource) throws IOException {
+        return JsonParser.parseString(readResource(resource)).getAsJsonObject().getAsJsonObject("data");
+    }
+
+    static String readResource(String resource) throws IOException {
+        try (InputStream in = PPGResultAdapterTest.class.getResourceAsStream(resource)) {
+            assertNotNull(resource, in);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    static void assertResultEquals(PPGResult expected, PPGResult actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual);
+        assertEquals(expected.status, actual.status);
+        assertEquals(expected.frame_count, actual.frame_count);
+        assertEquals(expected.elapsed_time, actual.elapsed_time, DELTA);
+        assertEquals(expected.error, actual.error);
+        assertEquals(expected.green_signal_value, actual.green_signal_value, DELTA);
+        assertArrayEquals(expected.green_signal_history, actual.green_signal_history, DELTA);
+
+        if (expected.rgb_values == null) {
+            assertNull(actual.rgb_values);
+        } else {
+            assertEquals(expected.rgb_values.red, actual.rgb_values.red, DELTA);
+            assertEquals(expected.rgb_values.green, actual.rgb_values.green, DELTA);
+            assertEquals(expected.rgb_values.blue, actual.rgb_values.blue, DELTA);
+            assertEquals(expected.rgb_values.width, actual.rgb_values.width);
+            assertEquals(expected.rgb_values.height, actual.rgb_values.height);
+        }
+
+        if (expected.heart_rate == null) {
+            assertNull(actual.heart_rate);
+        } else {
+            assertEquals(expected.heart_rate.heart_rate, actual.heart_rate.heart_rate);
+            assertEquals(expected.heart_rate.confidence, actual.heart_rate.confidence);
+            assertEquals(expected.heart_rate.method, actual.heart_rate.method);
+            assertEquals(expected.heart_rate.signal_quality, actual.heart_rate.signal_quality);
+            assertEquals(expected.heart_rate.hrv_rmssd, actual.heart_rate.hrv_rmssd, DELTA);
+            assertEquals(expected.heart_rate.hrv_sdnn, actual.heart_rate.hrv_sdnn, DELTA);
+        }
+
+        if (expected.respiration == null) {
+            assertNull(actual.respiration);
+        } else {
+            assertEquals(expected.respiration.respiration_rate, actual.respiration.respiration_rate);
+            assertEquals(expected.respiration.confidence, actual.respiration.confidence);
+        }
+
+        if (expected.spo2 == null) {
+            assertNull(actual.spo2);
+        } else {
+            assertEquals(expected.spo2.spo2, actual.spo2.spo2);
+            assertEquals(expected.spo2.confidence, actual.spo2.confidence);
+            assertEquals(expected.spo2.ratio, actual.spo2.ratio, DELTA);
+        }
+
+        PPGResult.BPAnalysisResult expectedBp = expected.bp_analysis_result;
+        PPGResult.BPAnalysisResult actualBp = actual.bp_analysis_result;
+        if (expectedBp == null) {
+            assertNull(actualBp);
+            return;
+        }
+        assertNotNull(actualBp);
+        assertEquals(expectedBp.collection_duration, actualBp.collection_duration, DELTA);
+        assertEquals(expectedBp.samples_collected, actualBp.samples_collected);
+        assertEquals(expectedBp.model_version, actualBp.model_version);
+        assertEquals(expectedBp.status, actualBp.status);
+
+        if (expectedBp.bp_analysis == null) {
+            assertNull(actualBp.bp_analysis);
+        } else {
+            assertEquals(expectedBp.bp_analysis.systolic_bp, actualBp.bp_analysis.systolic_bp, DELTA);
+            assertEquals(expectedBp.bp_analysis.diastolic_bp, actualBp.bp_analysis.diastolic_bp, DELTA);
+            assertEquals(expectedBp.bp_analysis.bp_category, actualBp.bp_analysis.bp_category);
+            assertEquals(expectedBp.bp_analysis.confidence, actualBp.bp_analysis.confidence);
+            assertEquals(expectedBp.bp_analysis.quality, actualBp.bp_analysis.quality);
+        }
+
+        if (expectedBp.interpretation == null) {
+            assertNull(actualBp.interpretation);
+        } else {
+            assertEquals(expectedBp.interpretation.category, actualBp.interpretation.category);
+            assertEquals(expectedBp.interpretation.description, actualBp.interpretation.description);
+            assertEquals(expectedBp.interpretation.recommendation, actualBp.interpretation.recommendation);
+            assertEquals(expectedBp.interpretation.risk_level, actualBp.interpretation.risk_level);
+            assertArrayEquals(expectedBp.interpretation.details, actualBp.interpretation.details);
+        }
+    }
+}
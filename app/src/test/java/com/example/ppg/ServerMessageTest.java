@@ -0,0 +1,120 @@
+package com.example.ppg;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static com.example.ppg.PPGResultAdapterTest.assertResultEquals;
+import static com.example.ppg.PPGResultAdapterTest.readResource;
+import static org.junit.Assert.*;
+
+/**
+ * ServerMessage on recorded messages of every type, checked against the JsonObject
+ * tree plus Gson binding of "data" that the client used before the streaming reader.
+ */
+public class ServerMessageTest {
+
+    private final Gson gson = new Gson();
+
+    @Test
+    public void result_dataAfterType() throws IOException {
+        String json = readResource("/messages/result.json");
+
+        ServerMessage message = ServerMessage.read(new StringReader(json));
+
+        assertEquals(ServerMessage.TYPE_RESULT, message.type);
+        assertResultEquals(gsonData(json), message.data);
+        assertEquals(72, message.data.heart_rate.heart_rate);
+    }
+
+    @Test
+    public void result_dataBeforeType() throws IOException {
+        String json = readResource("/messages/result_data_first.json");
+
+        ServerMessage message = ServerMessage.read(new StringReader(json));
+
+        assertEquals(ServerMessage.TYPE_RESULT, message.type);
+        assertResultEquals(gsonData(json), message.data);
+        assertEquals("collecting", message.data.status);
+        assertEquals(31, message.data.bp_analysis_result.samples_collected);
+    }
+
+    @Test
+    public void error() throws IOException {
+        String json = readResource("/messages/error.json");
+        JsonObject tree = JsonParser.parseString(json).getAsJsonObject();
+
+        ServerMessage message = ServerMessage.read(new StringReader(json));
+
+        assertEquals(ServerMessage.TYPE_ERROR, message.type);
+        assertEquals(tree.get("error").getAsString(), message.error);
+        assertNull(message.data);
+        assertEquals(-1, message.sequence);
+    }
+
+    @Test
+    public void ack() throws IOException {
+        String json = readResource("/messages/ack.json");
+        JsonObject tree = JsonParser.parseString(json).getAsJsonObject();
+
+        ServerMessage message = ServerMessage.read(new StringReader(json));
+
+        assertEquals(ServerMessage.TYPE_ACK, message.type);
+        assertEquals(tree.get("sequence").getAsInt(), message.sequence);
+        assertEquals(1042, message.sequence);
+        assertNull(message.data);
+        assertNull(message.error);
+    }
+
+    @Test
+    public void helloAck_fieldsBeforeType() throws IOException {
+        String json = readResource("/messages/hello_ack.json");
+        JsonObject tree = JsonParser.parseString(json).getAsJsonObject();
+
+        ServerMessage message = ServerMessage.read(new StringReader(json));
+
+        assertEquals(ServerMessage.TYPE_HELLO_ACK, message.type);
+        assertEquals(tree.get("protocol").getAsString(), message.protocol);
+        assertEquals(tree.get("version").getAsInt(), message.version);
+        assertEquals(tree.get("acked_sequence").getAsInt(), message.ackedSequence);
+        assertEquals(-1, message.sequence);
+    }
+
+    @Test
+    public void nullsLeaveDefaults() throws IOException {
+        ServerMessage message = ServerMessage.read(new StringReader(
+                "{\"type\":\"reset_ack\",\"data\":null,\"error\":null,\"acked_sequence\":7}"));
+
+        assertEquals(ServerMessage.TYPE_RESET_ACK, message.type);
+        assertNull(message.data);
+        assertNull(message.error);
+        assertEquals(-1, message.sequence);
+        assertEquals(7, message.ackedSequence);
+    }
+
+    @Test(expected = IOException.class)
+    public void missingType_fails() throws IOException {
+        ServerMessage.read(new StringReader("{\"data\":{\"status\":\"success\"}}"));
+    }
+
+    @Test(expected = IOException.class)
+    public void nullType_fails() throws IOException {
+        ServerMessage.read(new StringReader("{\"type\":null,\"error\":\"x\"}"));
+    }
+
+    @Test(expected = IOException.class)
+    public void notAnObject_fails() throws IOException {
+        ServerMessage.read(new StringReader("[\"result\"]"));
+    }
+
+    private PPGResult gsonData(String json) {
+        JsonElement data = JsonParser.parseString(json).getAsJsonObject().get("data");
+        return gson.fromJson(data, PPGResult.class);
+    }
+}
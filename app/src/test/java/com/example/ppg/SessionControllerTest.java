@@ -0,0 +1,69 @@
+package com.example.ppg;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Stop decisions on a steady 72 BPM pulse at 30 fps, with and without a BP source.
+ */
+public class SessionControllerTest {
+
+    private static final long FRAME_NANOS = 33_333_333L;
+
+    @Test
+    public void noBloodPressureSource_convergesOnHeartRate() {
+        SessionController controller = new SessionController();
+        assertEquals(SessionController.Decision.CONVERGED, run(controller, 30, false));
+        // Ended at the minimum duration, not the nominal one
+        assertTrue(controller.getElapsedSeconds() < 16);
+    }
+
+    @Test
+    public void modelLoaded_waitsForBloodPressure() {
+        SessionController controller = new SessionController();
+        controller.setBloodPressureSource(true);
+        assertEquals(SessionController.Decision.NOMINAL_DURATION, run(controller, 45, false));
+    }
+
+    @Test
+    public void modelLoaded_convergesOnceBloodPressureIsStable() {
+        SessionController controller = new SessionController();
+        controller.setBloodPressureSource(true);
+        assertEquals(SessionController.Decision.CONVERGED, run(controller, 30, true));
+    }
+
+    @Test
+    public void serverEstimate_makesBloodPressureRequired() {
+        SessionController controller = new SessionController();
+        controller.onBloodPressure(120, 80);
+        assertEquals(SessionController.Decision.NOMINAL_DURATION, run(controller, 45, false));
+
+        // reset() forgets the server estimate but not a loaded model
+        controller.reset();
+        assertEquals(SessionController.Decision.CONVERGED, run(controller, 30, false));
+        controller.reset();
+        controller.setBloodPressureSource(true);
+        assertEquals(SessionController.Decision.NOMINAL_DURATION, run(controller, 45, false));
+    }
+
+    // Feed frames and one beat every 0.833 s until a decision or the given duration
+    private static SessionController.Decision run(SessionController controller, int seconds, boolean bloodPressure) {
+        long beatNanos = 833_333_333L;
+        long nextBeat = beatNanos;
+        for (long t = 0; t <= seconds * 1_000_000_000L; t += FRAME_NANOS) {
+            if (t >= nextBeat) {
+                controller.onHeartRate(t, 72, 90);
+                if (bloodPressure) {
+                    controller.onBloodPressure(121, 79);
+                }
+                nextBeat += beatNanos;
+            }
+            SessionController.Decision decision = controller.update(t);
+            if (decision != SessionController.Decision.CONTINUE) {
+                return decision;
+            }
+        }
+        return SessionController.Decision.CONTINUE;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.ppg;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Recording files written by SessionRecorder and read back through SessionRecording.
+ */
+public class SessionRecorderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip_withTiles() throws Exception {
+        File file = folder.newFile("session" + SessionRecorder.FILE_SUFFIX);
+        // Enough records to fill and recycle every write buffer several times
+        int count = 10_000;
+        SessionRecorder recorder = SessionRecorder.create(file, 2, 2);
+        byte[] tile = new byte[2 * 2 * 3];
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < tile.length; j++) {
+                tile[j] = (byte) (i + j);
+            }
+            assertTrue(recorder.record(timestamp(i), 200 + i, 100 - i, i * 0.5f, i % 7 == 0 ? null : tile));
+        }
+        close(recorder);
+        assertEquals(count, recorder.getRecordCount());
+        assertEquals(0, recorder.getDroppedCount());
+        assertNull(recorder.getError());
+        assertEquals(SessionRecorder.HEADER_SIZE + (long) count * SessionRecorder.recordSize(2, 2), file.length());
+
+        SessionRecording recording = SessionRecording.open(file);
+        assertEquals(count, recording.getSampleCount());
+        assertTrue(recording.hasTiles());
+        assertEquals(2, recording.getTileWidth());
+        assertEquals(2, recording.getTileHeight());
+        assertEquals(timestamp(count - 1) - timestamp(0), recording.getDurationNanos());
+        byte[] read = new byte[tile.length];
+        for (int i = 0; i < count; i++) {
+            assertEquals(timestamp(i), recording.getTimestampNanos(i));
+            assertEquals(200 + i, recording.getRed(i), 0);
+            assertEquals(100 - i, recording.getGreen(i), 0);
+            assertEquals(i * 0.5f, recording.getBlue(i), 0);
+            recording.getTile(i, read);
+            for (int j = 0; j < read.length; j++) {
+                // A null tile is recorded blank
+                assertEquals(i % 7 == 0 ? 0 : (byte) (i + j), read[j]);
+            }
+        }
+    }
+
+    @Test
+    public void roundTrip_withoutTiles() throws Exception {
+        File file = folder.newFile("means" + SessionRecorder.FILE_SUFFIX);
+        SessionRecorder recorder = SessionRecorder.create(file, 0, 0);
+        for (int i = 0; i < 100; i++) {
+            recorder.record(timestamp(i), i, 2 * i, 3 * i, null);
+        }
+        close(recorder);
+
+        SessionRecording recording = SessionRecording.open(file);
+        assertFalse(recording.hasTiles());
+        assertEquals(100, recording.getSampleCount());
+        assertEquals(SessionRecorder.HEADER_SIZE + 100 * SessionRecorder.SAMPLE_SIZE, file.length());
+        assertEquals(198, recording.getGreen(99), 0);
+    }
+
+    @Test
+    public void tornTrailingRecord_isIgnored() throws Exception {
+        File file = folder.newFile("torn" + SessionRecorder.FILE_SUFFIX);
+        SessionRecorder recorder = SessionRecorder.create(file, 0, 0);
+        for (int i = 0; i < 50; i++) {
+            recorder.record(timestamp(i), 1, 2, 3, null);
+        }
+        close(recorder);
+        // A writer killed part way through the next record
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[SessionRecorder.SAMPLE_SIZE - 3]);
+        }
+
+        SessionRecording recording = SessionRecording.open(file);
+        assertEquals(50, recording.getSampleCount());
+        assertEquals(timestamp(49), recording.getTimestampNanos(49));
+        CountingConsumer consumer = new CountingConsumer();
+        assertEquals(50, recording.replay(consumer, SessionRecording.Pace.MAX_SPEED));
+        assertEquals(50, consumer.count);
+    }
+
+    @Test
+    public void closedRecorder_refusesRecords() throws Exception {
+        SessionRecorder recorder = SessionRecorder.create(folder.newFile(), 0, 0);
+        close(recorder);
+        assertFalse(recorder.record(0, 1, 2, 3, null));
+        assertEquals(0, recorder.getRecordCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsOtherFiles() throws Exception {
+        File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[64]);
+        }
+        SessionRecording.open(file);
+    }
+
+    @Test
+    public void deleteOldest_keepsNewest() throws Exception {
+        File dir = folder.newFolder();
+        for (int i = 0; i < 5; i++) {
+            File file = new File(dir, i + SessionRecorder.FILE_SUFFIX);
+            assertTrue(file.createNewFile());
+            assertTrue(file.setLastModified(1_000_000L * (i + 1)));
+        }
+        File other = new File(dir, "notes.txt");
+        assertTrue(other.createNewFile());
+
+        assertEquals(3, SessionRecorder.deleteOldest(dir, 2));
+        assertTrue(new File(dir, "4" + SessionRecorder.FILE_SUFFIX).exists());
+        assertTrue(new File(dir, "3" + SessionRecorder.FILE_SUFFIX).exists());
+        assertFalse(new File(dir, "2" + SessionRecorder.FILE_SUFFIX).exists());
+        assertTrue(other.exists());
+    }
+
+    private static long timestamp(int index) {
+        return 5_000_000_000L + index * 33_333_333L;
+    }
+
+    private static void close(SessionRecorder recorder) throws InterruptedException {
+        recorder.close();
+        assertTrue(recorder.awaitClose(5, TimeUnit.SECONDS));
+    }
+
+    private static class CountingConsumer implements SampleRingBuffer.Consumer {
+        int count;
+
+        @Override
+        public void onSample(long timestampNanos, float red, float green, float blue) {
+            count++;
+        }
+    }
+}
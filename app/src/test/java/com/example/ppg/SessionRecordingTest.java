@@ -0,0 +1,115 @@
+package com.example.ppg;
+
+import com.example.ppg.dsp.StreamingHeartRateEngine;
+import com.example.ppg.dsp.UniformResampler;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays a committed recording through the on-device heart rate path, resampled to
+ * 30 Hz as CameraActivity's HeartRateConsumer does.
+ *
+ * recordings/pulse_72bpm.ppgs holds 600 channel-mean samples (20 s, no tiles) of a
+ * synthetic 72 BPM finger-on-lens pulse: green and red dips with a dicrotic wave,
+ * slow baseline drift, sensor noise, +-2 ms frame jitter and one dropped frame.
+ */
+public class SessionRecordingTest {
+
+    private static final String FIXTURE = "/recordings/pulse_72bpm.ppgs";
+    private static final double CAMERA_FPS = 30.0;
+    private static final long MAX_SAMPLE_GAP_NANOS = 250_000_000L;
+
+    @Test
+    public void fixture_header() throws IOException {
+        SessionRecording recording = loadFixture();
+        assertEquals(600, recording.getSampleCount());
+        assertFalse(recording.hasTiles());
+        assertEquals(19_984_445_699L, recording.getDurationNanos());
+    }
+
+    @Test
+    public void maxSpeedReplay_heartRateEngineFindsEveryBeat() throws IOException {
+        List<int[]> estimates = new ArrayList<>();
+        List<Long> beatTimes = new ArrayList<>();
+        StreamingHeartRateEngine engine = replay(loadFixture(), estimates, beatTimes);
+
+        // First estimate needs two intervals; then one per beat for the rest of the 20 s
+        assertEquals(20, estimates.size());
+        for (int[] estimate : estimates) {
+            assertEquals(72, estimate[0]);
+        }
+        assertEquals(72, engine.getHeartRate());
+        assertEquals(97, engine.getConfidence());
+        assertEquals(25, estimates.get(0)[1]);
+        assertEquals(4.700910254, beatTimes.get(0) / 1e9, 1e-9);
+        for (int i = 1; i < beatTimes.size(); i++) {
+            assertEquals(60.0 / 72, (beatTimes.get(i) - beatTimes.get(i - 1)) / 1e9, 0.04);
+        }
+        assertEquals(9.96, engine.getRmssdMs(), 0.01);
+    }
+
+    @Test
+    public void maxSpeedReplay_isDeterministic() throws IOException {
+        SessionRecording recording = loadFixture();
+        List<Long> first = new ArrayList<>();
+        List<Long> second = new ArrayList<>();
+        replay(recording, new ArrayList<>(), first);
+        replay(recording, new ArrayList<>(), second);
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void interruptedReplay_stopsEarly() throws IOException {
+        SessionRecording recording = loadFixture();
+        int[] delivered = {0};
+        int returned = recording.replay((timestampNanos, red, green, blue) -> {
+            if (++delivered[0] == 10) {
+                Thread.currentThread().interrupt();
+            }
+        }, SessionRecording.Pace.MAX_SPEED);
+        // Clear the flag so it does not leak into other tests
+        assertTrue(Thread.interrupted());
+        assertEquals(10, returned);
+        assertEquals(10, delivered[0]);
+    }
+
+    // Resample the green channel and run the heart rate engine; collects [bpm, confidence] per beat
+    private static StreamingHeartRateEngine replay(SessionRecording recording, List<int[]> estimates,
+                                                   List<Long> beatTimes) {
+        StreamingHeartRateEngine engine = new StreamingHeartRateEngine(CAMERA_FPS);
+        UniformResampler resampler = new UniformResampler(CAMERA_FPS, UniformResampler.Interpolation.CUBIC,
+                MAX_SAMPLE_GAP_NANOS, (timestampNanos, value) -> {
+                    if (engine.process(timestampNanos, value)) {
+                        estimates.add(new int[] {engine.getHeartRate(), engine.getConfidence()});
+                        beatTimes.add(timestampNanos);
+                    }
+                });
+        int delivered = recording.replay((timestampNanos, red, green, blue) -> resampler.add(timestampNanos, green),
+                SessionRecording.Pace.MAX_SPEED);
+        assertEquals(recording.getSampleCount(), delivered);
+        assertEquals(0, resampler.getGapCount());
+        return engine;
+    }
+
+    private static SessionRecording loadFixture() throws IOException {
+        try (InputStream in = SessionRecordingTest.class.getResourceAsStream(FIXTURE)) {
+            assertNotNull("missing " + FIXTURE, in);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, n);
+            }
+            return SessionRecording.wrap(ByteBuffer.wrap(bytes.toByteArray()));
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.ppg.api;
+
+import com.example.ppg.models.Measurement;
+import com.example.ppg.models.Subject;
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * REST payload readers and ApiJson adapters against Gson's reflective binding on
+ * recorded responses, in both the camelCase and snake_case field spellings.
+ */
+public class ApiJsonTest {
+
+    private static final double DELTA = 0;
+
+    private final Gson gson = new Gson();
+
+    @Test
+    public void subjects_matchGson() throws IOException {
+        String json = readResource("/api/subjects.json");
+        ApiService.ApiResponse expected = gson.fromJson(json, ApiService.ApiResponse.class);
+
+        ApiService.ApiResponse response = ApiService.readApiResponse(new StringReader(json));
+
+        assertTrue(response.success);
+        assertNull(response.subject);
+        assertSubjectsEqual(expected.subjects, response.subjects);
+        assertEquals(3, response.subjects.size());
+        assertNull(response.subjects.get(2));
+        assertEquals(2, response.subjects.get(1).getSubjectNumber());
+        assertNull(response.subjects.get(1).getAge());
+    }
+
+    @Test
+    public void subjects_snakeCaseMatchesCamelCase() throws IOException {
+        ApiService.ApiResponse camel = gson.fromJson(readResource("/api/subjects.json"), ApiService.ApiResponse.class);
+
+        ApiService.ApiResponse snake = ApiService.readApiResponse(new StringReader(readResource("/api/subjects_snake_case.json")));
+
+        assertSubjectsEqual(camel.subjects.subList(0, 1), snake.subjects);
+    }
+
+    @Test
+    public void createdSubject() throws IOException {
+        String json = "{\"success\":true,\"subject\":{\"subject_id\":\"d4\",\"subject_number\":3,"
+                + "\"subject_name\":\"Carol\",\"age\":51.0,\"gender\":\"F\"},\"message\":\"created\"}";
+
+        ApiService.ApiResponse response = ApiService.readApiResponse(new StringReader(json));
+
+        assertTrue(response.success);
+        assertNull(response.subjects);
+        assertEquals("d4", response.subject.getSubjectId());
+        assertEquals(3, response.subject.getSubjectNumber());
+        assertEquals("Carol", response.subject.getSubjectName());
+        assertEquals(Integer.valueOf(51), response.subject.getAge());
+        assertNull(response.subject.getNotes());
+    }
+
+    @Test
+    public void failure_nullsLeaveDefaults() throws IOException {
+        ApiService.ApiResponse response = ApiService.readApiResponse(new StringReader(
+                "{\"success\":null,\"subject\":null,\"subjects\":null,\"error\":\"db down\"}"));
+
+        assertFalse(response.success);
+        assertNull(response.subject);
+        assertNull(response.subjects);
+    }
+
+    @Test
+    public void historyWithStats_matchesGson() throws IOException {
+        String json = readResource("/api/history.json");
+        ApiService.HistoryResponse expected = gson.fromJson(json, ApiService.HistoryResponse.class);
+
+        ApiService.HistoryResponse history = ApiService.readHistoryResponse(new StringReader(json));
+
+        assertTrue(history.success);
+        assertEquals(expected.subject_id, history.subject_id);
+        assertMeasurementsEqual(expected.measurements, history.measurements);
+        assertStatsEqual(expected.stats, history.stats);
+        assertEquals(68, history.measurements.get(1).getHeartRate());
+        assertNull(history.measurements.get(1).getSystolicBp());
+        assertEquals(69.5, history.stats.avg_heart_rate, DELTA);
+    }
+
+    @Test
+    public void history_snakeCaseMatchesCamelCase() throws IOException {
+        ApiService.HistoryResponse camel = gson.fromJson(readResource("/api/history.json"), ApiService.HistoryResponse.class);
+
+        ApiService.HistoryResponse snake = ApiService.readHistoryResponse(
+                new StringReader(readResource("/api/history_snake_case.json")));
+
+        assertMeasurementsEqual(camel.measurements.subList(0, 1), snake.measurements);
+        assertNull(snake.stats);
+    }
+
+    @Test
+    public void subject_roundTrips() throws IOException {
+        List<Subject> subjects = ApiService.readApiResponse(new StringReader(readResource("/api/subjects.json"))).subjects;
+
+        String json = toJson(subjects, ApiJson.SUBJECT);
+        List<Subject> copy = ApiJson.readList(new JsonReader(new StringReader(json)), ApiJson.SUBJECT);
+
+        assertSubjectsEqual(subjects, copy);
+        // Nulls are left out, as Gson does
+        assertEquals(JsonParser.parseString(gson.toJson(subjects)), JsonParser.parseString(json));
+    }
+
+    @Test
+    public void measurement_roundTrips() throws IOException {
+        List<Measurement> measurements = ApiService.readHistoryResponse(
+                new StringReader(readResource("/api/history.json"))).measurements;
+
+        String json = toJson(measurements, ApiJson.MEASUREMENT);
+        List<Measurement> copy = ApiJson.readList(new JsonReader(new StringReader(json)),
+                ApiJson.MEASUREMENT);
+
+        assertMeasurementsEqual(measurements, copy);
+        assertEquals(JsonParser.parseString(gson.toJson(measurements)), JsonParser.parseString(json));
+    }
+
+    @Test
+    public void stats_roundTrips() throws IOException {
+        ApiService.SubjectStats stats = ApiService.readHistoryResponse(
+                new StringReader(readResource("/api/history.json"))).stats;
+
+        ApiService.SubjectStats copy = ApiJson.SUBJECT_STATS.fromJson(ApiJson.SUBJECT_STATS.toJson(stats));
+
+        assertStatsEqual(stats, copy);
+        assertNull(ApiJson.SUBJECT_STATS.fromJson(ApiJson.SUBJECT_STATS.toJson(null)));
+    }
+
+    @Test
+    public void subjectCreateRequest_leavesOutNulls() throws IOException {
+        String json = ApiService.writeSubjectCreateRequest("Dan", null, "M", null);
+
+        assertEquals(JsonParser.parseString("{\"subject_name\":\"Dan\",\"gender\":\"M\"}"), JsonParser.parseString(json));
+    }
+
+    private static <T> String toJson(List<T> values, TypeAdapter<T> adapter) throws IOException {
+        StringWriter json = new StringWriter();
+        JsonWriter out = new JsonWriter(json);
+        ApiJson.writeList(out, values, adapter);
+        out.flush();
+        return json.toString();
+    }
+
+    private static String readResource(String resource) throws IOException {
+        try (InputStream in = ApiJsonTest.class.getResourceAsStream(resource)) {
+            assertNotNull(resource, in);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void assertSubjectsEqual(List<Subject> expected, List<Subject> actual) {
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Subject e = expected.get(i);
+            Subject a = actual.get(i);
+            if (e == null) {
+                assertNull(a);
+                continue;
+            }
+            assertEquals(e.getSubjectId(), a.getSubjectId());
+            assertEquals(e.getSubjectNumber(), a.getSubjectNumber());
+            assertEquals(e.getSubjectName(), a.getSubjectName());
+            assertEquals(e.getAge(), a.getAge());
+            assertEquals(e.getGender(), a.getGender());
+            assertEquals(e.getNotes(), a.getNotes());
+            assertEquals(e.getCreatedAt(), a.getCreatedAt());
+            assertEquals(e.getLastMeasurement(), a.getLastMeasurement());
+            assertEquals(e.getTotalMeasurements(), a.getTotalMeasurements());
+        }
+    }
+
+    private static void assertMeasurementsEqual(List<Measurement> expected, List<Measurement> actual) {
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Measurement e = expected.get(i);
+            Measurement a = actual.get(i);
+            assertEquals(e.getMeasurementId(), a.getMeasurementId());
+            assertEquals(e.getSubjectId(), a.getSubjectId());
+            assertEquals(e.getHeartRate(), a.getHeartRate());
+            assertEquals(e.getHeartRateConfidence(), a.getHeartRateConfidence());
+            assertEquals(e.getSignalQuality(), a.getSignalQuality());
+            assertEquals(e.getBpCategory(), a.getBpCategory());
+            assertEquals(e.getBpConfidence(), a.getBpConfidence());
+            assertEquals(e.getSystolicBp(), a.getSystolicBp());
+            assertEquals(e.getDiastolicBp(), a.getDiastolicBp());
+            assertEquals(e.getMeasurementDuration(), a.getMeasurementDuration());
+            assertEquals(e.getFrameCount(), a.getFrameCount());
+            assertEquals(e.getTimestamp(), a.getTimestamp());
+        }
+    }
+
+    private static void assertStatsEqual(ApiService.SubjectStats expected, ApiService.SubjectStats actual) {
+        assertNotNull(actual);
+        assertEquals(expected.avg_systolic, actual.avg_systolic, DELTA);
+        assertEquals(expected.avg_diastolic, actual.avg_diastolic, DELTA);
+        assertEquals(expected.avg_heart_rate, actual.avg_heart_rate, DELTA);
+        assertEquals(expected.measurement_count, actual.measurement_count);
+        assertEquals(expected.total_measurements, actual.total_measurements);
+        assertEquals(expected.min_heart_rate, actual.min_heart_rate, DELTA);
+        assertEquals(expected.max_heart_rate, actual.max_heart_rate, DELTA);
+    }
+}
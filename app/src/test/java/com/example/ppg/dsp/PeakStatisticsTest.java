@@ -0,0 +1,154 @@
+package com.example.ppg.dsp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Incremental peak and HRV statistics against the batch formulas of
+ * extract_enhanced_features (numpy population std, RMSSD over successive differences).
+ */
+public class PeakStatisticsTest {
+
+    private static final double DELTA = 1e-9;
+    private static final long SECOND = 1_000_000_000L;
+
+    // RR intervals in seconds and the height of each peak, one more than intervals
+    private static final double[] RR = {0.80, 0.85, 0.78, 0.92, 0.81, 0.79, 0.88, 0.83};
+    private static final double[] HEIGHTS = {1.0, 1.2, 0.9, 1.1, 1.05, 0.95, 1.15, 1.0, 0.98};
+
+    @Test
+    public void fixedSequence_matchesBatchFormulas() {
+        PeakStatistics stats = new PeakStatistics(60 * SECOND, 64);
+        addPeaks(stats, RR.length);
+
+        double[] features = new double[PPGFeatures.COUNT];
+        stats.fillPeakFeatures(features);
+        assertBatchFeatures(features, 0, RR.length);
+        assertEquals(rmssdMs(0, RR.length), stats.getRmssdMs(), DELTA);
+        assertEquals(std(rrMs(0, RR.length)), stats.getSdnnMs(), DELTA);
+        assertEquals(mean(rrMs(0, RR.length)), stats.getMeanRrMs(), DELTA);
+    }
+
+    @Test
+    public void advanceTo_dropsPeaksLeavingTheWindow() {
+        // Window of 4 s: after the last peak (6.66 s) only the peaks from 2.66 s on remain
+        PeakStatistics stats = new PeakStatistics(4 * SECOND, 64);
+        long last = addPeaks(stats, RR.length);
+        stats.advanceTo(last);
+
+        int firstKept = 0;
+        double t = 0;
+        while (last - Math.round(t * SECOND) >= 4 * SECOND) {
+            t += RR[firstKept++];
+        }
+        assertEquals(RR.length + 1 - firstKept, stats.getPeakCount());
+        double[] features = new double[PPGFeatures.COUNT];
+        stats.fillPeakFeatures(features);
+        assertBatchFeatures(features, firstKept, RR.length);
+    }
+
+    @Test
+    public void fullRing_evictsOldestPeak() {
+        PeakStatistics stats = new PeakStatistics(60 * SECOND, 5);
+        addPeaks(stats, RR.length);
+
+        assertEquals(5, stats.getPeakCount());
+        double[] features = new double[PPGFeatures.COUNT];
+        stats.fillPeakFeatures(features);
+        assertBatchFeatures(features, RR.length - 4, RR.length);
+    }
+
+    @Test
+    public void fewerThanThreePeaks_reportsZeros() {
+        PeakStatistics stats = new PeakStatistics(60 * SECOND, 8);
+        stats.addPeak(SECOND, 1.0);
+        stats.addPeak(2 * SECOND, 1.0);
+
+        double[] features = new double[PPGFeatures.COUNT];
+        Arrays.fill(features, 7);
+        stats.fillPeakFeatures(features);
+        for (int i = PPGFeatures.PEAK_COUNT; i <= PPGFeatures.HR_STD; i++) {
+            assertEquals(0, features[i], 0);
+        }
+        assertEquals(0, stats.getRmssdMs(), 0);
+    }
+
+    // Add peaks 0 .. lastInterval, i.e. the peaks bounding RR[0 .. lastInterval); returns the last time
+    private static long addPeaks(PeakStatistics stats, int lastInterval) {
+        double t = 0;
+        long time = 0;
+        for (int i = 0; i <= lastInterval; i++) {
+            time = Math.round(t * SECOND);
+            stats.addPeak(time, HEIGHTS[i]);
+            if (i < lastInterval) {
+                t += RR[i];
+            }
+        }
+        return time;
+    }
+
+    // Features of the peaks firstPeak .. lastInterval and the intervals between them
+    private static void assertBatchFeatures(double[] features, int firstPeak, int lastInterval) {
+        double[] rr = new double[lastInterval - firstPeak];
+        double[] hr = new double[rr.length];
+        for (int i = 0; i < rr.length; i++) {
+            rr[i] = RR[firstPeak + i];
+            hr[i] = 60 / rr[i];
+        }
+        double[] heights = new double[rr.length + 1];
+        System.arraycopy(HEIGHTS, firstPeak, heights, 0, heights.length);
+        double[] rrMs = rrMs(firstPeak, lastInterval);
+
+        assertEquals(heights.length, features[PPGFeatures.PEAK_COUNT], 0);
+        assertEquals(mean(heights), features[PPGFeatures.PEAK_MEAN_HEIGHT], DELTA);
+        assertEquals(std(heights), features[PPGFeatures.PEAK_STD_HEIGHT], DELTA);
+        assertEquals(mean(rr), features[PPGFeatures.PEAK_MEAN_INTERVAL], 1e-9);
+        assertEquals(std(rr), features[PPGFeatures.PEAK_STD_INTERVAL], 1e-9);
+        assertEquals(std(rr) / mean(rr), features[PPGFeatures.PEAK_CV_INTERVAL], 1e-8);
+        assertEquals(rmssdMs(firstPeak, lastInterval), features[PPGFeatures.HRV_RMSSD], 1e-6);
+        assertEquals(std(rrMs), features[PPGFeatures.HRV_SDNN], 1e-6);
+        assertEquals(mean(rrMs), features[PPGFeatures.HRV_MEAN], 1e-6);
+        assertEquals(std(rrMs) / mean(rrMs), features[PPGFeatures.HRV_CV], 1e-8);
+        assertEquals(mean(hr), features[PPGFeatures.MEAN_HR], 1e-6);
+        assertEquals(std(hr), features[PPGFeatures.HR_STD], 1e-6);
+    }
+
+    private static double[] rrMs(int from, int to) {
+        double[] ms = new double[to - from];
+        for (int i = 0; i < ms.length; i++) {
+            ms[i] = RR[from + i] * 1000;
+        }
+        return ms;
+    }
+
+    // sqrt(mean(diff(rr_ms)^2))
+    private static double rmssdMs(int from, int to) {
+        double[] ms = rrMs(from, to);
+        double sum = 0;
+        for (int i = 1; i < ms.length; i++) {
+            sum += (ms[i] - ms[i - 1]) * (ms[i] - ms[i - 1]);
+        }
+        return Math.sqrt(sum / (ms.length - 1));
+    }
+
+    private static double mean(double[] x) {
+        double sum = 0;
+        for (double v : x) {
+            sum += v;
+        }
+        return sum / x.length;
+    }
+
+    // numpy.std, ddof = 0
+    private static double std(double[] x) {
+        double m = mean(x);
+        double sum = 0;
+        for (double v : x) {
+            sum += (v - m) * (v - m);
+        }
+        return Math.sqrt(sum / x.length);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.ppg.dsp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * RealFft against a direct O(n^2) DFT, on both the power-of-two split path and the
+ * Bluestein path used for other lengths (nperseg = 250 in the training script).
+ */
+public class RealFftTest {
+
+    private static final double TOLERANCE = 1e-9;
+
+    @Test
+    public void powerOfTwo_matchesNaiveDft() {
+        for (int n : new int[] {2, 4, 8, 64, 256}) {
+            assertMatchesNaiveDft(n, testSignal(n));
+        }
+    }
+
+    @Test
+    public void bluestein_matchesNaiveDft() {
+        for (int n : new int[] {3, 5, 7, 12, 100, 250, 251}) {
+            assertMatchesNaiveDft(n, testSignal(n));
+        }
+    }
+
+    @Test
+    public void sinusoid_landsInItsBin() {
+        int n = 250;
+        double[] input = new double[n];
+        for (int j = 0; j < n; j++) {
+            // 3 cycles of amplitude 2 and 40 cycles of amplitude 0.5 per transform
+            input[j] = 2 * Math.cos(2 * Math.PI * 3 * j / n) + 0.5 * Math.sin(2 * Math.PI * 40 * j / n);
+        }
+        RealFft fft = new RealFft(n);
+        double[] power = new double[fft.binCount()];
+        fft.powerSpectrum(input, power, new double[fft.binCount()], new double[fft.binCount()]);
+
+        // |X_k| = amplitude * n / 2 for a bin-centred sinusoid, and nothing leaks elsewhere
+        assertEquals(Math.pow(2 * n / 2.0, 2), power[3], 1e-6);
+        assertEquals(Math.pow(0.5 * n / 2.0, 2), power[40], 1e-6);
+        for (int k = 0; k < power.length; k++) {
+            if (k != 3 && k != 40) {
+                assertEquals("bin " + k, 0, power[k], 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void reusedInstance_givesSameResult() {
+        RealFft fft = new RealFft(250);
+        double[] re = new double[fft.binCount()];
+        double[] im = new double[fft.binCount()];
+        fft.forward(testSignal(250), re, im);
+        double[] firstRe = re.clone();
+        fft.forward(new double[250], re, im);
+        fft.forward(testSignal(250), re, im);
+        assertArrayEquals(firstRe, re, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTooShort() {
+        new RealFft(1);
+    }
+
+    private static void assertMatchesNaiveDft(int n, double[] input) {
+        RealFft fft = new RealFft(n);
+        assertEquals(n / 2 + 1, fft.binCount());
+        double[] re = new double[fft.binCount()];
+        double[] im = new double[fft.binCount()];
+        fft.forward(input, re, im);
+        for (int k = 0; k < fft.binCount(); k++) {
+            double expectedRe = 0;
+            double expectedIm = 0;
+            for (int j = 0; j < n; j++) {
+                double angle = -2 * Math.PI * ((long) k * j % n) / n;
+                expectedRe += input[j] * Math.cos(angle);
+                expectedIm += input[j] * Math.sin(angle);
+            }
+            assertEquals("n=" + n + " re[" + k + "]", expectedRe, re[k], TOLERANCE * n);
+            assertEquals("n=" + n + " im[" + k + "]", expectedIm, im[k], TOLERANCE * n);
+        }
+    }
+
+    // Off-bin sinusoids, a DC offset and a ramp, so every bin is non-zero
+    private static double[] testSignal(int n) {
+        double[] x = new double[n];
+        for (int j = 0; j < n; j++) {
+            x[j] = 1.5 + Math.sin(2 * Math.PI * 1.37 * j / n) + 0.3 * Math.cos(2 * Math.PI * 0.41 * j + 0.2)
+                    + 0.01 * j;
+        }
+        return x;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.ppg.dsp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Peak detection on synthetic pulse waves with known peak times.
+ */
+public class StreamingPeakDetectorTest {
+
+    private static final double FS = 30.0;
+
+    @Test
+    public void sinusoid_peaksAtTheMaximaWithSubSampleTiming() {
+        // 72 BPM: maxima at (k + 0.25) / 1.2 s, which mostly fall between frames
+        double f = 1.2;
+        List<Long> peaks = detect(new StreamingPeakDetector(FS, 0.3, 0, 2.0), 20, t -> Math.sin(2 * Math.PI * f * t));
+
+        assertTrue("peaks: " + peaks.size(), peaks.size() >= 20);
+        for (long peak : peaks) {
+            double t = peak / 1e9;
+            double cycles = t * f - 0.25;
+            // Parabolic refinement is far better than the 33 ms frame period
+            assertEquals("peak at " + t, Math.round(cycles), cycles, 0.004 * f);
+        }
+        for (int i = 1; i < peaks.size(); i++) {
+            assertEquals(1 / f, (peaks.get(i) - peaks.get(i - 1)) / 1e9, 0.004);
+        }
+    }
+
+    @Test
+    public void secondaryPeakWithinRefractoryPeriod_isSuppressed() {
+        // Systolic peak plus a smaller dicrotic wave 0.25 s later, at 60 BPM
+        List<Long> peaks = detect(new StreamingPeakDetector(FS, 0.4, 0, 2.0), 20,
+                t -> pulse(t % 1.0, 0.2, 1.0) + pulse(t % 1.0, 0.45, 0.5));
+
+        assertTrue(peaks.size() >= 15);
+        for (int i = 1; i < peaks.size(); i++) {
+            assertEquals(1.0, (peaks.get(i) - peaks.get(i - 1)) / 1e9, 0.01);
+        }
+        // Each reported peak is the systolic one
+        for (long peak : peaks) {
+            assertEquals(0.2, (peak / 1e9) % 1.0, 0.02);
+        }
+    }
+
+    @Test
+    public void noPeaksDuringWarmup() {
+        // adaptSeconds 4: nothing is reported in the first 3 s
+        StreamingPeakDetector detector = new StreamingPeakDetector(FS, 0.3, 0, 4.0);
+        List<Long> peaks = detect(detector, 10, t -> Math.sin(2 * Math.PI * 1.2 * t));
+        assertFalse(peaks.isEmpty());
+        assertTrue(peaks.get(0) > 3_000_000_000L);
+    }
+
+    @Test
+    public void reset_forgetsState() {
+        StreamingPeakDetector detector = new StreamingPeakDetector(FS, 0.3, 0, 2.0);
+        List<Long> first = detect(detector, 10, t -> Math.sin(2 * Math.PI * 1.2 * t));
+        detector.reset();
+        List<Long> second = detect(detector, 10, t -> Math.sin(2 * Math.PI * 1.2 * t));
+        assertEquals(first, second);
+    }
+
+    private interface Wave {
+        double at(double seconds);
+    }
+
+    private static List<Long> detect(StreamingPeakDetector detector, double seconds, Wave wave) {
+        List<Long> peaks = new ArrayList<>();
+        int samples = (int) (seconds * FS);
+        for (int n = 0; n < samples; n++) {
+            long timestamp = Math.round(n / FS * 1e9);
+            if (detector.add(timestamp, wave.at(n / FS))) {
+                peaks.add(detector.getPeakNanos());
+            }
+        }
+        return peaks;
+    }
+
+    // Gaussian bump of the given height centred at centre seconds
+    private static double pulse(double t, double centre, double height) {
+        double d = (t - centre) / 0.06;
+        return height * Math.exp(-d * d);
+    }
+}
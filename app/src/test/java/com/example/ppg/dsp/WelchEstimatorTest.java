@@ -0,0 +1,117 @@
+package com.example.ppg.dsp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Streaming Welch PSD against reference values for the training script's layout:
+ * 125 Hz, 1000-sample window, nperseg 250, 50% overlap, 7 segments.
+ *
+ * The expected bins are scipy.signal.welch(x, fs=125, nperseg=250) of signal(n), as
+ * evaluated by a direct-DFT reimplementation of its defaults (periodic Hann window,
+ * constant detrend, one-sided density, mean averaging).
+ */
+public class WelchEstimatorTest {
+
+    private static final double FS = 125.0;
+
+    // Bins 0 .. 20 (0 to 10 Hz) for samples 0 .. 999
+    private static final double[] FIRST_WINDOW = {
+            0.031668086873233123, 0.037849375851162097, 0.50480769103036327, 0.41906847530864422,
+            0.0095721998079043146, 0.00025520312639355937, 2.9843277960867365e-05, 6.2697697158937663e-06,
+            1.831725130309497e-06, 6.6310177817152041e-07, 2.7926273187745062e-07, 1.316349920129559e-07,
+            6.7696534743909165e-08, 3.7313915913076009e-08, 2.1761028849406391e-08, 1.3298348411741306e-08,
+            8.4529246615300851e-09, 0.0037487426341896455, 0.015001997668448258, 0.0037492048375051116,
+            1.8503822239052699e-09
+    };
+
+    // Bins 0 .. 20 for samples 375 .. 1374, after three segments slid out
+    private static final double[] SLID_WINDOW = {
+            0.025259591267098699, 0.073374004652487682, 0.55547173984029008, 0.41322917207062965,
+            0.0098864392475883217, 0.00028055566392934893, 3.4902118413207258e-05, 7.7651215037467131e-06,
+            2.3887197520320921e-06, 9.0519641673921344e-07, 3.9683421071742427e-07, 1.9372737721929923e-07,
+            1.0271775347226888e-07, 5.8142193181669149e-08, 3.4701940390788665e-08, 2.1639382785705898e-08,
+            1.3999980938029323e-08, 0.0037507464054738243, 0.014998843203733203, 0.0037504697471003284,
+            3.2276700725928262e-09
+    };
+
+    private static double signal(int n) {
+        return Math.sin(2 * Math.PI * 1.2 * n / FS) + 0.4 * Math.sin(2 * Math.PI * 0.3 * n / FS + 0.5)
+                + 0.15 * Math.cos(2 * Math.PI * 9 * n / FS) + 2.0;
+    }
+
+    @Test
+    public void fullWindow_matchesReference() {
+        WelchEstimator welch = new WelchEstimator(FS, 1000);
+        feed(welch, 0, 1000);
+
+        assertEquals(7, welch.getSegmentCount());
+        assertEquals(126, welch.getBinCount());
+        assertEquals(0.5, welch.getFrequency(1), 0);
+        assertPsd(FIRST_WINDOW, welch.getPsd());
+    }
+
+    @Test
+    public void slidingWindow_matchesReferenceOfLatestSamples() {
+        WelchEstimator welch = new WelchEstimator(FS, 1000);
+        feed(welch, 0, 1375);
+
+        assertEquals(7, welch.getSegmentCount());
+        assertPsd(SLID_WINDOW, welch.getPsd());
+    }
+
+    @Test
+    public void longRun_runningSumStaysExact() {
+        // Many turnovers of the window with a large transient early on: the PSD must
+        // still equal a fresh estimator fed only the samples in the window
+        WelchEstimator streaming = new WelchEstimator(FS, 1000);
+        int total = 125 * 600;
+        for (int n = 0; n < total; n++) {
+            streaming.add(n < 500 ? 1e4 * signal(n) : signal(n));
+        }
+        WelchEstimator fresh = new WelchEstimator(FS, 1000);
+        feed(fresh, total - 1000, total);
+        double[] expected = fresh.getPsd();
+        double[] actual = streaming.getPsd();
+        for (int k = 0; k < expected.length; k++) {
+            assertEquals("bin " + k, expected[k], actual[k], 1e-9 * expected[k] + 1e-14);
+        }
+    }
+
+    @Test
+    public void reset_startsOver() {
+        WelchEstimator welch = new WelchEstimator(FS, 1000);
+        feed(welch, 0, 3000);
+        welch.reset();
+        assertEquals(0, welch.getSegmentCount());
+        feed(welch, 0, 1000);
+        assertPsd(FIRST_WINDOW, welch.getPsd());
+    }
+
+    @Test
+    public void frequencyFeatures_peakAtStrongestBin() {
+        WelchEstimator welch = new WelchEstimator(FS, 1000);
+        double[] features = new double[PPGFeatures.COUNT];
+        welch.fillFrequencyFeatures(features);
+        assertEquals(0, features[PPGFeatures.FREQ_PEAK_FREQUENCY], 0);
+
+        feed(welch, 0, 1000);
+        welch.fillFrequencyFeatures(features);
+        // 1.2 Hz falls between the 1.0 and 1.5 Hz bins, nearer the first
+        assertEquals(1.0, features[PPGFeatures.FREQ_PEAK_FREQUENCY], 0);
+        assertTrue(features[PPGFeatures.FREQ_SPECTRAL_ENTROPY] > 0);
+    }
+
+    private static void feed(WelchEstimator welch, int from, int to) {
+        for (int n = from; n < to; n++) {
+            welch.add(signal(n));
+        }
+    }
+
+    private static void assertPsd(double[] expected, double[] actual) {
+        for (int k = 0; k < expected.length; k++) {
+            assertEquals("bin " + k, expected[k], actual[k], 1e-9 * expected[k] + 1e-15);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.ppg.ml;
+
+import com.example.ppg.dsp.PPGFeatures;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feature updates with and without a model, on a 72 BPM pulse at the model's 125 Hz.
+ */
+public class ProgressiveBPEstimatorTest {
+
+    private static final int FS = (int) PPGFeatures.SAMPLE_RATE_HZ;
+
+    @Test
+    public void withoutModel_featuresStillUpdate() {
+        ProgressiveBPEstimator estimator = new ProgressiveBPEstimator();
+        assertFalse(estimator.hasModel());
+
+        // 8 s window, then one update every 2 s
+        assertEquals(0, feed(estimator, 0, 8 * FS - 1));
+        int updates = feed(estimator, 8 * FS - 1, 20 * FS);
+        assertEquals(7, updates);
+        assertFalse(estimator.hasNewEstimate());
+        assertEquals(0, estimator.getEstimateCount());
+        assertEquals(0, estimator.getSystolic(), 0);
+        // The pulse shows up in the spectrum near 1.2 Hz (0.5 Hz bins)
+        assertEquals(1.0, estimator.getFeatures()[PPGFeatures.FREQ_PEAK_FREQUENCY], 0.5);
+        assertTrue(estimator.getFeatures()[PPGFeatures.PEAK_COUNT] > 0);
+    }
+
+    @Test
+    public void modelSetMidCapture_estimatesFromTheNextUpdate() throws IOException {
+        ProgressiveBPEstimator estimator = new ProgressiveBPEstimator();
+        feed(estimator, 0, 10 * FS);
+        estimator.setModel(loadModel());
+        assertTrue(estimator.hasModel());
+
+        int updates = feed(estimator, 10 * FS, 14 * FS);
+        assertEquals(2, updates);
+        assertTrue(estimator.hasNewEstimate());
+        assertEquals(2, estimator.getEstimateCount());
+        assertTrue(estimator.getSystolic() > 0);
+        // Diastolic of the small model is a single leaf
+        assertEquals(73.5f, estimator.getDiastolic(), 1e-4f);
+    }
+
+    @Test
+    public void reset_clearsEstimatesButKeepsModel() throws IOException {
+        ProgressiveBPEstimator estimator = new ProgressiveBPEstimator(loadModel());
+        feed(estimator, 0, 12 * FS);
+        assertTrue(estimator.getEstimateCount() > 0);
+        estimator.reset();
+        assertEquals(0, estimator.getEstimateCount());
+        assertFalse(estimator.hasNewEstimate());
+        assertTrue(estimator.hasModel());
+        assertEquals(0, feed(estimator, 0, 8 * FS - 1));
+    }
+
+    // Samples from .. to of the green signal; returns the number of feature updates
+    private static int feed(ProgressiveBPEstimator estimator, int from, int to) {
+        int updates = 0;
+        for (int n = from; n < to; n++) {
+            double t = (double) n / FS;
+            double phase = (t * 1.2) % 1.0;
+            double green = 118 - 2.5 * Math.exp(-Math.pow((phase - 0.2) / 0.08, 2)) + 0.5 * Math.sin(0.9 * t);
+            if (estimator.add(green)) {
+                updates++;
+            }
+        }
+        return updates;
+    }
+
+    private static BloodPressureModel loadModel() throws IOException {
+        try (Reader reader = new InputStreamReader(ProgressiveBPEstimatorTest.class.getResourceAsStream(
+                "/ml/bp_model_small.json"), StandardCharsets.UTF_8)) {
+            return BloodPressureModel.load(reader);
+        }
+    }
+}
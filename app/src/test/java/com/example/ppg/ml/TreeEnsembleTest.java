@@ -0,0 +1,110 @@
+package com.example.ppg.ml;
+
+import com.example.ppg.dsp.PPGFeatures;
+import com.google.gson.stream.JsonReader;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * On-device tree ensemble scoring against a hand-checked two-tree model
+ * (src/test/resources/ml/bp_model_small.json).
+ *
+ * Systolic trees, base score 110:
+ *   tree 0: f0 < 0.5 ? 1.5 : (f2 < -1 ? -0.25 : 2.0), missing f0 goes "no", missing f2 goes "yes"
+ *   tree 1: kurtosis < 0 ? 0.125 : -0.5, missing goes "yes"
+ * Diastolic: a single leaf 3.5, base score 70.
+ * Scaler: center[0] = 1, scale[2] = 2, scale[5] = 0 (left unscaled), identity otherwise.
+ */
+public class TreeEnsembleTest {
+
+    private static final float DELTA = 1e-6f;
+
+    private static BloodPressureModel loadModel() throws IOException {
+        try (Reader reader = new InputStreamReader(
+                TreeEnsembleTest.class.getResourceAsStream("/ml/bp_model_small.json"), StandardCharsets.UTF_8)) {
+            return BloodPressureModel.load(reader);
+        }
+    }
+
+    private static double[] features(double f0, double f2, double f3) {
+        double[] x = new double[PPGFeatures.COUNT];
+        x[0] = f0;
+        x[2] = f2;
+        x[3] = f3;
+        return x;
+    }
+
+    @Test
+    public void load_buildsFlatArrays() throws IOException {
+        TreeEnsemble systolic = loadModel().getSystolicModel();
+        assertEquals(2, systolic.getTreeCount());
+        assertEquals(8, systolic.getNodeCount());
+        assertEquals(110f, systolic.getBaseScore(), DELTA);
+        assertEquals(PPGFeatures.KURTOSIS, systolic.getMaxFeatureIndex());
+    }
+
+    @Test
+    public void ensemble_followsSplitsAndMissingBranches() throws IOException {
+        TreeEnsemble systolic = loadModel().getSystolicModel();
+        assertEquals(111.0f, systolic.predict(features(0, 0, 0)), DELTA);
+        assertEquals(109.25f, systolic.predict(features(1, -2, 1)), DELTA);
+        // Equal to the threshold is not "less than"
+        assertEquals(111.5f, systolic.predict(features(0.5, 0, 0)), DELTA);
+        assertEquals(112.125f, systolic.predict(features(Double.NaN, 5, Double.NaN)), DELTA);
+    }
+
+    @Test
+    public void model_appliesScalerBeforeScoring() throws IOException {
+        BloodPressureModel model = loadModel();
+        float[] bp = new float[2];
+
+        model.predict(features(0, 0, 0), bp);
+        assertEquals(111.0f, bp[0], DELTA);
+        assertEquals(73.5f, bp[1], DELTA);
+
+        // Scaled: f0 = (3 - 1) / 1 = 2, f2 = -4 / 2 = -2, f3 = -1
+        model.predict(features(3, -4, -1), bp);
+        assertEquals(109.875f, bp[0], DELTA);
+        assertEquals(73.5f, bp[1], DELTA);
+    }
+
+    @Test
+    public void binaryForm_roundTrips() throws IOException {
+        TreeEnsemble systolic = loadModel().getSystolicModel();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TreeEnsembleLoader.writeBinary(systolic, bytes);
+
+        TreeEnsemble copy = TreeEnsembleLoader.readBinary(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(systolic.getNodeCount(), copy.getNodeCount());
+        assertEquals(systolic.predict(features(1, -2, 1)), copy.predict(features(1, -2, 1)), 0f);
+        assertEquals(systolic.predict(features(Double.NaN, 5, Double.NaN)),
+                copy.predict(features(Double.NaN, 5, Double.NaN)), 0f);
+    }
+
+    @Test
+    public void jsonDump_acceptsGetDumpStrings() throws IOException {
+        String dump = "[\"{\\\"nodeid\\\":0,\\\"split\\\":\\\"f1\\\",\\\"split_condition\\\":2,"
+                + "\\\"yes\\\":1,\\\"no\\\":2,\\\"missing\\\":1,\\\"children\\\":["
+                + "{\\\"nodeid\\\":1,\\\"leaf\\\":-1},{\\\"nodeid\\\":2,\\\"leaf\\\":1}]}\"]";
+        TreeEnsemble ensemble = TreeEnsembleLoader.fromJsonDump(new JsonReader(new StringReader(dump)), 0.5f);
+        assertEquals(-0.5f, ensemble.predict(new double[] {0, 1}), DELTA);
+        assertEquals(1.5f, ensemble.predict(new double[] {0, 3}), DELTA);
+    }
+
+    @Test(expected = IOException.class)
+    public void jsonDump_rejectsUnknownFeature() throws IOException {
+        String dump = "[{\"nodeid\":0,\"split\":\"pulse_width\",\"split_condition\":1,\"yes\":1,\"no\":2,"
+                + "\"children\":[{\"nodeid\":1,\"leaf\":0},{\"nodeid\":2,\"leaf\":1}]}]";
+        TreeEnsembleLoader.fromJsonDump(new JsonReader(new StringReader(dump)), 0f);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.ppg.store;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * QuantileSketch against exact quantiles of the same values, merging, and the blob
+ * format stored in the stats buckets.
+ */
+public class QuantileSketchTest {
+
+    private static final double[] QUANTILES = {0, 0.01, 0.05, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 1};
+
+    @Test
+    public void quantiles_withinRelativeAccuracy() {
+        Random random = new Random(42);
+        double[] heartRates = new double[5000];
+        double[] skewed = new double[5000];
+        for (int i = 0; i < heartRates.length; i++) {
+            heartRates[i] = 40 + 160 * random.nextDouble();
+            skewed[i] = Math.exp(4.3 + 0.4 * random.nextGaussian());
+        }
+        for (double[] values : new double[][] {heartRates, skewed, {72}, {60, 61, 250, 30}}) {
+            QuantileSketch sketch = sketchOf(values);
+            assertEquals(values.length, sketch.getCount());
+
+            double[] sorted = values.clone();
+            Arrays.sort(sorted);
+            for (double q : QUANTILES) {
+                double exact = sorted[(int) Math.floor(q * (sorted.length - 1))];
+                double estimate = sketch.quantile(q);
+                assertEquals("q=" + q, exact, estimate, exact * QuantileSketch.RELATIVE_ACCURACY * (1 + 1e-9));
+            }
+        }
+    }
+
+    @Test
+    public void quantile_clampsQ() {
+        QuantileSketch sketch = sketchOf(new double[] {50, 100});
+
+        assertEquals(sketch.quantile(0), sketch.quantile(-1), 0);
+        assertEquals(sketch.quantile(1), sketch.quantile(2), 0);
+    }
+
+    @Test
+    public void empty_isNaN() {
+        QuantileSketch sketch = new QuantileSketch();
+
+        assertEquals(0, sketch.getCount());
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+    }
+
+    @Test
+    public void add_ignoresUnmeasuredValues() {
+        QuantileSketch sketch = sketchOf(new double[] {0, -72, Double.NaN, Double.POSITIVE_INFINITY, 72});
+
+        assertEquals(1, sketch.getCount());
+        assertEquals(72, sketch.quantile(0.5), 72 * QuantileSketch.RELATIVE_ACCURACY);
+    }
+
+    @Test
+    public void merge_equalsAddingAllValues() {
+        Random random = new Random(7);
+        QuantileSketch all = new QuantileSketch();
+        QuantileSketch first = new QuantileSketch();
+        QuantileSketch second = new QuantileSketch();
+        for (int i = 0; i < 2000; i++) {
+            // Overlapping ranges, so some bins are shared and some only in one sketch
+            double value = i % 2 == 0 ? 50 + 60 * random.nextDouble() : 90 + 90 * random.nextDouble();
+            all.add(value);
+            (i % 2 == 0 ? first : second).add(value);
+        }
+
+        QuantileSketch merged = new QuantileSketch();
+        merged.merge(first);
+        merged.merge(second);
+
+        assertEquals(all.getCount(), merged.getCount());
+        assertArrayEquals(all.toBytes(), merged.toBytes());
+        for (double q : QUANTILES) {
+            assertEquals(all.quantile(q), merged.quantile(q), 0);
+        }
+        // Merging does not change the sketch merged in
+        assertEquals(1000, second.getCount());
+    }
+
+    @Test
+    public void merge_empty() {
+        QuantileSketch sketch = sketchOf(new double[] {60, 70, 80});
+        byte[] before = sketch.toBytes();
+
+        sketch.merge(new QuantileSketch());
+
+        assertArrayEquals(before, sketch.toBytes());
+    }
+
+    @Test
+    public void bytes_roundTrip() {
+        QuantileSketch sketch = sketchOf(new double[] {45, 60, 60, 61, 72, 72, 72, 118.5, 180, 230});
+
+        byte[] bytes = sketch.toBytes();
+        QuantileSketch copy = QuantileSketch.fromBytes(bytes);
+
+        assertArrayEquals(bytes, copy.toBytes());
+        assertEquals(sketch.getCount(), copy.getCount());
+        for (double q : QUANTILES) {
+            assertEquals(sketch.quantile(q), copy.quantile(q), 0);
+        }
+        assertEquals(4, QuantileSketch.fromBytes(new QuantileSketch().toBytes()).toBytes().length);
+    }
+
+    @Test
+    public void fromBytes_truncatedBlobKeepsWholeBins() {
+        // Three bins far apart: 60 once, 120 twice, 240 three times
+        QuantileSketch sketch = sketchOf(new double[] {60, 120, 120, 240, 240, 240});
+        byte[] bytes = sketch.toBytes();
+        assertEquals(4 + 3 * 12, bytes.length);
+
+        // Cut into the last bin: the first two survive
+        QuantileSketch truncated = QuantileSketch.fromBytes(Arrays.copyOf(bytes, bytes.length - 5));
+
+        assertEquals(3, truncated.getCount());
+        assertEquals(60, truncated.quantile(0), 60 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(120, truncated.quantile(1), 120 * QuantileSketch.RELATIVE_ACCURACY);
+
+        // Only the header
+        assertEquals(0, QuantileSketch.fromBytes(Arrays.copyOf(bytes, 4)).getCount());
+    }
+
+    @Test
+    public void fromBytes_nullOrShortIsEmpty() {
+        assertEquals(0, QuantileSketch.fromBytes(null).getCount());
+        assertEquals(0, QuantileSketch.fromBytes(new byte[0]).getCount());
+        assertEquals(0, QuantileSketch.fromBytes(new byte[] {0, 0, 1}).getCount());
+    }
+
+    static QuantileSketch sketchOf(double[] values) {
+        QuantileSketch sketch = new QuantileSketch();
+        for (double value : values) {
+            sketch.add(value);
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.ppg.store;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.example.ppg.store.QuantileSketchTest.sketchOf;
+import static org.junit.Assert.*;
+
+/**
+ * Merging day buckets into a longer period: counts and sums add up, averages leave out
+ * missing values, and percentiles are those of every value in the merged buckets.
+ */
+public class StatsBucketTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2024, 6, 10);
+
+    @Test
+    public void merge_addsCountsAndSums() {
+        // Monday: HR 60, 70 and one without HR; BP 120/80 and 110/70
+        StatsBucket monday = bucket(MONDAY, 3, new double[] {60, 70}, new double[] {120, 110}, 150);
+        // Tuesday: HR 90, no blood pressure
+        StatsBucket tuesday = bucket(MONDAY.plusDays(1), 1, new double[] {90}, new double[0], 0);
+
+        StatsBucket week = StatsBucket.merge(MONDAY, Arrays.asList(monday, tuesday));
+
+        assertEquals(MONDAY, week.start);
+        assertEquals(4, week.count);
+        assertEquals((60 + 70 + 90) / 3.0, week.getAverageHeartRate(), 1e-12);
+        assertEquals((120 + 110) / 2.0, week.getAverageSystolic(), 1e-12);
+        assertEquals(150 / 2.0, week.getAverageDiastolic(), 1e-12);
+    }
+
+    @Test
+    public void merge_percentilesOfAllValues() {
+        double[] first = {58, 61, 64, 72, 75};
+        double[] second = {80, 95, 102, 140};
+        StatsBucket a = bucket(MONDAY, first.length, first, first, 0);
+        StatsBucket b = bucket(MONDAY.plusDays(3), second.length, second, second, 0);
+
+        StatsBucket merged = StatsBucket.merge(MONDAY, Arrays.asList(a, b));
+
+        QuantileSketch all = sketchOf(first);
+        all.merge(sketchOf(second));
+        for (double q : new double[] {0, 0.25, 0.5, 0.9, 1}) {
+            assertEquals(all.quantile(q), merged.getHeartRatePercentile(q), 0);
+            assertEquals(all.quantile(q), merged.getSystolicPercentile(q), 0);
+        }
+        assertEquals(140, merged.getHeartRatePercentile(1), 140 * QuantileSketch.RELATIVE_ACCURACY);
+    }
+
+    @Test
+    public void merge_leavesInputsUnchanged() {
+        StatsBucket day = bucket(MONDAY, 2, new double[] {60, 80}, new double[0], 0);
+        double median = day.getHeartRatePercentile(0.5);
+
+        StatsBucket.merge(MONDAY, Arrays.asList(day, day));
+
+        assertEquals(median, day.getHeartRatePercentile(0.5), 0);
+        assertEquals(2, day.count);
+    }
+
+    @Test
+    public void merge_nothingIsEmpty() {
+        StatsBucket empty = StatsBucket.merge(MONDAY, Collections.emptyList());
+
+        assertEquals(0, empty.count);
+        assertTrue(Double.isNaN(empty.getAverageHeartRate()));
+        assertTrue(Double.isNaN(empty.getAverageSystolic()));
+        assertTrue(Double.isNaN(empty.getAverageDiastolic()));
+        assertTrue(Double.isNaN(empty.getHeartRatePercentile(0.5)));
+    }
+
+    private static StatsBucket bucket(LocalDate start, int count, double[] heartRates, double[] systolics,
+                                      double diastolicSum) {
+        return new StatsBucket(start, count, heartRates.length, sum(heartRates), systolics.length,
+                sum(systolics), diastolicSum, sketchOf(heartRates), sketchOf(systolics));
+    }
+
+    private static double sum(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
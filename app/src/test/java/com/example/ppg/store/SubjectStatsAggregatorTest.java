@@ -0,0 +1,71 @@
+package com.example.ppg.store;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Every timestamp format SubjectStatsAggregator.localDate buckets by, in a fixed
+ * device zone of UTC-5 so offsets that cross midnight are visible.
+ */
+public class SubjectStatsAggregatorTest {
+
+    private static final LocalDate JUNE_10 = LocalDate.of(2024, 6, 10);
+
+    private TimeZone defaultZone;
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT-05:00"));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    public void offset_movedToDeviceZone() {
+        assertEquals(JUNE_10, SubjectStatsAggregator.localDate("2024-06-10T23:30:00-05:00"));
+        // 01:30 in UTC+2 is still the previous evening at UTC-5
+        assertEquals(JUNE_10, SubjectStatsAggregator.localDate("2024-06-11T01:30:00+02:00"));
+        assertEquals(JUNE_10, SubjectStatsAggregator.localDate("2024-06-11T01:30:00.250+02:00"));
+    }
+
+    @Test
+    public void utc_movedToDeviceZone() {
+        assertEquals(JUNE_10, SubjectStatsAggregator.localDate("2024-06-11T03:00:00Z"));
+        assertEquals(JUNE_10.plusDays(1), SubjectStatsAggregator.localDate("2024-06-11T05:00:00Z"));
+        assertEquals(JUNE_10, SubjectStatsAggregator.localDate("2024-06-11T03:00:00.123456Z"));
+    }
+
+    @Test
+    public void withoutOffset_isLocalAlready() {
+        assertEquals(JUNE_10, SubjectStatsAggregator.localDate("2024-06-10T23:59:59"));
+        assertEquals(JUNE_10, SubjectStatsAggregator.localDate("2024-06-10T07:58:12.123456"));
+        assertEquals(JUNE_10, SubjectStatsAggregator.localDate("2024-06-10T07:58"));
+    }
+
+    @Test
+    public void otherFormats_useTheDatePrefix() {
+        // Python's str(datetime), as SQLite and the backend print it
+        assertEquals(JUNE_10, SubjectStatsAggregator.localDate("2024-06-10 23:40:03"));
+        assertEquals(JUNE_10, SubjectStatsAggregator.localDate("2024-06-10 23:40:03.512+00:00"));
+        assertEquals(JUNE_10, SubjectStatsAggregator.localDate("2024-06-10"));
+    }
+
+    @Test
+    public void unparseable_isNull() {
+        assertNull(SubjectStatsAggregator.localDate(null));
+        assertNull(SubjectStatsAggregator.localDate(""));
+        assertNull(SubjectStatsAggregator.localDate("yesterday"));
+        assertNull(SubjectStatsAggregator.localDate("2024-13-40T00:00:00"));
+        assertNull(SubjectStatsAggregator.localDate("1718000000"));
+    }
+}
@@ -0,0 +1,49 @@
+// Plain JVM module with JMH benchmarks for the signal path.
+// Run with: ./gradlew :benchmarks:jmh  (results in build/results/jmh/results.txt)
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// The app classes under test are compiled straight from the app module. Only
+// Android-free sources can be listed here; add a file when a benchmark needs it.
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include(
+                "com/example/ppg/ImageProcessing.java",
+                "com/example/ppg/PPGChartBuffer.java",
+                "com/example/ppg/PPGResult.java",
+                "com/example/ppg/PPGResultAdapter.java",
+                "com/example/ppg/ServerMessage.java",
+                "com/example/ppg/api/JsonValues.java",
+                "com/example/ppg/dsp/PPGFeatures.java",
+                "com/example/ppg/dsp/RealFft.java",
+                "com/example/ppg/dsp/WelchEstimator.java"
+            )
+        }
+    }
+}
+
+dependencies {
+    // The streaming JSON adapters are compiled against Gson's JsonReader/JsonWriter
+    implementation(libs.gson)
+    jmhImplementation(libs.gson)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    // Throughput plus allocation rate per operation
+    benchmarkMode.set(listOf("thrpt"))
+    profilers.set(listOf("gc"))
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("TEXT")
+}
@@ -0,0 +1,55 @@
+package com.example.ppg.benchmarks;
+
+import com.example.ppg.PPGChartBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Live chart buffer: one add per camera sample and one decimated read per
+ * redrawn display frame.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ChartBufferBenchmark {
+
+    private static final int MAX_POINTS = 300;
+
+    // 150 fits the point budget, 900 (30 s at 30 FPS) is min/max decimated
+    @Param({"150", "900"})
+    public int window;
+
+    private PPGChartBuffer buffer;
+    private final float[] positions = new float[MAX_POINTS];
+    private final float[] values = new float[MAX_POINTS];
+    private int sample = 0;
+
+    @Setup
+    public void setUp() {
+        buffer = new PPGChartBuffer(window);
+        for (int i = 0; i < window; i++) {
+            buffer.add(nextValue());
+        }
+    }
+
+    private float nextValue() {
+        return 48 + (float) Math.sin(sample++ * 2 * Math.PI * 1.2 / 30);
+    }
+
+    @Benchmark
+    public int add() {
+        buffer.add(nextValue());
+        return buffer.size();
+    }
+
+    @Benchmark
+    public int read() {
+        return buffer.read(positions, values, MAX_POINTS);
+    }
+}
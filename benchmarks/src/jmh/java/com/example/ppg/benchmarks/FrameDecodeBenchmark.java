@@ -0,0 +1,76 @@
+package com.example.ppg.benchmarks;
+
+import com.example.ppg.ImageProcessing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame channel averaging, the analyzer's main CPU cost.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FrameDecodeBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    private SyntheticFrame frame;
+    private final long[] sums = new long[3];
+    private final double[] rgb = new double[3];
+    private final ImageProcessing.ChannelStats stats = new ImageProcessing.ChannelStats();
+
+    @Setup
+    public void setUp() {
+        frame = SyntheticFrame.parse(resolution);
+    }
+
+    /**
+     * One channel per call, as the original analyzer used it
+     */
+    @Benchmark
+    public double greenAverage() {
+        return ImageProcessing.decodeYUV420SPtoRedBlueGreenAvg(frame.nv21, frame.width, frame.height, 3, sums);
+    }
+
+    /**
+     * All three channels, one call each
+     */
+    @Benchmark
+    public void redBlueGreenAverages(Blackhole blackhole) {
+        blackhole.consume(ImageProcessing.decodeYUV420SPtoRedBlueGreenAvg(frame.nv21, frame.width, frame.height, 1, sums));
+        blackhole.consume(ImageProcessing.decodeYUV420SPtoRedBlueGreenAvg(frame.nv21, frame.width, frame.height, 2, sums));
+        blackhole.consume(ImageProcessing.decodeYUV420SPtoRedBlueGreenAvg(frame.nv21, frame.width, frame.height, 3, sums));
+    }
+
+    /**
+     * All three channels in a single pass with reused buffers
+     */
+    @Benchmark
+    public double[] rgbAveragesSinglePass() {
+        ImageProcessing.decodeYUV420SPtoRGBAvg(frame.nv21, frame.width, frame.height, sums, rgb);
+        return rgb;
+    }
+
+    /**
+     * Centre-half ROI read straight from the camera planes, as RoiSampler does
+     */
+    @Benchmark
+    public ImageProcessing.ChannelStats roiChannelStats() {
+        int left = frame.width / 4 & ~1;
+        int top = frame.height / 4 & ~1;
+        int right = frame.width * 3 / 4 & ~1;
+        int bottom = frame.height * 3 / 4 & ~1;
+        ImageProcessing.decodeYUV420PlanesToChannelStats(frame.yPlane, frame.yRowStride, 1,
+                frame.uPlane, frame.vPlane, frame.uvRowStride, frame.uvPixelStride,
+                left, top, right, bottom, false, stats);
+        return stats;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.ppg.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Full-frame upload path of PPGWebSocketClient.imageProxyToBase64: NV21 assembly
+ * from the camera planes, JPEG at quality 80, then Base64. YuvImage is Android-only,
+ * so JPEG encoding uses NV21 to RGB conversion plus ImageIO as the pure-Java equivalent.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FrameUploadBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    private SyntheticFrame frame;
+    private byte[] jpeg;
+    private ImageWriter jpegWriter;
+    private ImageWriteParam jpegParams;
+
+    @Setup
+    public void setUp() throws IOException {
+        frame = SyntheticFrame.parse(resolution);
+        jpegWriter = ImageIO.getImageWritersByFormatName("jpeg").next();
+        jpegParams = jpegWriter.getDefaultWriteParam();
+        jpegParams.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        jpegParams.setCompressionQuality(0.8f);
+        jpeg = encodeJpeg(frame.nv21);
+    }
+
+    @Benchmark
+    public byte[] nv21Assembly() {
+        return assembleNv21(frame.yPlane.duplicate(), frame.uPlane.duplicate(), frame.vPlane.duplicate(),
+                frame.uvPixelStride);
+    }
+
+    @Benchmark
+    public byte[] jpegEncode() throws IOException {
+        return encodeJpeg(frame.nv21);
+    }
+
+    @Benchmark
+    public String base64Encode() {
+        return Base64.getEncoder().encodeToString(jpeg);
+    }
+
+    @Benchmark
+    public String fullFrameToBase64() throws IOException {
+        byte[] nv21 = assembleNv21(frame.yPlane.duplicate(), frame.uPlane.duplicate(), frame.vPlane.duplicate(),
+                frame.uvPixelStride);
+        return Base64.getEncoder().encodeToString(encodeJpeg(nv21));
+    }
+
+    // Same copies and interleaving as imageProxyToBase64
+    private static byte[] assembleNv21(ByteBuffer yBuffer, ByteBuffer uBuffer, ByteBuffer vBuffer, int uvPixelStride) {
+        int ySize = yBuffer.remaining();
+        int uSize = uBuffer.remaining();
+        int vSize = vBuffer.remaining();
+
+        byte[] nv21 = new byte[ySize + uSize + vSize];
+        yBuffer.get(nv21, 0, ySize);
+
+        byte[] uvPixels = new byte[uSize + vSize];
+        uBuffer.get(uvPixels, 0, uSize);
+        vBuffer.get(uvPixels, uSize, vSize);
+
+        if (uvPixelStride == 1) {
+            System.arraycopy(uvPixels, 0, nv21, ySize, uSize + vSize);
+        } else {
+            int uvPos = ySize;
+            for (int i = 0; i < uSize; i += uvPixelStride) {
+                nv21[uvPos++] = uvPixels[i];
+                nv21[uvPos++] = uvPixels[i + uSize];
+            }
+        }
+        return nv21;
+    }
+
+    private byte[] encodeJpeg(byte[] nv21) throws IOException {
+        int width = frame.width;
+        int height = frame.height;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] argb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        nv21ToRgb(nv21, width, height, argb);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(outputStream)) {
+            jpegWriter.setOutput(output);
+            jpegWriter.write(null, new IIOImage(image, null, null), jpegParams);
+        }
+        return outputStream.toByteArray();
+    }
+
+    // Same BT.601 integer conversion as ImageProcessing
+    private static void nv21ToRgb(byte[] nv21, int width, int height, int[] out) {
+        int frameSize = width * height;
+        for (int j = 0, yp = 0; j < height; j++) {
+            int uvp = frameSize + (j >> 1) * width, u = 0, v = 0;
+            for (int i = 0; i < width; i++, yp++) {
+                int y = (0xff & nv21[yp]) - 16;
+                if (y < 0) y = 0;
+                if ((i & 1) == 0) {
+                    v = (0xff & nv21[uvp++]) - 128;
+                    u = (0xff & nv21[uvp++]) - 128;
+                }
+                int y1192 = 1192 * y;
+                int r = clamp(y1192 + 1634 * v);
+                int g = clamp(y1192 - 833 * v - 400 * u);
+                int b = clamp(y1192 + 2066 * u);
+                out[yp] = ((r << 6) & 0xff0000) | ((g >> 2) & 0xff00) | ((b >> 10) & 0xff);
+            }
+        }
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 262143 ? 262143 : value);
+    }
+}
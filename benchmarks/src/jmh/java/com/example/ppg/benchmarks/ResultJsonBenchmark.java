@@ -0,0 +1,115 @@
+package com.example.ppg.benchmarks;
+
+import com.example.ppg.PPGResult;
+import com.example.ppg.PPGResultAdapter;
+import com.example.ppg.ServerMessage;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of a server result message, the per-message cost on the
+ * WebSocket reader thread: Gson's reflective binding against the hand-written
+ * streaming adapter.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ResultJsonBenchmark {
+
+    private static final int HISTORY_LENGTH = 150;
+
+    private final Gson gson = new Gson();
+    private final PPGResultAdapter adapter = new PPGResultAdapter();
+    private PPGResult result;
+    private String resultJson;
+    private String messageJson;
+
+    @Setup
+    public void setUp() {
+        result = new PPGResult();
+        result.status = "success";
+        result.frame_count = 900;
+        result.elapsed_time = 30.0;
+        result.rgb_values = new PPGResult.RGBValues();
+        result.rgb_values.red = 201.5;
+        result.rgb_values.green = 48.25;
+        result.rgb_values.blue = 12.75;
+        result.rgb_values.width = 640;
+        result.rgb_values.height = 480;
+        result.heart_rate = new PPGResult.HeartRate();
+        result.heart_rate.heart_rate = 72;
+        result.heart_rate.confidence = 85;
+        result.heart_rate.method = "fft";
+        result.heart_rate.signal_quality = "Good";
+        result.green_signal_value = 48.25;
+        result.green_signal_history = new double[HISTORY_LENGTH];
+        for (int i = 0; i < HISTORY_LENGTH; i++) {
+            result.green_signal_history[i] = 48 + Math.sin(i * 2 * Math.PI * 1.2 / 30);
+        }
+        result.bp_analysis_result = new PPGResult.BPAnalysisResult();
+        result.bp_analysis_result.bp_analysis = new PPGResult.BPAnalysisResult.BPAnalysis();
+        result.bp_analysis_result.bp_analysis.systolic_bp = 118f;
+        result.bp_analysis_result.bp_analysis.diastolic_bp = 76f;
+        result.bp_analysis_result.bp_analysis.bp_category = "Normal";
+        result.bp_analysis_result.bp_analysis.confidence = 80;
+        result.bp_analysis_result.bp_analysis.quality = "Good";
+        result.bp_analysis_result.collection_duration = 30.0;
+        result.bp_analysis_result.samples_collected = 900;
+        result.bp_analysis_result.model_version = "xgb-1";
+        result.bp_analysis_result.status = "complete";
+
+        resultJson = gson.toJson(result);
+        messageJson = "{\"type\":\"result\",\"data\":" + resultJson + "}";
+    }
+
+    @Benchmark
+    public String encode() {
+        return gson.toJson(result);
+    }
+
+    @Benchmark
+    public PPGResult decode() {
+        return gson.fromJson(resultJson, PPGResult.class);
+    }
+
+    /**
+     * What PPGWebSocketClient.onMessage used to do: parse to a JsonObject, dispatch
+     * on "type", then bind "data" to PPGResult
+     */
+    @Benchmark
+    public PPGResult decodeMessage() {
+        JsonObject response = gson.fromJson(messageJson, JsonObject.class);
+        if (!"result".equals(response.get("type").getAsString())) {
+            return null;
+        }
+        return gson.fromJson(response.getAsJsonObject("data"), PPGResult.class);
+    }
+
+    @Benchmark
+    public String encodeStreaming() {
+        return adapter.toJson(result);
+    }
+
+    @Benchmark
+    public PPGResult decodeStreaming() throws IOException {
+        return adapter.fromJson(resultJson);
+    }
+
+    /**
+     * What PPGWebSocketClient.onMessage does now: one pass over the message
+     */
+    @Benchmark
+    public PPGResult decodeMessageStreaming() throws IOException {
+        ServerMessage message = ServerMessage.read(new StringReader(messageJson));
+        return ServerMessage.TYPE_RESULT.equals(message.type) ? message.data : null;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.ppg.benchmarks;
+
+import com.example.ppg.dsp.PPGFeatures;
+import com.example.ppg.dsp.RealFft;
+import com.example.ppg.dsp.WelchEstimator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-device spectral features: one real FFT per Welch segment, and the per-sample
+ * cost of the streaming estimator at the model's 125 Hz.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SpectrumBenchmark {
+
+    // 250 is the training script's Welch segment (Bluestein), 256 the radix-2 path
+    @Param({"250", "256"})
+    public int size;
+
+    private RealFft fft;
+    private double[] input;
+    private double[] re;
+    private double[] im;
+    private WelchEstimator welch;
+    private final double[] features = new double[PPGFeatures.COUNT];
+    private int sample = 0;
+
+    @Setup
+    public void setUp() {
+        fft = new RealFft(size);
+        input = new double[size];
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            input[i] = Math.sin(2 * Math.PI * 1.2 * i / PPGFeatures.SAMPLE_RATE_HZ) + 0.1 * random.nextGaussian();
+        }
+        re = new double[fft.binCount()];
+        im = new double[fft.binCount()];
+        welch = new WelchEstimator(PPGFeatures.SAMPLE_RATE_HZ, size, 4 * size);
+        // Fill the window so the features are computed from a full PSD
+        for (int i = 0; i < 4 * size; i++) {
+            welch.add(input[sample++ % size]);
+        }
+    }
+
+    @Benchmark
+    public double[] realFft() {
+        fft.forward(input, re, im);
+        return re;
+    }
+
+    @Benchmark
+    public boolean welchAdd() {
+        return welch.add(input[sample++ % size]);
+    }
+
+    @Benchmark
+    public double[] frequencyFeatures() {
+        welch.fillFrequencyFeatures(features);
+        return features;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.ppg.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * A reproducible fingertip-like camera frame, both as an NV21 array and as the
+ * YUV_420_888 planes CameraX hands to the analyzer (semi-planar, chroma pixel
+ * stride 2, U and V views into one interleaved VU buffer).
+ */
+final class SyntheticFrame {
+
+    final int width;
+    final int height;
+    final byte[] nv21;
+    final ByteBuffer yPlane;
+    final ByteBuffer uPlane;
+    final ByteBuffer vPlane;
+    final int yRowStride;
+    final int uvRowStride;
+    final int uvPixelStride = 2;
+
+    SyntheticFrame(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int frameSize = width * height;
+        nv21 = new byte[frameSize + frameSize / 2];
+
+        // A finger over the torch: bright, red-dominant, with some sensor noise
+        Random random = new Random(42);
+        for (int i = 0; i < frameSize; i++) {
+            nv21[i] = (byte) (120 + random.nextInt(16));
+        }
+        for (int i = frameSize; i < nv21.length; i += 2) {
+            nv21[i] = (byte) (200 + random.nextInt(8));     // V
+            nv21[i + 1] = (byte) (100 + random.nextInt(8)); // U
+        }
+
+        yRowStride = width;
+        uvRowStride = width;
+        yPlane = ByteBuffer.allocateDirect(frameSize);
+        yPlane.put(nv21, 0, frameSize).flip();
+        ByteBuffer vu = ByteBuffer.allocateDirect(frameSize / 2);
+        vu.put(nv21, frameSize, frameSize / 2).flip();
+        // Like CameraX, each chroma plane stops at its own last sample
+        vPlane = slice(vu, 0, frameSize / 2 - 1);
+        uPlane = slice(vu, 1, frameSize / 2 - 1);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset).limit(offset + length);
+        return view.slice();
+    }
+
+    static SyntheticFrame parse(String resolution) {
+        int x = resolution.indexOf('x');
+        return new SyntheticFrame(Integer.parseInt(resolution.substring(0, x)),
+                Integer.parseInt(resolution.substring(x + 1)));
+    }
+}
@@ -5,6 +5,7 @@ Trained on actual PPG signals with corresponding BP values
 Target: High accuracy BP prediction using real data
 """
 
+import argparse
 import os
 import pandas as pd
 import numpy as np
@@ -20,6 +21,14 @@ import joblib
 import matplotlib.pyplot as plt
 import seaborn as sns
 
+parser = argparse.ArgumentParser(description="Train the BP regression model on the real PPG dataset")
+parser.add_argument("--dataset", default=os.environ.get("PPG_DATASET_DIR", r"/home/avij/AndroidStudioProjects/PPG/dataset"),
+                    help="dataset folder containing raw_data/*.csv")
+parser.add_argument("--export", default="bp_model.json",
+                    help="where to write the on-device model (the app build passes its assets folder)")
+parser.add_argument("--no-plot", action="store_true", help="skip the result plots, for unattended builds")
+args = parser.parse_args()
+
 print("🚀 Creating Real Data BP Regression Model")
 print("=" * 50)
 
@@ -167,7 +176,7 @@ def extract_enhanced_features(ppg_segment, fs=125):
 
 print("📊 Processing real dataset for BP regression...")
 
-base_folder = r"/home/avij/AndroidStudioProjects/PPG/dataset"
+base_folder = args.dataset
 raw_folder = os.path.join(base_folder, "raw_data")
 
 csv_files = [f for f in os.listdir(raw_folder) if f.endswith(".csv")]
@@ -302,6 +311,35 @@ model_data = {
 
 joblib.dump(model_data, 'real_ppg_bp_model.joblib')
 
+# ----- EXPORT FOR ON-DEVICE INFERENCE -----
+
+# The Android app scores XGBoost models itself (com.example.ppg.ml.BloodPressureModel)
+import json
+
+def export_xgb(model):
+    config = json.loads(model.get_booster().save_config())
+    base_score = float(config['learner']['learner_model_param']['base_score'])
+    trees = [json.loads(tree) for tree in model.get_booster().get_dump(dump_format='json')]
+    return {'base_score': base_score, 'trees': trees}
+
+# Only XGBoost is scored on the device, so the XGBoost models are exported even
+# when another model scored best above
+device_model = {
+    'version': 1,
+    'feature_names': list(X.columns),
+    'scaler': {'center': scaler.center_.tolist(), 'scale': scaler.scale_.tolist()},
+    'systolic': export_xgb(results['systolic']['xgb']['model']),
+    'diastolic': export_xgb(results['diastolic']['xgb']['model'])
+}
+export_dir = os.path.dirname(args.export)
+if export_dir:
+    os.makedirs(export_dir, exist_ok=True)
+with open(args.export, 'w') as f:
+    json.dump(device_model, f)
+print(f"📱 On-device model exported: {args.export} "
+      f"(XGBoost R² systolic {results['systolic']['xgb']['r2']:.3f}, "
+      f"diastolic {results['diastolic']['xgb']['r2']:.3f})")
+
 print(f"\n✅ Real data BP model saved!")
 print(f"📁 Model file: real_ppg_bp_model.joblib")
 print(f"🎯 Features: {len(X.columns)}")
@@ -310,6 +348,10 @@ print(f"🧪 Test samples: {len(X_test)}")
 
 # ----- PLOT RESULTS -----
 
+if args.no_plot:
+    print("\n🎉 Real Data BP Regression Model Complete!")
+    raise SystemExit(0)
+
 fig, axes = plt.subplots(2, 2, figsize=(15, 10))
 
 for i, bp_type in enumerate(['systolic', 'diastolic']):
@@ -22,4 +22,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "PPG"
 include(":app")
+include(":benchmarks")
  
\ No newline at end of file